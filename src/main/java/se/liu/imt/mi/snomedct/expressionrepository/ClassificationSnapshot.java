@@ -0,0 +1,204 @@
+package se.liu.imt.mi.snomedct.expressionrepository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionCount;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * A record of a classified state of the expression repository, i.e. which version of the ontology and of the
+ * expressions table that have been classified and stored in the data store. The classified taxonomy itself is kept in
+ * the data store, so a snapshot that still matches tells that the classification of every stored expression is stored
+ * and that the ontology does not need to be classified before the repository can answer requests. An expression is
+ * only recorded once its classification is stored, so a stored expression whose classification is missing makes the
+ * snapshot stale.
+ * <p>
+ * The snapshot is stored in a small binary file which is replaced atomically when it is written.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ */
+class ClassificationSnapshot {
+
+	/**
+	 * The first bytes of a snapshot file.
+	 */
+	private static final int MAGIC = 0x53435443;
+
+	/**
+	 * The version of the file format.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * A fingerprint of the ontology document.
+	 */
+	private final String ontologyVersion;
+
+	/**
+	 * The number of expressions in the expressions table.
+	 */
+	private final long expressionCount;
+
+	/**
+	 * The lowest expression id, which is the most recently assigned one, or 0 if there are no expressions.
+	 */
+	private final long lowestExpressionId;
+
+	/**
+	 * Creates a snapshot.
+	 *
+	 * @param ontologyVersion
+	 *            A fingerprint of the ontology document
+	 * @param expressionCount
+	 *            The number of expressions in the expressions table
+	 * @param lowestExpressionId
+	 *            The lowest expression id
+	 */
+	ClassificationSnapshot(String ontologyVersion, long expressionCount, long lowestExpressionId) {
+		super();
+		this.ontologyVersion = ontologyVersion;
+		this.expressionCount = expressionCount;
+		this.lowestExpressionId = lowestExpressionId;
+	}
+
+	/**
+	 * Creates a snapshot of the current state.
+	 *
+	 * @param ontologyUrl
+	 *            The URL of the ontology document
+	 * @param dataStore
+	 *            The data store with the expressions table
+	 * @return The snapshot
+	 * @throws IOException
+	 *             Thrown if the ontology document could not be examined
+	 * @throws DataStoreException
+	 *             Thrown if the expressions could not be counted in the data store
+	 */
+	static ClassificationSnapshot create(String ontologyUrl, DataStore dataStore)
+			throws IOException, DataStoreException {
+		ExpressionCount expressions = dataStore.countExpressions(null);
+		return new ClassificationSnapshot(getOntologyVersion(ontologyUrl), expressions.getCount(),
+				expressions.getLowestExpressionId());
+	}
+
+	/**
+	 * Returns a snapshot which also records a new expression.
+	 *
+	 * @param id
+	 *            The id of the new expression
+	 * @return The new snapshot
+	 */
+	ClassificationSnapshot withExpression(ExpressionId id) {
+		return new ClassificationSnapshot(ontologyVersion, expressionCount + 1,
+				Math.min(lowestExpressionId, id.getId()));
+	}
+
+	/**
+	 * Returns a fingerprint of an ontology document made from its location, size and time of last modification, so
+	 * the document does not have to be read.
+	 *
+	 * @param ontologyUrl
+	 *            The URL of the ontology document
+	 * @return The fingerprint
+	 * @throws IOException
+	 *             Thrown if the ontology document could not be examined
+	 */
+	static String getOntologyVersion(String ontologyUrl) throws IOException {
+		URL url = new URL(ontologyUrl);
+		long length;
+		long lastModified;
+		if ("file".equals(url.getProtocol())) {
+			File file = new File(url.getPath());
+			if (!file.isFile())
+				throw new IOException("The ontology document " + ontologyUrl + " does not exist.");
+			length = file.length();
+			lastModified = file.lastModified();
+		} else {
+			URLConnection connection = url.openConnection();
+			try {
+				length = connection.getContentLengthLong();
+				lastModified = connection.getLastModified();
+			} finally {
+				connection.getInputStream().close();
+			}
+		}
+		return ontologyUrl + "|" + length + "|" + lastModified;
+	}
+
+	/**
+	 * Reads a snapshot from a file.
+	 *
+	 * @param file
+	 *            The file
+	 * @return The snapshot or <code>null</code> if the file does not exist or is not a snapshot in the current format
+	 * @throws IOException
+	 *             Thrown if the file could not be read
+	 */
+	static ClassificationSnapshot read(File file) throws IOException {
+		if (!file.isFile())
+			return null;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				return null;
+			String ontologyVersion = in.readUTF();
+			long expressionCount = in.readLong();
+			long lowestExpressionId = in.readLong();
+			return new ClassificationSnapshot(ontologyVersion, expressionCount, lowestExpressionId);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the snapshot to a file. The snapshot is first written to a temporary file in the same directory which
+	 * then replaces the file, so a snapshot that is only partly written is never read.
+	 *
+	 * @param file
+	 *            The file
+	 * @throws IOException
+	 *             Thrown if the file could not be written
+	 */
+	void write(File file) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(ontologyVersion);
+			out.writeLong(expressionCount);
+			out.writeLong(lowestExpressionId);
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			// renameTo does not replace an existing file on all platforms
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("The snapshot could not be written to " + file + ".");
+		}
+	}
+
+	/**
+	 * Checks if another snapshot records the same classified state as this one.
+	 *
+	 * @param other
+	 *            The other snapshot, may be <code>null</code>
+	 * @return <code>true</code> if the ontology and expressions table versions are the same
+	 */
+	boolean matches(ClassificationSnapshot other) {
+		return other != null && ontologyVersion.equals(other.ontologyVersion)
+				&& expressionCount == other.expressionCount && lowestExpressionId == other.lowestExpressionId;
+	}
+}
@@ -0,0 +1,291 @@
+package se.liu.imt.mi.snomedct.expressionrepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import se.liu.imt.mi.snomedct.expression.tools.ExpressionSyntaxError;
+import se.liu.imt.mi.snomedct.expressionrepository.api.ConceptModelException;
+import se.liu.imt.mi.snomedct.expressionrepository.api.MRCM;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * Checks the attributes of SCT expressions against a Machine Readable Concept Model, so expressions that break the
+ * concept model can be rejected before they are stored or classified.
+ * <p>
+ * Every attribute, ungrouped or in a group, is checked with the focus concepts of the expression it refines as
+ * subject and its value as object. An expression is subsumed by each of its focus concepts, so an attribute is allowed
+ * if it is allowed for any of the focus concepts, and a nested expression as value is in a range if any of its focus
+ * concepts is. The attributes of nested expressions are checked in the same way. Attributes with concrete values are
+ * not checked.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ */
+public class ConceptModelValidator {
+
+	/**
+	 * An attribute of an expression.
+	 */
+	private static class Attribute {
+		final List<ExpressionId> subjects;
+		final ExpressionId attribute;
+		final List<ExpressionId> values;
+		final String text;
+
+		Attribute(final List<ExpressionId> subjects, final ExpressionId attribute, final List<ExpressionId> values,
+				final String text) {
+			this.subjects = subjects;
+			this.attribute = attribute;
+			this.values = values;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * The concept model to check against.
+	 */
+	private final MRCM mrcm;
+
+	/**
+	 * Creates a validator.
+	 *
+	 * @param mrcm
+	 *            The concept model to check against.
+	 */
+	public ConceptModelValidator(final MRCM mrcm) {
+		super();
+		this.mrcm = mrcm;
+	}
+
+	/**
+	 * Check that all attributes of an expression are allowed by the concept model.
+	 *
+	 * @param expression
+	 *            The expression, according to the SNOMED CT Compositional Grammar, e.g. as generated by the
+	 *            <code>SortedExpressionVisitor</code>.
+	 * @throws ConceptModelException
+	 *             Thrown if any attribute is not allowed.
+	 * @throws ExpressionSyntaxError
+	 *             Thrown if the expression is not well formed.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store of the concept model.
+	 */
+	public void validate(final String expression) throws ConceptModelException, ExpressionSyntaxError,
+			DataStoreException {
+		final List<Attribute> attributes = new ArrayList<Attribute>();
+		final Parser parser = new Parser(expression);
+		parser.parseExpression(attributes);
+		parser.skipWhitespace();
+		if (parser.position < expression.length()) {
+			throw parser.syntaxError("Unexpected text after the expression");
+		}
+		for (Attribute attribute : attributes) {
+			if (!isAllowed(attribute)) {
+				throw new ConceptModelException("The attribute " + attribute.text + " is not allowed for "
+						+ attribute.subjects + " according to the concept model");
+			}
+		}
+	}
+
+	/**
+	 * @param attribute
+	 *            An attribute.
+	 * @return If the attribute is allowed for any of its subjects with any of its values.
+	 * @throws ConceptModelException
+	 *             Thrown if the concept model could not be used.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store of the concept model.
+	 */
+	private boolean isAllowed(final Attribute attribute) throws ConceptModelException, DataStoreException {
+		for (ExpressionId subject : attribute.subjects) {
+			for (ExpressionId value : attribute.values) {
+				if (mrcm.validate(subject, attribute.attribute, value)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the focus concepts and attributes of an expression.
+	 */
+	private static class Parser {
+
+		/**
+		 * The expression.
+		 */
+		final String text;
+		/**
+		 * The current position in the expression.
+		 */
+		int position = 0;
+
+		Parser(final String text) {
+			this.text = text;
+		}
+
+		/**
+		 * Parse an expression at the current position and collect its attributes and the attributes of its nested
+		 * expressions.
+		 *
+		 * @param attributes
+		 *            The collected attributes.
+		 * @return The focus concepts of the expression.
+		 * @throws ExpressionSyntaxError
+		 *             Thrown if the expression is not well formed.
+		 */
+		List<ExpressionId> parseExpression(final List<Attribute> attributes) throws ExpressionSyntaxError {
+			skipWhitespace();
+			if (text.startsWith("===", position) || text.startsWith("<<<", position)) {
+				position += 3;
+			}
+			final List<ExpressionId> focusConcepts = new ArrayList<ExpressionId>();
+			focusConcepts.add(parseConcept());
+			while (skip('+')) {
+				focusConcepts.add(parseConcept());
+			}
+			if (skip(':')) {
+				do {
+					if (skip('{')) {
+						do {
+							parseAttribute(focusConcepts, attributes);
+						} while (skip(','));
+						expect('}');
+					} else {
+						parseAttribute(focusConcepts, attributes);
+					}
+					// groups may follow each other without a comma
+					skipWhitespace();
+				} while (skip(',') || (position < text.length() && text.charAt(position) == '{'));
+			}
+			return focusConcepts;
+		}
+
+		/**
+		 * Parse an attribute at the current position.
+		 *
+		 * @param subjects
+		 *            The focus concepts of the expression the attribute refines.
+		 * @param attributes
+		 *            The collected attributes.
+		 * @throws ExpressionSyntaxError
+		 *             Thrown if the attribute is not well formed.
+		 */
+		private void parseAttribute(final List<ExpressionId> subjects, final List<Attribute> attributes)
+				throws ExpressionSyntaxError {
+			skipWhitespace();
+			final int start = position;
+			final ExpressionId attribute = parseConcept();
+			expect('=');
+			skipWhitespace();
+			final char c = position < text.length() ? text.charAt(position) : ' ';
+			if (c == '#') {
+				// a numeric concrete value
+				position++;
+				while (position < text.length() && "+-.0123456789eE".indexOf(text.charAt(position)) >= 0) {
+					position++;
+				}
+				return;
+			}
+			if (c == '"') {
+				// a string concrete value
+				final int end = text.indexOf('"', position + 1);
+				if (end < 0) {
+					throw syntaxError("Unterminated string");
+				}
+				position = end + 1;
+				return;
+			}
+			final List<ExpressionId> values;
+			if (skip('(')) {
+				values = parseExpression(attributes);
+				expect(')');
+			} else {
+				values = new ArrayList<ExpressionId>(1);
+				values.add(parseConcept());
+			}
+			attributes.add(new Attribute(subjects, attribute, values, text.substring(start, position).trim()));
+		}
+
+		/**
+		 * Parse a concept id, optionally followed by a term, at the current position.
+		 *
+		 * @return The concept id.
+		 * @throws ExpressionSyntaxError
+		 *             Thrown if there is no concept id at the current position.
+		 */
+		private ExpressionId parseConcept() throws ExpressionSyntaxError {
+			skipWhitespace();
+			final int start = position;
+			while (position < text.length() && Character.isDigit(text.charAt(position))) {
+				position++;
+			}
+			if (start == position) {
+				throw syntaxError("Expected a concept id");
+			}
+			final ExpressionId concept;
+			try {
+				concept = new ExpressionId(Long.valueOf(text.substring(start, position)));
+			} catch (NumberFormatException e) {
+				throw syntaxError("The concept id is too large");
+			}
+			if (skip('|')) {
+				final int end = text.indexOf('|', position);
+				if (end < 0) {
+					throw syntaxError("Unterminated term");
+				}
+				position = end + 1;
+			}
+			return concept;
+		}
+
+		/**
+		 * Move past white space and a specific character, if it is the next character.
+		 *
+		 * @param c
+		 *            The character.
+		 * @return If the character was found.
+		 */
+		private boolean skip(final char c) {
+			skipWhitespace();
+			if (position < text.length() && text.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Move past white space and a specific character.
+		 *
+		 * @param c
+		 *            The character.
+		 * @throws ExpressionSyntaxError
+		 *             Thrown if the character is not the next character.
+		 */
+		private void expect(final char c) throws ExpressionSyntaxError {
+			if (!skip(c)) {
+				throw syntaxError("Expected '" + c + "'");
+			}
+		}
+
+		/**
+		 * Move the current position past any white space.
+		 */
+		void skipWhitespace() {
+			while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+		}
+
+		/**
+		 * @param message
+		 *            What is wrong.
+		 * @return An exception telling what is wrong at the current position.
+		 */
+		ExpressionSyntaxError syntaxError(final String message) {
+			return new ExpressionSyntaxError(message + " at position " + position + " in the expression " + text);
+		}
+	}
+}
@@ -3,20 +3,46 @@
  */
 package se.liu.imt.mi.snomedct.expressionrepository;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.XMLConfiguration;
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.log4j.Logger;
+import org.semanticweb.elk.owlapi.ElkReasonerConfiguration;
 import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.elk.reasoner.config.ReasonerConfiguration;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.formats.DLSyntaxDocumentFormat;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLClassExpression;
 import org.semanticweb.owlapi.model.OWLDataFactory;
@@ -25,6 +51,7 @@ import org.semanticweb.owlapi.model.OWLObjectIntersectionOf;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.Node;
 import org.semanticweb.owlapi.reasoner.NodeSet;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
@@ -37,10 +64,13 @@ import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
 
 import se.liu.imt.mi.snomedct.expression.tools.SNOMEDCTParserUtil;
 import se.liu.imt.mi.snomedct.expression.tools.ExpressionSyntaxError;
+import se.liu.imt.mi.snomedct.expressionrepository.api.ConceptModelException;
 import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionRepository;
+import se.liu.imt.mi.snomedct.expressionrepository.api.MRCM;
 import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
 import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore;
 import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.ExpressionCursor;
 import se.liu.imt.mi.snomedct.expressionrepository.datatypes.Expression;
 import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
 import se.liu.imt.mi.snomedct.parser.SortedExpressionVisitor;
@@ -48,6 +78,12 @@ import org.semanticweb.owlapi.manchestersyntax.renderer.ManchesterOWLSyntaxObjec
 import org.semanticweb.owlapi.manchestersyntax.renderer.ManchesterOWLSyntaxPrefixNameShortFormProvider;
 
 /**
+ * An expression repository using a <code>DataStore</code> for storage and the ELK reasoner for classification.
+ * <p>
+ * The repository may be used from several threads. Lookups only use the data store and run in parallel, while all
+ * changes to the ontology and reasoner are made by a single classification thread which new expressions are handed
+ * over to.
+ * 
  * @author Daniel Karlsson, daniel.karlsson@liu.se
  * @author Mikael Nyström, mikael.nystrom@liu.se
  */
@@ -56,8 +92,97 @@ public class ExpressionRepositoryImpl extends Object implements ExpressionReposi
 	private OWLOntology ontology;
 	private OWLDataFactory dataFactory;
 	private OWLOntologyManager manager;
-	private OWLReasoner reasoner;
-	private DataStore dataStore;
+	private volatile OWLReasoner reasoner;
+	private final OWLReasonerFactory reasonerFactory;
+	private final DataStore dataStore;
+
+	/**
+	 * If the reasoner is configured to classify new expressions incrementally against the existing taxonomy
+	 * (<code>true</code>) or to classify the whole ontology again for each batch of new expressions
+	 * (<code>false</code>).
+	 */
+	private boolean incrementalReasoning;
+
+	/**
+	 * New expressions waiting to be classified by the classification thread.
+	 */
+	private final BlockingQueue<PendingExpression> pendingExpressions = new LinkedBlockingQueue<PendingExpression>();
+
+	/**
+	 * New expressions that are waiting for or undergoing classification, by sorted expression. Callers asking for
+	 * an expression in this map wait for its classification instead of submitting it again.
+	 */
+	private final ConcurrentMap<String, PendingExpression> inProgress =
+			new ConcurrentHashMap<String, PendingExpression>();
+
+	/**
+	 * The ids of stored expressions whose classification is not stored, by sorted expression. Such an expression is
+	 * not returned as an existing expression, it is classified again with the same id when it is asked for.
+	 */
+	private final ConcurrentMap<String, ExpressionId> unclassified = new ConcurrentHashMap<String, ExpressionId>();
+
+	/**
+	 * The validator new expressions are checked with before they are stored and classified, or <code>null</code> if
+	 * new expressions are not checked against a concept model.
+	 */
+	private volatile ConceptModelValidator conceptModelValidator = null;
+
+	/**
+	 * The maximum number of new expressions that are classified in the same reasoner pass.
+	 */
+	private int batchSize;
+
+	/**
+	 * The maximum time in milliseconds to wait for more new expressions before a batch is classified.
+	 */
+	private long batchWindow;
+
+	/**
+	 * The number of stored expressions that are parsed together by one thread at startup.
+	 */
+	private static final int PARSE_CHUNK_SIZE = 1000;
+
+	/**
+	 * The number of threads parsing the stored expressions at startup.
+	 */
+	private int parserThreads;
+
+	/**
+	 * The file with the snapshot of the classified state or <code>null</code> if no snapshot is used.
+	 */
+	private File snapshotFile = null;
+
+	/**
+	 * The snapshot of the current classified state.
+	 */
+	private ClassificationSnapshot snapshot = null;
+
+	/**
+	 * The exception thrown if the ontology could not be loaded and classified by the classification thread.
+	 */
+	private Exception ontologyFailure = null;
+
+	/**
+	 * The thread classifying new expressions.
+	 */
+	private Thread classificationThread;
+
+	/**
+	 * A new expression waiting to be classified together with the other new expressions in the same batch.
+	 */
+	private static class PendingExpression {
+		final String sortedExpression;
+		final ParseTree tree;
+		final CountDownLatch classified = new CountDownLatch(1);
+		OWLClass owlClass = null;
+		ExpressionId expressionId = null;
+		Exception exception = null;
+
+		PendingExpression(String sortedExpression, ParseTree tree) {
+			this.sortedExpression = sortedExpression;
+			this.tree = tree;
+		}
+	}
 
 	private static final Logger log = Logger.getLogger(ExpressionRepositoryImpl.class);
 	Configuration config = null;
@@ -70,80 +195,386 @@ public class ExpressionRepositoryImpl extends Object implements ExpressionReposi
 	 *             Forwards any exception thrown during initialization
 	 */
 	public ExpressionRepositoryImpl() throws Exception {
+		this(loadConfiguration());
+	}
+
+	/**
+	 * Constructor for ExpressionRepository implementation with the PostgreSQL data store and the ELK reasoner.
+	 * 
+	 * @param config
+	 *            The configuration
+	 * @throws Exception
+	 *             Forwards any exception thrown during initialization
+	 */
+	private ExpressionRepositoryImpl(Configuration config) throws Exception {
+		this(config, createDataStore(config), new ElkReasonerFactory());
+	}
+
+	/**
+	 * Constructor for ExpressionRepository implementation with a given data store and reasoner. The database
+	 * settings in the configuration are not used.
+	 * 
+	 * @param config
+	 *            The configuration, with the same settings as <code>config.xml</code>
+	 * @param dataStore
+	 *            The data store with the concepts and expressions
+	 * @param reasonerFactory
+	 *            The factory creating the reasoner, which is given an ELK reasoner configuration
+	 * @throws Exception
+	 *             Forwards any exception thrown during initialization
+	 */
+	public ExpressionRepositoryImpl(Configuration config, DataStore dataStore, OWLReasonerFactory reasonerFactory)
+			throws Exception {
 		super();
+		this.config = config;
+		this.dataStore = dataStore;
+		this.reasonerFactory = reasonerFactory;
+
+		// check new expressions against the concept model, if there is one
+		String mrcmFile = config.getString("mrcm.file");
+		if (mrcmFile != null) {
+			MRCMImpl mrcm = new MRCMImpl(dataStore);
+			mrcm.loadMRCM(mrcmFile);
+			setMRCM(mrcm);
+			log.debug("MRCM in '" + mrcmFile + "' loaded");
+		}
+
+		// initialize OWL API
+		manager = OWLManager.createOWLOntologyManager();
+		dataFactory = manager.getOWLDataFactory();
+
+		// check if the ontology and expressions are already classified according to the snapshot
+		final String ontologyUrl = config.getString("owlapi.url");
+		incrementalReasoning = config.getBoolean("reasoner.incremental", true);
+		parserThreads = Math.max(1, config.getInt("owlapi.parser.threads", Runtime.getRuntime().availableProcessors()));
+		String snapshotPath = config.getString("reasoner.snapshot");
+		boolean classified = false;
+		if (snapshotPath != null) {
+			snapshotFile = new File(snapshotPath);
+			try {
+				snapshot = ClassificationSnapshot.create(ontologyUrl, dataStore);
+				classified = snapshot.matches(ClassificationSnapshot.read(snapshotFile));
+			} catch (Exception e) {
+				log.debug("Exception", e);
+			}
+		}
+
+		if (classified) {
+			// the classified taxonomy is already in the data store, so the reasoner is only needed for new
+			// expressions and is prepared by the classification thread
+			log.debug("Snapshot is up to date, the ontology is loaded and classified in the background");
+		} else {
+			loadAndClassifyOntology(ontologyUrl);
+			// a snapshot is only written when the classification of every stored expression is stored
+			if (storeMissingClassifications())
+				writeSnapshot();
+			else
+				snapshot = null;
+		}
+		final boolean classifyInBackground = classified;
+
+		// start classification of new expressions
+		batchSize = Math.max(1, config.getInt("classification.batch.size", 100));
+		batchWindow = Math.max(0, config.getLong("classification.batch.window", 0));
+		log.debug("Classifying new expressions in batches of at most " + batchSize + " expression(s) within "
+				+ batchWindow + " ms");
+		classificationThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (classifyInBackground) {
+						try {
+							loadAndClassifyOntology(ontologyUrl);
+						} catch (Exception e) {
+							log.debug("Exception", e);
+							ontologyFailure = e;
+						}
+					}
+					classifyPendingExpressions();
+				} catch (InterruptedException e) {
+					log.debug("Classification thread interrupted");
+				}
+			}
+		}, "ExpressionRepository-classification");
+		classificationThread.setDaemon(true);
+		classificationThread.start();
+	}
 
-		// initialize configuration
+	/**
+	 * Loads the configuration in <code>config.xml</code>.
+	 * 
+	 * @return The configuration
+	 * @throws Exception
+	 *             Thrown if the configuration could not be loaded
+	 */
+	private static Configuration loadConfiguration() throws Exception {
 		try {
-			config = new XMLConfiguration("config.xml");
+			Configuration config = new XMLConfiguration("config.xml");
 			log.debug("Configuration in 'config.xml' loaded");
+			return config;
 		} catch (Exception e) {
 			log.debug("Exception", e);
 			throw e;
 		}
+	}
 
-		// initialize data store
+	/**
+	 * Creates the PostgreSQL data store from the database settings in the configuration.
+	 * 
+	 * @param config
+	 *            The configuration
+	 * @return The data store
+	 * @throws Exception
+	 *             Thrown if the data store could not be created
+	 */
+	private static DataStore createDataStore(Configuration config) throws Exception {
 		try {
 			String url = config.getString("database.url");
 			String username = config.getString("database.username");
 			String password = config.getString("database.password");
-			dataStore = new se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql.DataStore(url, username,
-					password);
+			int poolSize = config.getInt("database.poolsize",
+					se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql.DataStore.DEFAULT_POOL_SIZE);
+			int cacheSize = config.getInt("database.cache.size",
+					se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql.DataStore.DEFAULT_CACHE_SIZE);
+			long cacheTimeToLive = config.getLong("database.cache.ttl",
+					se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql.DataStore.DEFAULT_CACHE_TTL);
+			se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql.DataStore postgresqlDataStore =
+					new se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql.DataStore(url, username,
+							password, poolSize, cacheSize, cacheTimeToLive);
+			// keep the hierarchy in memory for the current time and for the dates that are queried often
+			SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+			List<Date> snapshotTimes = new ArrayList<Date>();
+			for (Object snapshotTime : config.getList("database.snapshots.time")) {
+				snapshotTimes.add(dateFormat.parse(snapshotTime.toString()));
+			}
+			postgresqlDataStore.setHierarchySnapshotTimes(snapshotTimes,
+					config.getBoolean("database.snapshots.current", false));
 			log.debug("DataStore initialized");
+			return postgresqlDataStore;
 		} catch (Exception e) {
 			log.debug("Exception", e);
 			throw e;
 		}
+	}
 
-		// initialize OWL API
-		manager = OWLManager.createOWLOntologyManager();
-		dataFactory = manager.getOWLDataFactory();
-
+	/**
+	 * Loads the ontology, adds all existing expressions to it and classifies it.
+	 * 
+	 * @param ontologyUrl
+	 *            The URL of the ontology document
+	 * @throws OWLOntologyCreationException
+	 *             Thrown if the ontology could not be loaded
+	 */
+	private void loadAndClassifyOntology(String ontologyUrl) throws OWLOntologyCreationException {
 		// initialize ontology
 		try {
-			String url = config.getString("owlapi.url");
 			log.debug("Starting to load ontology into memory");
-			ontology = manager.loadOntologyFromOntologyDocument(IRI.create(url));
+			ontology = manager.loadOntologyFromOntologyDocument(IRI.create(ontologyUrl));
 			log.debug("Finished loading ontology into memory");
-
-			log.debug("Creating reasoner");
-			OWLReasonerFactory reasonerFactory = new ElkReasonerFactory();
-			reasoner = reasonerFactory.createReasoner(ontology);
-
 		} catch (OWLOntologyCreationException e) {
 			log.debug("Exception", e);
 			throw e;
 		}
 
+		log.debug("Creating reasoner");
+		log.debug("Incremental reasoning " + (incrementalReasoning ? "enabled" : "disabled"));
+		ElkReasonerConfiguration reasonerConfiguration = new ElkReasonerConfiguration();
+		reasonerConfiguration.getElkConfiguration().setParameter(ReasonerConfiguration.INCREMENTAL_MODE_ALLOWED,
+				Boolean.toString(incrementalReasoning));
+		reasonerConfiguration.getElkConfiguration().setParameter(ReasonerConfiguration.INCREMENTAL_TAXONOMY,
+				Boolean.toString(incrementalReasoning));
+		OWLReasoner newReasoner = reasonerFactory.createReasoner(ontology, reasonerConfiguration);
+
 		// add all existing expressions from expression table to ontology
 		try {
-			log.debug("Adding existing expressions from data store to ontology");
-			Collection<Expression> expressions = dataStore.getAllExpressions(null);
-			for (Expression ex : expressions) {
-				SNOMEDCTParserUtil.parseExpressionToOWLAxiom(ex.getExpression(), ontology);
-				// addExpressionToOntology(result, ex.getExpressionId());
-			}
+			addExpressionsToOntology();
 		} catch (Exception e) {
 			log.debug("Exception", e);
 			// throw e;
 		}
 
-		// classify ontology
+		// classify ontology, the existing expressions were added after the reasoner was created and are only seen by
+		// the reasoner when it is flushed
 		log.debug("Starting classification of ontology");
-		reasoner.precomputeInferences();// org.semanticweb.owlapi.reasoner.InferenceType.CLASS_HIERARCHY);
+		newReasoner.flush();
+		newReasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
 		log.debug("Finished classifying ontology");
 
 		log.debug("No. of axioms = " + ontology.getAxiomCount());
+		reasoner = newReasoner;
+	}
+
+	/**
+	 * Stores the classification of the stored expressions whose classification never was stored, for instance since
+	 * the reasoner failed or the repository was stopped in between. Their axioms are already in the classified
+	 * ontology. The classifications are stored in the order the expressions were stored, and for each expression the
+	 * later ones are disregarded, as for a batch of new expressions. An expression whose classification still can not
+	 * be stored is classified again when it is asked for.
+	 * 
+	 * @return If the classification of every stored expression is stored
+	 * @throws DataStoreException
+	 *             Thrown if the unclassified expressions could not be read
+	 */
+	private boolean storeMissingClassifications() throws DataStoreException {
+		List<Expression> expressions = new ArrayList<Expression>(dataStore.getUnclassifiedExpressions(null));
+		if (expressions.isEmpty())
+			return true;
+		log.debug("Storing the classification of " + expressions.size() + " unclassified expression(s)");
+		// expression ids are assigned in descending order
+		Collections.sort(expressions, new Comparator<Expression>() {
+			@Override
+			public int compare(Expression e1, Expression e2) {
+				return e2.getExpressionId().getId().compareTo(e1.getExpressionId().getId());
+			}
+		});
+		Map<Expression, OWLClass> owlClasses = new HashMap<Expression, OWLClass>();
+		for (Expression ex : expressions)
+			owlClasses.put(ex, dataFactory.getOWLClass(
+					IRI.create(SNOMEDCTParserUtil.PC_IRI + ex.getExpressionId().toString())));
+		Set<OWLClass> unpersisted = new HashSet<OWLClass>(owlClasses.values());
 
+		boolean complete = true;
+		for (Expression ex : expressions) {
+			unpersisted.remove(owlClasses.get(ex));
+			try {
+				storeClassification(ex.getExpressionId(), owlClasses.get(ex), unpersisted);
+			} catch (Exception e) {
+				log.debug("Exception caught: " + e.getMessage());
+				e.printStackTrace();
+				unclassified.put(ex.getExpression(), ex.getExpressionId());
+				complete = false;
+			}
+		}
+		return complete;
+	}
+
+	/**
+	 * Adds the axioms of all expressions in the expression table to the ontology. The expressions are read from the
+	 * data store in chunks which are parsed in parallel by <code>parserThreads</code> threads. Each chunk is parsed
+	 * into an ontology of its own, since an ontology can not be changed by several threads, and its axioms are then
+	 * added to the ontology in bulk. At most two chunks per thread are read ahead, so all expressions are never in
+	 * memory at the same time.
+	 * 
+	 * @throws Exception
+	 *             Thrown if the expressions could not be read or their axioms could not be added
+	 */
+	private void addExpressionsToOntology() throws Exception {
+		log.debug("Adding existing expressions from data store to ontology using " + parserThreads + " thread(s)");
+		ExecutorService executor = Executors.newFixedThreadPool(parserThreads);
+		LinkedList<Future<Set<OWLAxiom>>> parsing = new LinkedList<Future<Set<OWLAxiom>>>();
+		int count = 0;
+		try (ExpressionCursor expressions = dataStore.getAllExpressionsCursor(null)) {
+			List<Expression> chunk = new ArrayList<Expression>(PARSE_CHUNK_SIZE);
+			while (true) {
+				boolean more = expressions.next();
+				if (more)
+					chunk.add(expressions.getExpression());
+				if (chunk.size() == PARSE_CHUNK_SIZE || (!more && !chunk.isEmpty())) {
+					final List<Expression> toParse = chunk;
+					parsing.add(executor.submit(new Callable<Set<OWLAxiom>>() {
+						@Override
+						public Set<OWLAxiom> call() throws Exception {
+							return parseExpressions(toParse);
+						}
+					}));
+					count += chunk.size();
+					chunk = new ArrayList<Expression>(PARSE_CHUNK_SIZE);
+				}
+				// add the axioms of the oldest chunk when enough chunks are read ahead or at the end
+				while (!parsing.isEmpty() && (parsing.size() > 2 * parserThreads || !more))
+					manager.addAxioms(ontology, parsing.removeFirst().get());
+				if (!more)
+					break;
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		log.debug("Added " + count + " existing expression(s) to ontology");
 	}
 
-	private ExpressionId getExpressionID(ParseTree tree) {
+	/**
+	 * Parses expressions into OWL axioms, without changing the ontology. Each expression gets a class named with its
+	 * expression id, like a newly classified expression.
+	 * 
+	 * @param expressions
+	 *            The expressions to parse
+	 * @return The axioms of the expressions
+	 * @throws OWLOntologyCreationException
+	 *             Thrown if the ontology to parse the axioms into could not be created
+	 */
+	private static Set<OWLAxiom> parseExpressions(List<Expression> expressions) throws OWLOntologyCreationException {
+		OWLOntology chunkOntology = OWLManager.createOWLOntologyManager().createOntology();
+		OWLDataFactory chunkDataFactory = chunkOntology.getOWLOntologyManager().getOWLDataFactory();
+		for (Expression ex : expressions) {
+			try {
+				OWLClass owlClass = chunkDataFactory.getOWLClass(
+						IRI.create(SNOMEDCTParserUtil.PC_IRI + ex.getExpressionId().toString()));
+				SNOMEDCTParserUtil.parseExpressionToOWLAxiom(SNOMEDCTParserUtil.parseExpression(ex.getExpression()),
+						chunkOntology, owlClass, false);
+			} catch (Exception e) {
+				log.debug("Expression " + ex.getExpressionId() + " could not be added to ontology", e);
+			}
+		}
+		return chunkOntology.getAxioms();
+	}
+
+	/**
+	 * Writes the snapshot of the classified state, if a snapshot file is configured. A snapshot that can not be
+	 * written only means that the ontology is classified again at the next start.
+	 */
+	private void writeSnapshot() {
+		if (snapshotFile == null || snapshot == null)
+			return;
+		try {
+			snapshot.write(snapshotFile);
+			log.debug("Snapshot written to " + snapshotFile);
+		} catch (IOException e) {
+			log.debug("Exception", e);
+		}
+	}
+
+	/**
+	 * Sets the concept model that new expressions are checked against before they are stored and classified.
+	 * 
+	 * @param mrcm
+	 *            The concept model, or <code>null</code> to not check new expressions.
+	 */
+	public void setMRCM(MRCM mrcm) {
+		conceptModelValidator = mrcm == null ? null : new ConceptModelValidator(mrcm);
+	}
+
+	/**
+	 * Checks a new expression against the concept model, if there is one.
+	 * 
+	 * @param sortedExpression
+	 *            The sorted expression
+	 * @throws ConceptModelException
+	 *             Thrown if some attribute in the expression is not allowed by the concept model, or if the attributes
+	 *             could not be read from the expression
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store
+	 */
+	private void validateConceptModel(String sortedExpression) throws ConceptModelException, DataStoreException {
+		ConceptModelValidator validator = conceptModelValidator;
+		if (validator == null)
+			return;
+		try {
+			validator.validate(sortedExpression);
+		} catch (ExpressionSyntaxError e) {
+			// the sorted expression is generated from a parse tree, so the validator and the SortedExpressionVisitor
+			// disagree about the grammar, and the expression can not be stored without being checked
+			throw new ConceptModelException("The concept model could not be checked for the sorted expression "
+					+ sortedExpression, e);
+		}
+	}
+
+	private ExpressionId getExpressionID(ParseTree tree) throws ConceptModelException {
 		// generate sorted expression string
 		SortedExpressionVisitor sortVisitor = new SortedExpressionVisitor();
 		String sortedExpression = sortVisitor.visit(tree);
 
 		log.debug("sorted expression = " + sortedExpression);
 
-		// use try block to implement transaction??
 		try {
 			// id of the current expression, either an existing or a new one
 			ExpressionId expid = null;
@@ -167,85 +598,40 @@ public class ExpressionRepositoryImpl extends Object implements ExpressionReposi
 					throw new NonExistingIdException(expid.toString());
 				}
 			}
-			
+
 			// here, expid must be null
 			// the expression is not a single integer
 			// since it's parsed and sorted/generated it must be a valid expression
 			expid = dataStore.getExpressionId(sortedExpression, null); // get any stored expression id, if it exists
 
-			if (expid != null) {// the expression is currently in the
-								// expression repository
+			// an expression that is being classified is stored before it is classified, so it is only returned
+			// directly when no classification is in progress for it and its classification is stored
+			PendingExpression pending = inProgress.get(sortedExpression);
+			if (expid != null && pending == null && !unclassified.containsKey(sortedExpression)) {
+				// the expression is currently in the expression repository
 				log.debug("existing expression id = " + expid.toString());
 				return expid;
-			} else
-				// add expression to expression table
-				expid = dataStore.storeExpression(sortedExpression, null);
-
-			log.debug("new expression id = " + expid.toString());
-
-			// generate OWL expression and create new class for the expression
-			// add axiom to ontology and classify
-			OWLClass new_pc_concept = manager.getOWLDataFactory().getOWLClass(
-					IRI.create(SNOMEDCTParserUtil.PC_IRI + expid.toString()));
-
-			SNOMEDCTParserUtil.parseExpressionToOWLAxiom(tree, ontology, new_pc_concept, false);
-
-			reasoner.flush();
-			reasoner.precomputeInferences();
-
-			// check for equivalent classes
-			Node<OWLClass> equivalentClasses = reasoner.getEquivalentClasses(new_pc_concept);
-			ExpressionId eqExpid = null;
-			if (equivalentClasses.getSize() != 0) {
-				for (OWLClass cl : equivalentClasses.getEntities()) {
-					ExpressionId eqExpidTemp = new ExpressionId(getIDFromOWLElement(cl));
-					log.debug("equivalent expression id = " + eqExpidTemp.toString());
-					if (!expid.equals(eqExpidTemp)) {
-						eqExpid = eqExpidTemp;
-						if (eqExpid.isPreCoordinated())
-							break;
-					}
-				}
 			}
-			if (eqExpid != null)
-				// if there is at least one equivalent expression or
-				// pre-coordinated
-				// concept then store the equivalence in the repository
-				dataStore.storeExpressionEquivalence(expid, eqExpid, null);
-			else {
-				// if there are no equivalent expressions or pre-cordinated
-				// concepts, add direct super- and sub classes to the data store
-				NodeSet<OWLClass> superClasses = reasoner.getSuperClasses(new_pc_concept, true);
-				HashSet<ExpressionId> parents = new HashSet<ExpressionId>();
-				if (!superClasses.isEmpty()) {
-					for (Node<OWLClass> c : superClasses) {
-						for (OWLClass cl : c.getEntities()) {
-							log.debug("parent id = " + cl.toString());
-						}
-						ExpressionId id = new ExpressionId(getIDFromOWLElement(c.getRepresentativeElement()));
-						log.debug("parent id = " + id.toString());
-						if (id.getId() != 0)
-							parents.add(id);
-					}
-				}
-				NodeSet<OWLClass> subClasses = reasoner.getSubClasses(new_pc_concept, true);
-				HashSet<ExpressionId> children = new HashSet<ExpressionId>();
-				if (!subClasses.isEmpty()) {
-					for (Node<OWLClass> c : subClasses) {
-						ExpressionId id = new ExpressionId(getIDFromOWLElement(c.getRepresentativeElement()));
-						for (OWLClass cl : c.getEntities()) {
-							log.debug("child id = " + cl.toString());
-						}
-						log.debug("child id = " + id.toString());
-						if (id.getId() != 0)
-							children.add(id);
-					}
-				}
-				dataStore.storeExpressionParentsAndChildren(expid, parents, children, null);
+
+			if (pending == null) {
+				// an expression that breaks the concept model is rejected before anything is stored or classified
+				validateConceptModel(sortedExpression);
+				pending = submitForClassification(sortedExpression, tree);
 			}
+			// wait until the expression has been classified together with the other expressions in the same batch
+			pending.classified.await();
+			if (pending.exception != null)
+				throw pending.exception;
+
 			// return newly generated ID
-			return expid;
+			return pending.expressionId;
 
+		} catch (InterruptedException e) {
+			log.debug("Interrupted while waiting for classification of " + sortedExpression);
+			Thread.currentThread().interrupt();
+		} catch (ConceptModelException e) {
+			log.debug("Rejected by the concept model: " + e.getMessage());
+			throw e;
 		} catch (Exception e) {
 			log.debug("Exception caught: " + e.getMessage());
 			e.printStackTrace();
@@ -255,13 +641,296 @@ public class ExpressionRepositoryImpl extends Object implements ExpressionReposi
 		return null;
 	}
 
+	/**
+	 * Hands a new expression over to the classification thread, unless another caller already has.
+	 * 
+	 * @param sortedExpression
+	 *            The sorted expression
+	 * @param tree
+	 *            The parse tree of the expression
+	 * @return The pending expression to wait for
+	 * @throws InterruptedException
+	 *             Thrown if the thread is interrupted while handing over the expression
+	 */
+	private PendingExpression submitForClassification(String sortedExpression, ParseTree tree)
+			throws InterruptedException {
+		PendingExpression newPending = new PendingExpression(sortedExpression, tree);
+		PendingExpression pending = inProgress.putIfAbsent(sortedExpression, newPending);
+		if (pending == null) {
+			pending = newPending;
+			pendingExpressions.put(pending);
+		}
+		return pending;
+	}
+
+	/**
+	 * Takes new expressions from the queue of pending expressions and classifies them in batches. A batch is closed
+	 * when it contains <code>batchSize</code> expressions or when <code>batchWindow</code> milliseconds have passed
+	 * since its first expression was taken from the queue.
+	 * 
+	 * @throws InterruptedException
+	 *             Thrown if the classification thread is interrupted while waiting for new expressions
+	 */
+	private void classifyPendingExpressions() throws InterruptedException {
+		while (true) {
+			List<PendingExpression> batch = new ArrayList<PendingExpression>();
+			batch.add(pendingExpressions.take());
+			long deadline = System.currentTimeMillis() + batchWindow;
+			while (batch.size() < batchSize) {
+				long wait = deadline - System.currentTimeMillis();
+				PendingExpression next = wait > 0 ? pendingExpressions.poll(wait, TimeUnit.MILLISECONDS)
+						: pendingExpressions.poll();
+				if (next == null)
+					break;
+				batch.add(next);
+			}
+			log.debug("Classifying batch of " + batch.size() + " new expression(s)");
+			try {
+				classifyBatch(batch);
+			} catch (Exception e) {
+				log.debug("Exception caught: " + e.getMessage());
+				e.printStackTrace();
+				// an expression whose classification was not stored gets no id, it stays stored but unclassified
+				// and is classified again when it is asked for
+				for (PendingExpression pending : batch)
+					if (pending.exception == null
+							&& (pending.expressionId == null || unclassified.containsKey(pending.sortedExpression))) {
+						pending.expressionId = null;
+						pending.exception = e;
+					}
+			} finally {
+				for (PendingExpression pending : batch) {
+					inProgress.remove(pending.sortedExpression, pending);
+					pending.classified.countDown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores a batch of new expressions, adds all their axioms to the ontology, classifies the ontology once and
+	 * stores the equivalences or parents and children of each expression in the data store.
+	 * <p>
+	 * The equivalences, parents and children are stored in the order the expressions were received, and for each
+	 * expression the expressions later in the same batch are disregarded. The result in the data store is therefore
+	 * the same as if the expressions had been classified one at a time.
+	 * <p>
+	 * An expression is stored before it is classified, and until its classification is stored it is kept among the
+	 * unclassified expressions. If the reasoner fails, the axioms of the batch are removed from the ontology again and
+	 * the expressions are classified again, with the ids they already have, when they are asked for.
+	 * 
+	 * @param batch
+	 *            The expressions to classify
+	 * @throws Exception
+	 *             Thrown if the batch could not be classified
+	 */
+	private void classifyBatch(List<PendingExpression> batch) throws Exception {
+		if (ontologyFailure != null)
+			throw ontologyFailure;
+
+		// store the new expressions and parse their axioms into an ontology of their own, so the axioms that are new
+		// to the ontology are known and can be removed again if the batch can not be classified
+		List<PendingExpression> added = new ArrayList<PendingExpression>();
+		Set<OWLClass> unpersisted = new HashSet<OWLClass>();
+		OWLOntology batchOntology = OWLManager.createOWLOntologyManager().createOntology();
+		for (PendingExpression pending : batch) {
+			try {
+				// an expression whose classification failed earlier is classified again with the id it has
+				ExpressionId expid = unclassified.get(pending.sortedExpression);
+				if (expid == null) {
+					// the expression might have been stored by an earlier batch
+					expid = dataStore.getExpressionId(pending.sortedExpression, null);
+					if (expid != null) {
+						log.debug("existing expression id = " + expid.toString());
+						pending.expressionId = expid;
+						continue;
+					}
+					// add expression to expression table
+					expid = dataStore.storeExpression(pending.sortedExpression, null);
+					unclassified.put(pending.sortedExpression, expid);
+					log.debug("new expression id = " + expid.toString());
+				} else
+					log.debug("unclassified expression id = " + expid.toString());
+
+				// generate OWL expression and create new class for the expression
+				pending.owlClass = manager.getOWLDataFactory().getOWLClass(
+						IRI.create(SNOMEDCTParserUtil.PC_IRI + expid.toString()));
+				SNOMEDCTParserUtil.parseExpressionToOWLAxiom(pending.tree, batchOntology, pending.owlClass, false);
+				pending.expressionId = expid;
+				added.add(pending);
+				unpersisted.add(pending.owlClass);
+			} catch (Exception e) {
+				log.debug("Exception caught: " + e.getMessage());
+				e.printStackTrace();
+				pending.exception = e;
+			}
+		}
+
+		if (!added.isEmpty()) {
+			Set<OWLAxiom> newAxioms = new HashSet<OWLAxiom>();
+			for (OWLAxiom axiom : batchOntology.getAxioms())
+				if (!ontology.containsAxiom(axiom))
+					newAxioms.add(axiom);
+			manager.addAxioms(ontology, newAxioms);
+			try {
+				// classify all new axioms in one reasoner pass, incrementally against the existing taxonomy or from
+				// scratch as the reasoner is configured
+				reasoner.flush();
+				reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+			} catch (RuntimeException e) {
+				// the axioms that could not be classified must not make the following batches fail too
+				manager.removeAxioms(ontology, newAxioms);
+				throw e;
+			}
+		}
+
+		for (PendingExpression pending : added) {
+			unpersisted.remove(pending.owlClass);
+			try {
+				storeClassification(pending.expressionId, pending.owlClass, unpersisted);
+				unclassified.remove(pending.sortedExpression);
+				// an expression whose classification is not stored makes the snapshot stale, so it is not recorded
+				if (snapshot != null)
+					snapshot = snapshot.withExpression(pending.expressionId);
+			} catch (Exception e) {
+				log.debug("Exception caught: " + e.getMessage());
+				e.printStackTrace();
+				pending.expressionId = null;
+				pending.exception = e;
+			}
+		}
+		if (!added.isEmpty())
+			writeSnapshot();
+	}
+
+	/**
+	 * Stores the equivalence or the parents and children of a classified expression in the data store.
+	 * 
+	 * @param expid
+	 *            The id of the classified expression
+	 * @param new_pc_concept
+	 *            The class of the classified expression
+	 * @param unpersisted
+	 *            Classes of new expressions that are not yet stored in the data store and therefore must be
+	 *            disregarded
+	 * @throws Exception
+	 *             Thrown if the classification could not be stored
+	 */
+	private void storeClassification(ExpressionId expid, OWLClass new_pc_concept, Set<OWLClass> unpersisted)
+			throws Exception {
+		// check for equivalent classes
+		Node<OWLClass> equivalentClasses = reasoner.getEquivalentClasses(new_pc_concept);
+		ExpressionId eqExpid = null;
+		if (equivalentClasses.getSize() != 0) {
+			for (OWLClass cl : equivalentClasses.getEntities()) {
+				if (unpersisted.contains(cl))
+					continue;
+				ExpressionId eqExpidTemp = new ExpressionId(getIDFromOWLElement(cl));
+				log.debug("equivalent expression id = " + eqExpidTemp.toString());
+				if (!expid.equals(eqExpidTemp)) {
+					eqExpid = eqExpidTemp;
+					if (eqExpid.isPreCoordinated())
+						break;
+				}
+			}
+		}
+		if (eqExpid != null)
+			// if there is at least one equivalent expression or
+			// pre-coordinated
+			// concept then store the equivalence in the repository
+			dataStore.storeExpressionEquivalence(expid, eqExpid, null);
+		else {
+			// if there are no equivalent expressions or pre-cordinated
+			// concepts, add direct super- and sub classes to the data store
+			HashSet<ExpressionId> parents = new HashSet<ExpressionId>();
+			for (OWLClass c : getDirectRelatives(new_pc_concept, true, unpersisted)) {
+				ExpressionId id = new ExpressionId(getIDFromOWLElement(c));
+				log.debug("parent id = " + id.toString());
+				if (id.getId() != 0)
+					parents.add(id);
+			}
+			HashSet<ExpressionId> children = new HashSet<ExpressionId>();
+			for (OWLClass c : getDirectRelatives(new_pc_concept, false, unpersisted)) {
+				ExpressionId id = new ExpressionId(getIDFromOWLElement(c));
+				log.debug("child id = " + id.toString());
+				if (id.getId() != 0)
+					children.add(id);
+			}
+			dataStore.storeExpressionParentsAndChildren(expid, parents, children, null);
+		}
+	}
+
+	/**
+	 * Returns the direct super- or subclasses of a class, disregarding classes of new expressions that are not yet
+	 * stored in the data store. A disregarded class is replaced with its own direct super- or subclasses, and only the
+	 * most specific superclasses or most general subclasses are kept.
+	 * 
+	 * @param cl
+	 *            The class
+	 * @param superClasses
+	 *            <code>true</code> for superclasses, <code>false</code> for subclasses
+	 * @param unpersisted
+	 *            Classes of new expressions that are not yet stored in the data store
+	 * @return One representative class for each direct super- or subclass node
+	 */
+	private Set<OWLClass> getDirectRelatives(OWLClass cl, boolean superClasses, Set<OWLClass> unpersisted) {
+		Set<OWLClass> relatives = new LinkedHashSet<OWLClass>();
+		Set<Node<OWLClass>> visited = new HashSet<Node<OWLClass>>();
+		LinkedList<Node<OWLClass>> queue = new LinkedList<Node<OWLClass>>();
+		queue.addAll((superClasses ? reasoner.getSuperClasses(cl, true) : reasoner.getSubClasses(cl, true)).getNodes());
+		while (!queue.isEmpty()) {
+			Node<OWLClass> node = queue.removeFirst();
+			if (!visited.add(node))
+				continue;
+			for (OWLClass c : node.getEntities())
+				log.debug((superClasses ? "parent" : "child") + " class = " + c.toString());
+			OWLClass representative = null;
+			if (!unpersisted.contains(node.getRepresentativeElement()))
+				representative = node.getRepresentativeElement();
+			else
+				for (OWLClass c : node.getEntities())
+					if (!unpersisted.contains(c)) {
+						representative = c;
+						break;
+					}
+			if (representative != null)
+				relatives.add(representative);
+			else
+				// the node only contains unpersisted classes, look beyond it
+				queue.addAll((superClasses ? reasoner.getSuperClasses(node.getRepresentativeElement(), true)
+						: reasoner.getSubClasses(node.getRepresentativeElement(), true)).getNodes());
+		}
+
+		if (unpersisted.isEmpty() || relatives.size() < 2)
+			return relatives;
+		// remove the relatives that are not direct since they subsume (or are subsumed by) another relative
+		Set<OWLClass> direct = new LinkedHashSet<OWLClass>();
+		for (OWLClass candidate : relatives) {
+			boolean isDirect = true;
+			for (OWLClass other : relatives) {
+				if (candidate.equals(other))
+					continue;
+				NodeSet<OWLClass> between = superClasses ? reasoner.getSuperClasses(other, false)
+						: reasoner.getSubClasses(other, false);
+				if (between.containsEntity(candidate)) {
+					isDirect = false;
+					break;
+				}
+			}
+			if (isDirect)
+				direct.add(candidate);
+		}
+		return direct;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionRepository# getExpressionID(java.lang.String)
 	 */
 	@Override
-	public ExpressionId getExpressionID(String expression) throws ExpressionSyntaxError, NonExistingIdException {
+	public ExpressionId getExpressionID(String expression)
+			throws ExpressionSyntaxError, NonExistingIdException, ConceptModelException {
 
 		log.debug("expression = " + expression);
 
@@ -271,6 +940,92 @@ public class ExpressionRepositoryImpl extends Object implements ExpressionReposi
 
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionRepository# getExpressionIDs(java.util.Collection)
+	 */
+	@Override
+	public List<ExpressionId> getExpressionIDs(Collection<String> expressions)
+			throws ExpressionSyntaxError, NonExistingIdException, ConceptModelException, DataStoreException {
+		// parse and sort all expressions first, so a syntax error is found before anything is stored
+		List<String> sortedExpressions = new ArrayList<String>(expressions.size());
+		List<ParseTree> trees = new ArrayList<ParseTree>(expressions.size());
+		for (String expression : expressions) {
+			log.debug("expression = " + expression);
+			ParseTree tree = SNOMEDCTParserUtil.parseExpression(expression);
+			trees.add(tree);
+			sortedExpressions.add(new SortedExpressionVisitor().visit(tree));
+		}
+
+		ExpressionId[] result = new ExpressionId[sortedExpressions.size()];
+		try {
+			// single codes are ids that must exist, the other expressions are looked up with one query
+			Set<String> postCoordinated = new HashSet<String>();
+			for (int i = 0; i < result.length; i++) {
+				String sortedExpression = sortedExpressions.get(i);
+				ExpressionId expid;
+				try {
+					expid = new ExpressionId(new Long(sortedExpression));
+				} catch (NumberFormatException nfe) {
+					postCoordinated.add(sortedExpression);
+					continue;
+				}
+				if (!dataStore.isExistingId(expid, null))
+					throw new NonExistingIdException(expid.toString());
+				result[i] = expid;
+			}
+			Map<String, ExpressionId> existing = dataStore.getExpressionIds(postCoordinated, null);
+
+			// check all new expressions against the concept model before any of them is stored or classified
+			for (String sortedExpression : postCoordinated) {
+				if (!existing.containsKey(sortedExpression) && !inProgress.containsKey(sortedExpression))
+					validateConceptModel(sortedExpression);
+			}
+
+			// hand all new expressions over to the classification thread before waiting for any of them, so they
+			// can be classified in the same batch
+			Map<String, PendingExpression> pendings = new HashMap<String, PendingExpression>();
+			for (int i = 0; i < result.length; i++) {
+				String sortedExpression = sortedExpressions.get(i);
+				if (result[i] != null || pendings.containsKey(sortedExpression))
+					continue;
+				// an expression that is being classified is stored before it is classified, so it is only
+				// returned directly when no classification is in progress for it and its classification is stored
+				PendingExpression pending = inProgress.get(sortedExpression);
+				ExpressionId expid = existing.get(sortedExpression);
+				if (expid != null && pending == null && !unclassified.containsKey(sortedExpression)) {
+					result[i] = expid;
+					continue;
+				}
+				if (pending == null)
+					pending = submitForClassification(sortedExpression, trees.get(i));
+				pendings.put(sortedExpression, pending);
+			}
+			log.debug(existing.size() + " existing and " + pendings.size() + " new expression(s) of "
+					+ result.length);
+
+			// wait until the new expressions have been classified
+			for (int i = 0; i < result.length; i++) {
+				PendingExpression pending = pendings.get(sortedExpressions.get(i));
+				if (result[i] != null || pending == null)
+					continue;
+				pending.classified.await();
+				if (pending.exception != null)
+					// a missing id would silently change the result of a query, so the whole lookup fails
+					throw new DataStoreException("The expression " + sortedExpressions.get(i)
+							+ " could not be stored or classified", pending.exception);
+				result[i] = pending.expressionId;
+			}
+		} catch (InterruptedException e) {
+			log.debug("Interrupted while waiting for classification");
+			Thread.currentThread().interrupt();
+			throw new DataStoreException("Interrupted while waiting for classification", e);
+		}
+
+		return Arrays.asList(result);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -294,6 +1049,41 @@ public class ExpressionRepositoryImpl extends Object implements ExpressionReposi
 		return dataStore.getDescendants(id, null);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionRepository# getDecendants
+	 * (se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId,
+	 * se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId, int)
+	 */
+	@Override
+	public List<ExpressionId> getDecendants(ExpressionId id, ExpressionId after, int limit)
+			throws DataStoreException, NonExistingIdException {
+		return dataStore.getDescendants(id, null, after, limit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionRepository# countDescendants
+	 * (se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId)
+	 */
+	@Override
+	public int countDescendants(ExpressionId id) throws DataStoreException, NonExistingIdException {
+		return dataStore.countDescendants(id, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionRepository# countAncestors
+	 * (se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId)
+	 */
+	@Override
+	public int countAncestors(ExpressionId id) throws DataStoreException, NonExistingIdException {
+		return dataStore.countAncestors(id, null);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -378,43 +1168,34 @@ public class ExpressionRepositoryImpl extends Object implements ExpressionReposi
 		return sw.toString();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionRepository# getSCTQueryResult(java.lang.String)
+	 */
 	@Override
 	public Collection<ExpressionId> getSCTQueryResult(String queryExpression) throws Exception {
 
-		/*
-		 * log.debug("Received query: " + queryExpression);
-		 * 
-		 * SCTExpressionParser.query_return parseResult = null;
-		 * 
-		 * // parse string and throw ExpressionSyntaxError if unparsable CharStream input = new
-		 * ANTLRStringStream(queryExpression); SCTExpressionLexer lexer = new SCTExpressionLexer(input);
-		 * CommonTokenStream tokens = new CommonTokenStream(lexer); SCTExpressionParser parser = new
-		 * SCTExpressionParser(tokens); try { parseResult = parser.query(); // Note difference in starting point // for
-		 * parser as compared to parsing // for SCT expressions } catch (Exception e) { throw new
-		 * ExpressionSyntaxError(e); } if (parseResult == null) throw new ExpressionSyntaxError(
-		 * "Parse result is null. Should not happen ever!");
-		 * 
-		 * return processQuery((Tree) parseResult.getTree());
-		 */
+		log.debug("Received query: " + queryExpression);
 
-		return null;
+		SCTQuery query = new SCTQuery(queryExpression);
+
+		// the ids of all expressions in the query are looked up, or stored and classified, together
+		List<String> expressions = query.getExpressions();
+		List<ExpressionId> ids = getExpressionIDs(expressions);
+		Map<String, ExpressionId> expressionIds = new HashMap<String, ExpressionId>();
+		for (int i = 0; i < expressions.size(); i++)
+			expressionIds.put(expressions.get(i), ids.get(i));
+
+		return query.evaluate(expressionIds, dataStore, null);
 	}
 
-	/*
-	 * private Collection<ExpressionId> processQuery(Tree ast) throws Exception { if (ast != null) { switch
-	 * (ast.getType()) { case se.liu.imt.mi.snomedct.expression.SCTExpressionParser.DESC_SELF: case
-	 * se.liu.imt.mi.snomedct.expression.SCTExpressionParser.DESC: { if (ast.getChildCount() != 1 ||
-	 * ast.getChild(0).getType() != se.liu.imt.mi.snomedct.expression.SCTExpressionParser.TOP_AND) throw new
-	 * ExpressionSyntaxError( "Descendant may only take an SCT expression as argument, not a query expression" );
-	 * ExpressionId expid = getExpressionID(ast.getChild(0)); return getDecendants(expid); } case
-	 * se.liu.imt.mi.snomedct.expression.SCTExpressionParser.UNION: { Collection<ExpressionId> set = new
-	 * HashSet<ExpressionId>(); for (int i = 0; i < ast.getChildCount(); i++) {
-	 * set.addAll(processQuery(ast.getChild(i))); } return set; } case
-	 * se.liu.imt.mi.snomedct.expression.SCTExpressionParser.TOP_AND: { Collection<ExpressionId> c = new
-	 * HashSet<ExpressionId>(); c.add(getExpressionID(ast)); return c; } default: throw new
-	 * Exception("Undetermined AST node type: " + ast.getType());
+	/**
+	 * Returns the reasoner. The reasoner is not thread-safe and is updated by the classification thread, so it must
+	 * not be used while new expressions are being classified. When the repository is started from an up-to-date
+	 * snapshot the ontology is classified in the background and the reasoner is not available until that is done.
 	 * 
-	 * } } return null; }
+	 * @return The reasoner or <code>null</code> if the ontology is not yet classified
 	 */
 	public OWLReasoner getReasoner() {
 		return reasoner;
@@ -0,0 +1,280 @@
+package se.liu.imt.mi.snomedct.expressionrepository;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import se.liu.imt.mi.snomedct.expression.tools.ExpressionSyntaxError;
+import se.liu.imt.mi.snomedct.expressionrepository.api.ConceptModelException;
+import se.liu.imt.mi.snomedct.expressionrepository.api.MRCM;
+import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * A Machine Readable Concept Model read from an MRCM reference set file, with the columns <code>active</code>,
+ * <code>referencedComponentId</code>, <code>domain</code> and <code>range</code>. The attribute is the referenced
+ * component and the domain and range are queries as described in {@link SCTQuery} over concept ids, e.g.
+ * <code>Union(DescendantsAndSelf(404684003|Clinical finding|),DescendantsAndSelf(272379006|Event|))</code>, or
+ * <code>All</code> for a range without restriction.
+ * <p>
+ * When the file is loaded, every domain and range is evaluated against the data store and kept as a sorted array of
+ * the ids in it, with one array for each distinct constraint. Validating a triple is then a lookup of the attribute
+ * and a binary search in the domain and the range, without asking the data store. A post-coordinated expression that
+ * was stored after the file was loaded is not in any array and is validated through its ancestors, which is the only
+ * case that asks the data store. The file has to be loaded again for changes of the concept hierarchy to be seen.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ */
+public class MRCMImpl implements MRCM {
+
+	private static final Logger log = Logger.getLogger(MRCMImpl.class);
+
+	/**
+	 * The range that allows any object.
+	 */
+	private static final String ALL = "All";
+
+	/**
+	 * The allowed domain and range of an attribute.
+	 */
+	private static class Rule {
+		/**
+		 * The ids in the domain in ascending order.
+		 */
+		final long[] domain;
+		/**
+		 * The ids in the range in ascending order, or <code>null</code> if any object is allowed.
+		 */
+		final long[] range;
+
+		Rule(final long[] domain, final long[] range) {
+			this.domain = domain;
+			this.range = range;
+		}
+	}
+
+	/**
+	 * The data store the constraints are evaluated against.
+	 */
+	private final DataStore dataStore;
+
+	/**
+	 * The rules by attribute, or <code>null</code> if no file has been loaded. The map is replaced, never changed, when
+	 * a file is loaded.
+	 */
+	private volatile Map<ExpressionId, List<Rule>> rules = null;
+
+	/**
+	 * Creates an MRCM without any loaded file.
+	 *
+	 * @param dataStore
+	 *            The data store the constraints are evaluated against.
+	 */
+	public MRCMImpl(final DataStore dataStore) {
+		super();
+		this.dataStore = dataStore;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.api.MRCM#loadMRCM(java.lang.String)
+	 */
+	@Override
+	public void loadMRCM(final String fileName) throws IOException {
+		final Map<ExpressionId, List<Rule>> newRules = new HashMap<ExpressionId, List<Rule>>();
+		final Map<String, long[]> members = new HashMap<String, long[]>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+		try {
+			String line = reader.readLine();
+			if (line == null) {
+				throw new IOException("The MRCM file " + fileName + " is empty");
+			}
+			final List<String> header = Arrays.asList(line.trim().split("\t"));
+			final int activeColumn = getColumn(header, "active");
+			final int attributeColumn = getColumn(header, "referencedComponentId");
+			final int domainColumn = getColumn(header, "domain");
+			final int rangeColumn = getColumn(header, "range");
+			int lineNumber = 1;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				final String[] columns = line.split("\t", -1);
+				if (columns.length < header.size()) {
+					throw new IOException("Line " + lineNumber + " of the MRCM file " + fileName
+							+ " has too few columns");
+				}
+				if (!"1".equals(columns[activeColumn].trim())) {
+					continue;
+				}
+				final ExpressionId attribute = new ExpressionId(getConceptId(columns[attributeColumn]));
+				final String range = columns[rangeColumn].trim();
+				final Rule rule = new Rule(getMembers(columns[domainColumn].trim(), members),
+						ALL.equals(range) ? null : getMembers(range, members));
+				if (!newRules.containsKey(attribute)) {
+					newRules.put(attribute, new ArrayList<Rule>(1));
+				}
+				newRules.get(attribute).add(rule);
+			}
+		} finally {
+			reader.close();
+		}
+		rules = newRules;
+		log.debug("Loaded the MRCM file " + fileName + " with " + newRules.size() + " attributes and "
+				+ members.size() + " distinct constraints");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.api.MRCM#validate(se.liu.imt.mi.snomedct.expressionrepository
+	 * .datatypes.ExpressionId, se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId,
+	 * se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId)
+	 */
+	@Override
+	public boolean validate(final ExpressionId subject, final ExpressionId relationship, final ExpressionId object)
+			throws ConceptModelException, DataStoreException {
+		final Map<ExpressionId, List<Rule>> currentRules = rules;
+		if (currentRules == null) {
+			throw new ConceptModelException("No MRCM file has been loaded");
+		}
+		final List<Rule> attributeRules = currentRules.get(relationship);
+		if (attributeRules == null) {
+			return false;
+		}
+		for (Rule rule : attributeRules) {
+			if (isMember(rule.domain, subject) && (rule.range == null || isMember(rule.range, object))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if an id is in a domain or range.
+	 *
+	 * @param members
+	 *            The ids in the domain or range in ascending order.
+	 * @param id
+	 *            The id.
+	 * @return If the id, or for a post-coordinated expression that is not in the domain or range any of its
+	 *         ancestors, is in the domain or range.
+	 * @throws ConceptModelException
+	 *             Thrown if the post-coordinated expression does not exist in the data store.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	private boolean isMember(final long[] members, final ExpressionId id) throws ConceptModelException,
+			DataStoreException {
+		if (Arrays.binarySearch(members, id.getId()) >= 0) {
+			return true;
+		}
+		if (!id.isPostCoordinated()) {
+			return false;
+		}
+		final Set<ExpressionId> ancestors;
+		try {
+			ancestors = dataStore.getAncestors(id, null);
+		} catch (NonExistingIdException e) {
+			throw new ConceptModelException("The expression " + id + " does not exist", e);
+		}
+		for (ExpressionId ancestor : ancestors) {
+			if (Arrays.binarySearch(members, ancestor.getId()) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Evaluate a constraint, or reuse the result if the same constraint has already been evaluated. Concepts in the
+	 * constraint that do not exist in the data store are left out with a warning.
+	 *
+	 * @param constraint
+	 *            The constraint.
+	 * @param members
+	 *            The evaluated constraints.
+	 * @return The ids that fulfil the constraint in ascending order.
+	 * @throws IOException
+	 *             Thrown if the constraint is not well formed or could not be evaluated.
+	 */
+	private long[] getMembers(final String constraint, final Map<String, long[]> members) throws IOException {
+		long[] result = members.get(constraint);
+		if (result != null) {
+			return result;
+		}
+		try {
+			final SCTQuery query = new SCTQuery(constraint);
+			final Map<String, ExpressionId> conceptIds = new HashMap<String, ExpressionId>();
+			for (String concept : query.getExpressions()) {
+				final ExpressionId id = new ExpressionId(getConceptId(concept));
+				if (dataStore.isExistingId(id, null)) {
+					conceptIds.put(concept, id);
+				} else {
+					log.warn("The concept " + concept + " in the MRCM constraint " + constraint + " does not exist");
+				}
+			}
+			final Set<ExpressionId> ids = query.evaluate(conceptIds, dataStore, null);
+			result = new long[ids.size()];
+			int i = 0;
+			for (ExpressionId id : ids) {
+				result[i++] = id.getId();
+			}
+			Arrays.sort(result);
+		} catch (ExpressionSyntaxError e) {
+			throw new IOException("The MRCM constraint " + constraint + " is not well formed", e);
+		} catch (DataStoreException e) {
+			throw new IOException("The MRCM constraint " + constraint + " could not be evaluated", e);
+		} catch (NonExistingIdException e) {
+			throw new IOException("The MRCM constraint " + constraint + " could not be evaluated", e);
+		}
+		members.put(constraint, result);
+		return result;
+	}
+
+	/**
+	 * @param header
+	 *            The column names.
+	 * @param name
+	 *            The name of a column.
+	 * @return The index of the column.
+	 * @throws IOException
+	 *             Thrown if there is no column with the name.
+	 */
+	private static int getColumn(final List<String> header, final String name) throws IOException {
+		final int column = header.indexOf(name);
+		if (column < 0) {
+			throw new IOException("The MRCM file has no column " + name);
+		}
+		return column;
+	}
+
+	/**
+	 * @param concept
+	 *            A concept id, optionally followed by a term within <code>|</code>.
+	 * @return The concept id.
+	 * @throws IOException
+	 *             Thrown if the text does not start with a concept id.
+	 */
+	private static long getConceptId(final String concept) throws IOException {
+		final int term = concept.indexOf('|');
+		try {
+			return Long.parseLong((term < 0 ? concept : concept.substring(0, term)).trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("The MRCM concept " + concept + " is not a concept id", e);
+		}
+	}
+}
@@ -0,0 +1,493 @@
+package se.liu.imt.mi.snomedct.expressionrepository;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import se.liu.imt.mi.snomedct.expression.tools.ExpressionSyntaxError;
+import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * A parsed query over the concepts and expressions in the repository, e.g.
+ * <code>Minus(Descendants(71388002), Union(DescendantsAndSelf(59524001), 250404007))</code>. A query is either an
+ * SCT expression or one of the operators
+ * <ul>
+ * <li><code>Descendants(q)</code>, <code>DescendantsAndSelf(q)</code>, <code>Ancestors(q)</code>,
+ * <code>AncestorsAndSelf(q)</code>, <code>Children(q)</code> and <code>Parents(q)</code>, the relatives of all
+ * concepts and expressions in the result of <code>q</code>,</li>
+ * <li><code>Union(q1, q2, ...)</code> and <code>Intersection(q1, q2, ...)</code>, and</li>
+ * <li><code>Minus(q1, q2)</code>, the result of <code>q1</code> without the result of <code>q2</code>.</li>
+ * </ul>
+ * <p>
+ * The query is evaluated in memory. Every id in a result is numbered the first time it is seen, and the intermediate
+ * results are bit sets over these numbers, so a union, intersection or difference is a few machine words per 64
+ * concepts however large the hierarchies are. The relatives are fetched with one call to the data store for each kind
+ * of relative for all operators whose operands are SCT expressions, and with one call for each other operator.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ */
+public class SCTQuery {
+
+	/**
+	 * The kinds of query nodes.
+	 */
+	private static enum Operator {
+		EXPRESSION, DESCENDANTS, DESCENDANTS_AND_SELF, ANCESTORS, ANCESTORS_AND_SELF, CHILDREN, PARENTS, UNION,
+		INTERSECTION, MINUS;
+	}
+
+	/**
+	 * The operators by their names in a query.
+	 */
+	private static final Map<String, Operator> OPERATORS = new HashMap<String, Operator>();
+	static {
+		OPERATORS.put("Descendants", Operator.DESCENDANTS);
+		OPERATORS.put("DescendantsAndSelf", Operator.DESCENDANTS_AND_SELF);
+		OPERATORS.put("Ancestors", Operator.ANCESTORS);
+		OPERATORS.put("AncestorsAndSelf", Operator.ANCESTORS_AND_SELF);
+		OPERATORS.put("Children", Operator.CHILDREN);
+		OPERATORS.put("Parents", Operator.PARENTS);
+		OPERATORS.put("Union", Operator.UNION);
+		OPERATORS.put("Intersection", Operator.INTERSECTION);
+		OPERATORS.put("Minus", Operator.MINUS);
+	}
+
+	/**
+	 * The start of the next attribute or attribute group of a refinement, after a comma in an SCT expression.
+	 */
+	private static final Pattern NEXT_ATTRIBUTE = Pattern.compile("\\s*(\\{|\\d+\\s*(\\|[^|]*\\|\\s*)?=)");
+
+	/**
+	 * A node in the parsed query.
+	 */
+	private static class Node {
+		final Operator operator;
+		final String expression;
+		final List<Node> operands;
+
+		Node(final Operator operator, final String expression, final List<Node> operands) {
+			this.operator = operator;
+			this.expression = expression;
+			this.operands = operands;
+		}
+	}
+
+	/**
+	 * The root of the parsed query.
+	 */
+	private final Node root;
+
+	/**
+	 * The SCT expressions in the query, in the order they occur and without duplicates.
+	 */
+	private final Set<String> expressions = new LinkedHashSet<String>();
+
+	/**
+	 * The query text, while it is parsed.
+	 */
+	private final String text;
+
+	/**
+	 * The position in the query text, while it is parsed.
+	 */
+	private int position = 0;
+
+	/**
+	 * Parse a query.
+	 *
+	 * @param query
+	 *            The query.
+	 * @throws ExpressionSyntaxError
+	 *             Thrown if the query is not well formed.
+	 */
+	public SCTQuery(final String query) throws ExpressionSyntaxError {
+		super();
+		text = query;
+		root = parseQuery();
+		skipWhitespace();
+		if (position < text.length()) {
+			throw syntaxError("Unexpected text after the query");
+		}
+	}
+
+	/**
+	 * @return The SCT expressions in the query, in the order they occur and without duplicates. Their ids are given
+	 *         when the query is evaluated.
+	 */
+	public List<String> getExpressions() {
+		return new ArrayList<String>(expressions);
+	}
+
+	/**
+	 * Evaluate the query at a specific time.
+	 *
+	 * @param expressionIds
+	 *            The ids of the SCT expressions in the query, by the expressions as returned by
+	 *            {@link #getExpressions()}. An SCT expression without an id has an empty result.
+	 * @param dataStore
+	 *            The data store to look up the relatives in.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The ids in the result of the query.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if any of the ids does not exist in the data store.
+	 */
+	public Set<ExpressionId> evaluate(final Map<String, ExpressionId> expressionIds, final DataStore dataStore,
+			final Date time) throws DataStoreException, NonExistingIdException {
+		final Evaluation evaluation = new Evaluation(expressionIds, dataStore, time);
+		evaluation.prefetch(root);
+		return evaluation.toIds(evaluation.evaluate(root));
+	}
+
+	/**
+	 * The state of one evaluation of the query.
+	 */
+	private class Evaluation {
+
+		/**
+		 * The ids of the SCT expressions in the query.
+		 */
+		private final Map<String, ExpressionId> expressionIds;
+		/**
+		 * The data store to look up the relatives in.
+		 */
+		private final DataStore dataStore;
+		/**
+		 * The time of the evaluation.
+		 */
+		private final Date time;
+		/**
+		 * The ids that have been seen, by their numbers.
+		 */
+		private final List<ExpressionId> ids = new ArrayList<ExpressionId>();
+		/**
+		 * The numbers of the ids that have been seen.
+		 */
+		private final Map<ExpressionId, Integer> numbers = new HashMap<ExpressionId, Integer>();
+		/**
+		 * The relatives fetched for the operators with an SCT expression as operand, by operator and id.
+		 */
+		private final Map<Operator, Map<ExpressionId, Set<ExpressionId>>> prefetched =
+				new HashMap<Operator, Map<ExpressionId, Set<ExpressionId>>>();
+
+		Evaluation(final Map<String, ExpressionId> expressionIds, final DataStore dataStore, final Date time) {
+			this.expressionIds = expressionIds;
+			this.dataStore = dataStore;
+			this.time = time;
+		}
+
+		/**
+		 * Fetch the relatives for all operators whose operand is an SCT expression, with one call to the data store
+		 * for each kind of relatives.
+		 *
+		 * @param node
+		 *            The root of the query.
+		 * @throws DataStoreException
+		 *             Thrown if there are any problem with the data store.
+		 * @throws NonExistingIdException
+		 *             Thrown if any of the ids does not exist in the data store.
+		 */
+		void prefetch(final Node node) throws DataStoreException, NonExistingIdException {
+			final Map<Operator, Set<ExpressionId>> operands = new HashMap<Operator, Set<ExpressionId>>();
+			collectExpressionOperands(node, operands);
+			for (Map.Entry<Operator, Set<ExpressionId>> entry : operands.entrySet()) {
+				prefetched.put(entry.getKey(), getRelatives(entry.getKey(), entry.getValue()));
+			}
+		}
+
+		/**
+		 * Collect the ids of the SCT expressions that are operands of the hierarchy operators.
+		 *
+		 * @param node
+		 *            The node to collect from.
+		 * @param operands
+		 *            The collected ids, by the kind of relatives that are fetched for them.
+		 */
+		private void collectExpressionOperands(final Node node, final Map<Operator, Set<ExpressionId>> operands) {
+			if (node.operator == Operator.EXPRESSION) {
+				return;
+			}
+			if (isHierarchyOperator(node.operator) && node.operands.get(0).operator == Operator.EXPRESSION) {
+				final ExpressionId id = expressionIds.get(node.operands.get(0).expression);
+				if (id != null) {
+					final Operator relatives = relativesOf(node.operator);
+					if (!operands.containsKey(relatives)) {
+						operands.put(relatives, new HashSet<ExpressionId>());
+					}
+					operands.get(relatives).add(id);
+				}
+				return;
+			}
+			for (Node operand : node.operands) {
+				collectExpressionOperands(operand, operands);
+			}
+		}
+
+		/**
+		 * Evaluate a query node.
+		 *
+		 * @param node
+		 *            The node.
+		 * @return The numbers of the ids in the result.
+		 * @throws DataStoreException
+		 *             Thrown if there are any problem with the data store.
+		 * @throws NonExistingIdException
+		 *             Thrown if any of the ids does not exist in the data store.
+		 */
+		BitSet evaluate(final Node node) throws DataStoreException, NonExistingIdException {
+			switch (node.operator) {
+			case EXPRESSION: {
+				final BitSet result = new BitSet();
+				final ExpressionId id = expressionIds.get(node.expression);
+				if (id != null) {
+					result.set(number(id));
+				}
+				return result;
+			}
+			case UNION: {
+				final BitSet result = evaluate(node.operands.get(0));
+				for (int i = 1; i < node.operands.size(); i++) {
+					result.or(evaluate(node.operands.get(i)));
+				}
+				return result;
+			}
+			case INTERSECTION: {
+				final BitSet result = evaluate(node.operands.get(0));
+				for (int i = 1; i < node.operands.size() && !result.isEmpty(); i++) {
+					result.and(evaluate(node.operands.get(i)));
+				}
+				return result;
+			}
+			case MINUS: {
+				final BitSet result = evaluate(node.operands.get(0));
+				if (!result.isEmpty()) {
+					result.andNot(evaluate(node.operands.get(1)));
+				}
+				return result;
+			}
+			default: {
+				final Operator relativesOperator = relativesOf(node.operator);
+				final BitSet operand = evaluate(node.operands.get(0));
+				final Set<ExpressionId> operandIds = toIds(operand);
+				Map<ExpressionId, Set<ExpressionId>> relatives = prefetched.get(relativesOperator);
+				if (relatives == null || !relatives.keySet().containsAll(operandIds)) {
+					relatives = getRelatives(relativesOperator, operandIds);
+				}
+				final BitSet result = relativesOperator == node.operator ? new BitSet() : operand;
+				for (ExpressionId id : operandIds) {
+					for (ExpressionId relative : relatives.get(id)) {
+						result.set(number(relative));
+					}
+				}
+				return result;
+			}
+			}
+		}
+
+		/**
+		 * Fetch relatives of several ids from the data store.
+		 *
+		 * @param relatives
+		 *            The operator for the kind of relatives, without self.
+		 * @param ids
+		 *            The ids.
+		 * @return The relatives by id.
+		 * @throws DataStoreException
+		 *             Thrown if there are any problem with the data store.
+		 * @throws NonExistingIdException
+		 *             Thrown if any of the ids does not exist in the data store.
+		 */
+		private Map<ExpressionId, Set<ExpressionId>> getRelatives(final Operator relatives,
+				final Set<ExpressionId> ids) throws DataStoreException, NonExistingIdException {
+			if (ids.isEmpty()) {
+				return Collections.emptyMap();
+			}
+			switch (relatives) {
+			case DESCENDANTS:
+				return dataStore.getDescendants(ids, time);
+			case ANCESTORS:
+				return dataStore.getAncestors(ids, time);
+			case CHILDREN:
+				return dataStore.getChildren(ids, time);
+			default:
+				return dataStore.getParents(ids, time);
+			}
+		}
+
+		/**
+		 * @param id
+		 *            An id.
+		 * @return The number of the id, which is given the next number the first time it is seen.
+		 */
+		private int number(final ExpressionId id) {
+			Integer number = numbers.get(id);
+			if (number == null) {
+				number = ids.size();
+				numbers.put(id, number);
+				ids.add(id);
+			}
+			return number;
+		}
+
+		/**
+		 * @param bits
+		 *            The numbers of ids.
+		 * @return The ids.
+		 */
+		Set<ExpressionId> toIds(final BitSet bits) {
+			final Set<ExpressionId> result = new HashSet<ExpressionId>();
+			for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+				result.add(ids.get(i));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @param operator
+	 *            An operator.
+	 * @return If the operator takes the relatives of its operand.
+	 */
+	private static boolean isHierarchyOperator(final Operator operator) {
+		return operator != Operator.EXPRESSION && operator != Operator.UNION && operator != Operator.INTERSECTION
+				&& operator != Operator.MINUS;
+	}
+
+	/**
+	 * @param operator
+	 *            A hierarchy operator.
+	 * @return The operator for the same kind of relatives without self.
+	 */
+	private static Operator relativesOf(final Operator operator) {
+		switch (operator) {
+		case DESCENDANTS_AND_SELF:
+			return Operator.DESCENDANTS;
+		case ANCESTORS_AND_SELF:
+			return Operator.ANCESTORS;
+		default:
+			return operator;
+		}
+	}
+
+	/**
+	 * Parse a query, an operator with operands or an SCT expression, from the current position.
+	 *
+	 * @return The parsed query.
+	 * @throws ExpressionSyntaxError
+	 *             Thrown if the query is not well formed.
+	 */
+	private Node parseQuery() throws ExpressionSyntaxError {
+		skipWhitespace();
+		int end = position;
+		while (end < text.length() && Character.isLetter(text.charAt(end))) {
+			end++;
+		}
+		final String name = text.substring(position, end);
+		final Operator operator = OPERATORS.get(name);
+		int open = end;
+		while (open < text.length() && Character.isWhitespace(text.charAt(open))) {
+			open++;
+		}
+		if (operator == null || open == text.length() || text.charAt(open) != '(') {
+			return parseExpression();
+		}
+		position = open + 1;
+		final List<Node> operands = new ArrayList<Node>();
+		operands.add(parseQuery());
+		skipWhitespace();
+		while (position < text.length() && text.charAt(position) == ',') {
+			position++;
+			operands.add(parseQuery());
+			skipWhitespace();
+		}
+		if (position == text.length() || text.charAt(position) != ')') {
+			throw syntaxError("Expected ')'");
+		}
+		position++;
+		if (isHierarchyOperator(operator) && operands.size() != 1) {
+			throw syntaxError(name + " takes one operand");
+		}
+		if (operator == Operator.MINUS && operands.size() != 2) {
+			throw syntaxError("Minus takes two operands");
+		}
+		return new Node(operator, null, operands);
+	}
+
+	/**
+	 * Parse an SCT expression from the current position up to the next comma or right parenthesis that is not inside
+	 * a term, parentheses or braces. A comma in the refinement of the expression, i.e. after a colon, is followed by
+	 * another attribute or attribute group and does not end the expression.
+	 *
+	 * @return The parsed expression.
+	 * @throws ExpressionSyntaxError
+	 *             Thrown if the expression is empty or its parentheses or braces do not match.
+	 */
+	private Node parseExpression() throws ExpressionSyntaxError {
+		final int start = position;
+		int depth = 0;
+		boolean inTerm = false;
+		boolean refined = false;
+		final Matcher nextAttribute = NEXT_ATTRIBUTE.matcher(text);
+		for (; position < text.length(); position++) {
+			final char c = text.charAt(position);
+			if (c == '|') {
+				inTerm = !inTerm;
+			} else if (inTerm) {
+				continue;
+			} else if (c == '(' || c == '{') {
+				depth++;
+			} else if ((c == ')' || c == '}') && depth > 0) {
+				depth--;
+			} else if (c == ':' && depth == 0) {
+				refined = true;
+			} else if (c == ',' && depth == 0 && refined
+					&& nextAttribute.region(position + 1, text.length()).lookingAt()) {
+				continue;
+			} else if ((c == ',' || c == ')') && depth == 0) {
+				break;
+			}
+		}
+		if (inTerm || depth > 0) {
+			throw syntaxError("Unterminated term, parenthesis or brace");
+		}
+		final String expression = text.substring(start, position).trim();
+		if (expression.isEmpty()) {
+			throw syntaxError("Expected an SCT expression");
+		}
+		expressions.add(expression);
+		return new Node(Operator.EXPRESSION, expression, null);
+	}
+
+	/**
+	 * Move the current position past any white space.
+	 */
+	private void skipWhitespace() {
+		while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+	}
+
+	/**
+	 * @param message
+	 *            What is wrong.
+	 * @return An error for the current position.
+	 */
+	private ExpressionSyntaxError syntaxError(final String message) {
+		return new ExpressionSyntaxError(message + " at position " + position + " in the query " + text);
+	}
+}
@@ -5,6 +5,7 @@ package se.liu.imt.mi.snomedct.expressionrepository.api;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import se.liu.imt.mi.snomedct.expression.tools.ExpressionSyntaxError;
 import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
@@ -35,9 +36,47 @@ public interface ExpressionRepository {
 	 *                There is some id in the expression that can not be found
 	 *                in the repository (including pre-coordinated SNOMED CT
 	 *                content).
+	 * @exception ConceptModelException
+	 *                The expression is new and some attribute in it is not
+	 *                allowed by the concept model the repository checks new
+	 *                expressions against.
 	 */
 	ExpressionId getExpressionID(String expression)
-			throws ExpressionSyntaxError, NonExistingIdException;
+			throws ExpressionSyntaxError, NonExistingIdException,
+			ConceptModelException;
+
+	/**
+	 * Returns expression id objects for several strings containing SNOMED CT
+	 * post-coordinated expressions, in the same order as the expressions. The
+	 * expressions that exist in the repository are looked up together and
+	 * only the new expressions are classified, which is much faster than
+	 * calling {@link #getExpressionID(String)} for each expression.
+	 * 
+	 * @param expressions
+	 *            <code>String</code>s containing expressions according to the
+	 *            SNOMED CT Compositional Grammar.
+	 * @return A <code>List</code> with an expression id object for each
+	 *         expression.
+	 * @exception ExpressionSyntaxError
+	 *                There is a syntax error according to the SNOMED CT
+	 *                Compositional Grammer in one of the <code>String</code>s.
+	 * @exception NonExistingIdException
+	 *                There is some id in the expressions that can not be found
+	 *                in the repository (including pre-coordinated SNOMED CT
+	 *                content).
+	 * @exception ConceptModelException
+	 *                One of the new expressions has some attribute that is not
+	 *                allowed by the concept model the repository checks new
+	 *                expressions against. No expression is then stored.
+	 * @exception DataStoreException
+	 *                There is some problem with the data store, one of the
+	 *                new expressions could not be stored or classified, or the
+	 *                thread was interrupted while waiting for the
+	 *                classification.
+	 */
+	List<ExpressionId> getExpressionIDs(Collection<String> expressions)
+			throws ExpressionSyntaxError, NonExistingIdException,
+			ConceptModelException, DataStoreException;
 
 	/**
 	 * Returns an expression as a <code>String</code> according to the SNOMED CT
@@ -91,6 +130,59 @@ public interface ExpressionRepository {
 	Collection<ExpressionId> getDecendants(ExpressionId id)
 			throws NonExistingIdException, DataStoreException;
 
+	/**
+	 * Returns a page of the descendants of an expression given an
+	 * <code>ExpressionId</code>. The descendants are ordered by their ids,
+	 * and the next page starts after the last id of the previous page, so
+	 * all descendants of a concept high up in the hierarchy can be fetched
+	 * page by page without holding them all in memory.
+	 * 
+	 * @param id
+	 *            The id of the expression.
+	 * @param after
+	 *            The id that the page starts after, or <code>null</code> for
+	 *            the first page.
+	 * @param limit
+	 *            The maximum number of ids in the page, which must be
+	 *            positive.
+	 * @return A <code>List</code> of the ids that are greater than
+	 *         <code>after</code>, in ascending order. A page with fewer than
+	 *         <code>limit</code> ids is the last page.
+	 * @throws NonExistingIdException
+	 *             An id does not exist in the repository.
+	 * @throws DataStoreException
+	 */
+	List<ExpressionId> getDecendants(ExpressionId id, ExpressionId after,
+			int limit) throws NonExistingIdException, DataStoreException;
+
+	/**
+	 * Returns the number of descendants of an expression given an
+	 * <code>ExpressionId</code>, without retrieving the descendants.
+	 * 
+	 * @param id
+	 *            The id of the expression.
+	 * @return The number of descendants.
+	 * @throws NonExistingIdException
+	 *             An id does not exist in the repository.
+	 * @throws DataStoreException
+	 */
+	int countDescendants(ExpressionId id) throws NonExistingIdException,
+			DataStoreException;
+
+	/**
+	 * Returns the number of ancestors of an expression given an
+	 * <code>ExpressionId</code>, without retrieving the ancestors.
+	 * 
+	 * @param id
+	 *            The id of the expression.
+	 * @return The number of ancestors.
+	 * @throws NonExistingIdException
+	 *             An id does not exist in the repository.
+	 * @throws DataStoreException
+	 */
+	int countAncestors(ExpressionId id) throws NonExistingIdException,
+			DataStoreException;
+
 	/**
 	 * Returns all direct descendants (children) of an expression given an
 	 * <code>ExpressionId</code>
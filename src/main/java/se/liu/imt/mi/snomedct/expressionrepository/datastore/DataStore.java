@@ -1,16 +1,20 @@
 package se.liu.imt.mi.snomedct.expressionrepository.datastore;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionAlreadyDefined;
 import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionAlreadyExistsException;
 import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
 import se.liu.imt.mi.snomedct.expressionrepository.datatypes.Expression;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionCount;
 import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
 
 /**
- * The interface to the data store.
+ * The interface to the data store. Implementations must be safe to use from several threads.
  * 
  * @author Daniel Karlsson, daniel.karlsson@liu.se
  * @author Mikael Nystrm, mikael.nystrom@liu.se
@@ -111,6 +115,20 @@ public interface DataStore {
 	 */
 	ExpressionId getExpressionId(String expression, Date time) throws DataStoreException;
 
+	/**
+	 * Get the ids of several expressions from the data store at once.
+	 * 
+	 * @param expressions
+	 *            The expressions to receive the ids for.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The ids of the expressions that exist in the data store, by expression. Expressions that do not exist
+	 *         in the data store are not included.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	Map<String, ExpressionId> getExpressionIds(Collection<String> expressions, Date time) throws DataStoreException;
+
 	/**
 	 * Get a String representation of an expression from the data store given an expression id.
 	 * 
@@ -156,6 +174,61 @@ public interface DataStore {
 	 */
 	Set<ExpressionId> getDescendants(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException;
 
+	/**
+	 * Get a page of the descendants to an expression at a specific time. The descendants are ordered by their ids, so
+	 * all descendants can be fetched page by page without holding them all in memory at the same time by giving the
+	 * last id of each page as <code>after</code> for the next page. Unlike {@link #getDescendants(ExpressionId, Date)}
+	 * this is the method to use for concepts high up in the hierarchy, which may have hundreds of thousands of
+	 * descendants.
+	 * 
+	 * @param id
+	 *            The expression's id.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @param after
+	 *            The id that the page starts after, or <code>null</code> for the first page.
+	 * @param limit
+	 *            The maximum number of ids in the page, which must be positive.
+	 * @return The descendants' ids that are greater than <code>after</code>, in ascending order. A page with fewer than
+	 *         <code>limit</code> ids is the last page.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if the expression id does not exist in the data store.
+	 */
+	List<ExpressionId> getDescendants(ExpressionId id, Date time, ExpressionId after, int limit)
+			throws DataStoreException, NonExistingIdException;
+
+	/**
+	 * Count the ancestors to an expression at a specific time, without retrieving them.
+	 * 
+	 * @param id
+	 *            The expression's id.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The number of ancestors, the same as the size of {@link #getAncestors(ExpressionId, Date)}.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if the expression id does not exist in the data store.
+	 */
+	int countAncestors(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException;
+
+	/**
+	 * Count the descendants to an expression at a specific time, without retrieving them.
+	 * 
+	 * @param id
+	 *            The expression's id.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The number of descendants, the same as the size of {@link #getDescendants(ExpressionId, Date)}.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if the expression id does not exist in the data store.
+	 */
+	int countDescendants(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException;
+
 	/**
 	 * Get all parents to an expression at a specific time.
 	 * 
@@ -186,6 +259,70 @@ public interface DataStore {
 	 */
 	Set<ExpressionId> getChildren(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException;
 
+	/**
+	 * Get all ancestors to several expressions at a specific time, all at once.
+	 * 
+	 * @param ids
+	 *            The expressions' ids.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The ancestors' ids, by expression id.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if any of the expression ids does not exist in the data store.
+	 */
+	Map<ExpressionId, Set<ExpressionId>> getAncestors(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException;
+
+	/**
+	 * Get all descendants to several expressions at a specific time, all at once.
+	 * 
+	 * @param ids
+	 *            The expressions' ids.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The descendants' ids, by expression id.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if any of the expression ids does not exist in the data store.
+	 */
+	Map<ExpressionId, Set<ExpressionId>> getDescendants(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException;
+
+	/**
+	 * Get all parents to several expressions at a specific time, all at once.
+	 * 
+	 * @param ids
+	 *            The expressions' ids.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The parents' ids, by expression id.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if any of the expression ids does not exist in the data store.
+	 */
+	Map<ExpressionId, Set<ExpressionId>> getParents(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException;
+
+	/**
+	 * Get all children to several expressions at a specific time, all at once.
+	 * 
+	 * @param ids
+	 *            The expressions' ids.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The children' ids, by expression id.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if any of the expression ids does not exist in the data store.
+	 */
+	Map<ExpressionId, Set<ExpressionId>> getChildren(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException;
+
 	/**
 	 * Get all expressions in the data store at a specific time.
 	 * 
@@ -197,6 +334,45 @@ public interface DataStore {
 	 */
 	Set<Expression> getAllExpressions(Date time) throws DataStoreException;
 
+	/**
+	 * Get a cursor over all expressions in the data store at a specific time. Unlike
+	 * {@link #getAllExpressions(Date)} the expressions are not all held in memory at the same time, so this is the
+	 * method to use for going through a large number of expressions. The cursor must be closed after use.
+	 * 
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return A cursor over all expressions in the data store.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	ExpressionCursor getAllExpressionsCursor(Date time) throws DataStoreException;
+
+	/**
+	 * Count the expressions in the data store at a specific time, and find the lowest expression id among them,
+	 * without retrieving the expressions. Expression ids are assigned in descending order, so the lowest id is the
+	 * most recently assigned one.
+	 * 
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The number of expressions, the same as the size of {@link #getAllExpressions(Date)}, and the lowest
+	 *         expression id among them.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	ExpressionCount countExpressions(Date time) throws DataStoreException;
+
+	/**
+	 * Get the expressions in the data store at a specific time that have never had an equivalence or parents and
+	 * children stored, i.e. the expressions that were stored but whose classification never was.
+	 * 
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @return The unclassified expressions.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	Set<Expression> getUnclassifiedExpressions(Date time) throws DataStoreException;
+
 	/**
 	 * Check if an id exist as an id for a concept or expression in the data store at a specific time.
 	 * 
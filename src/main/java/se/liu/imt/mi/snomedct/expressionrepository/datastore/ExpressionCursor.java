@@ -0,0 +1,38 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore;
+
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.Expression;
+
+/**
+ * A cursor over expressions in the data store, which makes it possible to go through all expressions without holding
+ * them all in memory at the same time. The cursor is positioned before the first expression and must be closed when
+ * it is no longer used, since it may hold resources in the data store.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ */
+public interface ExpressionCursor extends AutoCloseable {
+
+	/**
+	 * Move the cursor to the next expression.
+	 *
+	 * @return <code>true</code> if there is a next expression, <code>false</code> if there are no more expressions.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	boolean next() throws DataStoreException;
+
+	/**
+	 * Get the expression the cursor is positioned on.
+	 *
+	 * @return The current expression.
+	 */
+	Expression getExpression();
+
+	/**
+	 * Close the cursor and release its resources in the data store.
+	 *
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	@Override
+	void close() throws DataStoreException;
+}
@@ -0,0 +1,1288 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionAlreadyDefined;
+import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionAlreadyExistsException;
+import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.ExpressionCursor;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.Expression;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionCount;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * An implementation of the <code>DataStore</code> interface that keeps everything in memory.
+ * <p>
+ * The data store mirrors the tables of the PostgreSQL implementation: expressions, concepts, equivalents and the
+ * transitive closure, all with start and end times. The rows are indexed by their ids in maps with primitive
+ * <code>long</code> keys, and ids are collected in primitive sets until a result is returned. Concepts, which the
+ * PostgreSQL implementation gets from a SNOMED CT release, are added with
+ * {@link #storeConcept(ExpressionId, Set, Date)}.
+ * <p>
+ * Reads are done under a shared lock and updates under an exclusive lock, so the data store can be used from several
+ * threads. Nothing is persisted.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore {
+
+	/**
+	 * The end time of a row that has not been ended.
+	 */
+	private static final long INFINITY = Long.MAX_VALUE;
+
+	/**
+	 * A row with a start time and an end time. The row is valid from the start time up to, but not including, the end
+	 * time.
+	 */
+	static class Interval {
+		final long startTime;
+		long endTime;
+
+		Interval(final long startTime, final long endTime) {
+			this.startTime = startTime;
+			this.endTime = endTime;
+		}
+
+		boolean isActive(final long time) {
+			return startTime <= time && time < endTime;
+		}
+	}
+
+	/**
+	 * A row in the expressions table.
+	 */
+	static final class ExpressionRow extends Interval {
+		final long id;
+		final String expression;
+
+		ExpressionRow(final long id, final String expression, final long startTime) {
+			super(startTime, INFINITY);
+			this.id = id;
+			this.expression = expression;
+		}
+	}
+
+	/**
+	 * A row in the equivalents table. Rows with the same equivalent id form an equivalence group.
+	 */
+	static final class EquivalentRow extends Interval {
+		final long id;
+		final long equivalentId;
+
+		EquivalentRow(final long id, final long equivalentId, final long startTime) {
+			super(startTime, INFINITY);
+			this.id = id;
+			this.equivalentId = equivalentId;
+		}
+	}
+
+	/**
+	 * A row in the transitive closure table, saying that the source is subsumed by the destination.
+	 */
+	static final class ClosureRow extends Interval {
+		final long sourceId;
+		final long destinationId;
+		final boolean directRelation;
+
+		ClosureRow(final long sourceId, final long destinationId, final long startTime, final long endTime,
+				final boolean directRelation) {
+			super(startTime, endTime);
+			this.sourceId = sourceId;
+			this.destinationId = destinationId;
+			this.directRelation = directRelation;
+		}
+	}
+
+	/**
+	 * The lock that protects all rows and indexes.
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * The expressions by expression.
+	 */
+	private final HashMap<String, ExpressionRow> expressionsByExpression = new HashMap<String, ExpressionRow>();
+	/**
+	 * The expressions by id.
+	 */
+	private final LongObjectHashMap<ExpressionRow> expressionsById = new LongObjectHashMap<ExpressionRow>();
+	/**
+	 * The concepts by id.
+	 */
+	private final LongObjectHashMap<Interval> conceptsById = new LongObjectHashMap<Interval>();
+	/**
+	 * The equivalents rows by id.
+	 */
+	private final LongObjectHashMap<List<EquivalentRow>> equivalentsById = new LongObjectHashMap<List<EquivalentRow>>();
+	/**
+	 * The equivalents rows by equivalent id, i.e. the equivalence groups.
+	 */
+	private final LongObjectHashMap<List<EquivalentRow>> equivalentsByGroup =
+			new LongObjectHashMap<List<EquivalentRow>>();
+	/**
+	 * The transitive closure rows by source id.
+	 */
+	private final LongObjectHashMap<List<ClosureRow>> closureBySource = new LongObjectHashMap<List<ClosureRow>>();
+	/**
+	 * The transitive closure rows by destination id.
+	 */
+	private final LongObjectHashMap<List<ClosureRow>> closureByDestination = new LongObjectHashMap<List<ClosureRow>>();
+
+	/**
+	 * The id for the next stored expression. Post-coordinated ids are zero or negative.
+	 */
+	private long nextExpressionId = -1;
+	/**
+	 * The equivalent id for the next equivalence group.
+	 */
+	private long nextEquivalentId = 1;
+
+	/**
+	 * Creates an empty in-memory data store.
+	 */
+	public DataStore() {
+		super();
+	}
+
+	/**
+	 * Store a concept and its parents in the data store. The parents must already be stored, so concepts are stored
+	 * from the top of the hierarchy and down.
+	 *
+	 * @param id
+	 *            The concept's id, which must be a pre-coordinated id.
+	 * @param parents
+	 *            The ids of the concept's parents, or <code>null</code> for a top concept.
+	 * @param time
+	 *            The time the concept was stored. A <code>null</code> value is handled as the current time.
+	 * @throws DataStoreException
+	 *             Thrown if the id is not a pre-coordinated id or if the concept already exists in the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if any of the parents does not exist in the data store at the time.
+	 */
+	public void storeConcept(final ExpressionId id, final Set<ExpressionId> parents, final Date time)
+			throws DataStoreException, NonExistingIdException {
+		final long t = toTime(time);
+		lock.writeLock().lock();
+		try {
+			if (!id.isPreCoordinated()) {
+				throw new DataStoreException("The id " + id.getId() + " is not a concept id.");
+			}
+			if (conceptsById.get(id.getId()) != null) {
+				throw new DataStoreException("The concept " + id.getId() + " already exists in the data store.");
+			}
+			final LongHashSet parentIds = toLongHashSet(parents);
+			for (long parentId : parentIds.toArray()) {
+				if (!isExisting(parentId, t)) {
+					throw new NonExistingIdException("The specified parent id " + parentId
+							+ " do not exists in the data store at the time " + new Date(t) + ".");
+				}
+			}
+			conceptsById.put(id.getId(), new Interval(t, INFINITY));
+			storeRelatives(id.getId(), parentIds, new LongHashSet(), t);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#storeExpression(java.lang.String,
+	 * java.util.Date)
+	 */
+	@Override
+	public ExpressionId storeExpression(final String expression, final Date time)
+			throws DataStoreException, ExpressionAlreadyExistsException {
+		final long t = toTime(time);
+		lock.writeLock().lock();
+		try {
+			// Check if the expression already exists, at any time.
+			if (expressionsByExpression.containsKey(expression)) {
+				throw new ExpressionAlreadyExistsException(
+						"The expression " + expression + " already exists in the data store.");
+			}
+			final ExpressionRow row = new ExpressionRow(nextExpressionId--, expression, t);
+			expressionsByExpression.put(expression, row);
+			expressionsById.put(row.id, row);
+			return new ExpressionId(row.id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#storeExpressionEquivalence(se.liu.imt.mi.snomedct
+	 * .expressionrepository.datatypes.ExpressionId, se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId,
+	 * java.util.Date)
+	 */
+	@Override
+	public void storeExpressionEquivalence(ExpressionId id, ExpressionId equivalentExpressionId, Date time)
+			throws DataStoreException, NonExistingIdException, ExpressionAlreadyDefined {
+		final long t = toTime(time);
+		lock.writeLock().lock();
+		try {
+			// Check if the expression id exists.
+			if (!isExistingExpression(id.getId(), t)) {
+				throw new NonExistingIdException("The expression id " + id.getId()
+						+ " do not exists in the data store at the time " + new Date(t) + ".");
+			}
+			// Check if the equivalent expression id exists.
+			if (!isExisting(equivalentExpressionId.getId(), t)) {
+				throw new NonExistingIdException("The id " + equivalentExpressionId.getId()
+						+ " do not exists in the data store at the time " + new Date(t) + ".");
+			}
+			// Check if the id and equivalentExpressionId are equal.
+			if (id.equals(equivalentExpressionId)) {
+				throw new NonExistingIdException("It can not be stored in the data store that the expression with id "
+						+ id.getId() + " is equivalent to itself.");
+			}
+			checkNoFutureDefinition(id.getId(), t, "expression");
+
+			// Inactivate the definition for the expression to set the equivalence for.
+			inactivateExpressionDefinition(id.getId(), t);
+
+			// Create an equivalence group for the equivalent id if it is not already in one.
+			final long equivalentId = equivalentExpressionId.getId();
+			boolean inGroup = false;
+			for (EquivalentRow row : rows(equivalentsById, equivalentId)) {
+				inGroup |= row.isActive(t);
+			}
+			if (!inGroup) {
+				addEquivalentRow(new EquivalentRow(equivalentId, nextEquivalentId++, t));
+			}
+
+			// Add the id to the equivalence group of the equivalent id.
+			for (EquivalentRow row : new ArrayList<EquivalentRow>(rows(equivalentsById, equivalentId))) {
+				if (row.isActive(t)) {
+					addEquivalentRow(new EquivalentRow(id.getId(), row.equivalentId, t));
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#storeExpressionParentsAndChildren(se.liu.imt.mi.
+	 * snomedct.expressionrepository.datatypes.ExpressionId, java.util.Set, java.util.Set, java.util.Date)
+	 */
+	@Override
+	public void storeExpressionParentsAndChildren(ExpressionId id, Set<ExpressionId> parents,
+			Set<ExpressionId> children, Date time)
+					throws DataStoreException, NonExistingIdException, ExpressionAlreadyDefined {
+		final long t = toTime(time);
+		final LongHashSet parentIds = toLongHashSet(parents);
+		final LongHashSet childIds = toLongHashSet(children);
+		lock.writeLock().lock();
+		try {
+			// Check if the expression's id exists.
+			if (!isExistingExpression(id.getId(), t)) {
+				throw new NonExistingIdException("The specified id " + id.getId()
+						+ " do not exists in the data store at the time " + new Date(t) + ".");
+			}
+			checkNoFutureDefinition(id.getId(), t, "expression");
+
+			// Check the parents.
+			for (long parentId : parentIds.toArray()) {
+				if (!isExisting(parentId, t)) {
+					throw new NonExistingIdException("The specified parent id " + parentId
+							+ " do not exists in the data store at the time " + new Date(t) + ".");
+				}
+			}
+			for (long parentId : parentIds.toArray()) {
+				checkNoFutureDefinition(parentId, t, "parent expression");
+			}
+
+			// Check the children.
+			for (long childId : childIds.toArray()) {
+				if (!isExisting(childId, t)) {
+					throw new NonExistingIdException("The specified child id " + childId
+							+ " do not exists in the data store at the time " + new Date(t) + ".");
+				}
+			}
+			for (long childId : childIds.toArray()) {
+				checkNoFutureDefinition(childId, t, "child expression");
+			}
+
+			// Inactivate the current definition and store the new relatives.
+			inactivateExpressionDefinition(id.getId(), t);
+			storeRelatives(id.getId(), parentIds, childIds, t);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#inactivateExpressionDefinition(se.liu.imt.mi.
+	 * snomedct.expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public void inactivateExpressionDefinition(ExpressionId id, Date time)
+			throws DataStoreException, NonExistingIdException, ExpressionAlreadyDefined {
+		final long t = toTime(time);
+		lock.writeLock().lock();
+		try {
+			// Check if the expression id exists.
+			if (!isExistingExpression(id.getId(), t)) {
+				throw new NonExistingIdException("The expression id " + id.getId()
+						+ " do not exists in the data store at the time " + new Date(t) + ".");
+			}
+			checkNoFutureDefinition(id.getId(), t, "expression");
+
+			inactivateExpressionDefinition(id.getId(), t);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getExpressionId(java.lang.String,
+	 * java.util.Date)
+	 */
+	@Override
+	public ExpressionId getExpressionId(String expression, Date time) throws DataStoreException {
+		final long t = toTime(time);
+		lock.readLock().lock();
+		try {
+			final ExpressionRow row = expressionsByExpression.get(expression);
+			return row != null && row.isActive(t) ? new ExpressionId(row.id) : null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getExpressionIds(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<String, ExpressionId> getExpressionIds(Collection<String> expressions, Date time)
+			throws DataStoreException {
+		final long t = toTime(time);
+		final HashMap<String, ExpressionId> result = new HashMap<String, ExpressionId>();
+		lock.readLock().lock();
+		try {
+			for (String expression : expressions) {
+				final ExpressionRow row = expressionsByExpression.get(expression);
+				if (row != null && row.isActive(t)) {
+					result.put(expression, new ExpressionId(row.id));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getExpression(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public String getExpression(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		final long t = toTime(time);
+		lock.readLock().lock();
+		try {
+			final ExpressionRow row = expressionsById.get(id.getId());
+			if (row == null || !row.isActive(t)) {
+				throw new NonExistingIdException(
+						"The expression id " + id.getId() + " do not exists in the data store at the specified time.");
+			}
+			return row.expression;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getAncestors(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public Set<ExpressionId> getAncestors(ExpressionId id, Date time)
+			throws DataStoreException, NonExistingIdException {
+		return getRelatives(id, time, true, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getDescendants(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public Set<ExpressionId> getDescendants(ExpressionId id, Date time)
+			throws DataStoreException, NonExistingIdException {
+		return getRelatives(id, time, false, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getDescendants(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date,
+	 * se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId, int)
+	 */
+	@Override
+	public List<ExpressionId> getDescendants(ExpressionId id, Date time, ExpressionId after, int limit)
+			throws DataStoreException, NonExistingIdException {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("The limit " + limit + " of a page is not positive.");
+		}
+		final long t = toTime(time);
+		final long[] descendants;
+		lock.readLock().lock();
+		try {
+			checkExisting(id.getId(), t, "id");
+			descendants = getRelatives(id.getId(), t, false, false).toArray();
+		} finally {
+			lock.readLock().unlock();
+		}
+		Arrays.sort(descendants);
+		int i = 0;
+		if (after != null) {
+			i = Arrays.binarySearch(descendants, after.getId());
+			i = i < 0 ? -i - 1 : i + 1;
+		}
+		final List<ExpressionId> result = new ArrayList<ExpressionId>();
+		for (; i < descendants.length && result.size() < limit; i++) {
+			result.add(new ExpressionId(descendants[i]));
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#countAncestors(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public int countAncestors(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		return countRelatives(id, time, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#countDescendants(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public int countDescendants(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		return countRelatives(id, time, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getParents(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public Set<ExpressionId> getParents(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		return getRelatives(id, time, true, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getChildren(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public Set<ExpressionId> getChildren(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		return getRelatives(id, time, false, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getAncestors(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<ExpressionId, Set<ExpressionId>> getAncestors(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException {
+		return getRelatives(ids, time, true, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getDescendants(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<ExpressionId, Set<ExpressionId>> getDescendants(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException {
+		return getRelatives(ids, time, false, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getParents(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<ExpressionId, Set<ExpressionId>> getParents(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException {
+		return getRelatives(ids, time, true, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getChildren(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<ExpressionId, Set<ExpressionId>> getChildren(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException {
+		return getRelatives(ids, time, false, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getAllExpressions(java.util.Date)
+	 */
+	@Override
+	public Set<Expression> getAllExpressions(Date time) throws DataStoreException {
+		final long t = toTime(time);
+		final HashSet<Expression> result = new HashSet<Expression>();
+		lock.readLock().lock();
+		try {
+			for (ExpressionRow row : expressionsByExpression.values()) {
+				if (row.isActive(t)) {
+					result.add(new Expression(new ExpressionId(row.id), row.expression));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getAllExpressionsCursor(java.util.Date)
+	 */
+	@Override
+	public ExpressionCursor getAllExpressionsCursor(Date time) throws DataStoreException {
+		final long t = toTime(time);
+		// Only the rows are collected, the expressions are created one at a time by the cursor.
+		final ArrayList<ExpressionRow> active = new ArrayList<ExpressionRow>();
+		lock.readLock().lock();
+		try {
+			for (ExpressionRow row : expressionsByExpression.values()) {
+				if (row.isActive(t)) {
+					active.add(row);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return new ExpressionCursor() {
+			private final Iterator<ExpressionRow> rows = active.iterator();
+			private Expression expression = null;
+
+			@Override
+			public boolean next() {
+				if (rows.hasNext()) {
+					final ExpressionRow row = rows.next();
+					expression = new Expression(new ExpressionId(row.id), row.expression);
+					return true;
+				}
+				expression = null;
+				return false;
+			}
+
+			@Override
+			public Expression getExpression() {
+				return expression;
+			}
+
+			@Override
+			public void close() {
+				expression = null;
+			}
+		};
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#countExpressions(java.util.Date)
+	 */
+	@Override
+	public ExpressionCount countExpressions(Date time) throws DataStoreException {
+		final long t = toTime(time);
+		long count = 0;
+		long lowestExpressionId = 0;
+		lock.readLock().lock();
+		try {
+			for (ExpressionRow row : expressionsByExpression.values()) {
+				if (row.isActive(t)) {
+					count++;
+					lowestExpressionId = Math.min(lowestExpressionId, row.id);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return new ExpressionCount(count, lowestExpressionId);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getUnclassifiedExpressions(java.util.Date)
+	 */
+	@Override
+	public Set<Expression> getUnclassifiedExpressions(Date time) throws DataStoreException {
+		final long t = toTime(time);
+		final HashSet<Expression> result = new HashSet<Expression>();
+		lock.readLock().lock();
+		try {
+			for (ExpressionRow row : expressionsByExpression.values()) {
+				if (row.isActive(t) && isEmpty(equivalentsById.get(row.id)) && isEmpty(closureBySource.get(row.id))
+						&& isEmpty(closureByDestination.get(row.id))) {
+					result.add(new Expression(new ExpressionId(row.id), row.expression));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return result;
+	}
+
+	/**
+	 * @param rows
+	 *            Some rows from an index, or <code>null</code> if the index has no rows for the key.
+	 * @return If there are no rows.
+	 */
+	private static boolean isEmpty(final List<?> rows) {
+		return rows == null || rows.isEmpty();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#isExistingId(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public boolean isExistingId(ExpressionId id, Date time) throws DataStoreException {
+		final long t = toTime(time);
+		lock.readLock().lock();
+		try {
+			return isExisting(id.getId(), t);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#isSubsumingNotEquivalent(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId,
+	 * java.util.Date)
+	 */
+	@Override
+	public boolean isSubsumingNotEquivalent(ExpressionId ancestorId, ExpressionId descendantId, Date time)
+			throws DataStoreException, NonExistingIdException {
+		final long t = toTime(time);
+		lock.readLock().lock();
+		try {
+			checkExisting(ancestorId.getId(), t, "ancestor id");
+			checkExisting(descendantId.getId(), t, "descendant id");
+
+			// Look for a transitive closure row from the descendant, or an equivalent, to the ancestor, or an
+			// equivalent.
+			final LongHashSet ancestors = getConEqv(ancestorId.getId(), t);
+			for (long source : getConEqv(descendantId.getId(), t).toArray()) {
+				for (ClosureRow row : rows(closureBySource, source)) {
+					if (row.isActive(t) && ancestors.contains(row.destinationId)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#isEquivalent(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId,
+	 * java.util.Date)
+	 */
+	@Override
+	public boolean isEquivalent(ExpressionId id1, ExpressionId id2, Date time)
+			throws DataStoreException, NonExistingIdException {
+		final long t = toTime(time);
+		lock.readLock().lock();
+		try {
+			checkExisting(id1.getId(), t, "id");
+			checkExisting(id2.getId(), t, "id");
+			return getConEqv(id1.getId(), t).contains(id2.getId());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#isSubsuming(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId,
+	 * java.util.Date)
+	 */
+	@Override
+	public boolean isSubsuming(ExpressionId ancestorId, ExpressionId descendantId, Date time)
+			throws DataStoreException, NonExistingIdException {
+		return isEquivalent(ancestorId, descendantId, time) || isSubsumingNotEquivalent(ancestorId, descendantId, time);
+	}
+
+	/**
+	 * Look up relatives at a specific time.
+	 *
+	 * @param id
+	 *            The expression id to look up the relatives to.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @param ancestors
+	 *            <code>true</code> for ancestors or parents, <code>false</code> for descendants or children.
+	 * @param direct
+	 *            <code>true</code> for only the direct relatives, i.e. parents or children.
+	 * @return The relatives' expression ids.
+	 * @throws NonExistingIdException
+	 *             Thrown if the expression id does not exist in the data store.
+	 */
+	private Set<ExpressionId> getRelatives(final ExpressionId id, final Date time, final boolean ancestors,
+			final boolean direct) throws NonExistingIdException {
+		final long t = toTime(time);
+		lock.readLock().lock();
+		try {
+			checkExisting(id.getId(), t, "id");
+			return toExpressionIds(getRelatives(id.getId(), t, ancestors, direct));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Count the ancestors or descendants at a specific time.
+	 *
+	 * @param id
+	 *            The expression id to count the relatives to.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @param ancestors
+	 *            <code>true</code> for ancestors, <code>false</code> for descendants.
+	 * @return The number of relatives.
+	 * @throws NonExistingIdException
+	 *             Thrown if the expression id does not exist in the data store.
+	 */
+	private int countRelatives(final ExpressionId id, final Date time, final boolean ancestors)
+			throws NonExistingIdException {
+		final long t = toTime(time);
+		lock.readLock().lock();
+		try {
+			checkExisting(id.getId(), t, "id");
+			return getRelatives(id.getId(), t, ancestors, false).size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Look up relatives to several ids at a specific time.
+	 *
+	 * @param ids
+	 *            The expression ids to look up the relatives to.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @param ancestors
+	 *            <code>true</code> for ancestors or parents, <code>false</code> for descendants or children.
+	 * @param direct
+	 *            <code>true</code> for only the direct relatives, i.e. parents or children.
+	 * @return The relatives' expression ids, by expression id.
+	 * @throws NonExistingIdException
+	 *             Thrown if any of the expression ids does not exist in the data store.
+	 */
+	private Map<ExpressionId, Set<ExpressionId>> getRelatives(final Collection<ExpressionId> ids, final Date time,
+			final boolean ancestors, final boolean direct) throws NonExistingIdException {
+		final long t = toTime(time);
+		final HashMap<ExpressionId, Set<ExpressionId>> result = new HashMap<ExpressionId, Set<ExpressionId>>();
+		lock.readLock().lock();
+		try {
+			for (ExpressionId id : ids) {
+				checkExisting(id.getId(), t, "id");
+			}
+			for (ExpressionId id : ids) {
+				if (!result.containsKey(id)) {
+					result.put(id, toExpressionIds(getRelatives(id.getId(), t, ancestors, direct)));
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return result;
+	}
+
+	/**
+	 * Look up relatives at a specific time. The caller must hold the read lock.
+	 *
+	 * @param id
+	 *            The expression id to look up the relatives to.
+	 * @param t
+	 *            The time.
+	 * @param ancestors
+	 *            <code>true</code> for ancestors or parents, <code>false</code> for descendants or children.
+	 * @param direct
+	 *            <code>true</code> for only the direct relatives, i.e. parents or children.
+	 * @return The relatives' expression ids.
+	 */
+	private LongHashSet getRelatives(final long id, final long t, final boolean ancestors, final boolean direct) {
+		final LongHashSet result = new LongHashSet();
+		// Follow the transitive closure from the id and its equivalents, and include the equivalents of the
+		// relatives found.
+		for (long from : getConEqv(id, t).toArray()) {
+			for (ClosureRow row : rows(ancestors ? closureBySource : closureByDestination, from)) {
+				if (row.isActive(t) && (!direct || row.directRelation)) {
+					result.addAll(getConEqv(ancestors ? row.destinationId : row.sourceId, t));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Inactivate an expression's definition, i.e. its equivalence and its relatives, at a specific time. The caller
+	 * must hold the write lock.
+	 *
+	 * @param id
+	 *            The expression's id to inactivate the definition for.
+	 * @param t
+	 *            The time the expression's definition is inactivated.
+	 */
+	private void inactivateExpressionDefinition(final long id, final long t) {
+		final LongHashSet equivalents = getEquivalents(id, t);
+		final List<ClosureRow> relativeRows = getClosureRows(id);
+
+		if (!equivalents.isEmpty()) {
+			// Move the relationships to one of the concepts or expressions that remain in the equivalence group,
+			// preferably a concept.
+			long newId = Long.MIN_VALUE;
+			for (long equivalent : equivalents.toArray()) {
+				newId = Math.max(newId, equivalent);
+			}
+			for (ClosureRow row : relativeRows) {
+				if (row.isActive(t)) {
+					addClosureRow(new ClosureRow(row.sourceId == id ? newId : row.sourceId,
+							row.destinationId == id ? newId : row.destinationId, t, row.endTime,
+							row.directRelation));
+				}
+			}
+		} else {
+			// Link the children directly to the parents of the expression that is retired.
+			for (ClosureRow child : rows(closureByDestination, id)) {
+				if (child.directRelation && child.isActive(t)) {
+					for (ClosureRow parent : rows(closureBySource, id)) {
+						if (parent.directRelation && parent.isActive(t)) {
+							addClosureRow(new ClosureRow(child.sourceId, parent.destinationId, t,
+									Math.min(child.endTime, parent.endTime), true));
+						}
+					}
+				}
+			}
+		}
+
+		// End the expression's relationships, and remove the ones that started at the same time.
+		for (ClosureRow row : relativeRows) {
+			if (row.startTime == t) {
+				removeClosureRow(row);
+			} else if (row.startTime < t && t < row.endTime) {
+				row.endTime = t;
+			}
+		}
+
+		// A group with only one concept or expression left is ended.
+		if (equivalents.size() == 1) {
+			endEquivalentRows(equivalents.toArray()[0], t);
+		}
+		// End the expression's equivalence.
+		endEquivalentRows(id, t);
+	}
+
+	/**
+	 * Store the parents and children of a concept or expression, and the ancestors and descendants that follow from
+	 * them, in the transitive closure. The caller must hold the write lock.
+	 *
+	 * @param id
+	 *            The id to store the relatives for.
+	 * @param parentIds
+	 *            The parents' ids.
+	 * @param childIds
+	 *            The children's ids.
+	 * @param t
+	 *            The time the relatives are stored.
+	 */
+	private void storeRelatives(final long id, final LongHashSet parentIds, final LongHashSet childIds, final long t) {
+		final long[] parents = parentIds.toArray();
+		final long[] children = childIds.toArray();
+
+		// The ancestors of the parents and the descendants of the children.
+		final LongHashSet ancestors = new LongHashSet();
+		for (long parentId : parents) {
+			for (ClosureRow row : rows(closureBySource, parentId)) {
+				if (row.isActive(t)) {
+					ancestors.add(row.destinationId);
+				}
+			}
+		}
+		final LongHashSet descendants = new LongHashSet();
+		for (long childId : children) {
+			for (ClosureRow row : rows(closureByDestination, childId)) {
+				if (row.isActive(t)) {
+					descendants.add(row.sourceId);
+				}
+			}
+		}
+
+		for (long parentId : parents) {
+			storeClosureRow(id, parentId, t, true);
+		}
+		for (long childId : children) {
+			storeClosureRow(childId, id, t, true);
+		}
+		for (long ancestorId : ancestors.toArray()) {
+			storeClosureRow(id, ancestorId, t, false);
+		}
+		for (long descendantId : descendants.toArray()) {
+			storeClosureRow(descendantId, id, t, false);
+		}
+		for (long childId : children) {
+			for (long parentId : parents) {
+				storeClosureRow(childId, parentId, t, false);
+			}
+		}
+		for (long descendantId : descendants.toArray()) {
+			for (long ancestorId : ancestors.toArray()) {
+				storeClosureRow(descendantId, ancestorId, t, false);
+			}
+		}
+	}
+
+	/**
+	 * Store a transitive closure row from a specific time. A row with the same content that was ended at that time is
+	 * extended instead, and nothing is stored if a row with the same content is already valid from the time and on.
+	 * The caller must hold the write lock.
+	 *
+	 * @param sourceId
+	 *            The source id.
+	 * @param destinationId
+	 *            The destination id.
+	 * @param t
+	 *            The start time.
+	 * @param directRelation
+	 *            If the relation is direct or not.
+	 */
+	private void storeClosureRow(final long sourceId, final long destinationId, final long t,
+			final boolean directRelation) {
+		boolean stored = false;
+		for (ClosureRow row : rows(closureBySource, sourceId)) {
+			if (row.destinationId == destinationId && row.directRelation == directRelation) {
+				if (row.endTime == t) {
+					row.endTime = INFINITY;
+				}
+				stored |= row.startTime <= t && row.endTime == INFINITY;
+			}
+		}
+		if (!stored) {
+			addClosureRow(new ClosureRow(sourceId, destinationId, t, INFINITY, directRelation));
+		}
+	}
+
+	/**
+	 * End the equivalents rows for an id that are valid at a specific time, and remove the ones that started at that
+	 * time. The caller must hold the write lock.
+	 *
+	 * @param id
+	 *            The id.
+	 * @param t
+	 *            The time.
+	 */
+	private void endEquivalentRows(final long id, final long t) {
+		for (EquivalentRow row : new ArrayList<EquivalentRow>(rows(equivalentsById, id))) {
+			if (row.startTime == t) {
+				rows(equivalentsById, id).remove(row);
+				rows(equivalentsByGroup, row.equivalentId).remove(row);
+			} else if (row.startTime < t && t < row.endTime) {
+				row.endTime = t;
+			}
+		}
+	}
+
+	/**
+	 * Check that no equivalence or relatives with a start time after a specific time have been stored for an id.
+	 *
+	 * @param id
+	 *            The id.
+	 * @param t
+	 *            The time.
+	 * @param role
+	 *            What the id is, for the exception message.
+	 * @throws ExpressionAlreadyDefined
+	 *             Thrown if an equivalence or relatives are stored with a later start time.
+	 */
+	private void checkNoFutureDefinition(final long id, final long t, final String role)
+			throws ExpressionAlreadyDefined {
+		for (EquivalentRow row : rows(equivalentsById, id)) {
+			if (row.startTime > t) {
+				throw new ExpressionAlreadyDefined("The " + role + " with id " + id
+						+ " has already an equivalent id set with a start time in the future.");
+			}
+		}
+		for (ClosureRow row : getClosureRows(id)) {
+			if (row.startTime > t) {
+				throw new ExpressionAlreadyDefined("The " + role + " with id " + id
+						+ " has already parent(s) and/or child(ren) set with a start time in the future.");
+			}
+		}
+	}
+
+	/**
+	 * Check that an id exists at a specific time.
+	 *
+	 * @param id
+	 *            The id.
+	 * @param t
+	 *            The time.
+	 * @param role
+	 *            What the id is, for the exception message.
+	 * @throws NonExistingIdException
+	 *             Thrown if the id does not exist at the time.
+	 */
+	private void checkExisting(final long id, final long t, final String role) throws NonExistingIdException {
+		if (!isExisting(id, t)) {
+			throw new NonExistingIdException(
+					"The " + role + " " + id + " do not exists in the data store at the time " + new Date(t) + ".");
+		}
+	}
+
+	/**
+	 * @param id
+	 *            An id.
+	 * @param t
+	 *            A time.
+	 * @return If the id is a concept or an expression at the time.
+	 */
+	private boolean isExisting(final long id, final long t) {
+		final Interval concept = conceptsById.get(id);
+		return (concept != null && concept.isActive(t)) || isExistingExpression(id, t);
+	}
+
+	/**
+	 * @param id
+	 *            An id.
+	 * @param t
+	 *            A time.
+	 * @return If the id is an expression at the time.
+	 */
+	private boolean isExistingExpression(final long id, final long t) {
+		final ExpressionRow expression = expressionsById.get(id);
+		return expression != null && expression.isActive(t);
+	}
+
+	/**
+	 * @param id
+	 *            An id.
+	 * @param t
+	 *            A time.
+	 * @return The other ids in the id's equivalence groups at the time.
+	 */
+	private LongHashSet getEquivalents(final long id, final long t) {
+		final LongHashSet result = new LongHashSet();
+		for (EquivalentRow row : rows(equivalentsById, id)) {
+			if (row.isActive(t)) {
+				for (EquivalentRow other : rows(equivalentsByGroup, row.equivalentId)) {
+					if (other.id != id && other.isActive(t)) {
+						result.add(other.id);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param id
+	 *            An id.
+	 * @param t
+	 *            A time.
+	 * @return The id, if it exists at the time, together with the ids it is equivalent to at the time.
+	 */
+	private LongHashSet getConEqv(final long id, final long t) {
+		final LongHashSet result = getEquivalents(id, t);
+		if (isExisting(id, t)) {
+			result.add(id);
+		}
+		return result;
+	}
+
+	/**
+	 * @param id
+	 *            An id.
+	 * @return A copy of the transitive closure rows with the id as source or destination.
+	 */
+	private List<ClosureRow> getClosureRows(final long id) {
+		final List<ClosureRow> result = new ArrayList<ClosureRow>(rows(closureBySource, id));
+		for (ClosureRow row : rows(closureByDestination, id)) {
+			if (row.sourceId != id) {
+				result.add(row);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Add a row to the transitive closure indexes.
+	 *
+	 * @param row
+	 *            The row.
+	 */
+	private void addClosureRow(final ClosureRow row) {
+		mutableRows(closureBySource, row.sourceId).add(row);
+		mutableRows(closureByDestination, row.destinationId).add(row);
+	}
+
+	/**
+	 * Remove a row from the transitive closure indexes.
+	 *
+	 * @param row
+	 *            The row.
+	 */
+	private void removeClosureRow(final ClosureRow row) {
+		rows(closureBySource, row.sourceId).remove(row);
+		rows(closureByDestination, row.destinationId).remove(row);
+	}
+
+	/**
+	 * Add a row to the equivalents indexes.
+	 *
+	 * @param row
+	 *            The row.
+	 */
+	private void addEquivalentRow(final EquivalentRow row) {
+		mutableRows(equivalentsById, row.id).add(row);
+		mutableRows(equivalentsByGroup, row.equivalentId).add(row);
+	}
+
+	/**
+	 * @param index
+	 *            An index.
+	 * @param key
+	 *            A key.
+	 * @return The rows for the key in the index, or an empty list.
+	 */
+	private static <R> List<R> rows(final LongObjectHashMap<List<R>> index, final long key) {
+		final List<R> rows = index.get(key);
+		return rows != null ? rows : Collections.<R> emptyList();
+	}
+
+	/**
+	 * @param index
+	 *            An index.
+	 * @param key
+	 *            A key.
+	 * @return The rows for the key in the index, which are added to the index if there are none.
+	 */
+	private static <R> List<R> mutableRows(final LongObjectHashMap<List<R>> index, final long key) {
+		List<R> rows = index.get(key);
+		if (rows == null) {
+			rows = new ArrayList<R>(2);
+			index.put(key, rows);
+		}
+		return rows;
+	}
+
+	/**
+	 * @param ids
+	 *            Expression ids, or <code>null</code>.
+	 * @return The ids as a primitive set.
+	 */
+	private static LongHashSet toLongHashSet(final Set<ExpressionId> ids) {
+		final LongHashSet result = new LongHashSet(ids != null ? ids.size() : 0);
+		if (ids != null) {
+			for (ExpressionId id : ids) {
+				result.add(id.getId());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param ids
+	 *            A primitive set of ids.
+	 * @return The ids as expression ids.
+	 */
+	private static Set<ExpressionId> toExpressionIds(final LongHashSet ids) {
+		final HashSet<ExpressionId> result = new HashSet<ExpressionId>(ids.size() * 2);
+		for (long id : ids.toArray()) {
+			result.add(new ExpressionId(id));
+		}
+		return result;
+	}
+
+	/**
+	 * Convert a <code>Date</code> or take the current time.
+	 *
+	 * @param time
+	 *            The <code>time</code> to convert or <code>null</code> for the current time.
+	 * @return The time in milliseconds.
+	 */
+	private static long toTime(final Date time) {
+		return time != null ? time.getTime() : System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,166 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.memory;
+
+/**
+ * A set of primitive <code>long</code> values using open addressing, so the values are not boxed.
+ * <p>
+ * Values can only be added, which is all the in-memory data store needs for collecting ids.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+class LongHashSet {
+
+	/**
+	 * The slots of the hash table.
+	 */
+	private long[] keys;
+	/**
+	 * Which slots in the hash table that are used.
+	 */
+	private boolean[] used;
+	/**
+	 * The number of values in the set.
+	 */
+	private int size = 0;
+
+	/**
+	 * Creates an empty set.
+	 */
+	LongHashSet() {
+		this(8);
+	}
+
+	/**
+	 * Creates an empty set with room for some values before the hash table has to grow.
+	 *
+	 * @param expectedSize
+	 *            The expected number of values.
+	 */
+	LongHashSet(final int expectedSize) {
+		super();
+		int capacity = 8;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		keys = new long[capacity];
+		used = new boolean[capacity];
+	}
+
+	/**
+	 * Adds a value to the set.
+	 *
+	 * @param value
+	 *            The value to add.
+	 * @return <code>true</code> if the value was not already in the set.
+	 */
+	boolean add(final long value) {
+		int slot = slot(value, keys.length);
+		while (used[slot]) {
+			if (keys[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		keys[slot] = value;
+		used[slot] = true;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Adds all values in another set to this set.
+	 *
+	 * @param other
+	 *            The set with the values to add.
+	 */
+	void addAll(final LongHashSet other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			if (other.used[i]) {
+				add(other.keys[i]);
+			}
+		}
+	}
+
+	/**
+	 * Checks if a value is in the set.
+	 *
+	 * @param value
+	 *            The value to look for.
+	 * @return If the value is in the set or not.
+	 */
+	boolean contains(final long value) {
+		int slot = slot(value, keys.length);
+		while (used[slot]) {
+			if (keys[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		return false;
+	}
+
+	/**
+	 * @return The number of values in the set.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return If the set is empty or not.
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return The values in the set, in no particular order.
+	 */
+	long[] toArray() {
+		final long[] result = new long[size];
+		int j = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (used[i]) {
+				result[j++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Doubles the size of the hash table.
+	 */
+	private void grow() {
+		final long[] oldKeys = keys;
+		final boolean[] oldUsed = used;
+		keys = new long[oldKeys.length * 2];
+		used = new boolean[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int slot = slot(oldKeys[i], keys.length);
+				while (used[slot]) {
+					slot = (slot + 1) & (keys.length - 1);
+				}
+				keys[slot] = oldKeys[i];
+				used[slot] = true;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the first slot to try for a value.
+	 *
+	 * @param value
+	 *            The value.
+	 * @param capacity
+	 *            The size of the hash table, a power of two.
+	 * @return The slot.
+	 */
+	static int slot(final long value, final int capacity) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		return (int) h & (capacity - 1);
+	}
+}
@@ -0,0 +1,109 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.memory;
+
+/**
+ * A map from primitive <code>long</code> keys to objects using open addressing, so the keys are not boxed.
+ * <p>
+ * Entries can only be added or replaced, which is all the in-memory data store needs for its indexes.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ * @param <V>
+ *            The type of the values.
+ */
+class LongObjectHashMap<V> {
+
+	/**
+	 * The keys in the slots of the hash table.
+	 */
+	private long[] keys;
+	/**
+	 * The values in the slots of the hash table, <code>null</code> for an unused slot.
+	 */
+	private Object[] values;
+	/**
+	 * The number of entries in the map.
+	 */
+	private int size = 0;
+
+	/**
+	 * Creates an empty map.
+	 */
+	LongObjectHashMap() {
+		super();
+		keys = new long[16];
+		values = new Object[16];
+	}
+
+	/**
+	 * Looks up the value for a key.
+	 *
+	 * @param key
+	 *            The key.
+	 * @return The value or <code>null</code> if there is no value for the key.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(final long key) {
+		int slot = LongHashSet.slot(key, keys.length);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				return (V) values[slot];
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Stores a value for a key, replacing any earlier value.
+	 *
+	 * @param key
+	 *            The key.
+	 * @param value
+	 *            The value, not <code>null</code>.
+	 */
+	void put(final long key, final V value) {
+		if (value == null) {
+			throw new NullPointerException("A value in the map can not be null.");
+		}
+		int slot = LongHashSet.slot(key, keys.length);
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+	}
+
+	/**
+	 * @return The number of entries in the map.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Doubles the size of the hash table.
+	 */
+	private void grow() {
+		final long[] oldKeys = keys;
+		final Object[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = LongHashSet.slot(oldKeys[i], keys.length);
+				while (values[slot] != null) {
+					slot = (slot + 1) & (keys.length - 1);
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * The rows of the <code>concepts</code> table kept in memory, so the existence of a concept at any point in time can be
+ * checked without asking the dbms. The rows are kept in three <code>long</code> arrays sorted by the concept id, with
+ * the times in microseconds as in the dbms, which takes 24 bytes for each row.
+ * <p>
+ * A filter is never changed after it has been created. Changes of the concepts made through the data store create a
+ * new filter from the previous one.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class ConceptFilter {
+
+	/**
+	 * The time used for a row without end.
+	 */
+	static final long NO_END = Long.MAX_VALUE;
+
+	/**
+	 * The concept ids of the rows in ascending order.
+	 */
+	private final long[] ids;
+	/**
+	 * The start time of each row.
+	 */
+	private final long[] starts;
+	/**
+	 * The end time of each row, or <code>NO_END</code>.
+	 */
+	private final long[] ends;
+	/**
+	 * The time the rows were read from the dbms.
+	 */
+	private final long created;
+
+	/**
+	 * Creates a filter.
+	 *
+	 * @param ids
+	 *            The concept ids of the rows in ascending order.
+	 * @param starts
+	 *            The start time of each row in microseconds.
+	 * @param ends
+	 *            The end time of each row in microseconds, or <code>NO_END</code>.
+	 * @param count
+	 *            The number of rows.
+	 * @param created
+	 *            The time the rows were read from the dbms.
+	 */
+	ConceptFilter(final long[] ids, final long[] starts, final long[] ends, final int count, final long created) {
+		super();
+		this.ids = Arrays.copyOf(ids, count);
+		this.starts = Arrays.copyOf(starts, count);
+		this.ends = Arrays.copyOf(ends, count);
+		this.created = created;
+	}
+
+	/**
+	 * Convert a SQL <code>Timestamp</code> to microseconds, the precision of the dbms.
+	 *
+	 * @param time
+	 *            The time.
+	 * @return The time in microseconds since the epoch.
+	 */
+	static long toMicroseconds(final Timestamp time) {
+		final long seconds = time.getTime() / 1000 - (time.getTime() % 1000 < 0 ? 1 : 0);
+		return seconds * 1000000 + time.getNanos() / 1000;
+	}
+
+	/**
+	 * @return The time the rows were read from the dbms.
+	 */
+	long getCreated() {
+		return created;
+	}
+
+	/**
+	 * Check if a concept exists at a specific time.
+	 *
+	 * @param id
+	 *            The concept id.
+	 * @param time
+	 *            The specific time.
+	 * @return If the concept exists at the time or not.
+	 */
+	boolean isExisting(final long id, final Timestamp time) {
+		int i = Arrays.binarySearch(ids, id);
+		if (i < 0) {
+			return false;
+		}
+		while (i > 0 && ids[i - 1] == id) {
+			i--;
+		}
+		final long t = toMicroseconds(time);
+		for (; i < ids.length && ids[i] == id; i++) {
+			if (starts[i] <= t && t < ends[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create a filter with concepts added.
+	 *
+	 * @param addedIds
+	 *            The ids of the added concepts in ascending order.
+	 * @param start
+	 *            The start time of the added concepts in microseconds. The concepts have no end.
+	 * @return The new filter.
+	 */
+	ConceptFilter withConcepts(final long[] addedIds, final long start) {
+		final int count = ids.length + addedIds.length;
+		final long[] newIds = new long[count];
+		final long[] newStarts = new long[count];
+		final long[] newEnds = new long[count];
+		int i = 0;
+		int j = 0;
+		for (int k = 0; k < count; k++) {
+			if (j == addedIds.length || (i < ids.length && ids[i] <= addedIds[j])) {
+				newIds[k] = ids[i];
+				newStarts[k] = starts[i];
+				newEnds[k] = ends[i++];
+			} else {
+				newIds[k] = addedIds[j++];
+				newStarts[k] = start;
+				newEnds[k] = NO_END;
+			}
+		}
+		return new ConceptFilter(newIds, newStarts, newEnds, count, created);
+	}
+
+	/**
+	 * Create a filter restored to a previous state in the same way as the <code>concepts</code> table is restored, by
+	 * removing the rows that start after a specific time and the end times after that time.
+	 *
+	 * @param time
+	 *            The time to restore to in microseconds.
+	 * @return The new filter.
+	 */
+	ConceptFilter restoredTo(final long time) {
+		final long[] newIds = new long[ids.length];
+		final long[] newStarts = new long[ids.length];
+		final long[] newEnds = new long[ids.length];
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (starts[i] <= time) {
+				newIds[count] = ids[i];
+				newStarts[count] = starts[i];
+				newEnds[count++] = time < ends[i] ? NO_END : ends[i];
+			}
+		}
+		return new ConceptFilter(newIds, newStarts, newEnds, count, created);
+	}
+}
@@ -0,0 +1,195 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+
+/**
+ * A pool of connections to the PostgreSQL database management system, dbms, containing the expression database.
+ * <p>
+ * Connections are opened when needed until the maximum number of connections is reached, after which threads wait for
+ * a connection to be released. A released connection with an unfinished transaction is rolled back and switched back
+ * to auto commit before it is reused.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class ConnectionPool {
+
+	/**
+	 * The URL for the database connections.
+	 */
+	private final String url;
+	/**
+	 * The user name for the database connections.
+	 */
+	private final String userName;
+	/**
+	 * The user password for the database connections.
+	 */
+	private final String password;
+
+	/**
+	 * The maximum number of connections in the pool.
+	 */
+	private final int maxSize;
+
+	/**
+	 * The connections that are not in use.
+	 */
+	private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+	/**
+	 * All open connections, both the ones in use and the idle ones.
+	 */
+	private final List<PooledConnection> all = new ArrayList<PooledConnection>();
+
+	/**
+	 * If the pool has been closed.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * Creates a connection pool and opens the first connection to check that the dbms can be reached.
+	 *
+	 * @param url
+	 *            The URL for the database connections.
+	 * @param userName
+	 *            The user name for the database connections.
+	 * @param password
+	 *            The user password for the database connections.
+	 * @param maxSize
+	 *            The maximum number of connections in the pool.
+	 * @throws DataStoreException
+	 *             Thrown if there is a problem with the dbms or the connection to the dbms.
+	 */
+	ConnectionPool(final String url, final String userName, final String password, final int maxSize)
+			throws DataStoreException {
+		super();
+		if (maxSize < 1) {
+			throw new DataStoreException("The connection pool must contain at least one connection.");
+		}
+		this.url = url;
+		this.userName = userName;
+		this.password = password;
+		this.maxSize = maxSize;
+
+		try {
+			Class.forName("org.postgresql.Driver");
+		} catch (ClassNotFoundException e) {
+			throw new DataStoreException(e);
+		}
+		final PooledConnection first = open();
+		synchronized (this) {
+			all.add(first);
+			idle.add(first);
+		}
+	}
+
+	/**
+	 * Takes a connection from the pool. If all connections are in use and the pool is full, the method waits until a
+	 * connection is released. A taken connection must always be given back with {@link #release(PooledConnection)}.
+	 *
+	 * @return A connection in auto commit mode.
+	 * @throws DataStoreException
+	 *             Thrown if there is a problem with the dbms or the connection to the dbms.
+	 */
+	PooledConnection take() throws DataStoreException {
+		synchronized (this) {
+			while (true) {
+				if (closed) {
+					throw new DataStoreException("The connection pool is closed.");
+				}
+				if (!idle.isEmpty()) {
+					return idle.removeFirst();
+				}
+				if (all.size() < maxSize) {
+					break;
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new DataStoreException("Interrupted while waiting for a database connection.", e);
+				}
+			}
+			// Reserve the place in the pool before the connection is opened outside the lock.
+			all.add(null);
+		}
+		PooledConnection connection = null;
+		try {
+			connection = open();
+		} finally {
+			synchronized (this) {
+				all.remove(null);
+				if (connection != null) {
+					all.add(connection);
+				}
+				notifyAll();
+			}
+		}
+		return connection;
+	}
+
+	/**
+	 * Gives a connection back to the pool. An unfinished transaction is rolled back and a broken connection is closed
+	 * and removed from the pool.
+	 *
+	 * @param connection
+	 *            The connection to give back.
+	 */
+	void release(final PooledConnection connection) {
+		boolean reusable;
+		try {
+			final Connection con = connection.getConnection();
+			if (!con.getAutoCommit()) {
+				con.rollback();
+				con.setAutoCommit(true);
+			}
+			reusable = !con.isClosed();
+		} catch (SQLException e) {
+			reusable = false;
+		}
+		synchronized (this) {
+			if (reusable && !closed) {
+				idle.addFirst(connection);
+			} else {
+				all.remove(connection);
+				connection.close();
+			}
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Closes all connections in the pool. Connections in use are closed when they are released.
+	 */
+	synchronized void close() {
+		closed = true;
+		for (PooledConnection connection : idle) {
+			all.remove(connection);
+			connection.close();
+		}
+		idle.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Opens a new connection to the dbms.
+	 *
+	 * @return The new connection.
+	 * @throws DataStoreException
+	 *             Thrown if there is a problem with the dbms or the connection to the dbms.
+	 */
+	private PooledConnection open() throws DataStoreException {
+		try {
+			return new PooledConnection(DriverManager.getConnection(url, userName, password));
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		}
+	}
+}
@@ -1,24 +1,41 @@
 package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.Array;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
 
 import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionAlreadyDefined;
 import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionAlreadyExistsException;
 import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
 import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.ExpressionCursor;
 import se.liu.imt.mi.snomedct.expressionrepository.datatypes.Expression;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionCount;
 import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
 
 /**
  * An implementation of the <code>DataStore</code> interface for the PostgreSQL database management system.
+ * <p>
+ * Each method call borrows a connection from a pool of connections and the prepared statements are cached per
+ * connection, so several threads can use the data store at the same time with one dbms connection each.
  * 
  * @author Mikael Nystrm, mikael.nystrom@liu.se
  * 
@@ -26,234 +43,742 @@ import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
 public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore {
 
 	/**
-	 * The connection to the PostgreSQL database management system, dbms, containing the expression database.
+	 * The default number of connections in the connection pool.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 10;
+
+	/**
+	 * The number of rows a cursor fetches from the dbms at a time.
+	 */
+	public static final int CURSOR_FETCH_SIZE = 1000;
+
+	/**
+	 * The default maximum number of expressions in the cache of expression ids.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	/**
+	 * The default time in milliseconds an expression id is cached.
+	 */
+	public static final long DEFAULT_CACHE_TTL = 10 * 60 * 1000;
+
+	/**
+	 * The smallest number of parents or children for which the temporary table with them is analyzed before it is
+	 * used. The planner handles fewer rows well without statistics.
+	 */
+	public static final int ANALYZE_THRESHOLD = 100;
+
+	/**
+	 * The pool of connections to the PostgreSQL database management system, dbms, containing the expression database.
+	 */
+	protected final ConnectionPool pool;
+
+	/**
+	 * The ids of recently used expressions at the current time. Only changes made through this data store are seen
+	 * by the cache, so a change made by someone else is seen first when the cached id has expired.
+	 */
+	protected final ExpressionIdCache expressionIdCache;
+
+	/**
+	 * The periods in which recently checked concept and expression ids exist, so most existence checks are answered
+	 * without asking the dbms. Changes made by someone else are seen when the cached periods have expired.
+	 */
+	protected final ExistenceCache existenceCache;
+
+	/**
+	 * The snapshots of the hierarchy at the points in time that are queried often. The snapshots are dropped when the
+	 * data store is changed through this data store and otherwise used as long as the expression ids are cached.
+	 */
+	protected final HierarchySnapshotCache hierarchySnapshots;
+
+	/**
+	 * The thread that creates hierarchy snapshots and concept filters, so no query has to wait for a snapshot or a
+	 * filter to be created.
+	 */
+	private final ExecutorService hierarchySnapshotLoader;
+
+	/**
+	 * The rows of the concepts table, or <code>null</code> until they have been read from the dbms. A filter that is
+	 * older than the time to live is read again, so changes made by someone else are seen.
+	 */
+	private volatile ConceptFilter conceptFilter = null;
+
+	/**
+	 * The time in milliseconds a concept filter is used after it was read, or 0 if no filter is used.
+	 */
+	private final long conceptFilterTimeToLive;
+
+	/**
+	 * If a concept filter is being read from the dbms or not.
+	 */
+	private final AtomicBoolean conceptFilterLoading = new AtomicBoolean(false);
+
+	/**
+	 * The number of changes of the concepts made through the data store, guarded by <code>conceptFilterLock</code>.
 	 */
-	protected Connection con;
+	private long conceptFilterGeneration = 0;
 
 	/**
-	 * A <code>PreparedStatement</code> which checks if an expression already exists in the dbms.
+	 * The lock for changing the concept filter.
 	 */
-	private final PreparedStatement isExistingExpressionPs;
+	private final Object conceptFilterLock = new Object();
+
 	/**
-	 * A <code>PreparedStatement</code> that store an a expression with a timestamp in the dbms.
+	 * The logger.
 	 */
-	private final PreparedStatement setExpressionPs;
+	private static final Logger log = Logger.getLogger(DataStore.class);
 
 	/**
-	 * A <code>PreparedStatement</code> that store the id in an equivalent expression group if there is no suitable
-	 * equivalent expression group already existing in the dbms.
+	 * The SQL for a <code>PreparedStatement</code> which checks if an expression already exists in the dbms. The
+	 * expression is first found by its MD5 digest, which can use the index on the digest whatever the length of the
+	 * expression, and then compared in full, since two expressions can have the same digest.
 	 */
-	private final PreparedStatement setEquivalentIdGroupPs;
+	private static final String isExistingExpressionSql =
+			"SELECT Count(*) > 0 as exist FROM expressions WHERE md5(expression) = md5(?) AND expression = ?;";
 	/**
-	 * A <code>PreparedStatement</code> that store the id in the equivalent expression group in the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that store an a expression with a timestamp in the dbms if no
+	 * expression with the same MD5 digest already exists. The unique index on the digest makes the check and the insert
+	 * one atomic operation, so no id is returned if the expression already exists, even if it is stored at the same
+	 * time by another connection.
 	 */
-	private final PreparedStatement setEquivalentIdPs;
+	private static final String setExpressionSql = "INSERT INTO expressions (expression, starttime) VALUES (?, ?) "
+			+ "ON CONFLICT ((md5(expression))) DO NOTHING RETURNING id;";
 
 	/**
-	 * A <code>PreparedStatement</code> that create a temporary table for the parent(s) to the concept or expression.
+	 * The SQL for a <code>PreparedStatement</code> that store the id in an equivalent expression group if there is no
+	 * suitable equivalent expression group already existing in the dbms.
+	 */
+	private static final String setEquivalentIdGroupSql = "INSERT INTO equivalents (id, starttime) SELECT ?, ? "
+			+ "WHERE (SELECT Count(*) = 0 FROM equivalents WHERE id = ? AND starttime <= ? AND ? < endtime)";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that store the id in the equivalent expression group in the dbms.
 	 */
-	private final PreparedStatement storeRelativesCreateTableParentsPs;
+	private static final String setEquivalentIdSql = "INSERT INTO equivalents (id, starttime, equivalentid) "
+			+ "SELECT ?, ?, equivalentid FROM equivalents WHERE id = ? AND starttime <= ? AND ? < endtime ";
+
 	/**
-	 * A <code>PreparedStatement</code> that create a temporary table for the child(ren) to the concept or expression.
+	 * The SQL for a <code>PreparedStatement</code> that create a temporary table for the parent(s) to the concept or
+	 * expression.
 	 */
-	private final PreparedStatement storeRelativesCreateTableChildrenPs;
+	private static final String storeRelativesCreateTableParentsSql =
+			"CREATE TEMPORARY TABLE parents_insert (id bigint NOT NULL) ON COMMIT DROP;";
 	/**
-	 * A <code>PreparedStatement</code> that store the parent(s) to the to the concept or expression in the temporary
-	 * table.
+	 * The SQL for a <code>PreparedStatement</code> that create a temporary table for the child(ren) to the concept or
+	 * expression.
 	 */
-	private final PreparedStatement storeRelativesInsertIntoTableParentsPs;
+	private static final String storeRelativesCreateTableChildrenSql =
+			"CREATE TEMPORARY TABLE children_insert (id bigint NOT NULL) ON COMMIT DROP;";
 	/**
-	 * A <code>PreparedStatement</code> that store the child(ren) to the to the concept or expression in the temporary
-	 * table.
+	 * The SQL for a <code>PreparedStatement</code> that store all parent(s) to the to the concept or expression in the
+	 * temporary table from an array.
 	 */
-	private final PreparedStatement storeRelativesInsertIntoTableChildrenPs;
+	private static final String storeRelativesInsertIntoTableParentsSql =
+			"INSERT INTO parents_insert (id) SELECT unnest(?::bigint[]);";
 	/**
-	 * A <code>PreparedStatement</code> that analyze the temporary table for the parent(s) to the concept or expression.
+	 * The SQL for a <code>PreparedStatement</code> that store all child(ren) to the to the concept or expression in the
+	 * temporary table from an array.
 	 */
-	private final PreparedStatement storeRelativesAnalyzeTableParentsPs;
+	private static final String storeRelativesInsertIntoTableChildrenSql =
+			"INSERT INTO children_insert (id) SELECT unnest(?::bigint[]);";
 	/**
-	 * A <code>PreparedStatement</code> that analyze the temporary table for the child(ren) to the concept or
+	 * The SQL for a <code>PreparedStatement</code> that analyze the temporary table for the parent(s) to the concept or
 	 * expression.
 	 */
-	private final PreparedStatement storeRelativesAnalyzeTableChildrenPs;
+	private static final String storeRelativesAnalyzeTableParentsSql = "ANALYZE parents_insert;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that analyze the temporary table for the child(ren) to the concept
+	 * or expression.
+	 */
+	private static final String storeRelativesAnalyzeTableChildrenSql = "ANALYZE children_insert;";
 	/**
-	 * A <code>PreparedStatement</code> that extend the endtime for the parent relationship(s) for the concept or
+	 * The SQL for a <code>PreparedStatement</code> that extend the endtime for the parent relationship(s) for the
+	 * concept or expression that has it's parent(s) set.
+	 */
+	private static final String storeRelativesParentsExtendEndtimeSql =
+			"UPDATE transitiveclosure SET endtime = 'infinity'::timestamp "
+			+ "FROM ("
+			+ "SELECT DISTINCT ? AS sourceid, parents_insert.id AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, true AS directrelation FROM parents_insert "
+			+ ") AS insert_rows "
+			+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
+			+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that insert the parent relationship(s) for the concept or expression
+	 * that has it's parent(s) set.
+	 */
+	private static final String storeRelativesParentsInsertSql =
+			"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
+			+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
+			+ "SELECT DISTINCT ? AS sourceid, parents_insert.id AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, true AS directrelation FROM parents_insert "
+			+ ") AS insert_rows "
+			+ "LEFT JOIN transitiveclosure ON "
+			+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
+			+ "insert_rows.starttime = transitiveclosure.starttime AND insert_rows.endtime = transitiveclosure.endtime AND "
+			+ "insert_rows.directrelation = transitiveclosure.directrelation "
+			+ "WHERE transitiveclosure.sourceid IS NULL;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that extend the endtime for the child relationship(s) for the
+	 * concept or expression that has it's child(ren) set.
+	 */
+	private static final String storeRelativesChildrenExtendEndtimeSql =
+			"UPDATE transitiveclosure SET endtime = 'infinity'::timestamp "
+			+ "FROM ("
+			+ "SELECT DISTINCT children_insert.id AS sourceid, ? AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, true AS directrelation FROM children_insert "
+			+ ") AS insert_rows "
+			+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
+			+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that insert the child relationship(s) for the concept expression
+	 * that has it's child(ren) set.
+	 */
+	private static final String storeRelativesChildrenInsertSql =
+			"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
+			+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
+			+ "SELECT DISTINCT children_insert.id AS sourceid, ? AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, true AS directrelation FROM children_insert "
+			+ ") AS insert_rows "
+			+ "LEFT JOIN transitiveclosure ON "
+			+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
+			+ "insert_rows.starttime = transitiveclosure.starttime AND insert_rows.endtime = transitiveclosure.endtime AND "
+			+ "insert_rows.directrelation = transitiveclosure.directrelation "
+			+ "WHERE transitiveclosure.sourceid IS NULL;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that extend the endtime for the relevant ancestors for the
 	 * expression that has it's parent(s) set.
 	 */
-	private final PreparedStatement storeRelativesParentsExtendEndtimePs;
+	private static final String storeRelativesAncestorsExtendEndtimeSql =
+			"UPDATE transitiveclosure SET endtime = 'infinity'::timestamp FROM ("
+			+ "SELECT DISTINCT ? AS sourceid, ancestors.destinationid AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
+			+ "FROM transitiveclosure AS ancestors "
+			+ "WHERE ancestors.sourceid IN (SELECT id FROM parents_insert) AND ancestors.starttime <= ?::timestamp AND ?::timestamp < ancestors.endtime "
+			+ ") AS insert_rows "
+			+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
+			+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;";
 	/**
-	 * A <code>PreparedStatement</code> that insert the parent relationship(s) for the concept or expression that has
-	 * it's parent(s) set.
+	 * The SQL for a <code>PreparedStatement</code> that insert the relevant ancestors for the expression that has it's
+	 * parent(s) set.
+	 */
+	private static final String storeRelativesAncestorsInsertSql =
+			"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
+			+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
+			+ "SELECT DISTINCT ? AS sourceid, ancestors.destinationid AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
+			+ "FROM transitiveclosure AS ancestors "
+			+ "WHERE ancestors.sourceid IN (SELECT id FROM parents_insert) AND ancestors.starttime <= ?::timestamp AND ?::timestamp < ancestors.endtime "
+			+ ") AS insert_rows LEFT JOIN transitiveclosure ON "
+			+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
+			+ "insert_rows.directrelation = transitiveclosure.directrelation AND insert_rows.starttime >= transitiveclosure.starttime AND transitiveclosure.endtime = 'infinity' "
+			+ "WHERE transitiveclosure.sourceid IS NULL;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that extend the endtime for the relevant descendants for the
+	 * expression that has it's child(ren) set.
 	 */
-	private final PreparedStatement storeRelativesParentsInsertPs;
+	private static final String storeRelativesDescendantsExtendEndtimeSql =
+			"UPDATE transitiveclosure SET endtime = 'infinity'::timestamp FROM ("
+			+ "SELECT DISTINCT descendants.sourceid AS sourceid, ? AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
+			+ "FROM transitiveclosure AS descendants "
+			+ "WHERE descendants.destinationid IN (SELECT id FROM children_insert) AND descendants.starttime <= ?::timestamp AND ?::timestamp < descendants.endtime "
+			+ ") AS insert_rows "
+			+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
+			+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;";
 	/**
-	 * A <code>PreparedStatement</code> that extend the endtime for the child relationship(s) for the concept or
+	 * The SQL for a <code>PreparedStatement</code> that insert the relevant links between the descendants for the
 	 * expression that has it's child(ren) set.
 	 */
-	private final PreparedStatement storeRelativesChildrenExtendEndtimePs;
+	private static final String storeRelativesDescendantsInsertSql =
+			"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
+			+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
+			+ "SELECT DISTINCT descendants.sourceid AS sourceid, ? AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
+			+ "FROM transitiveclosure AS descendants "
+			+ "WHERE descendants.destinationid IN (SELECT id FROM children_insert) AND descendants.starttime <= ?::timestamp AND ?::timestamp < descendants.endtime "
+			+ ") AS insert_rows LEFT JOIN transitiveclosure ON "
+			+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
+			+ "insert_rows.directrelation = transitiveclosure.directrelation AND insert_rows.starttime >= transitiveclosure.starttime AND transitiveclosure.endtime = 'infinity' "
+			+ "WHERE transitiveclosure.sourceid IS NULL;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that extend the endtime for the relevant links between the parents
+	 * and the children for the expression that has it's parent(s) and child(ren) set.
+	 */
+	private static final String storeRelativesLinkParentsAndChildrenExtendEndtimeSql =
+			"UPDATE transitiveclosure SET endtime = 'infinity'::timestamp FROM ("
+			+ "SELECT DISTINCT children_insert.id AS sourceid, parents_insert.id AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
+			+ "FROM children_insert, parents_insert "
+			+ ") AS insert_rows "
+			+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
+			+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that insert the relevant links between the parents and the children
+	 * for the expression that has it's parent(s) and child(ren) set.
+	 */
+	private static final String storeRelativesLinkParentsAndChildrenInsertSql =
+			"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
+			+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
+			+ "SELECT DISTINCT children_insert.id AS sourceid, parents_insert.id AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
+			+ "FROM children_insert, parents_insert "
+			+ ") AS insert_rows LEFT JOIN transitiveclosure ON "
+			+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
+			+ "insert_rows.directrelation = transitiveclosure.directrelation AND insert_rows.starttime >= transitiveclosure.starttime AND transitiveclosure.endtime = 'infinity' "
+			+ "WHERE transitiveclosure.sourceid IS NULL;";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that extend the endtime for the relevant links between the ancestors
+	 * and the descendants for the expression that has it's parent(s) and child(ren) set.
+	 */
+	private static final String storeRelativesLinkAncestorsAndDescendantsExtendEndtimeSql =
+			"UPDATE transitiveclosure SET endtime = 'infinity'::timestamp FROM ("
+			+ "SELECT DISTINCT descendants.sourceid AS sourceid, ancestors.destinationid AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
+			+ "FROM transitiveclosure AS descendants, transitiveclosure AS ancestors "
+			+ "WHERE descendants.destinationid IN (SELECT id FROM children_insert) AND ancestors.sourceid IN (SELECT ID FROM parents_insert) AND "
+			+ "descendants.starttime <= ?::timestamp AND ?::timestamp < descendants.endtime AND ancestors.starttime <= ?::timestamp AND ?::timestamp < ancestors.endtime "
+			+ ") AS insert_rows "
+			+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
+			+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;";
 	/**
-	 * A <code>PreparedStatement</code> that insert the child relationship(s) for the concept expression that has it's
-	 * child(ren) set.
+	 * The SQL for a <code>PreparedStatement</code> that insert the relevant links between the ancestors and the
+	 * descendants for the expression that has it's parent(s) and child(ren) set.
 	 */
-	private final PreparedStatement storeRelativesChildrenInsertPs;
+	private static final String storeRelativesLinkAncestorsAndDescendantsInsertSql =
+			"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
+			+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
+			+ "SELECT DISTINCT descendants.sourceid AS sourceid, ancestors.destinationid AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
+			+ "FROM transitiveclosure AS descendants, transitiveclosure AS ancestors "
+			+ "WHERE descendants.destinationid IN (SELECT id FROM children_insert) AND ancestors.sourceid IN (SELECT ID FROM parents_insert) AND "
+			+ "descendants.starttime <= ?::timestamp AND ?::timestamp < descendants.endtime AND ancestors.starttime <= ?::timestamp AND ?::timestamp < ancestors.endtime "
+			+ ") AS insert_rows LEFT JOIN transitiveclosure ON "
+			+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
+			+ "insert_rows.directrelation = transitiveclosure.directrelation AND insert_rows.starttime >= transitiveclosure.starttime AND transitiveclosure.endtime = 'infinity' "
+			+ "WHERE transitiveclosure.sourceid IS NULL;";
+
 	/**
-	 * A <code>PreparedStatement</code> that extend the endtime for the relevant ancestors for the expression that has
-	 * it's parent(s) set.
+	 * The SQL that creates the function in the dbms which stores the parent(s) and child(ren) of a concept or
+	 * expression in the transitive closure table. The function runs the statements above with the function's
+	 * parameters in place of the parameters of the statements, so all of them are run in one call to the dbms.
+	 */
+	protected static final String createStoreRelativesFunctionSql = "CREATE OR REPLACE FUNCTION store_relatives("
+			+ "p_id bigint, p_time timestamp, p_parents bigint[], p_children bigint[]) RETURNS void AS $$ BEGIN "
+			+ bindParameters(storeRelativesCreateTableParentsSql)
+			+ bindParameters(storeRelativesCreateTableChildrenSql)
+			+ bindParameters(storeRelativesInsertIntoTableParentsSql, "p_parents")
+			+ bindParameters(storeRelativesInsertIntoTableChildrenSql, "p_children")
+			+ "IF coalesce(array_length(p_parents, 1), 0) >= " + ANALYZE_THRESHOLD + " THEN "
+			+ storeRelativesAnalyzeTableParentsSql + " END IF; "
+			+ "IF coalesce(array_length(p_children, 1), 0) >= " + ANALYZE_THRESHOLD + " THEN "
+			+ storeRelativesAnalyzeTableChildrenSql + " END IF; "
+			+ bindParameters(storeRelativesParentsExtendEndtimeSql, "p_id", "p_time")
+			+ bindParameters(storeRelativesParentsInsertSql, "p_id", "p_time")
+			+ bindParameters(storeRelativesChildrenExtendEndtimeSql, "p_id", "p_time")
+			+ bindParameters(storeRelativesChildrenInsertSql, "p_id", "p_time")
+			+ bindParameters(storeRelativesAncestorsExtendEndtimeSql, "p_id", "p_time", "p_time", "p_time")
+			+ bindParameters(storeRelativesAncestorsInsertSql, "p_id", "p_time", "p_time", "p_time")
+			+ bindParameters(storeRelativesDescendantsExtendEndtimeSql, "p_id", "p_time", "p_time", "p_time")
+			+ bindParameters(storeRelativesDescendantsInsertSql, "p_id", "p_time", "p_time", "p_time")
+			+ bindParameters(storeRelativesLinkParentsAndChildrenExtendEndtimeSql, "p_time")
+			+ bindParameters(storeRelativesLinkParentsAndChildrenInsertSql, "p_time")
+			+ bindParameters(storeRelativesLinkAncestorsAndDescendantsExtendEndtimeSql, "p_time", "p_time", "p_time",
+					"p_time", "p_time")
+			+ bindParameters(storeRelativesLinkAncestorsAndDescendantsInsertSql, "p_time", "p_time", "p_time",
+					"p_time", "p_time")
+			+ " END; $$ LANGUAGE plpgsql;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that store the parent(s) and child(ren) of a concept or expression
+	 * in the transitive closure table with the function created by <code>createStoreRelativesFunctionSql</code>.
 	 */
-	private final PreparedStatement storeRelativesAncestorsExtendEndtimePs;
+	private static final String storeRelativesSql = "SELECT store_relatives(?, ?, ?, ?);";
+
 	/**
-	 * A <code>PreparedStatement</code> that insert the relevant ancestors for the expression that has it's parent(s)
-	 * set.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve an expression's id given the expression itself at a
+	 * specific time from the dbms.
+	 */
+	private static final String getExpressionIdSql = "SELECT id FROM expressions "
+			+ "WHERE md5(expression) = md5(?) AND expression = ? "
+			+ "AND starttime <= ? AND (? < endtime OR endtime IS NULL);";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the ids of several expressions given the expressions
+	 * themselves at a specific time from the dbms.
+	 */
+	private static final String getExpressionIdsSql = "SELECT id, expression FROM expressions "
+			+ "WHERE md5(expression) IN (SELECT md5(e) FROM unnest(?::text[]) AS e) AND expression = ANY(?) "
+			+ "AND starttime <= ? AND (? < endtime OR endtime IS NULL);";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that retrieve an expression given the expression's id at a specific
+	 * time from the dbms.
 	 */
-	private final PreparedStatement storeRelativesAncestorsInsertPs;
+	private static final String getExpressionSql = "SELECT expression FROM expressions WHERE id = ? "
+			+ "AND starttime <= ? AND (? < endtime OR endtime IS NULL);";
+
 	/**
-	 * A <code>PreparedStatement</code> that extend the endtime for the relevant descendants for the expression that has
-	 * it's child(ren) set.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve an expression's ancestors at a specific time from the
+	 * dbms.
 	 */
-	private final PreparedStatement storeRelativesDescendantsExtendEndtimePs;
+	private static final String getAncestorsSql = "SELECT destination_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id1 "
+			+ "WHERE source_coneqv.id1 = ? AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
+
 	/**
-	 * A <code>PreparedStatement</code> that insert the relevant links between the descendants for the expression that
-	 * has it's child(ren) set.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve an expression's descendants at a specific time from
+	 * the dbms.
 	 */
-	private final PreparedStatement storeRelativesDescendantsInsertPs;
+	private static final String getDescendantsSql = "SELECT source_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id1 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
+			+ "WHERE destination_coneqv.id1 = ? AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that retrieve a page of an expression's descendants at a specific
+	 * time from the dbms, ordered by their ids and starting after a specific id.
+	 */
+	private static final String getDescendantsPageSql = "SELECT DISTINCT source_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id1 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
+			+ "WHERE destination_coneqv.id1 = ? AND source_coneqv.id2 > ? AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime "
+			+ "ORDER BY id LIMIT ?;";
+
 	/**
-	 * A <code>PreparedStatement</code> that extend the endtime for the relevant links between the parents and the
-	 * children for the expression that has it's parent(s) and child(ren) set.
+	 * The SQL for a <code>PreparedStatement</code> that count an expression's ancestors at a specific time in the dbms.
 	 */
-	private final PreparedStatement storeRelativesLinkParentsAndChildrenExtendEndtimePs;
+	private static final String countAncestorsSql = "SELECT count(DISTINCT destination_coneqv.id2) AS count "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id1 "
+			+ "WHERE source_coneqv.id1 = ? AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
+
 	/**
-	 * A <code>PreparedStatement</code> that insert the relevant links between the parents and the children for the
-	 * expression that has it's parent(s) and child(ren) set.
+	 * The SQL for a <code>PreparedStatement</code> that count an expression's descendants at a specific time in the
+	 * dbms.
 	 */
-	private final PreparedStatement storeRelativesLinkParentsAndChildrenInsertPs;
+	private static final String countDescendantsSql = "SELECT count(DISTINCT source_coneqv.id2) AS count "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id1 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
+			+ "WHERE destination_coneqv.id1 = ? AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that extend the endtime for the relevant links between the ancestors and the
-	 * descendants for the expression that has it's parent(s) and child(ren) set.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve an expression's parents at a specific time from the
+	 * dbms.
 	 */
-	private final PreparedStatement storeRelativesLinkAncestorsAndDescendantsExtendEndtimePs;
+	private static final String getParentsSql = "SELECT destination_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id1 "
+			+ "WHERE source_coneqv.id1 = ? AND directrelation = true AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
+
 	/**
-	 * A <code>PreparedStatement</code> that insert the relevant links between the ancestors and the descendants for the
-	 * expression that has it's parent(s) and child(ren) set.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve an expression's children at a specific time from the
+	 * dbms.
 	 */
-	private final PreparedStatement storeRelativesLinkAncestorsAndDescendantsInsertPs;
+	private static final String getChildrenSql = "SELECT source_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id1 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
+			+ "WHERE destination_coneqv.id1 = ? AND directrelation = true AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that retrieve an expression's id given the expression itself at a specific time
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the ancestors of several expressions at a specific time
 	 * from the dbms.
 	 */
-	private final PreparedStatement getExpressionIdPs;
+	private static final String getAncestorsBulkSql =
+			"SELECT source_coneqv.id1 AS queryid, destination_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id1 "
+			+ "WHERE source_coneqv.id1 = ANY(?) AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that retrieve an expression given the expression's id at a specific time from
-	 * the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the descendants of several expressions at a specific time
+	 * from the dbms.
 	 */
-	private final PreparedStatement getExpressionPs;
+	private static final String getDescendantsBulkSql =
+			"SELECT destination_coneqv.id1 AS queryid, source_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id1 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
+			+ "WHERE destination_coneqv.id1 = ANY(?) AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that retrieve an expression's ancestors at a specific time from the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the parents of several expressions at a specific time
+	 * from the dbms.
 	 */
-	private final PreparedStatement getAncestorsPs;
+	private static final String getParentsBulkSql =
+			"SELECT source_coneqv.id1 AS queryid, destination_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id1 "
+			+ "WHERE source_coneqv.id1 = ANY(?) AND directrelation = true AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that retrieve an expression's descendants at a specific time from the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the children of several expressions at a specific time
+	 * from the dbms.
 	 */
-	private final PreparedStatement getDescendantsPs;
+	private static final String getChildrenBulkSql =
+			"SELECT destination_coneqv.id1 AS queryid, source_coneqv.id2 AS id "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id1 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
+			+ "WHERE destination_coneqv.id1 = ANY(?) AND directrelation = true AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that retrieve an expression's parents at a specific time from the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve all equivalences at a specific time from the dbms for
+	 * a hierarchy snapshot.
 	 */
-	private final PreparedStatement getParentsPs;
+	private static final String getSnapshotEquivalentsSql =
+			"SELECT id1, id2 FROM coneqv WHERE starttime <= ?::timestamp AND ?::timestamp < endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that retrieve an expression's children at a specific time from the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the whole transitive closure at a specific time from
+	 * the dbms for a hierarchy snapshot.
 	 */
-	private final PreparedStatement getChildrenPs;
+	private static final String getSnapshotTransitiveclosureSql = "SELECT sourceid, destinationid, directrelation "
+			+ "FROM transitiveclosure WHERE starttime <= ?::timestamp AND ?::timestamp < endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that retrieve all expressions at a specific time from the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the first time after a specific time when an
+	 * equivalence or a relation in the transitive closure starts or ends, which is when a hierarchy snapshot for the
+	 * specific time no longer shows the current time.
 	 */
-	private final PreparedStatement getAllExpressionsPs;
+	private static final String getSnapshotNextChangeSql = "SELECT min(changetime) AS nextchange FROM ("
+			+ "SELECT starttime AS changetime FROM coneqv WHERE ?::timestamp < starttime UNION ALL "
+			+ "SELECT endtime FROM coneqv WHERE ?::timestamp < endtime AND endtime < 'infinity' UNION ALL "
+			+ "SELECT starttime FROM transitiveclosure WHERE ?::timestamp < starttime UNION ALL "
+			+ "SELECT endtime FROM transitiveclosure WHERE ?::timestamp < endtime AND endtime < 'infinity'"
+			+ ") AS changes;";
 
 	/**
-	 * A <code>PreparedStatement</code> which checks if an concept or expression subsumes but is not equivalent to
-	 * another concept or expression at a specific time.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the expressions which have been stored after the
+	 * point in time of a hierarchy snapshot and are active at a later point in time, since their own rows in the
+	 * <code>coneqv</code> view are not in the snapshot.
 	 */
-	private final PreparedStatement isSubsumingNotEquivalentPs;
+	private static final String getSnapshotNewExpressionsSql = "SELECT id FROM expressions "
+			+ "WHERE ?::timestamp < starttime AND starttime <= ?::timestamp AND ?::timestamp < endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> which checks if an concept or expression is equivalent to another concept or
-	 * expression at a specific time.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the equivalences in the <code>eqv</code> view which
+	 * start at a specific time, from the rows in the equivalents table which start at that time.
 	 */
-	private final PreparedStatement isEquivalentPs;
+	private static final String getSnapshotAddedEquivalentsSql = "SELECT started.id AS id1, other.id AS id2, "
+			+ "NULLIF(least(started.endtime, other.endtime), 'infinity') AS endtime "
+			+ "FROM equivalents AS started JOIN equivalents AS other ON started.equivalentid = other.equivalentid "
+			+ "WHERE started.starttime = ?::timestamp AND ?::timestamp < started.endtime AND started.id <> other.id "
+			+ "AND other.starttime <= ?::timestamp AND ?::timestamp < other.endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> which checks if an concept or expression id exists at the current time in the
-	 * dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the equivalences in the <code>eqv</code> view which
+	 * end at a specific time, from the rows in the equivalents table which end at that time.
 	 */
-	private final PreparedStatement isExistingIdPs;
+	private static final String getSnapshotRemovedEquivalentsSql = "SELECT ended.id AS id1, other.id AS id2 "
+			+ "FROM equivalents AS ended JOIN equivalents AS other ON ended.equivalentid = other.equivalentid "
+			+ "WHERE ended.endtime = ?::timestamp AND ended.starttime < ?::timestamp AND ended.id <> other.id "
+			+ "AND other.starttime < ?::timestamp AND ?::timestamp <= other.endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> which checks if an expression id exists in the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the relations in the transitive closure which start
+	 * at a specific time.
 	 */
-	private final PreparedStatement isExistingExpressionIdPs;
+	private static final String getSnapshotAddedRelationsSql = "SELECT sourceid, destinationid, directrelation, "
+			+ "NULLIF(endtime, 'infinity') AS endtime "
+			+ "FROM transitiveclosure WHERE starttime = ?::timestamp AND ?::timestamp < endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that check if an equivalence with a future start already has been set for the
-	 * expression in the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the relations in the transitive closure which end at
+	 * a specific time.
 	 */
-	private final PreparedStatement isFutureEquivalentSetPs;
+	private static final String getSnapshotRemovedRelationsSql = "SELECT sourceid, destinationid, directrelation "
+			+ "FROM transitiveclosure WHERE endtime = ?::timestamp AND starttime < ?::timestamp;";
 
 	/**
-	 * A <code>PreparedStatement</code> that check if parent(s) and/or child(ren) with a future start already has been
-	 * set for the expression in the dbms.
+	 * The SQL for a <code>PreparedStatement</code> that retrieve all expressions at a specific time from the dbms.
 	 */
-	private final PreparedStatement isFutureRelativeSetPs;
+	private static final String getAllExpressionsSql =
+			"SELECT id, expression FROM expressions WHERE starttime <= ? AND ? < endtime;";
 
 	/**
-	 * A <code>PreparedStatement</code> that create new relationships for the concepts in an equivalence group if the
-	 * current relationships for the concepts with the relationships in the group is going to be inactivated.
+	 * The SQL for a <code>PreparedStatement</code> that count the expressions at a specific time in the dbms and find
+	 * the lowest expression id among them.
 	 */
-	private final PreparedStatement inactivateRelativesCreateNewRelationshipsForEquivalencePs;
+	private static final String countExpressionsSql = "SELECT count(*) AS count, min(id) AS lowestid "
+			+ "FROM expressions WHERE starttime <= ? AND ? < endtime;";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that retrieve the expressions at a specific time from the dbms
+	 * that have never had any rows in the equivalents or transitive closure tables.
+	 */
+	private static final String getUnclassifiedExpressionsSql = "SELECT id, expression FROM expressions "
+			+ "WHERE starttime <= ? AND ? < endtime "
+			+ "AND NOT EXISTS (SELECT 1 FROM equivalents WHERE equivalents.id = expressions.id) "
+			+ "AND NOT EXISTS (SELECT 1 FROM transitiveclosure WHERE sourceid = expressions.id) "
+			+ "AND NOT EXISTS (SELECT 1 FROM transitiveclosure WHERE destinationid = expressions.id);";
+
 	/**
-	 * A <code>PreparedStatement</code> that create new direct relationships between the parent(s) and child(ren) of the
-	 * concept which is going to be retired if no other concept from an equivalence group is used instead.
+	 * The SQL for a <code>PreparedStatement</code> which checks if an concept or expression subsumes but is not
+	 * equivalent to another concept or expression at a specific time.
 	 */
-	private final PreparedStatement inactivateRelativesCreateNewDirectRelationshipsPs;
+	private static final String isSubsumingNotEquivalentSql = "SELECT Count(*) > 0 AS exist "
+			+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
+			+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
+			+ "WHERE source_coneqv.id1 = ? AND destination_coneqv.id1 = ? AND "
+			+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
+			+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
+			+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;";
+
 	/**
-	 * A <code>PreparedStatement</code> that set the end time to the relationships that is going to be retired.
+	 * The SQL for a <code>PreparedStatement</code> which checks if an concept or expression is equivalent to another
+	 * concept or expression at a specific time.
 	 */
-	private final PreparedStatement inactivateRelativesSetEndtimePs;
+	private static final String isEquivalentSql = "SELECT Count(*) > 0 AS exist FROM coneqv "
+			+ "WHERE id1 = ? AND id2 = ? AND starttime <= ?::timestamp AND ?::timestamp < endtime;";
+
 	/**
-	 * A <code>PreparedStatement</code> that delete relationships with the same starttime as the time the retirement is
-	 * done.
+	 * The SQL for a <code>PreparedStatement</code> which retrieves all periods in which several concept ids exist in
+	 * the dbms. A period without end has no end time.
 	 */
-	private final PreparedStatement inactivateRelativesDeleteWithCurrentStartTimePs;
+	private static final String getConceptPeriodsSql =
+			"SELECT id, starttime, NULLIF(endtime, 'infinity') AS endtime "
+			+ "FROM concepts WHERE id = ANY(?) AND endtime IS NOT NULL;";
+
 	/**
-	 * A <code>PreparedStatement</code> that set the end time to the second last expression equivalence in the group.
-	 * The last expression will be inactivated by another statement, so there is no longer any use to include this
-	 * expression in the group.
+	 * The SQL for a <code>PreparedStatement</code> which retrieves all rows of the concepts table in the dbms for a
+	 * concept filter, in the order of the concept ids. A row without end has no end time.
 	 */
-	private final PreparedStatement inactivateEquivalenceGroupSetEndtimePs;
+	private static final String getConceptFilterSql =
+			"SELECT id, starttime, NULLIF(endtime, 'infinity') AS endtime "
+			+ "FROM concepts WHERE endtime IS NOT NULL ORDER BY id;";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> which retrieves all periods in which several expression ids exist
+	 * in the dbms. A period without end has no end time.
+	 */
+	private static final String getExpressionPeriodsSql =
+			"SELECT id, starttime, NULLIF(endtime, 'infinity') AS endtime "
+			+ "FROM expressions WHERE id = ANY(?) AND endtime IS NOT NULL;";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that check if an equivalence with a future start already has been
+	 * set for the expression in the dbms.
+	 */
+	private static final String isFutureEquivalentSetSql =
+			"SELECT Count(*) >= 1 AS exist FROM equivalents WHERE id = ? AND starttime > ?;";
+
 	/**
-	 * A <code>PreparedStatement</code> that delete the second last expression equivalence in the group. The last
-	 * expression will be inactivated by another statement, so there is no longer any use to include this expression in
-	 * the group.
+	 * The SQL for a <code>PreparedStatement</code> that check if parent(s) and/or child(ren) with a future start
+	 * already has been set for the expression in the dbms.
 	 */
-	private final PreparedStatement inactivateEquivalenceGroupDeleteWithCurrentStartTimePs;
+	private static final String isFutureRelativeSetSql =
+			"SELECT Count(*) >= 1 AS exist FROM transitiveclosure WHERE (sourceid = ? OR destinationid = ?) AND starttime > ?;";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> which retrieves which of several expression ids that already have an
+	 * equivalence or parent(s) and/or child(ren) with a future start set in the dbms. The array of ids and the time are
+	 * given three times, once for each table column that is checked, and <code>equivalence</code> is true if an id
+	 * has a future equivalence.
+	 */
+	private static final String getFutureDefinedIdsSql =
+			"SELECT id, bool_or(equivalence) AS equivalence FROM ("
+			+ "SELECT id, true AS equivalence FROM equivalents WHERE id = ANY(?) AND starttime > ? "
+			+ "UNION ALL SELECT sourceid, false FROM transitiveclosure WHERE sourceid = ANY(?) AND starttime > ? "
+			+ "UNION ALL SELECT destinationid, false FROM transitiveclosure "
+			+ "WHERE destinationid = ANY(?) AND starttime > ?"
+			+ ") AS future GROUP BY id;";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that create new relationships for the concepts in an equivalence
+	 * group if the current relationships for the concepts with the relationships in the group is going to be
+	 * inactivated.
+	 */
+	private static final String inactivateRelativesCreateNewRelationshipsForEquivalenceSql =
+			"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
+			+ "SELECT CASE sourceid WHEN ids.oldid THEN ids.newid ELSE sourceid END AS sourceid, "
+			+ "CASE destinationid WHEN ids.oldid THEN ids.newid ELSE destinationid END AS destinationid, "
+			+ "? AS starttime, endtime, directrelation "
+			+ "FROM transitiveclosure JOIN "
+			+ "(SELECT id1 AS oldid, max(id2) AS newid FROM eqv "
+			+ "WHERE id1 = ? AND starttime <= ? AND ? < endtime GROUP BY id1) AS ids "
+			+ "ON transitiveclosure.sourceid = ids.oldid OR transitiveclosure.destinationid = ids.oldid "
+			+ "WHERE transitiveclosure.starttime <= ? AND ? < transitiveclosure.endtime;";
 	/**
-	 * A <code>PreparedStatement</code> that set the end time to the expression equivalence that is going to be retired.
+	 * The SQL for a <code>PreparedStatement</code> that create new direct relationships between the parent(s) and
+	 * child(ren) of the concept which is going to be retired if no other concept from an equivalence group is used
+	 * instead.
+	 */
+	private static final String inactivateRelativesCreateNewDirectRelationshipsSql =
+			"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
+			+ "SELECT children.sourceid, parents.destinationid, "
+			+ "? AS starttime, LEAST(children.endtime, parents.endtime) AS endtime, "
+			+ "true AS directrelation "
+			+ "FROM transitiveclosure AS children JOIN transitiveclosure AS parents ON children.destinationid = parents.sourceid "
+			+ "WHERE children.directrelation = TRUE AND parents.directrelation = TRUE AND children.destinationid = ? AND "
+			+ "children.starttime <= ? AND parents.starttime <= ? AND children.endtime > ? AND parents.endtime > ? AND "
+			+ "(SELECT Count(*) = 0 FROM eqv WHERE id1 = ? AND starttime <= ? AND endtime > ?);";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that set the end time to the relationships that is going to be
+	 * retired.
 	 */
-	private final PreparedStatement inactivateEquivalenceSetEndtimePs;
+	private static final String inactivateRelativesSetEndtimeSql = "UPDATE transitiveclosure SET endtime = ? "
+			+ "WHERE (sourceid = ? OR destinationid = ?) AND starttime < ? AND endtime > ?;";
 	/**
-	 * A <code>PreparedStatement</code> that delete the expression equivalence with the same starttime as the time the
+	 * The SQL for a <code>PreparedStatement</code> that delete relationships with the same starttime as the time the
 	 * retirement is done.
 	 */
-	private final PreparedStatement inactivateEquivalenceDeleteWithCurrentStartTimePs;
+	private static final String inactivateRelativesDeleteWithCurrentStartTimeSql = "DELETE FROM transitiveclosure "
+			+ "WHERE starttime = ? AND (sourceid = ? OR destinationid = ?);";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that set the end time to the second last expression equivalence in
+	 * the group. The last expression will be inactivated by another statement, so there is no longer any use to include
+	 * this expression in the group.
+	 */
+	private static final String inactivateEquivalenceGroupSetEndtimeSql = "UPDATE equivalents SET endtime = ? FROM eqv "
+			+ "WHERE equivalents.id = eqv.id2 AND equivalents.starttime < ? AND ? < equivalents.endtime AND "
+			+ "eqv.id1 = ? AND eqv.starttime <= ? AND ? < eqv.endtime AND "
+			+ "(SELECT Count(*) = 1 FROM eqv WHERE id1 = ? AND starttime <= ? AND ? < endtime);";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that delete the second last expression equivalence in the group. The
+	 * last expression will be inactivated by another statement, so there is no longer any use to include this
+	 * expression in the group.
+	 */
+	private static final String inactivateEquivalenceGroupDeleteWithCurrentStartTimeSql = "DELETE FROM equivalents "
+			+ "WHERE starttime = ? AND id IN "
+			+ "(SELECT id2 FROM eqv "
+			+ "WHERE eqv.id1 = ? AND eqv.starttime <= ? AND ? < eqv.endtime AND "
+			+ "(SELECT Count(*) = 1 FROM eqv WHERE id1 = ? AND starttime <= ? AND ? < endtime))";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that set the end time to the expression equivalence that is going to
+	 * be retired.
+	 */
+	private static final String inactivateEquivalenceSetEndtimeSql =
+			"UPDATE equivalents SET endtime = ? WHERE id = ? AND starttime < ? AND endtime > ?;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that delete the expression equivalence with the same starttime as
+	 * the time the retirement is done.
+	 */
+	private static final String inactivateEquivalenceDeleteWithCurrentStartTimeSql =
+			"DELETE FROM equivalents WHERE (starttime = ? AND id = ?);";
 
 	/**
-	 * Creates a data store API and set up a connection to the PostgreSQL database management system containing the
-	 * expression database.
+	 * Creates a data store API and set up a pool of connections to the PostgreSQL database management system containing
+	 * the expression database. The pool contains at most {@link #DEFAULT_POOL_SIZE} connections.
 	 * 
 	 * @param url
 	 *            The URL for the database connection.
@@ -265,248 +790,109 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 *             Thrown if there is a problem with the dbms or the connection to the dbms.
 	 */
 	public DataStore(final String url, final String userName, final String password) throws DataStoreException {
+		this(url, userName, password, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * Creates a data store API and set up a pool of connections to the PostgreSQL database management system containing
+	 * the expression database.
+	 * 
+	 * @param url
+	 *            The URL for the database connection.
+	 * @param userName
+	 *            The user name for the database connection.
+	 * @param password
+	 *            The user password for the database connection.
+	 * @param poolSize
+	 *            The maximum number of connections in the connection pool.
+	 * @throws DataStoreException
+	 *             Thrown if there is a problem with the dbms or the connection to the dbms.
+	 */
+	public DataStore(final String url, final String userName, final String password, final int poolSize)
+			throws DataStoreException {
+		this(url, userName, password, poolSize, DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL);
+	}
+
+	/**
+	 * Creates a data store API and set up a pool of connections to the PostgreSQL database management system containing
+	 * the expression database, and a cache of expression ids.
+	 * 
+	 * @param url
+	 *            The URL for the database connection.
+	 * @param userName
+	 *            The user name for the database connection.
+	 * @param password
+	 *            The user password for the database connection.
+	 * @param poolSize
+	 *            The maximum number of connections in the connection pool.
+	 * @param cacheSize
+	 *            The maximum number of expressions in the cache of expression ids. A size of 0 disables the cache.
+	 * @param cacheTimeToLive
+	 *            The time in milliseconds an expression id is cached.
+	 * @throws DataStoreException
+	 *             Thrown if there is a problem with the dbms or the connection to the dbms.
+	 */
+	public DataStore(final String url, final String userName, final String password, final int poolSize,
+			final int cacheSize, final long cacheTimeToLive) throws DataStoreException {
 		super();
 
-		// Set up the dbms connection.
-		try {
-			Class.forName("org.postgresql.Driver");
-		} catch (ClassNotFoundException e) {
-			throw new DataStoreException(e);
-		}
-		try {
-			con = DriverManager.getConnection(url, userName, password);
-		} catch (SQLException e) {
-			throw new DataStoreException(e);
-		}
+		// Set up the pool of dbms connections.
+		pool = new ConnectionPool(url, userName, password, poolSize);
+		// Set up the cache of expression ids.
+		expressionIdCache = new ExpressionIdCache(cacheSize, cacheTimeToLive);
+		// Set up the cache of the periods in which ids exist.
+		existenceCache = new ExistenceCache(cacheSize, cacheTimeToLive);
+		// Set up the cache of hierarchy snapshots, which is empty until the points in time are set.
+		hierarchySnapshots = new HierarchySnapshotCache(cacheTimeToLive);
+		hierarchySnapshotLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "Hierarchy snapshot loader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// Read the concepts into memory in the background, unless caching is disabled.
+		conceptFilterTimeToLive = cacheSize > 0 ? cacheTimeToLive : 0;
+		startLoadingConceptFilter();
+		// Report the indexes the queries rely on that are missing in the dbms.
+		reportMissingIndexes();
+	}
 
-		// Create the prepared statements.
+	/**
+	 * Log a warning for each index the data store relies on that is missing in the dbms. The data store works without
+	 * the indexes, but the temporal queries read the full history of the tables instead of the active rows. The
+	 * missing indexes are created with {@link DataStoreService#createSchema()}.
+	 */
+	private void reportMissingIndexes() {
 		try {
-			isExistingExpressionPs = con
-					.prepareStatement("SELECT Count(*) > 0 as exist FROM expressions WHERE expression = ?;");
-			setExpressionPs = con
-					.prepareStatement("INSERT INTO expressions (expression, starttime) VALUES (?, ?) RETURNING id;");
-
-			setEquivalentIdGroupPs = con.prepareStatement("INSERT INTO equivalents (id, starttime) SELECT ?, ? "
-					+ "WHERE (SELECT Count(*) = 0 FROM equivalents WHERE id = ? AND starttime <= ? AND ? < endtime)");
-			setEquivalentIdPs = con.prepareStatement("INSERT INTO equivalents (id, starttime, equivalentid) "
-					+ "SELECT ?, ?, equivalentid FROM equivalents WHERE id = ? AND starttime <= ? AND ? < endtime ");
-
-			storeRelativesCreateTableParentsPs = con
-					.prepareStatement("CREATE TEMPORARY TABLE parents_insert (id bigint NOT NULL) ON COMMIT DROP;");
-			storeRelativesCreateTableChildrenPs = con
-					.prepareStatement("CREATE TEMPORARY TABLE children_insert (id bigint NOT NULL) ON COMMIT DROP;");
-			storeRelativesInsertIntoTableParentsPs = con
-					.prepareStatement("INSERT INTO parents_insert (id) VALUES (?);");
-			storeRelativesInsertIntoTableChildrenPs = con
-					.prepareStatement("INSERT INTO children_insert (id) VALUES (?);");
-			storeRelativesAnalyzeTableParentsPs = con.prepareStatement("ANALYZE parents_insert;");
-			storeRelativesAnalyzeTableChildrenPs = con.prepareStatement("ANALYZE children_insert;");
-			storeRelativesParentsExtendEndtimePs = con
-					.prepareStatement("UPDATE transitiveclosure SET endtime = 'infinity'::timestamp " + "FROM ("
-							+ "SELECT DISTINCT ? AS sourceid, parents_insert.id AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, true AS directrelation FROM parents_insert "
-							+ ") AS insert_rows "
-							+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
-							+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;");
-			storeRelativesParentsInsertPs = con.prepareStatement(
-					"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
-							+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
-							+ "SELECT DISTINCT ? AS sourceid, parents_insert.id AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, true AS directrelation FROM parents_insert "
-							+ ") AS insert_rows " + "LEFT JOIN transitiveclosure ON "
-							+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
-							+ "insert_rows.starttime = transitiveclosure.starttime AND insert_rows.endtime = transitiveclosure.endtime AND "
-							+ "insert_rows.directrelation = transitiveclosure.directrelation "
-							+ "WHERE transitiveclosure.sourceid IS NULL;");
-			storeRelativesChildrenExtendEndtimePs = con
-					.prepareStatement("UPDATE transitiveclosure SET endtime = 'infinity'::timestamp " + "FROM ("
-							+ "SELECT DISTINCT children_insert.id AS sourceid, ? AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, true AS directrelation FROM children_insert "
-							+ ") AS insert_rows "
-							+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
-							+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;");
-			storeRelativesChildrenInsertPs = con.prepareStatement(
-					"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
-							+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
-							+ "SELECT DISTINCT children_insert.id AS sourceid, ? AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, true AS directrelation FROM children_insert "
-							+ ") AS insert_rows " + "LEFT JOIN transitiveclosure ON "
-							+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
-							+ "insert_rows.starttime = transitiveclosure.starttime AND insert_rows.endtime = transitiveclosure.endtime AND "
-							+ "insert_rows.directrelation = transitiveclosure.directrelation "
-							+ "WHERE transitiveclosure.sourceid IS NULL;");
-			storeRelativesAncestorsExtendEndtimePs = con
-					.prepareStatement("UPDATE transitiveclosure SET endtime = 'infinity'::timestamp FROM ("
-							+ "SELECT DISTINCT ? AS sourceid, ancestors.destinationid AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
-							+ "FROM transitiveclosure AS ancestors "
-							+ "WHERE ancestors.sourceid IN (SELECT id FROM parents_insert) AND ancestors.starttime <= ?::timestamp AND ?::timestamp < ancestors.endtime "
-							+ ") AS insert_rows "
-							+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
-							+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;");
-			storeRelativesAncestorsInsertPs = con.prepareStatement(
-					"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
-							+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
-							+ "SELECT DISTINCT ? AS sourceid, ancestors.destinationid AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
-							+ "FROM transitiveclosure AS ancestors "
-							+ "WHERE ancestors.sourceid IN (SELECT id FROM parents_insert) AND ancestors.starttime <= ?::timestamp AND ?::timestamp < ancestors.endtime "
-							+ ") AS insert_rows LEFT JOIN transitiveclosure ON "
-							+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
-							+ "insert_rows.directrelation = transitiveclosure.directrelation AND insert_rows.starttime >= transitiveclosure.starttime AND transitiveclosure.endtime = 'infinity' "
-							+ "WHERE transitiveclosure.sourceid IS NULL;");
-			storeRelativesDescendantsExtendEndtimePs = con
-					.prepareStatement("UPDATE transitiveclosure SET endtime = 'infinity'::timestamp FROM ("
-							+ "SELECT DISTINCT descendants.sourceid AS sourceid, ? AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
-							+ "FROM transitiveclosure AS descendants "
-							+ "WHERE descendants.destinationid IN (SELECT id FROM children_insert) AND descendants.starttime <= ?::timestamp AND ?::timestamp < descendants.endtime "
-							+ ") AS insert_rows "
-							+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
-							+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;");
-			storeRelativesDescendantsInsertPs = con.prepareStatement(
-					"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
-							+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
-							+ "SELECT DISTINCT descendants.sourceid AS sourceid, ? AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
-							+ "FROM transitiveclosure AS descendants "
-							+ "WHERE descendants.destinationid IN (SELECT id FROM children_insert) AND descendants.starttime <= ?::timestamp AND ?::timestamp < descendants.endtime "
-							+ ") AS insert_rows LEFT JOIN transitiveclosure ON "
-							+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
-							+ "insert_rows.directrelation = transitiveclosure.directrelation AND insert_rows.starttime >= transitiveclosure.starttime AND transitiveclosure.endtime = 'infinity' "
-							+ "WHERE transitiveclosure.sourceid IS NULL;");
-			storeRelativesLinkParentsAndChildrenExtendEndtimePs = con
-					.prepareStatement("UPDATE transitiveclosure SET endtime = 'infinity'::timestamp FROM ("
-							+ "SELECT DISTINCT children_insert.id AS sourceid, parents_insert.id AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
-							+ "FROM children_insert, parents_insert " + ") AS insert_rows "
-							+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
-							+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;");
-			storeRelativesLinkParentsAndChildrenInsertPs = con.prepareStatement(
-					"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
-							+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
-							+ "SELECT DISTINCT children_insert.id AS sourceid, parents_insert.id AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
-							+ "FROM children_insert, parents_insert "
-							+ ") AS insert_rows LEFT JOIN transitiveclosure ON "
-							+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
-							+ "insert_rows.directrelation = transitiveclosure.directrelation AND insert_rows.starttime >= transitiveclosure.starttime AND transitiveclosure.endtime = 'infinity' "
-							+ "WHERE transitiveclosure.sourceid IS NULL;");
-			storeRelativesLinkAncestorsAndDescendantsExtendEndtimePs = con
-					.prepareStatement("UPDATE transitiveclosure SET endtime = 'infinity'::timestamp FROM ("
-							+ "SELECT DISTINCT descendants.sourceid AS sourceid, ancestors.destinationid AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
-							+ "FROM transitiveclosure AS descendants, transitiveclosure AS ancestors "
-							+ "WHERE descendants.destinationid IN (SELECT id FROM children_insert) AND ancestors.sourceid IN (SELECT ID FROM parents_insert) AND "
-							+ "descendants.starttime <= ?::timestamp AND ?::timestamp < descendants.endtime AND ancestors.starttime <= ?::timestamp AND ?::timestamp < ancestors.endtime "
-							+ ") AS insert_rows "
-							+ "WHERE transitiveclosure.sourceid = insert_rows.sourceid AND transitiveclosure.destinationid = insert_rows.destinationid AND "
-							+ "transitiveclosure.endtime = insert_rows.starttime AND transitiveclosure.directrelation = insert_rows.directrelation;");
-			storeRelativesLinkAncestorsAndDescendantsInsertPs = con.prepareStatement(
-					"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
-							+ "SELECT insert_rows.sourceid, insert_rows.destinationid, insert_rows.starttime, insert_rows.endtime, insert_rows.directrelation FROM ("
-							+ "SELECT DISTINCT descendants.sourceid AS sourceid, ancestors.destinationid AS destinationid, ?::timestamp AS starttime, 'infinity'::timestamp AS endtime, false AS directrelation "
-							+ "FROM transitiveclosure AS descendants, transitiveclosure AS ancestors "
-							+ "WHERE descendants.destinationid IN (SELECT id FROM children_insert) AND ancestors.sourceid IN (SELECT ID FROM parents_insert) AND "
-							+ "descendants.starttime <= ?::timestamp AND ?::timestamp < descendants.endtime AND ancestors.starttime <= ?::timestamp AND ?::timestamp < ancestors.endtime "
-							+ ") AS insert_rows LEFT JOIN transitiveclosure ON "
-							+ "insert_rows.sourceid = transitiveclosure.sourceid AND insert_rows.destinationid = transitiveclosure.destinationid AND "
-							+ "insert_rows.directrelation = transitiveclosure.directrelation AND insert_rows.starttime >= transitiveclosure.starttime AND transitiveclosure.endtime = 'infinity' "
-							+ "WHERE transitiveclosure.sourceid IS NULL;");
-
-			getExpressionIdPs = con.prepareStatement("SELECT id FROM expressions WHERE expression = ? "
-					+ "AND starttime <= ? AND (? < endtime OR endtime IS NULL);");
-
-			getExpressionPs = con.prepareStatement("SELECT expression FROM expressions WHERE id = ? "
-					+ "AND starttime <= ? AND (? < endtime OR endtime IS NULL);");
-
-			getAncestorsPs = con.prepareStatement("SELECT destination_coneqv.id2 AS id "
-					+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
-					+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id1 "
-					+ "WHERE source_coneqv.id1 = ? AND "
-					+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
-					+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
-					+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;");
-
-			getDescendantsPs = con.prepareStatement("SELECT source_coneqv.id2 AS id "
-					+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id1 = transitiveclosure.sourceid "
-					+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
-					+ "WHERE destination_coneqv.id1 = ? AND "
-					+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
-					+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
-					+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;");
-
-			getParentsPs = con.prepareStatement("SELECT destination_coneqv.id2 AS id "
-					+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
-					+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id1 "
-					+ "WHERE source_coneqv.id1 = ? AND directrelation = true AND "
-					+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
-					+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
-					+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;");
-
-			getChildrenPs = con.prepareStatement("SELECT source_coneqv.id2 AS id "
-					+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id1 = transitiveclosure.sourceid "
-					+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
-					+ "WHERE destination_coneqv.id1 = ? AND directrelation = true AND "
-					+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
-					+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
-					+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;");
-
-			getAllExpressionsPs = con
-					.prepareStatement("SELECT id, expression FROM expressions WHERE starttime <= ? AND ? < endtime;");
-
-			isSubsumingNotEquivalentPs = con.prepareStatement("SELECT Count(*) > 0 AS exist "
-					+ "FROM coneqv AS source_coneqv JOIN transitiveclosure ON source_coneqv.id2 = transitiveclosure.sourceid "
-					+ "JOIN coneqv AS destination_coneqv ON transitiveclosure.destinationid = destination_coneqv.id2 "
-					+ "WHERE source_coneqv.id1 = ? AND destination_coneqv.id1 = ? AND "
-					+ "source_coneqv.starttime <= ?::timestamp AND ?::timestamp < source_coneqv.endtime AND "
-					+ "transitiveclosure.starttime <= ?::timestamp AND ?::timestamp < transitiveclosure.endtime AND "
-					+ "destination_coneqv.starttime <= ?::timestamp AND ?::timestamp < destination_coneqv.endtime;");
-
-			isEquivalentPs = con.prepareStatement("SELECT Count(*) > 0 AS exist FROM coneqv "
-					+ "WHERE id1 = ? AND id2 = ? AND starttime <= ?::timestamp AND ?::timestamp < endtime;");
-
-			isExistingIdPs = con.prepareStatement("SELECT Count(*) >= 1 AS exist FROM "
-					+ "(SELECT id, starttime, endtime FROM concepts UNION SELECT id, starttime, endtime FROM expressions) AS inn "
-					+ "WHERE id = ? AND starttime <= ? AND ? < endtime;");
-
-			isExistingExpressionIdPs = con.prepareStatement(
-					"SELECT Count(*) >= 1 AS exist FROM expressions WHERE id = ? AND starttime <= ? AND ? < endtime;");
-
-			isFutureEquivalentSetPs = con
-					.prepareStatement("SELECT Count(*) >= 1 AS exist FROM equivalents WHERE id = ? AND starttime > ?;");
-
-			isFutureRelativeSetPs = con.prepareStatement(
-					"SELECT Count(*) >= 1 AS exist FROM transitiveclosure WHERE (sourceid = ? OR destinationid = ?) AND starttime > ?;");
-
-			inactivateRelativesCreateNewRelationshipsForEquivalencePs = con.prepareStatement(
-					"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
-							+ "SELECT CASE sourceid WHEN ids.oldid THEN ids.newid ELSE sourceid END AS sourceid, "
-							+ "CASE destinationid WHEN ids.oldid THEN ids.newid ELSE destinationid END AS destinationid, "
-							+ "? AS starttime, endtime, directrelation " + "FROM transitiveclosure JOIN "
-							+ "(SELECT id1 AS oldid, max(id2) AS newid FROM eqv "
-							+ "WHERE id1 = ? AND starttime <= ? AND ? < endtime GROUP BY id1) AS ids "
-							+ "ON transitiveclosure.sourceid = ids.oldid OR transitiveclosure.destinationid = ids.oldid "
-							+ "WHERE transitiveclosure.starttime <= ? AND ? < transitiveclosure.endtime;");
-			inactivateRelativesCreateNewDirectRelationshipsPs = con.prepareStatement(
-					"INSERT INTO transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) "
-							+ "SELECT children.sourceid, parents.destinationid, "
-							+ "? AS starttime, LEAST(children.endtime, parents.endtime) AS endtime, "
-							+ "true AS directrelation "
-							+ "FROM transitiveclosure AS children JOIN transitiveclosure AS parents ON children.destinationid = parents.sourceid "
-							+ "WHERE children.directrelation = TRUE AND parents.directrelation = TRUE AND children.destinationid = ? AND "
-							+ "children.starttime <= ? AND parents.starttime <= ? AND children.endtime > ? AND parents.endtime > ? AND "
-							+ "(SELECT Count(*) = 0 FROM eqv WHERE id1 = ? AND starttime <= ? AND endtime > ?);");
-			inactivateRelativesSetEndtimePs = con.prepareStatement("UPDATE transitiveclosure SET endtime = ? "
-					+ "WHERE (sourceid = ? OR destinationid = ?) AND starttime < ? AND endtime > ?;");
-			inactivateRelativesDeleteWithCurrentStartTimePs = con.prepareStatement(
-					"DELETE FROM transitiveclosure " + "WHERE starttime = ? AND (sourceid = ? OR destinationid = ?);");
-			inactivateEquivalenceGroupSetEndtimePs = con.prepareStatement("UPDATE equivalents SET endtime = ? FROM eqv "
-					+ "WHERE equivalents.id = eqv.id2 AND equivalents.starttime < ? AND ? < equivalents.endtime AND "
-					+ "eqv.id1 = ? AND eqv.starttime <= ? AND ? < eqv.endtime AND "
-					+ "(SELECT Count(*) = 1 FROM eqv WHERE id1 = ? AND starttime <= ? AND ? < endtime);");
-			inactivateEquivalenceGroupDeleteWithCurrentStartTimePs = con.prepareStatement(
-					"DELETE FROM equivalents " + "WHERE starttime = ? AND id IN " + "(SELECT id2 FROM eqv "
-							+ "WHERE eqv.id1 = ? AND eqv.starttime <= ? AND ? < eqv.endtime AND "
-							+ "(SELECT Count(*) = 1 FROM eqv WHERE id1 = ? AND starttime <= ? AND ? < endtime))");
-			inactivateEquivalenceSetEndtimePs = con.prepareStatement(
-					"UPDATE equivalents SET endtime = ? WHERE id = ? AND starttime < ? AND endtime > ?;");
-			inactivateEquivalenceDeleteWithCurrentStartTimePs = con
-					.prepareStatement("DELETE FROM equivalents WHERE (starttime = ? AND id = ?);");
-
+			final PooledConnection c = pool.take();
+			try {
+				for (String index : SchemaBootstrap.getMissing(c, SchemaBootstrap.INDEXES)) {
+					log.warn("The index " + index + " is missing in the dbms.");
+				}
+			} finally {
+				pool.release(c);
+			}
+		} catch (DataStoreException e) {
+			log.warn("The indexes in the dbms could not be checked.", e);
 		} catch (SQLException e) {
-			throw new DataStoreException(e);
+			log.warn("The indexes in the dbms could not be checked.", e);
 		}
+	}
 
+	/**
+	 * Set the points in time to keep snapshots of the hierarchy in memory for. The ancestors, descendants, parents and
+	 * children at these points in time are found in the snapshots instead of in the dbms. A snapshot is created in the
+	 * background the first time it is needed, and the dbms is queried until it is ready.
+	 * 
+	 * @param times
+	 *            The points in time.
+	 * @param currentTime
+	 *            If a snapshot is kept for the current time, which is used for queries without a time, or not.
+	 */
+	public void setHierarchySnapshotTimes(final Collection<Date> times, final boolean currentTime) {
+		hierarchySnapshots.setTimes(times, currentTime);
 	}
 
 	/*
@@ -516,8 +902,9 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 */
 	@Override
 	public void finalize() throws Throwable {
-		// Close the database connection.
-		con.close();
+		// Close the database connections.
+		hierarchySnapshotLoader.shutdownNow();
+		pool.close();
 		super.finalize();
 	}
 
@@ -532,25 +919,37 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			throws DataStoreException, ExpressionAlreadyExistsException {
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
 		final ExpressionId result;
+		final PooledConnection c = pool.take();
 		try {
-			// Check if the expression already exists in the dbms.
-			isExistingExpressionPs.setString(1, expression);
-			final ResultSet isExistingExpressionRs = isExistingExpressionPs.executeQuery();
-			isExistingExpressionRs.next();
-			if (isExistingExpressionRs.getBoolean("exist")) {
-				throw new ExpressionAlreadyExistsException(
-						"The expression " + expression + " already exists in the data store.");
-			}
-			// Store the expression in the dbms.
+			// Store the expression in the dbms unless it already exists.
+			final PreparedStatement setExpressionPs = c.prepareStatement(setExpressionSql);
 			setExpressionPs.setString(1, expression);
 			setExpressionPs.setTimestamp(2, sqlTimestamp);
 			final ResultSet setExpressionRs = setExpressionPs.executeQuery();
+			if (!setExpressionRs.next()) {
+				// Check if it is the expression itself or another expression with the same digest that exists.
+				final PreparedStatement isExistingExpressionPs = c.prepareStatement(isExistingExpressionSql);
+				isExistingExpressionPs.setString(1, expression);
+				isExistingExpressionPs.setString(2, expression);
+				final ResultSet isExistingExpressionRs = isExistingExpressionPs.executeQuery();
+				isExistingExpressionRs.next();
+				if (isExistingExpressionRs.getBoolean("exist")) {
+					throw new ExpressionAlreadyExistsException(
+							"The expression " + expression + " already exists in the data store.");
+				}
+				throw new DataStoreException("Another expression with the same digest as the expression " + expression
+						+ " already exists in the data store.");
+			}
 			// Return the assigned expression id.
-			setExpressionRs.next();
 			result = new ExpressionId(setExpressionRs.getLong("id"));
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
 		}
+		// The new id may have been checked before it was assigned. The hierarchy snapshots only answer for ids with
+		// rows in them, so they are not changed by an expression without equivalences and relatives.
+		existenceCache.remove(result);
 		return result;
 	}
 
@@ -567,14 +966,15 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	public void storeExpressionEquivalence(ExpressionId id, ExpressionId equivalentExpressionId, Date time)
 			throws DataStoreException, NonExistingIdException, ExpressionAlreadyDefined {
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final PooledConnection c = pool.take();
 		try {
 			// Check if the expression id exists in the dbms.
-			if (!isExistingExpressionId(id, sqlTimestamp)) {
+			if (!isExistingExpressionId(c, id, sqlTimestamp)) {
 				throw new NonExistingIdException("The expression id " + id.getId()
 						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
 			}
 			// Check if the equivalent expression id exists in the dbms.
-			if (!isExistingId(equivalentExpressionId, sqlTimestamp)) {
+			if (!isExistingId(c, equivalentExpressionId, sqlTimestamp)) {
 				throw new NonExistingIdException("The id " + equivalentExpressionId.getId()
 						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
 			}
@@ -585,23 +985,24 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			}
 
 			// Check if an equivalence with a future start time already has been set.
-			if (isFutureEquivalentSet(id, sqlTimestamp)) {
+			if (isFutureEquivalentSet(c, id, sqlTimestamp)) {
 				throw new ExpressionAlreadyDefined("The expression with id " + id.getId()
 						+ " has already an equivalent id set with a start time in the future.");
 			}
 			// Check if parent(s) and/or child(ren) with a future start time already has been set.
-			if (isFutureRelativeSet(id, sqlTimestamp)) {
+			if (isFutureRelativeSet(c, id, sqlTimestamp)) {
 				throw new ExpressionAlreadyDefined("The expression with id " + id.getId()
 						+ " has already parent(s) and/or child(ren) set with a start time in the future.");
 			}
 
 			// Switch of auto commit so all updates are done in the same transaction.
-			con.setAutoCommit(false);
+			c.getConnection().setAutoCommit(false);
 
 			// Inactivate the definition for the expression to set the equivalence for.
-			inactivateExpressionDefinition(id, sqlTimestamp);
+			inactivateExpressionDefinition(c, id, sqlTimestamp);
 			// Store the id in an equivalent expression group if there is no suitable equivalent expression group
 			// already existing in the dbms.
+			final PreparedStatement setEquivalentIdGroupPs = c.prepareStatement(setEquivalentIdGroupSql);
 			setEquivalentIdGroupPs.setLong(1, equivalentExpressionId.getId());
 			setEquivalentIdGroupPs.setTimestamp(2, sqlTimestamp);
 			setEquivalentIdGroupPs.setLong(3, equivalentExpressionId.getId());
@@ -610,6 +1011,7 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			setEquivalentIdGroupPs.executeUpdate();
 
 			// Store the id in the equivalent expression group in the dbms.
+			final PreparedStatement setEquivalentIdPs = c.prepareStatement(setEquivalentIdSql);
 			setEquivalentIdPs.setLong(1, id.getId());
 			setEquivalentIdPs.setTimestamp(2, sqlTimestamp);
 			setEquivalentIdPs.setLong(3, equivalentExpressionId.getId());
@@ -618,12 +1020,15 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			setEquivalentIdPs.executeUpdate();
 
 			// Commit all updates
-			con.commit();
+			c.getConnection().commit();
+			changedHierarchySnapshots(sqlTimestamp);
 			// Switch on auto commit.
-			con.setAutoCommit(true);
+			c.getConnection().setAutoCommit(true);
 
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
 		}
 	}
 
@@ -640,160 +1045,81 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 					throws DataStoreException, NonExistingIdException, ExpressionAlreadyDefined {
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
 
-		// Check if the expression's id exists in the dbms.
-		if (!isExistingExpressionId(id, sqlTimestamp)) {
-			throw new NonExistingIdException("The specified id " + id.getId()
-					+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
-		}
-
-		// Check if an equivalence with a future start time already has been set.
-		if (isFutureEquivalentSet(id, sqlTimestamp)) {
-			throw new ExpressionAlreadyDefined("The expression with id " + id.getId()
-					+ " has already an equivalent id set with a start time in the future.");
-		}
-		// Check if parent(s) and/or child(ren) with a future start time already has been set.
-		if (isFutureRelativeSet(id, sqlTimestamp)) {
-			throw new ExpressionAlreadyDefined("The expression with id " + id.getId()
-					+ " has already parent(s) and/or child(ren) set with a start time in the future.");
-		}
-
-		if (parents != null) {
-			// Check if the parents exists in the dbms.
-			for (ExpressionId parentId : parents) {
-				if (!isExistingId(parentId, sqlTimestamp)) {
-					throw new NonExistingIdException("The specified parent id " + parentId.getId()
-							+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
-				}
-			}
-			// Check if any of the parents have an equivalence with a future start time set.
-			for (ExpressionId parentId : parents) {
-				if (isFutureEquivalentSet(parentId, sqlTimestamp)) {
-					throw new ExpressionAlreadyDefined("The parent expression with id " + parentId.getId()
-							+ " has already an equivalent id set with a start time in the future.");
-				}
-				if (isFutureRelativeSet(parentId, sqlTimestamp)) {
-					throw new ExpressionAlreadyDefined("The parent expression with id " + parentId.getId()
-							+ " has already parent(s) and/or child(ren) set with a start time in the future.");
-				}
+		final PooledConnection c = pool.take();
+		try {
+			// Check if the expression's id exists in the dbms.
+			if (!isExistingExpressionId(c, id, sqlTimestamp)) {
+				throw new NonExistingIdException("The specified id " + id.getId()
+						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
 			}
-		}
 
-		if (children != null) {
-			// Check if the children exists in the dbms.
-			for (ExpressionId childId : children) {
-				if (!isExistingId(childId, sqlTimestamp)) {
-					throw new NonExistingIdException("The specified child id " + childId.getId()
-							+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
-				}
+			// Check which of the parents and children that exist in the dbms, all with one query.
+			final HashSet<ExpressionId> relatives = new HashSet<ExpressionId>();
+			if (parents != null) {
+				relatives.addAll(parents);
 			}
-			// Check if any of the children have an equivalence with a future start time set.
-			for (ExpressionId childId : children) {
-				if (isFutureEquivalentSet(childId, sqlTimestamp)) {
-					throw new ExpressionAlreadyDefined("The child expression with id " + childId.getId()
-							+ " has already an equivalent id set with a start time in the future.");
-				}
-				if (isFutureRelativeSet(childId, sqlTimestamp)) {
-					throw new ExpressionAlreadyDefined("The child expression with id " + childId.getId()
-							+ " has already parent(s) and/or child(ren) set with a start time in the future.");
-				}
+			if (children != null) {
+				relatives.addAll(children);
 			}
-		}
-
-		try {
-			// Switch of auto commit so all updates are done in the same transaction.
-			con.setAutoCommit(false);
+			final Set<ExpressionId> existingRelatives = getExistingIds(c, relatives, sqlTimestamp);
+			// Check which of the expression, the parents and the children that already have an equivalence or
+			// parent(s) and/or child(ren) with a future start time set, all with one query.
+			relatives.add(id);
+			final Map<ExpressionId, Boolean> futureDefinedIds = getFutureDefinedIds(c, relatives, sqlTimestamp);
 
-			// Inactivate the definition for the expression to set the equivalence for.
-			inactivateExpressionDefinition(id, sqlTimestamp);
-
-			// Store the parent(s) in a temporary table.
-			storeRelativesCreateTableParentsPs.executeUpdate();
+			checkNotFutureDefined(id, "expression", futureDefinedIds);
 			if (parents != null) {
 				for (ExpressionId parentId : parents) {
-					storeRelativesInsertIntoTableParentsPs.setLong(1, parentId.getId());
-					storeRelativesInsertIntoTableParentsPs.executeUpdate();
+					if (!existingRelatives.contains(parentId)) {
+						throw new NonExistingIdException("The specified parent id " + parentId.getId()
+								+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+					}
+				}
+				for (ExpressionId parentId : parents) {
+					checkNotFutureDefined(parentId, "parent expression", futureDefinedIds);
 				}
 			}
-			storeRelativesAnalyzeTableParentsPs.executeUpdate();
-
-			// Store the child(ren) in a temporary table.
-			storeRelativesCreateTableChildrenPs.executeUpdate();
 			if (children != null) {
 				for (ExpressionId childId : children) {
-					storeRelativesInsertIntoTableChildrenPs.setLong(1, childId.getId());
-					storeRelativesInsertIntoTableChildrenPs.executeUpdate();
+					if (!existingRelatives.contains(childId)) {
+						throw new NonExistingIdException("The specified child id " + childId.getId()
+								+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+					}
+				}
+				for (ExpressionId childId : children) {
+					checkNotFutureDefined(childId, "child expression", futureDefinedIds);
 				}
 			}
-			storeRelativesAnalyzeTableChildrenPs.executeUpdate();
-
-			// Store the parents in the transitive closure table.
-			storeRelativesParentsExtendEndtimePs.setLong(1, id.getId());
-			storeRelativesParentsExtendEndtimePs.setTimestamp(2, sqlTimestamp);
-			storeRelativesParentsExtendEndtimePs.executeUpdate();
-			storeRelativesParentsInsertPs.setLong(1, id.getId());
-			storeRelativesParentsInsertPs.setTimestamp(2, sqlTimestamp);
-			storeRelativesParentsInsertPs.executeUpdate();
-
-			// Store the children in the transitive closure table.
-			storeRelativesChildrenExtendEndtimePs.setLong(1, id.getId());
-			storeRelativesChildrenExtendEndtimePs.setTimestamp(2, sqlTimestamp);
-			storeRelativesChildrenExtendEndtimePs.executeUpdate();
-			storeRelativesChildrenInsertPs.setLong(1, id.getId());
-			storeRelativesChildrenInsertPs.setTimestamp(2, sqlTimestamp);
-			storeRelativesChildrenInsertPs.executeUpdate();
-
-			// Store the ancestors in the transitive closure table.
-			storeRelativesAncestorsExtendEndtimePs.setLong(1, id.getId());
-			storeRelativesAncestorsExtendEndtimePs.setTimestamp(2, sqlTimestamp);
-			storeRelativesAncestorsExtendEndtimePs.setTimestamp(3, sqlTimestamp);
-			storeRelativesAncestorsExtendEndtimePs.setTimestamp(4, sqlTimestamp);
-			storeRelativesAncestorsExtendEndtimePs.executeUpdate();
-			storeRelativesAncestorsInsertPs.setLong(1, id.getId());
-			storeRelativesAncestorsInsertPs.setTimestamp(2, sqlTimestamp);
-			storeRelativesAncestorsInsertPs.setTimestamp(3, sqlTimestamp);
-			storeRelativesAncestorsInsertPs.setTimestamp(4, sqlTimestamp);
-			storeRelativesAncestorsInsertPs.executeUpdate();
-
-			// Store the descendants in the transitive closure table.
-			storeRelativesDescendantsExtendEndtimePs.setLong(1, id.getId());
-			storeRelativesDescendantsExtendEndtimePs.setTimestamp(2, sqlTimestamp);
-			storeRelativesDescendantsExtendEndtimePs.setTimestamp(3, sqlTimestamp);
-			storeRelativesDescendantsExtendEndtimePs.setTimestamp(4, sqlTimestamp);
-			storeRelativesDescendantsExtendEndtimePs.executeUpdate();
-			storeRelativesDescendantsInsertPs.setLong(1, id.getId());
-			storeRelativesDescendantsInsertPs.setTimestamp(2, sqlTimestamp);
-			storeRelativesDescendantsInsertPs.setTimestamp(3, sqlTimestamp);
-			storeRelativesDescendantsInsertPs.setTimestamp(4, sqlTimestamp);
-			storeRelativesDescendantsInsertPs.executeUpdate();
-
-			// Store the link between the parents and children in the transitive closure table.
-			storeRelativesLinkParentsAndChildrenExtendEndtimePs.setTimestamp(1, sqlTimestamp);
-			storeRelativesLinkParentsAndChildrenExtendEndtimePs.executeUpdate();
-
-			storeRelativesLinkParentsAndChildrenInsertPs.setTimestamp(1, sqlTimestamp);
-			storeRelativesLinkParentsAndChildrenInsertPs.executeUpdate();
-
-			// Store the link between the ancestors and descendants in the transitive closure table.
-			storeRelativesLinkAncestorsAndDescendantsExtendEndtimePs.setTimestamp(1, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsExtendEndtimePs.setTimestamp(2, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsExtendEndtimePs.setTimestamp(3, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsExtendEndtimePs.setTimestamp(4, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsExtendEndtimePs.setTimestamp(5, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsExtendEndtimePs.executeUpdate();
-
-			storeRelativesLinkAncestorsAndDescendantsInsertPs.setTimestamp(1, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsInsertPs.setTimestamp(2, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsInsertPs.setTimestamp(3, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsInsertPs.setTimestamp(4, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsInsertPs.setTimestamp(5, sqlTimestamp);
-			storeRelativesLinkAncestorsAndDescendantsInsertPs.executeUpdate();
 
-			// Commit all updates
-			con.commit();
-			// Switch on auto commit.
-			con.setAutoCommit(true);
-		} catch (SQLException e) {
-			throw new DataStoreException(e);
+			try {
+				// Switch of auto commit so all updates are done in the same transaction.
+				c.getConnection().setAutoCommit(false);
+
+				// Inactivate the definition for the expression to set the equivalence for.
+				inactivateExpressionDefinition(c, id, sqlTimestamp);
+
+				// Store the parent(s) and child(ren) in the transitive closure table with one call to the dbms.
+				final PreparedStatement storeRelativesPs = c.prepareStatement(storeRelativesSql);
+				final Array parentArray = createIdArray(c, parents);
+				final Array childArray = createIdArray(c, children);
+				storeRelativesPs.setLong(1, id.getId());
+				storeRelativesPs.setTimestamp(2, sqlTimestamp);
+				storeRelativesPs.setArray(3, parentArray);
+				storeRelativesPs.setArray(4, childArray);
+				storeRelativesPs.executeQuery();
+				parentArray.free();
+				childArray.free();
+
+				// Commit all updates
+				c.getConnection().commit();
+				changedHierarchySnapshots(sqlTimestamp);
+				// Switch on auto commit.
+				c.getConnection().setAutoCommit(true);
+			} catch (SQLException e) {
+				throw new DataStoreException(e);
+			}
+		} finally {
+			pool.release(c);
 		}
 	}
 
@@ -808,35 +1134,41 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	public void inactivateExpressionDefinition(ExpressionId id, Date time)
 			throws DataStoreException, NonExistingIdException, ExpressionAlreadyDefined {
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final PooledConnection c = pool.take();
 		try {
 			// Check if the expression id exists in the dbms.
-			if (!isExistingExpressionId(id, sqlTimestamp)) {
+			if (!isExistingExpressionId(c, id, sqlTimestamp)) {
 				throw new NonExistingIdException("The expression id " + id.getId()
 						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
 			}
 
 			// Check if an equivalence with a future start time already has been set.
-			if (isFutureEquivalentSet(id, sqlTimestamp)) {
+			if (isFutureEquivalentSet(c, id, sqlTimestamp)) {
 				throw new ExpressionAlreadyDefined("The expression with id " + id.getId()
 						+ " has already an equivalent id set with a start time in the future.");
 			}
 			// Check if parent(s) and/or child(ren) with a future start time already has been set.
-			if (isFutureRelativeSet(id, sqlTimestamp)) {
+			if (isFutureRelativeSet(c, id, sqlTimestamp)) {
 				throw new ExpressionAlreadyDefined("The expression with id " + id.getId()
 						+ " has already parent(s) and/or child(ren) set with a start time in the future.");
 			}
 
 			// Switch of auto commit so all updates are done in the same transaction.
-			con.setAutoCommit(false);
+			c.getConnection().setAutoCommit(false);
 			// Inactivate the definition for the expression.
-			inactivateExpressionDefinition(id, sqlTimestamp);
+			inactivateExpressionDefinition(c, id, sqlTimestamp);
 			// Commit all updates
-			con.commit();
+			c.getConnection().commit();
+			// The existence of the expression is looked up again the next time it is used. Its id does not change.
+			existenceCache.remove(id);
+			changedHierarchySnapshots(sqlTimestamp);
 			// Switch on auto commit.
-			con.setAutoCommit(true);
+			c.getConnection().setAutoCommit(true);
 
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
 		}
 	}
 
@@ -848,13 +1180,24 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 */
 	@Override
 	public ExpressionId getExpressionId(String expression, Date time) throws DataStoreException {
+		// Only the ids at the current time are cached.
+		if (time == null) {
+			final ExpressionId cachedId = expressionIdCache.get(expression);
+			if (cachedId != null) {
+				return cachedId;
+			}
+		}
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final long generation = expressionIdCache.getGeneration();
 		final ExpressionId result;
+		final PooledConnection c = pool.take();
 		try {
 			// Look up expression id.
+			final PreparedStatement getExpressionIdPs = c.prepareStatement(getExpressionIdSql);
 			getExpressionIdPs.setString(1, expression);
-			getExpressionIdPs.setTimestamp(2, sqlTimestamp);
+			getExpressionIdPs.setString(2, expression);
 			getExpressionIdPs.setTimestamp(3, sqlTimestamp);
+			getExpressionIdPs.setTimestamp(4, sqlTimestamp);
 			final ResultSet getExpressionIdRs = getExpressionIdPs.executeQuery();
 			// Store the result in the variable.
 			if (getExpressionIdRs.next()) {
@@ -864,6 +1207,69 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			}
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+		if (time == null && result != null) {
+			expressionIdCache.put(expression, result, generation);
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getExpressionIds(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<String, ExpressionId> getExpressionIds(Collection<String> expressions, Date time)
+			throws DataStoreException {
+		final HashMap<String, ExpressionId> result = new HashMap<String, ExpressionId>();
+		// Only the ids at the current time are cached.
+		final Collection<String> uncachedExpressions;
+		if (time == null) {
+			uncachedExpressions = new HashSet<String>();
+			for (String expression : expressions) {
+				final ExpressionId cachedId = expressionIdCache.get(expression);
+				if (cachedId != null) {
+					result.put(expression, cachedId);
+				} else {
+					uncachedExpressions.add(expression);
+				}
+			}
+		} else {
+			uncachedExpressions = expressions;
+		}
+		if (uncachedExpressions.isEmpty()) {
+			return result;
+		}
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final long generation = expressionIdCache.getGeneration();
+		final PooledConnection c = pool.take();
+		try {
+			// Look up all expression ids with one query.
+			final PreparedStatement getExpressionIdsPs = c.prepareStatement(getExpressionIdsSql);
+			final Array expressionArray = c.getConnection().createArrayOf("text", uncachedExpressions.toArray());
+			getExpressionIdsPs.setArray(1, expressionArray);
+			getExpressionIdsPs.setArray(2, expressionArray);
+			getExpressionIdsPs.setTimestamp(3, sqlTimestamp);
+			getExpressionIdsPs.setTimestamp(4, sqlTimestamp);
+			final ResultSet getExpressionIdsRs = getExpressionIdsPs.executeQuery();
+			// Store the result in the map.
+			while (getExpressionIdsRs.next()) {
+				final String expression = getExpressionIdsRs.getString("expression");
+				final ExpressionId id = new ExpressionId(getExpressionIdsRs.getLong("id"));
+				result.put(expression, id);
+				if (time == null) {
+					expressionIdCache.put(expression, id, generation);
+				}
+			}
+			expressionArray.free();
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
 		}
 		return result;
 	}
@@ -878,8 +1284,10 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	public String getExpression(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
 		final String result;
+		final PooledConnection c = pool.take();
 		try {
 			// Look up the expression.
+			final PreparedStatement getExpressionPs = c.prepareStatement(getExpressionSql);
 			getExpressionPs.setLong(1, id.getId());
 			getExpressionPs.setTimestamp(2, sqlTimestamp);
 			getExpressionPs.setTimestamp(3, sqlTimestamp);
@@ -894,6 +1302,8 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			}
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
 		}
 		return result;
 	}
@@ -907,7 +1317,11 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	@Override
 	public Set<ExpressionId> getAncestors(ExpressionId id, Date time)
 			throws DataStoreException, NonExistingIdException {
-		return getRelative(id, time, getAncestorsPs);
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.contains(id)) {
+			return snapshot.getRelatives(id, true, false);
+		}
+		return getRelative(id, time, getAncestorsSql);
 	}
 
 	/*
@@ -919,43 +1333,212 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	@Override
 	public Set<ExpressionId> getDescendants(ExpressionId id, Date time)
 			throws DataStoreException, NonExistingIdException {
-		return getRelative(id, time, getDescendantsPs);
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.contains(id)) {
+			return snapshot.getRelatives(id, false, false);
+		}
+		return getRelative(id, time, getDescendantsSql);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getParents(se.liu.imt.mi.snomedct.
-	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getDescendants(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date,
+	 * se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId, int)
 	 */
 	@Override
-	public Set<ExpressionId> getParents(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
-		return getRelative(id, time, getParentsPs);
+	public List<ExpressionId> getDescendants(ExpressionId id, Date time, ExpressionId after, int limit)
+			throws DataStoreException, NonExistingIdException {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("The limit " + limit + " of a page is not positive.");
+		}
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.contains(id)) {
+			return snapshot.getRelatives(id, false, false, after, limit);
+		}
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final List<ExpressionId> result = new ArrayList<ExpressionId>(Math.min(limit, CURSOR_FETCH_SIZE));
+		final PooledConnection c = pool.take();
+		try {
+			// Check if the id exists in the dbms.
+			if (!isExistingId(c, id, sqlTimestamp)) {
+				throw new NonExistingIdException("The id " + id.getId().toString()
+						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+			}
+			final PreparedStatement getDescendantsPagePs = c.prepareStatement(getDescendantsPageSql);
+			getDescendantsPagePs.setLong(1, id.getId());
+			getDescendantsPagePs.setLong(2, after == null ? Long.MIN_VALUE : after.getId());
+			for (int i = 3; i <= 8; i++) {
+				getDescendantsPagePs.setTimestamp(i, sqlTimestamp);
+			}
+			getDescendantsPagePs.setInt(9, limit);
+			final ResultSet getDescendantsPageRs = getDescendantsPagePs.executeQuery();
+			while (getDescendantsPageRs.next()) {
+				result.add(new ExpressionId(getDescendantsPageRs.getLong("id")));
+			}
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+		return result;
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getChildren(se.liu.imt.mi.snomedct.
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#countAncestors(se.liu.imt.mi.snomedct.
 	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
 	 */
 	@Override
-	public Set<ExpressionId> getChildren(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
-		return getRelative(id, time, getChildrenPs);
+	public int countAncestors(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.contains(id)) {
+			return snapshot.countRelatives(id, true, false);
+		}
+		return countRelatives(id, time, countAncestorsSql);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getAllExpressions(java.util.Date)
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#countDescendants(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
 	 */
 	@Override
-	public Set<Expression> getAllExpressions(Date time) throws DataStoreException {
-		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
-		final HashSet<Expression> result = new HashSet<Expression>();
-		try {
-			// Look up all expressions.
-			final ResultSet getAllExpressionsRs;
+	public int countDescendants(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.contains(id)) {
+			return snapshot.countRelatives(id, false, false);
+		}
+		return countRelatives(id, time, countDescendantsSql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getParents(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public Set<ExpressionId> getParents(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.contains(id)) {
+			return snapshot.getRelatives(id, true, true);
+		}
+		return getRelative(id, time, getParentsSql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getChildren(se.liu.imt.mi.snomedct.
+	 * expressionrepository.datatypes.ExpressionId, java.util.Date)
+	 */
+	@Override
+	public Set<ExpressionId> getChildren(ExpressionId id, Date time) throws DataStoreException, NonExistingIdException {
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.contains(id)) {
+			return snapshot.getRelatives(id, false, true);
+		}
+		return getRelative(id, time, getChildrenSql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getAncestors(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<ExpressionId, Set<ExpressionId>> getAncestors(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException {
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.containsAll(ids)) {
+			final HashMap<ExpressionId, Set<ExpressionId>> result = new HashMap<ExpressionId, Set<ExpressionId>>();
+			for (ExpressionId id : ids) {
+				result.put(id, snapshot.getRelatives(id, true, false));
+			}
+			return result;
+		}
+		return getRelatives(ids, time, getAncestorsBulkSql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getDescendants(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<ExpressionId, Set<ExpressionId>> getDescendants(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException {
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.containsAll(ids)) {
+			final HashMap<ExpressionId, Set<ExpressionId>> result = new HashMap<ExpressionId, Set<ExpressionId>>();
+			for (ExpressionId id : ids) {
+				result.put(id, snapshot.getRelatives(id, false, false));
+			}
+			return result;
+		}
+		return getRelatives(ids, time, getDescendantsBulkSql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getParents(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<ExpressionId, Set<ExpressionId>> getParents(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException {
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.containsAll(ids)) {
+			final HashMap<ExpressionId, Set<ExpressionId>> result = new HashMap<ExpressionId, Set<ExpressionId>>();
+			for (ExpressionId id : ids) {
+				result.put(id, snapshot.getRelatives(id, true, true));
+			}
+			return result;
+		}
+		return getRelatives(ids, time, getParentsBulkSql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getChildren(java.util.Collection,
+	 * java.util.Date)
+	 */
+	@Override
+	public Map<ExpressionId, Set<ExpressionId>> getChildren(Collection<ExpressionId> ids, Date time)
+			throws DataStoreException, NonExistingIdException {
+		final HierarchySnapshot snapshot = getHierarchySnapshot(time);
+		if (snapshot != null && snapshot.containsAll(ids)) {
+			final HashMap<ExpressionId, Set<ExpressionId>> result = new HashMap<ExpressionId, Set<ExpressionId>>();
+			for (ExpressionId id : ids) {
+				result.put(id, snapshot.getRelatives(id, false, true));
+			}
+			return result;
+		}
+		return getRelatives(ids, time, getChildrenBulkSql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getAllExpressions(java.util.Date)
+	 */
+	@Override
+	public Set<Expression> getAllExpressions(Date time) throws DataStoreException {
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final HashSet<Expression> result = new HashSet<Expression>();
+		final PooledConnection c = pool.take();
+		try {
+			// Look up all expressions.
+			final ResultSet getAllExpressionsRs;
+			final PreparedStatement getAllExpressionsPs = c.prepareStatement(getAllExpressionsSql);
 			getAllExpressionsPs.setTimestamp(1, sqlTimestamp);
 			getAllExpressionsPs.setTimestamp(2, sqlTimestamp);
 			getAllExpressionsRs = getAllExpressionsPs.executeQuery();
@@ -967,10 +1550,166 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			}
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getAllExpressionsCursor(java.util.Date)
+	 */
+	@Override
+	public ExpressionCursor getAllExpressionsCursor(Date time) throws DataStoreException {
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final PooledConnection c = pool.take();
+		try {
+			// The PostgreSQL driver only fetches the rows in parts, using a cursor in the dbms, inside a
+			// transaction.
+			c.getConnection().setAutoCommit(false);
+			final PreparedStatement getAllExpressionsPs = c.prepareStatement(getAllExpressionsSql);
+			getAllExpressionsPs.setFetchSize(CURSOR_FETCH_SIZE);
+			getAllExpressionsPs.setTimestamp(1, sqlTimestamp);
+			getAllExpressionsPs.setTimestamp(2, sqlTimestamp);
+			// The connection is released when the cursor is closed.
+			return new ResultSetExpressionCursor(c, getAllExpressionsPs.executeQuery());
+		} catch (SQLException e) {
+			pool.release(c);
+			throw new DataStoreException(e);
+		} catch (RuntimeException e) {
+			pool.release(c);
+			throw e;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#getUnclassifiedExpressions(java.util.Date)
+	 */
+	@Override
+	public Set<Expression> getUnclassifiedExpressions(Date time) throws DataStoreException {
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final HashSet<Expression> result = new HashSet<Expression>();
+		final PooledConnection c = pool.take();
+		try {
+			final PreparedStatement getUnclassifiedExpressionsPs = c.prepareStatement(getUnclassifiedExpressionsSql);
+			getUnclassifiedExpressionsPs.setTimestamp(1, sqlTimestamp);
+			getUnclassifiedExpressionsPs.setTimestamp(2, sqlTimestamp);
+			final ResultSet getUnclassifiedExpressionsRs = getUnclassifiedExpressionsPs.executeQuery();
+			while (getUnclassifiedExpressionsRs.next()) {
+				result.add(new Expression(new ExpressionId(getUnclassifiedExpressionsRs.getLong("id")),
+						getUnclassifiedExpressionsRs.getString("expression")));
+			}
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
 		}
 		return result;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore#countExpressions(java.util.Date)
+	 */
+	@Override
+	public ExpressionCount countExpressions(Date time) throws DataStoreException {
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final PooledConnection c = pool.take();
+		try {
+			final PreparedStatement countExpressionsPs = c.prepareStatement(countExpressionsSql);
+			countExpressionsPs.setTimestamp(1, sqlTimestamp);
+			countExpressionsPs.setTimestamp(2, sqlTimestamp);
+			final ResultSet countExpressionsRs = countExpressionsPs.executeQuery();
+			countExpressionsRs.next();
+			// The lowest id is NULL, read as 0, when there are no expressions.
+			return new ExpressionCount(countExpressionsRs.getLong("count"), countExpressionsRs.getLong("lowestid"));
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+	}
+
+	/**
+	 * A cursor over the expressions in a result set. The cursor keeps the connection the result set is read from
+	 * until it is closed.
+	 */
+	private final class ResultSetExpressionCursor implements ExpressionCursor {
+
+		/**
+		 * The connection the result set is read from, or <code>null</code> when the cursor is closed.
+		 */
+		private PooledConnection c;
+
+		/**
+		 * The result set with the columns id and expression.
+		 */
+		private final ResultSet rs;
+
+		/**
+		 * The expression the cursor is positioned on.
+		 */
+		private Expression expression = null;
+
+		/**
+		 * Creates a cursor.
+		 * 
+		 * @param c
+		 *            The connection the result set is read from.
+		 * @param rs
+		 *            The result set with the columns id and expression.
+		 */
+		ResultSetExpressionCursor(final PooledConnection c, final ResultSet rs) {
+			super();
+			this.c = c;
+			this.rs = rs;
+		}
+
+		@Override
+		public boolean next() throws DataStoreException {
+			if (c == null) {
+				throw new DataStoreException("The cursor is closed.");
+			}
+			try {
+				if (rs.next()) {
+					expression = new Expression(new ExpressionId(rs.getLong("id")), rs.getString("expression"));
+					return true;
+				}
+				expression = null;
+				return false;
+			} catch (SQLException e) {
+				throw new DataStoreException(e);
+			}
+		}
+
+		@Override
+		public Expression getExpression() {
+			return expression;
+		}
+
+		@Override
+		public void close() throws DataStoreException {
+			if (c == null) {
+				return;
+			}
+			try {
+				rs.close();
+			} catch (SQLException e) {
+				throw new DataStoreException(e);
+			} finally {
+				// Releasing the connection also ends the transaction.
+				pool.release(c);
+				c = null;
+				expression = null;
+			}
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -979,7 +1718,12 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 */
 	@Override
 	public boolean isExistingId(ExpressionId id, Date time) throws DataStoreException {
-		return isExistingId(id, convertOrSetCurrentTimestampToSQLTimestamp(time));
+		final PooledConnection c = pool.take();
+		try {
+			return isExistingId(c, id, convertOrSetCurrentTimestampToSQLTimestamp(time));
+		} finally {
+			pool.release(c);
+		}
 	}
 
 	/*
@@ -995,35 +1739,41 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			throws DataStoreException, NonExistingIdException {
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
 
-		// Check if the ids exists in the dbms.
-		if (!isExistingId(ancestorId, sqlTimestamp)) {
-			throw new NonExistingIdException("The ancestor id " + ancestorId.getId().toString()
-					+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
-		}
-		if (!isExistingId(descendantId, sqlTimestamp)) {
-			throw new NonExistingIdException("The descendant id " + descendantId.getId().toString()
-					+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
-		}
-
-		final boolean result;
+		final PooledConnection c = pool.take();
 		try {
-			// Checks if an concept or expression subsumes but is not equivalent to another concept or expression at a
-			// specific time.
-			isSubsumingNotEquivalentPs.setLong(1, descendantId.getId());
-			isSubsumingNotEquivalentPs.setLong(2, ancestorId.getId());
-			isSubsumingNotEquivalentPs.setTimestamp(3, sqlTimestamp);
-			isSubsumingNotEquivalentPs.setTimestamp(4, sqlTimestamp);
-			isSubsumingNotEquivalentPs.setTimestamp(5, sqlTimestamp);
-			isSubsumingNotEquivalentPs.setTimestamp(6, sqlTimestamp);
-			isSubsumingNotEquivalentPs.setTimestamp(7, sqlTimestamp);
-			isSubsumingNotEquivalentPs.setTimestamp(8, sqlTimestamp);
-			final ResultSet isRs = isSubsumingNotEquivalentPs.executeQuery();
-			isRs.next();
-			result = isRs.getBoolean("exist");
-		} catch (SQLException e) {
-			throw new DataStoreException(e);
+			// Check if the ids exists in the dbms.
+			if (!isExistingId(c, ancestorId, sqlTimestamp)) {
+				throw new NonExistingIdException("The ancestor id " + ancestorId.getId().toString()
+						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+			}
+			if (!isExistingId(c, descendantId, sqlTimestamp)) {
+				throw new NonExistingIdException("The descendant id " + descendantId.getId().toString()
+						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+			}
+
+			final boolean result;
+			try {
+				// Checks if an concept or expression subsumes but is not equivalent to another concept or expression at
+				// a specific time.
+				final PreparedStatement isSubsumingNotEquivalentPs = c.prepareStatement(isSubsumingNotEquivalentSql);
+				isSubsumingNotEquivalentPs.setLong(1, descendantId.getId());
+				isSubsumingNotEquivalentPs.setLong(2, ancestorId.getId());
+				isSubsumingNotEquivalentPs.setTimestamp(3, sqlTimestamp);
+				isSubsumingNotEquivalentPs.setTimestamp(4, sqlTimestamp);
+				isSubsumingNotEquivalentPs.setTimestamp(5, sqlTimestamp);
+				isSubsumingNotEquivalentPs.setTimestamp(6, sqlTimestamp);
+				isSubsumingNotEquivalentPs.setTimestamp(7, sqlTimestamp);
+				isSubsumingNotEquivalentPs.setTimestamp(8, sqlTimestamp);
+				final ResultSet isRs = isSubsumingNotEquivalentPs.executeQuery();
+				isRs.next();
+				result = isRs.getBoolean("exist");
+			} catch (SQLException e) {
+				throw new DataStoreException(e);
+			}
+			return result;
+		} finally {
+			pool.release(c);
 		}
-		return result;
 	}
 
 	/*
@@ -1038,30 +1788,36 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			throws DataStoreException, NonExistingIdException {
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
 
-		// Check if the ids exists in the dbms.
-		if (!isExistingId(id1, sqlTimestamp)) {
-			throw new NonExistingIdException("The id " + id1.getId().toString()
-					+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
-		}
-		if (!isExistingId(id2, sqlTimestamp)) {
-			throw new NonExistingIdException("The id " + id2.getId().toString()
-					+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
-		}
-
-		final boolean result;
+		final PooledConnection c = pool.take();
 		try {
-			// Checks if an concept or expression is equivalent to another concept or expression at a specific time.
-			isEquivalentPs.setLong(1, id1.getId());
-			isEquivalentPs.setLong(2, id2.getId());
-			isEquivalentPs.setTimestamp(3, sqlTimestamp);
-			isEquivalentPs.setTimestamp(4, sqlTimestamp);
-			final ResultSet isEquivalentRs = isEquivalentPs.executeQuery();
-			isEquivalentRs.next();
-			result = isEquivalentRs.getBoolean("exist");
-		} catch (SQLException e) {
-			throw new DataStoreException(e);
+			// Check if the ids exists in the dbms.
+			if (!isExistingId(c, id1, sqlTimestamp)) {
+				throw new NonExistingIdException("The id " + id1.getId().toString()
+						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+			}
+			if (!isExistingId(c, id2, sqlTimestamp)) {
+				throw new NonExistingIdException("The id " + id2.getId().toString()
+						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+			}
+
+			final boolean result;
+			try {
+				// Checks if an concept or expression is equivalent to another concept or expression at a specific time.
+				final PreparedStatement isEquivalentPs = c.prepareStatement(isEquivalentSql);
+				isEquivalentPs.setLong(1, id1.getId());
+				isEquivalentPs.setLong(2, id2.getId());
+				isEquivalentPs.setTimestamp(3, sqlTimestamp);
+				isEquivalentPs.setTimestamp(4, sqlTimestamp);
+				final ResultSet isEquivalentRs = isEquivalentPs.executeQuery();
+				isEquivalentRs.next();
+				result = isEquivalentRs.getBoolean("exist");
+			} catch (SQLException e) {
+				throw new DataStoreException(e);
+			}
+			return result;
+		} finally {
+			pool.release(c);
 		}
-		return result;
 	}
 
 	/*
@@ -1080,6 +1836,8 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	/**
 	 * Check if a specified id exists in the dbms.
 	 * 
+	 * @param c
+	 *            The connection to use.
 	 * @param id
 	 *            The specified id.
 	 * @param sqlTimestamp
@@ -1088,13 +1846,16 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 * @throws DataStoreException
 	 *             Thrown if there are any problem with the data store.
 	 */
-	private boolean isExistingId(final ExpressionId id, final Timestamp sqlTimestamp) throws DataStoreException {
-		return isExiId(id, sqlTimestamp, isExistingIdPs);
+	private boolean isExistingId(final PooledConnection c, final ExpressionId id, final Timestamp sqlTimestamp)
+			throws DataStoreException {
+		return !getExistingIds(c, Collections.singleton(id), sqlTimestamp).isEmpty();
 	}
 
 	/**
 	 * Check if a specified expression id exists in the dbms.
 	 * 
+	 * @param c
+	 *            The connection to use.
 	 * @param id
 	 *            The specified expression id.
 	 * @param sqlTimestamp
@@ -1103,45 +1864,153 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 * @throws DataStoreException
 	 *             Thrown if there are any problem with the data store.
 	 */
-	private boolean isExistingExpressionId(final ExpressionId id, final Timestamp sqlTimestamp)
-			throws DataStoreException {
-		return isExiId(id, sqlTimestamp, isExistingExpressionIdPs);
+	private boolean isExistingExpressionId(final PooledConnection c, final ExpressionId id,
+			final Timestamp sqlTimestamp) throws DataStoreException {
+		return id.isPostCoordinated() && isExistingId(c, id, sqlTimestamp);
 	}
 
 	/**
-	 * Check if an id exist as an id for a concept or expression or both depending on the used
-	 * <code>PreparedStatement</code>.
+	 * Find which of several ids that exist at a specific time. The answers are taken from the concept filter and the
+	 * cache of periods in which ids exist, and the periods of the ids that are not cached are read from the dbms, from
+	 * the concepts table for pre-coordinated ids and from the expressions table for post-coordinated ids.
 	 * 
-	 * @param id
-	 *            The id to check the existence for.
+	 * @param c
+	 *            The connection to use.
+	 * @param ids
+	 *            The ids to check the existence for.
 	 * @param sqlTimestamp
 	 *            The specific time. A <code>null</code> value is handled as an error.
-	 * @param isPs
-	 *            The <code>PreparedStatement</code> to use .
-	 * @return If the id exist or not.
+	 * @return The ids that exist.
 	 * @throws DataStoreException
 	 *             Thrown if there are any problem with the data store.
 	 */
-	private boolean isExiId(final ExpressionId id, final Timestamp sqlTimestamp, final PreparedStatement isPs)
-			throws DataStoreException {
-		final boolean result;
+	private Set<ExpressionId> getExistingIds(final PooledConnection c, final Collection<ExpressionId> ids,
+			final Timestamp sqlTimestamp) throws DataStoreException {
+		final HashSet<ExpressionId> result = new HashSet<ExpressionId>();
+		final HashSet<ExpressionId> conceptIds = new HashSet<ExpressionId>();
+		final HashSet<ExpressionId> expressionIds = new HashSet<ExpressionId>();
+		final ConceptFilter filter = getConceptFilter();
+		for (ExpressionId id : ids) {
+			// A concept in the filter exists, while a concept that is not may have been added by someone else.
+			if (filter != null && id.isPreCoordinated() && filter.isExisting(id.getId(), sqlTimestamp)) {
+				result.add(id);
+				continue;
+			}
+			final Boolean existing = existenceCache.isExisting(id, sqlTimestamp);
+			if (existing == null) {
+				(id.isPreCoordinated() ? conceptIds : expressionIds).add(id);
+			} else if (existing) {
+				result.add(id);
+			}
+		}
 		try {
-			final ResultSet isExistingIdRs;
-			isPs.setLong(1, id.getId());
-			isPs.setTimestamp(2, sqlTimestamp);
-			isPs.setTimestamp(3, sqlTimestamp);
-			isExistingIdRs = isPs.executeQuery();
-			isExistingIdRs.next();
-			result = isExistingIdRs.getBoolean("exist");
+			result.addAll(readExistingIds(c, conceptIds, sqlTimestamp, getConceptPeriodsSql));
+			result.addAll(readExistingIds(c, expressionIds, sqlTimestamp, getExpressionPeriodsSql));
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
 		}
 		return result;
 	}
 
+	/**
+	 * Read the periods in which several ids exist from the dbms, cache them and find which of the ids that exist at a
+	 * specific time.
+	 * 
+	 * @param c
+	 *            The connection to use.
+	 * @param ids
+	 *            The ids, which all are in the table the <code>PreparedStatement</code> reads from.
+	 * @param sqlTimestamp
+	 *            The specific time.
+	 * @param getPeriodsSql
+	 *            The SQL of the <code>PreparedStatement</code> that retrieves the periods. It has the array of ids as
+	 *            its only parameter and returns the <code>id</code>, <code>starttime</code> and <code>endtime</code>
+	 *            of each period.
+	 * @return The ids that exist at the specific time.
+	 * @throws SQLException
+	 *             Thrown if there are any problem with the dbms.
+	 */
+	private Set<ExpressionId> readExistingIds(final PooledConnection c, final Set<ExpressionId> ids,
+			final Timestamp sqlTimestamp, final String getPeriodsSql) throws SQLException {
+		final HashSet<ExpressionId> result = new HashSet<ExpressionId>();
+		if (ids.isEmpty()) {
+			return result;
+		}
+		final long generation = existenceCache.getGeneration();
+		final HashMap<ExpressionId, List<Timestamp>> starts = new HashMap<ExpressionId, List<Timestamp>>();
+		final HashMap<ExpressionId, List<Timestamp>> ends = new HashMap<ExpressionId, List<Timestamp>>();
+		for (ExpressionId id : ids) {
+			starts.put(id, new ArrayList<Timestamp>());
+			ends.put(id, new ArrayList<Timestamp>());
+		}
+		final Array idArray = createIdArray(c, ids);
+		final PreparedStatement getPeriodsPs = c.prepareStatement(getPeriodsSql);
+		getPeriodsPs.setArray(1, idArray);
+		final ResultSet getPeriodsRs = getPeriodsPs.executeQuery();
+		while (getPeriodsRs.next()) {
+			final ExpressionId id = new ExpressionId(getPeriodsRs.getLong("id"));
+			starts.get(id).add(getPeriodsRs.getTimestamp("starttime"));
+			ends.get(id).add(getPeriodsRs.getTimestamp("endtime"));
+		}
+		idArray.free();
+		for (ExpressionId id : ids) {
+			final Timestamp[] idStarts = starts.get(id).toArray(new Timestamp[0]);
+			final Timestamp[] idEnds = ends.get(id).toArray(new Timestamp[0]);
+			existenceCache.put(id, idStarts, idEnds, generation);
+			if (ExistenceCache.isExisting(idStarts, idEnds, sqlTimestamp)) {
+				result.add(id);
+			}
+		}
+		return result;
+	}
+	/**
+	 * Create an array in the dbms with ids.
+	 * 
+	 * @param c
+	 *            The connection to use.
+	 * @param ids
+	 *            The ids to put in the array. A <code>null</code> value is handled as no ids.
+	 * @return The array.
+	 * @throws SQLException
+	 *             Thrown if there are any problem with the dbms.
+	 */
+	private Array createIdArray(final PooledConnection c, final Set<ExpressionId> ids) throws SQLException {
+		final Long[] idValues = new Long[ids == null ? 0 : ids.size()];
+		if (ids != null) {
+			int i = 0;
+			for (ExpressionId id : ids) {
+				idValues[i++] = id.getId();
+			}
+		}
+		return c.getConnection().createArrayOf("bigint", idValues);
+	}
+
+	/**
+	 * Replace the parameters in SQL for a <code>PreparedStatement</code> with values, in order, so the SQL can be run
+	 * where it can not have parameters.
+	 * 
+	 * @param sql
+	 *            The SQL with the parameters.
+	 * @param values
+	 *            The values to put in place of the parameters, in the same order as the parameters.
+	 * @return The SQL with the values.
+	 */
+	private static String bindParameters(final String sql, final String... values) {
+		final StringBuilder result = new StringBuilder(sql.length());
+		int start = 0;
+		for (String value : values) {
+			final int parameter = sql.indexOf('?', start);
+			result.append(sql, start, parameter).append(value);
+			start = parameter + 1;
+		}
+		return result.append(sql, start, sql.length()).append(' ').toString();
+	}
+
 	/**
 	 * Check if an equivalence with a future start already has been set for the expression.
 	 * 
+	 * @param c
+	 *            The connection to use.
 	 * @param id
 	 *            The expression's id to check for if an equivalence with a future start already has been set.
 	 * @param sqlTimestamp
@@ -1150,10 +2019,11 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 * @throws DataStoreException
 	 *             Thrown if there are any problem with the data store.
 	 */
-	private boolean isFutureEquivalentSet(final ExpressionId id, final Timestamp sqlTimestamp)
+	private boolean isFutureEquivalentSet(final PooledConnection c, final ExpressionId id, final Timestamp sqlTimestamp)
 			throws DataStoreException {
 		final boolean result;
 		try {
+			final PreparedStatement isFutureEquivalentSetPs = c.prepareStatement(isFutureEquivalentSetSql);
 			isFutureEquivalentSetPs.setLong(1, id.getId());
 			isFutureEquivalentSetPs.setTimestamp(2, sqlTimestamp);
 			ResultSet isFutureRelativeSetRs = isFutureEquivalentSetPs.executeQuery();
@@ -1168,6 +2038,8 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	/**
 	 * Check if parent(s) and/or child(ren) with a future start already has been set for the expression.
 	 * 
+	 * @param c
+	 *            The connection to use.
 	 * @param id
 	 *            The expression's id to check for if parent(s) and/or child(ren) with a future start already has been
 	 *            set.
@@ -1177,9 +2049,11 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 * @throws DataStoreException
 	 *             Thrown if there are any problem with the data store.
 	 */
-	private boolean isFutureRelativeSet(ExpressionId id, final Timestamp sqlTimestamp) throws DataStoreException {
+	private boolean isFutureRelativeSet(final PooledConnection c, ExpressionId id, final Timestamp sqlTimestamp)
+			throws DataStoreException {
 		final boolean result;
 		try {
+			final PreparedStatement isFutureRelativeSetPs = c.prepareStatement(isFutureRelativeSetSql);
 			isFutureRelativeSetPs.setLong(1, id.getId());
 			isFutureRelativeSetPs.setLong(2, id.getId());
 			isFutureRelativeSetPs.setTimestamp(3, sqlTimestamp);
@@ -1192,9 +2066,74 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 		return result;
 	}
 
+	/**
+	 * Find which of several expressions that already have an equivalence or parent(s) and/or child(ren) with a future
+	 * start set.
+	 * 
+	 * @param c
+	 *            The connection to use.
+	 * @param ids
+	 *            The expressions' ids to check.
+	 * @param sqlTimestamp
+	 *            The specific time to do the check. A <code>null</code> value is handled as an error.
+	 * @return The ids that have something set in the future, each mapped to <code>true</code> if it has an
+	 *         equivalence set in the future and to <code>false</code> if it only has parent(s) and/or child(ren) set in
+	 *         the future.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	private Map<ExpressionId, Boolean> getFutureDefinedIds(final PooledConnection c, final Set<ExpressionId> ids,
+			final Timestamp sqlTimestamp) throws DataStoreException {
+		final HashMap<ExpressionId, Boolean> result = new HashMap<ExpressionId, Boolean>();
+		try {
+			final Array idArray = createIdArray(c, ids);
+			final PreparedStatement getFutureDefinedIdsPs = c.prepareStatement(getFutureDefinedIdsSql);
+			for (int i = 0; i < 3; i++) {
+				getFutureDefinedIdsPs.setArray(2 * i + 1, idArray);
+				getFutureDefinedIdsPs.setTimestamp(2 * i + 2, sqlTimestamp);
+			}
+			final ResultSet getFutureDefinedIdsRs = getFutureDefinedIdsPs.executeQuery();
+			while (getFutureDefinedIdsRs.next()) {
+				result.put(new ExpressionId(getFutureDefinedIdsRs.getLong("id")),
+						getFutureDefinedIdsRs.getBoolean("equivalence"));
+			}
+			idArray.free();
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Check that an expression does not already have an equivalence or parent(s) and/or child(ren) with a future start
+	 * set.
+	 * 
+	 * @param id
+	 *            The expression's id.
+	 * @param role
+	 *            What the expression is in the update, used in the error message.
+	 * @param futureDefinedIds
+	 *            The ids that have something set in the future, as returned by
+	 *            {@link #getFutureDefinedIds(PooledConnection, Set, Timestamp)}.
+	 * @throws ExpressionAlreadyDefined
+	 *             Thrown if the expression has something set in the future.
+	 */
+	private static void checkNotFutureDefined(final ExpressionId id, final String role,
+			final Map<ExpressionId, Boolean> futureDefinedIds) throws ExpressionAlreadyDefined {
+		final Boolean equivalence = futureDefinedIds.get(id);
+		if (equivalence == null) {
+			return;
+		}
+		throw new ExpressionAlreadyDefined("The " + role + " with id " + id.getId()
+				+ (equivalence ? " has already an equivalent id set with a start time in the future."
+						: " has already parent(s) and/or child(ren) set with a start time in the future."));
+	}
+
 	/**
 	 * Inactivate an expression's definition from the data store.
 	 * 
+	 * @param c
+	 *            The connection to use.
 	 * @param id
 	 *            The expression's id to inactivate the definition for.
 	 * @param time
@@ -1202,11 +2141,13 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 * @throws DataStoreException
 	 *             Thrown if there are any problem with the data store.
 	 */
-	private void inactivateExpressionDefinition(final ExpressionId id, final Timestamp sqlTimestamp)
-			throws DataStoreException {
+	private void inactivateExpressionDefinition(final PooledConnection c, final ExpressionId id,
+			final Timestamp sqlTimestamp) throws DataStoreException {
 		try {
 			// Create new relationships for the concepts in an equivalence group if the current relationships for the
 			// concepts with the relationships in the group is going to be inactivated.
+			final PreparedStatement inactivateRelativesCreateNewRelationshipsForEquivalencePs = c
+					.prepareStatement(inactivateRelativesCreateNewRelationshipsForEquivalenceSql);
 			inactivateRelativesCreateNewRelationshipsForEquivalencePs.setTimestamp(1, sqlTimestamp);
 			inactivateRelativesCreateNewRelationshipsForEquivalencePs.setLong(2, id.getId());
 			inactivateRelativesCreateNewRelationshipsForEquivalencePs.setTimestamp(3, sqlTimestamp);
@@ -1217,6 +2158,8 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 
 			// Create new direct relationships between the parent(s) and child(ren) of the concept which is going to be
 			// retired.
+			final PreparedStatement inactivateRelativesCreateNewDirectRelationshipsPs = c
+					.prepareStatement(inactivateRelativesCreateNewDirectRelationshipsSql);
 			inactivateRelativesCreateNewDirectRelationshipsPs.setTimestamp(1, sqlTimestamp);
 			inactivateRelativesCreateNewDirectRelationshipsPs.setLong(2, id.getId());
 			inactivateRelativesCreateNewDirectRelationshipsPs.setTimestamp(3, sqlTimestamp);
@@ -1229,6 +2172,8 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			inactivateRelativesCreateNewDirectRelationshipsPs.executeUpdate();
 
 			// Set the end time to the relationships that is going to be retired.
+			final PreparedStatement inactivateRelativesSetEndtimePs = c
+					.prepareStatement(inactivateRelativesSetEndtimeSql);
 			inactivateRelativesSetEndtimePs.setTimestamp(1, sqlTimestamp);
 			inactivateRelativesSetEndtimePs.setLong(2, id.getId());
 			inactivateRelativesSetEndtimePs.setLong(3, id.getId());
@@ -1237,12 +2182,16 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			inactivateRelativesSetEndtimePs.executeUpdate();
 
 			// Delete relationships with the same starttime as the time the retirement is done.
+			final PreparedStatement inactivateRelativesDeleteWithCurrentStartTimePs = c
+					.prepareStatement(inactivateRelativesDeleteWithCurrentStartTimeSql);
 			inactivateRelativesDeleteWithCurrentStartTimePs.setTimestamp(1, sqlTimestamp);
 			inactivateRelativesDeleteWithCurrentStartTimePs.setLong(2, id.getId());
 			inactivateRelativesDeleteWithCurrentStartTimePs.setLong(3, id.getId());
 			inactivateRelativesDeleteWithCurrentStartTimePs.executeUpdate();
 
 			// Set the end time to the second last expression equivalence in the group.
+			final PreparedStatement inactivateEquivalenceGroupSetEndtimePs = c
+					.prepareStatement(inactivateEquivalenceGroupSetEndtimeSql);
 			inactivateEquivalenceGroupSetEndtimePs.setTimestamp(1, sqlTimestamp);
 			inactivateEquivalenceGroupSetEndtimePs.setTimestamp(2, sqlTimestamp);
 			inactivateEquivalenceGroupSetEndtimePs.setTimestamp(3, sqlTimestamp);
@@ -1252,9 +2201,11 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			inactivateEquivalenceGroupSetEndtimePs.setLong(7, id.getId());
 			inactivateEquivalenceGroupSetEndtimePs.setTimestamp(8, sqlTimestamp);
 			inactivateEquivalenceGroupSetEndtimePs.setTimestamp(9, sqlTimestamp);
-			inactivateRelativesDeleteWithCurrentStartTimePs.executeUpdate();
+			inactivateEquivalenceGroupSetEndtimePs.executeUpdate();
 
 			// Delete the second last expression equivalence in the group.
+			final PreparedStatement inactivateEquivalenceGroupDeleteWithCurrentStartTimePs = c
+					.prepareStatement(inactivateEquivalenceGroupDeleteWithCurrentStartTimeSql);
 			inactivateEquivalenceGroupDeleteWithCurrentStartTimePs.setTimestamp(1, sqlTimestamp);
 			inactivateEquivalenceGroupDeleteWithCurrentStartTimePs.setLong(2, id.getId());
 			inactivateEquivalenceGroupDeleteWithCurrentStartTimePs.setTimestamp(3, sqlTimestamp);
@@ -1265,6 +2216,8 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			inactivateEquivalenceGroupDeleteWithCurrentStartTimePs.executeUpdate();
 
 			// Set the end time to the expression equivalence that is going to be retired.
+			final PreparedStatement inactivateEquivalenceSetEndtimePs = c
+					.prepareStatement(inactivateEquivalenceSetEndtimeSql);
 			inactivateEquivalenceSetEndtimePs.setTimestamp(1, sqlTimestamp);
 			inactivateEquivalenceSetEndtimePs.setLong(2, id.getId());
 			inactivateEquivalenceSetEndtimePs.setTimestamp(3, sqlTimestamp);
@@ -1272,6 +2225,8 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			inactivateEquivalenceSetEndtimePs.executeUpdate();
 
 			// Delete expression equivalence with the same starttime as the time the retirement is done.
+			final PreparedStatement inactivateEquivalenceDeleteWithCurrentStartTimePs = c
+					.prepareStatement(inactivateEquivalenceDeleteWithCurrentStartTimeSql);
 			inactivateEquivalenceDeleteWithCurrentStartTimePs.setTimestamp(1, sqlTimestamp);
 			inactivateEquivalenceDeleteWithCurrentStartTimePs.setLong(2, id.getId());
 			inactivateEquivalenceDeleteWithCurrentStartTimePs.executeUpdate();
@@ -1288,25 +2243,27 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 *            The expression id to look up the relatives to.
 	 * @param time
 	 *            The specific time. A <code>null</code> value is handled as the current time.
-	 * @param getRelativePs
-	 *            The <code>PreparedStatement</code> to use for finding the relatives.
+	 * @param getRelativeSql
+	 *            The SQL of the <code>PreparedStatement</code> to use for finding the relatives.
 	 * @return The relatives' expression ids.
 	 * @throws DataStoreException
 	 *             Thrown if there are any problem with the data store.
 	 * @throws NonExistingIdException
 	 *             Thrown if the expression id does not exist in the data store.
 	 */
-	private HashSet<ExpressionId> getRelative(ExpressionId id, Date time, PreparedStatement getRelativePs)
+	private HashSet<ExpressionId> getRelative(ExpressionId id, Date time, String getRelativeSql)
 			throws DataStoreException, NonExistingIdException {
 		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
 		final HashSet<ExpressionId> result = new HashSet<ExpressionId>();
+		final PooledConnection c = pool.take();
 		try {
 			// Check if the id exists in the dbms.
-			if (!isExistingId(id, sqlTimestamp)) {
+			if (!isExistingId(c, id, sqlTimestamp)) {
 				throw new NonExistingIdException("The id " + id.getId().toString()
 						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
 			}
 			final ResultSet getRelativeRs;
+			final PreparedStatement getRelativePs = c.prepareStatement(getRelativeSql);
 			// Look up the relatives in the dbms.
 			getRelativePs.setLong(1, id.getId());
 			getRelativePs.setTimestamp(2, sqlTimestamp);
@@ -1322,10 +2279,474 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 			}
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
 		}
 		return result;
 	}
 
+	/**
+	 * Count the relatives to an id in the dbms.
+	 * 
+	 * @param id
+	 *            The expression id to count the relatives to.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @param countRelativesSql
+	 *            The SQL of the <code>PreparedStatement</code> to use for counting the relatives. It has the id as its
+	 *            first parameter and the time as the following six parameters, and returns the number as
+	 *            <code>count</code>.
+	 * @return The number of relatives.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if the expression id does not exist in the data store.
+	 */
+	private int countRelatives(ExpressionId id, Date time, String countRelativesSql)
+			throws DataStoreException, NonExistingIdException {
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final PooledConnection c = pool.take();
+		try {
+			// Check if the id exists in the dbms.
+			if (!isExistingId(c, id, sqlTimestamp)) {
+				throw new NonExistingIdException("The id " + id.getId().toString()
+						+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+			}
+			final PreparedStatement countRelativesPs = c.prepareStatement(countRelativesSql);
+			countRelativesPs.setLong(1, id.getId());
+			for (int i = 2; i <= 7; i++) {
+				countRelativesPs.setTimestamp(i, sqlTimestamp);
+			}
+			final ResultSet countRelativesRs = countRelativesPs.executeQuery();
+			countRelativesRs.next();
+			return countRelativesRs.getInt("count");
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+	}
+
+	/**
+	 * Look up relatives to several ids with one query.
+	 * 
+	 * @param ids
+	 *            The ids to look up the relatives to.
+	 * @param time
+	 *            The specific time. A <code>null</code> value is handled as the current time.
+	 * @param getRelativesSql
+	 *            The SQL for the <code>PreparedStatement</code> that retrieves the relatives. It has the array of ids
+	 *            as its first parameter and the time as the following six parameters, and returns the id the
+	 *            relative was looked up for as <code>queryid</code> and the relative as <code>id</code>.
+	 * @return The relatives' ids, by id.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 * @throws NonExistingIdException
+	 *             Thrown if any of the ids does not exist in the data store.
+	 */
+	private HashMap<ExpressionId, Set<ExpressionId>> getRelatives(Collection<ExpressionId> ids, Date time,
+			String getRelativesSql) throws DataStoreException, NonExistingIdException {
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final HashMap<ExpressionId, Set<ExpressionId>> result = new HashMap<ExpressionId, Set<ExpressionId>>();
+		for (ExpressionId id : ids) {
+			result.put(id, new HashSet<ExpressionId>());
+		}
+		if (result.isEmpty()) {
+			return result;
+		}
+		final Long[] idValues = new Long[result.size()];
+		int i = 0;
+		for (ExpressionId id : result.keySet()) {
+			idValues[i++] = id.getId();
+		}
+		final PooledConnection c = pool.take();
+		try {
+			// Check if all ids exist in the dbms.
+			final Set<ExpressionId> existingIds = getExistingIds(c, result.keySet(), sqlTimestamp);
+			for (ExpressionId id : result.keySet()) {
+				if (!existingIds.contains(id)) {
+					throw new NonExistingIdException("The id " + id.getId().toString()
+							+ " do not exists in the data store at the time " + sqlTimestamp.toString() + ".");
+				}
+			}
+			// Look up the relatives of all ids in the dbms.
+			final Array idArray = c.getConnection().createArrayOf("bigint", idValues);
+			final PreparedStatement getRelativesPs = c.prepareStatement(getRelativesSql);
+			getRelativesPs.setArray(1, idArray);
+			for (int parameter = 2; parameter <= 7; parameter++) {
+				getRelativesPs.setTimestamp(parameter, sqlTimestamp);
+			}
+			final ResultSet getRelativesRs = getRelativesPs.executeQuery();
+			// Store the result.
+			while (getRelativesRs.next()) {
+				result.get(new ExpressionId(getRelativesRs.getLong("queryid")))
+						.add(new ExpressionId(getRelativesRs.getLong("id")));
+			}
+			idArray.free();
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the hierarchy snapshot for a point in time, if snapshots are kept for it and the snapshot is ready. A
+	 * snapshot that is missing or can no longer be used is created in the background.
+	 * 
+	 * @param time
+	 *            The point in time. A <code>null</code> value is handled as the current time.
+	 * @return The snapshot or <code>null</code> if the dbms has to be queried.
+	 */
+	private HierarchySnapshot getHierarchySnapshot(final Date time) {
+		final Long key = hierarchySnapshots.getKey(time);
+		if (key == null) {
+			return null;
+		}
+		final HierarchySnapshot snapshot = hierarchySnapshots.get(key, System.currentTimeMillis());
+		if (snapshot == null && hierarchySnapshots.startLoading(key)) {
+			hierarchySnapshotLoader.execute(new Runnable() {
+				@Override
+				public void run() {
+					HierarchySnapshot loaded = null;
+					try {
+						loaded = loadHierarchySnapshot(key, time);
+					} catch (DataStoreException e) {
+						log.error("The hierarchy snapshot for " + (time == null ? "the current time" : time)
+								+ " could not be created.", e);
+					} finally {
+						hierarchySnapshots.finishLoading(key, loaded);
+					}
+				}
+			});
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Read all equivalences and the whole transitive closure at a point in time from the dbms into a hierarchy
+	 * snapshot.
+	 * 
+	 * @param key
+	 *            The key of the snapshot.
+	 * @param time
+	 *            The point in time. A <code>null</code> value is handled as the current time.
+	 * @return The snapshot.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	private HierarchySnapshot loadHierarchySnapshot(final Long key, final Date time) throws DataStoreException {
+		// Changes made while the rows are read make the snapshot unusable.
+		final long generation = hierarchySnapshots.getGeneration(key);
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final PooledConnection c = pool.take();
+		try {
+			// The PostgreSQL driver only fetches the rows in parts, using a cursor in the dbms, inside a
+			// transaction.
+			c.getConnection().setAutoCommit(false);
+
+			final PreparedStatement getSnapshotNextChangePs = c.prepareStatement(getSnapshotNextChangeSql);
+			for (int i = 1; i <= 4; i++) {
+				getSnapshotNextChangePs.setTimestamp(i, sqlTimestamp);
+			}
+			final ResultSet getSnapshotNextChangeRs = getSnapshotNextChangePs.executeQuery();
+			getSnapshotNextChangeRs.next();
+			final Timestamp nextChange = getSnapshotNextChangeRs.getTimestamp("nextchange");
+			getSnapshotNextChangeRs.close();
+
+			long[] id1s = new long[1024];
+			long[] id2s = new long[1024];
+			int equivalentCount = 0;
+			final PreparedStatement getSnapshotEquivalentsPs = c.prepareStatement(getSnapshotEquivalentsSql);
+			getSnapshotEquivalentsPs.setFetchSize(CURSOR_FETCH_SIZE);
+			getSnapshotEquivalentsPs.setTimestamp(1, sqlTimestamp);
+			getSnapshotEquivalentsPs.setTimestamp(2, sqlTimestamp);
+			final ResultSet getSnapshotEquivalentsRs = getSnapshotEquivalentsPs.executeQuery();
+			while (getSnapshotEquivalentsRs.next()) {
+				if (equivalentCount == id1s.length) {
+					id1s = Arrays.copyOf(id1s, equivalentCount * 2);
+					id2s = Arrays.copyOf(id2s, equivalentCount * 2);
+				}
+				id1s[equivalentCount] = getSnapshotEquivalentsRs.getLong("id1");
+				id2s[equivalentCount++] = getSnapshotEquivalentsRs.getLong("id2");
+			}
+			getSnapshotEquivalentsRs.close();
+
+			long[] sourceIds = new long[1024];
+			long[] destinationIds = new long[1024];
+			boolean[] directRelations = new boolean[1024];
+			int relationCount = 0;
+			final PreparedStatement getSnapshotTransitiveclosurePs = c
+					.prepareStatement(getSnapshotTransitiveclosureSql);
+			getSnapshotTransitiveclosurePs.setFetchSize(CURSOR_FETCH_SIZE);
+			getSnapshotTransitiveclosurePs.setTimestamp(1, sqlTimestamp);
+			getSnapshotTransitiveclosurePs.setTimestamp(2, sqlTimestamp);
+			final ResultSet getSnapshotTransitiveclosureRs = getSnapshotTransitiveclosurePs.executeQuery();
+			while (getSnapshotTransitiveclosureRs.next()) {
+				if (relationCount == sourceIds.length) {
+					sourceIds = Arrays.copyOf(sourceIds, relationCount * 2);
+					destinationIds = Arrays.copyOf(destinationIds, relationCount * 2);
+					directRelations = Arrays.copyOf(directRelations, relationCount * 2);
+				}
+				sourceIds[relationCount] = getSnapshotTransitiveclosureRs.getLong("sourceid");
+				destinationIds[relationCount] = getSnapshotTransitiveclosureRs.getLong("destinationid");
+				directRelations[relationCount++] = getSnapshotTransitiveclosureRs.getBoolean("directrelation");
+			}
+			getSnapshotTransitiveclosureRs.close();
+
+			return new HierarchySnapshot(id1s, id2s, equivalentCount, sourceIds, destinationIds, directRelations,
+					relationCount, generation, sqlTimestamp.getTime(), System.currentTimeMillis(),
+					nextChange == null ? Long.MAX_VALUE : nextChange.getTime());
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			// Releasing the connection also ends the transaction.
+			pool.release(c);
+		}
+	}
+
+	/**
+	 * Record a change in the dbms in the hierarchy snapshots. The snapshots for the point in time of the change and
+	 * later are created again when they are used. The snapshot for the current time is instead made from the snapshot
+	 * that was used before the change and the rows that start and end at the point in time of the change, in the
+	 * background, unless another change has been made after that snapshot.
+	 * 
+	 * @param sqlTimestamp
+	 *            The point in time of the change, which must have been committed.
+	 */
+	private void changedHierarchySnapshots(final Timestamp sqlTimestamp) {
+		final long time = sqlTimestamp.getTime();
+		final Long key = HierarchySnapshotCache.CURRENT_TIME;
+		final HierarchySnapshot snapshot = hierarchySnapshots.get(key, System.currentTimeMillis());
+		final long generation = hierarchySnapshots.changed(time, snapshot);
+		// Only the rows of the change may start or end between the point in time of the snapshot and the change.
+		if (generation < 0 || time <= snapshot.getTime() || time >= snapshot.getNextChange()
+				|| time > System.currentTimeMillis() || !hierarchySnapshots.startLoading(key)) {
+			return;
+		}
+		hierarchySnapshotLoader.execute(new Runnable() {
+			@Override
+			public void run() {
+				HierarchySnapshot applied = null;
+				try {
+					applied = snapshot.apply(readHierarchySnapshotChanges(snapshot.getTime(), sqlTimestamp),
+							generation, time);
+				} catch (DataStoreException e) {
+					log.error("The change at " + sqlTimestamp + " could not be applied to the hierarchy snapshot.", e);
+				} finally {
+					hierarchySnapshots.finishLoading(key, applied);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Read the rows of the <code>coneqv</code> view and the <code>transitiveclosure</code> table that start or end at a
+	 * point in time from the dbms, to be applied to a hierarchy snapshot for an earlier point in time.
+	 * 
+	 * @param snapshotTime
+	 *            The point in time of the hierarchy snapshot.
+	 * @param sqlTimestamp
+	 *            The point in time the rows start or end at.
+	 * @return The rows.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	private HierarchySnapshotChanges readHierarchySnapshotChanges(final long snapshotTime,
+			final Timestamp sqlTimestamp) throws DataStoreException {
+		final HierarchySnapshotChanges changes = new HierarchySnapshotChanges();
+		final PooledConnection c = pool.take();
+		try {
+			final PreparedStatement getSnapshotNewExpressionsPs = c.prepareStatement(getSnapshotNewExpressionsSql);
+			getSnapshotNewExpressionsPs.setTimestamp(1, new Timestamp(snapshotTime));
+			getSnapshotNewExpressionsPs.setTimestamp(2, sqlTimestamp);
+			getSnapshotNewExpressionsPs.setTimestamp(3, sqlTimestamp);
+			final ResultSet getSnapshotNewExpressionsRs = getSnapshotNewExpressionsPs.executeQuery();
+			while (getSnapshotNewExpressionsRs.next()) {
+				final long id = getSnapshotNewExpressionsRs.getLong("id");
+				changes.addEquivalent(id, id);
+			}
+			getSnapshotNewExpressionsRs.close();
+
+			// Each equivalence is found from the row that starts or ends, and is added in both directions.
+			final PreparedStatement getSnapshotAddedEquivalentsPs = c.prepareStatement(getSnapshotAddedEquivalentsSql);
+			for (int i = 1; i <= 4; i++) {
+				getSnapshotAddedEquivalentsPs.setTimestamp(i, sqlTimestamp);
+			}
+			final ResultSet getSnapshotAddedEquivalentsRs = getSnapshotAddedEquivalentsPs.executeQuery();
+			while (getSnapshotAddedEquivalentsRs.next()) {
+				final long id1 = getSnapshotAddedEquivalentsRs.getLong("id1");
+				final long id2 = getSnapshotAddedEquivalentsRs.getLong("id2");
+				changes.addEquivalent(id1, id2);
+				changes.addEquivalent(id2, id1);
+				changes.addEndTime(getSnapshotAddedEquivalentsRs.getTimestamp("endtime"));
+			}
+			getSnapshotAddedEquivalentsRs.close();
+
+			final PreparedStatement getSnapshotRemovedEquivalentsPs = c
+					.prepareStatement(getSnapshotRemovedEquivalentsSql);
+			for (int i = 1; i <= 4; i++) {
+				getSnapshotRemovedEquivalentsPs.setTimestamp(i, sqlTimestamp);
+			}
+			final ResultSet getSnapshotRemovedEquivalentsRs = getSnapshotRemovedEquivalentsPs.executeQuery();
+			while (getSnapshotRemovedEquivalentsRs.next()) {
+				final long id1 = getSnapshotRemovedEquivalentsRs.getLong("id1");
+				final long id2 = getSnapshotRemovedEquivalentsRs.getLong("id2");
+				changes.removeEquivalent(id1, id2);
+				changes.removeEquivalent(id2, id1);
+			}
+			getSnapshotRemovedEquivalentsRs.close();
+
+			final PreparedStatement getSnapshotAddedRelationsPs = c.prepareStatement(getSnapshotAddedRelationsSql);
+			getSnapshotAddedRelationsPs.setTimestamp(1, sqlTimestamp);
+			getSnapshotAddedRelationsPs.setTimestamp(2, sqlTimestamp);
+			final ResultSet getSnapshotAddedRelationsRs = getSnapshotAddedRelationsPs.executeQuery();
+			while (getSnapshotAddedRelationsRs.next()) {
+				changes.addRelation(getSnapshotAddedRelationsRs.getLong("sourceid"),
+						getSnapshotAddedRelationsRs.getLong("destinationid"),
+						getSnapshotAddedRelationsRs.getBoolean("directrelation"));
+				changes.addEndTime(getSnapshotAddedRelationsRs.getTimestamp("endtime"));
+			}
+			getSnapshotAddedRelationsRs.close();
+
+			final PreparedStatement getSnapshotRemovedRelationsPs = c
+					.prepareStatement(getSnapshotRemovedRelationsSql);
+			getSnapshotRemovedRelationsPs.setTimestamp(1, sqlTimestamp);
+			getSnapshotRemovedRelationsPs.setTimestamp(2, sqlTimestamp);
+			final ResultSet getSnapshotRemovedRelationsRs = getSnapshotRemovedRelationsPs.executeQuery();
+			while (getSnapshotRemovedRelationsRs.next()) {
+				changes.removeRelation(getSnapshotRemovedRelationsRs.getLong("sourceid"),
+						getSnapshotRemovedRelationsRs.getLong("destinationid"),
+						getSnapshotRemovedRelationsRs.getBoolean("directrelation"));
+			}
+			getSnapshotRemovedRelationsRs.close();
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+		return changes;
+	}
+
+	/**
+	 * Get the concept filter if it can still be used, and start to read a new one from the dbms if it can not.
+	 * 
+	 * @return The filter or <code>null</code> if there is no filter that can be used.
+	 */
+	private ConceptFilter getConceptFilter() {
+		final ConceptFilter filter = conceptFilter;
+		if (filter != null && System.currentTimeMillis() - filter.getCreated() < conceptFilterTimeToLive) {
+			return filter;
+		}
+		startLoadingConceptFilter();
+		return null;
+	}
+
+	/**
+	 * Start to read the concept filter from the dbms in the background, unless it already is being read or no filter
+	 * is used.
+	 */
+	private void startLoadingConceptFilter() {
+		if (conceptFilterTimeToLive > 0 && conceptFilterLoading.compareAndSet(false, true)) {
+			hierarchySnapshotLoader.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						loadConceptFilter();
+					} catch (DataStoreException e) {
+						log.error("The concept filter could not be created.", e);
+					} finally {
+						conceptFilterLoading.set(false);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Read all rows of the concepts table from the dbms into a concept filter and use it, unless the concepts have
+	 * been changed through the data store while the rows were read.
+	 * 
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	private void loadConceptFilter() throws DataStoreException {
+		final long generation;
+		synchronized (conceptFilterLock) {
+			generation = conceptFilterGeneration;
+		}
+		final PooledConnection c = pool.take();
+		try {
+			// The PostgreSQL driver only fetches the rows in parts, using a cursor in the dbms, inside a
+			// transaction.
+			c.getConnection().setAutoCommit(false);
+			final long created = System.currentTimeMillis();
+			long[] ids = new long[1024];
+			long[] starts = new long[1024];
+			long[] ends = new long[1024];
+			int count = 0;
+			final PreparedStatement getConceptFilterPs = c.prepareStatement(getConceptFilterSql);
+			getConceptFilterPs.setFetchSize(CURSOR_FETCH_SIZE);
+			final ResultSet getConceptFilterRs = getConceptFilterPs.executeQuery();
+			while (getConceptFilterRs.next()) {
+				if (count == ids.length) {
+					ids = Arrays.copyOf(ids, count * 2);
+					starts = Arrays.copyOf(starts, count * 2);
+					ends = Arrays.copyOf(ends, count * 2);
+				}
+				final Timestamp endtime = getConceptFilterRs.getTimestamp("endtime");
+				ids[count] = getConceptFilterRs.getLong("id");
+				starts[count] = ConceptFilter.toMicroseconds(getConceptFilterRs.getTimestamp("starttime"));
+				ends[count++] = endtime == null ? ConceptFilter.NO_END : ConceptFilter.toMicroseconds(endtime);
+			}
+			getConceptFilterRs.close();
+			final ConceptFilter filter = new ConceptFilter(ids, starts, ends, count, created);
+			synchronized (conceptFilterLock) {
+				if (generation == conceptFilterGeneration) {
+					conceptFilter = filter;
+				}
+			}
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			// Releasing the connection also ends the transaction.
+			pool.release(c);
+		}
+	}
+
+	/**
+	 * Add concepts that have been stored in the dbms to the concept filter.
+	 * 
+	 * @param ids
+	 *            The ids of the concepts in ascending order.
+	 * @param time
+	 *            The time the concepts were stored. The concepts have no end.
+	 */
+	protected void addConceptsToFilter(final long[] ids, final Timestamp time) {
+		synchronized (conceptFilterLock) {
+			conceptFilterGeneration++;
+			if (conceptFilter != null) {
+				conceptFilter = conceptFilter.withConcepts(ids, ConceptFilter.toMicroseconds(time));
+			}
+		}
+	}
+
+	/**
+	 * Restore the concept filter in the same way as the concepts table in the dbms has been restored.
+	 * 
+	 * @param time
+	 *            The time the concepts table was restored to.
+	 */
+	protected void restoreConceptFilter(final Timestamp time) {
+		synchronized (conceptFilterLock) {
+			conceptFilterGeneration++;
+			if (conceptFilter != null) {
+				conceptFilter = conceptFilter.restoredTo(ConceptFilter.toMicroseconds(time));
+			}
+		}
+	}
+
 	/**
 	 * Convert a <code>Date</code> or take the current time and insert it into a SQL <code>Timestamp</code>.
 	 * <p>
@@ -1339,7 +2760,7 @@ public class DataStore implements se.liu.imt.mi.snomedct.expressionrepository.da
 	 *            The <code>time</code> to convert or <code><null</code> for the current time.
 	 * @return The resulting time as a SQL <code>Timestamp</code>.
 	 */
-	private Timestamp convertOrSetCurrentTimestampToSQLTimestamp(final Date time) {
+	protected Timestamp convertOrSetCurrentTimestampToSQLTimestamp(final Date time) {
 		return (time != null ? new Timestamp(time.getTime()) : new Timestamp(java.lang.System.currentTimeMillis()));
 	}
 }
\ No newline at end of file
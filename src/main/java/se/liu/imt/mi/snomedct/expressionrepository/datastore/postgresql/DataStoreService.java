@@ -3,10 +3,20 @@
  */
 package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
 
 import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
 
@@ -20,41 +30,79 @@ import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
 public class DataStoreService extends DataStore {
 
 	/**
-	 * A <code>PreparedStatement</code> that restore the equivalents table in the dbms to a previous state by removing
-	 * rows that have been inserted after a specific timestamp.
+	 * The number of characters that are collected before they are sent to the dbms during a copy.
 	 */
-	private final PreparedStatement restoreEquivalentsDelete;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
 	/**
-	 * A <code>PreparedStatement</code> that restore the expressions table in the dbms to a previous state by removing
-	 * end times that have been inserted after a specific timestamp.
+	 * The SQL that copies concepts into the concepts table in the dbms.
 	 */
-	private final PreparedStatement restoreEquivalentsEndTime;
-
+	private static final String importConceptsCopySql = "COPY concepts (id, starttime, endtime) FROM STDIN;";
 	/**
-	 * A <code>PreparedStatement</code> that restore the expressions table in the dbms to a previous state by removing
-	 * rows that have been inserted after a specific timestamp.
+	 * The SQL that copies relationships into the transitiveclosure table in the dbms.
 	 */
-	private final PreparedStatement restoreExpressionsDelete;
+	private static final String importTransitiveclosureCopySql =
+			"COPY transitiveclosure (sourceid, destinationid, starttime, endtime, directrelation) FROM STDIN;";
 	/**
-	 * A <code>PreparedStatement</code> that restore the equivalents table in the dbms to a previous state by removing
-	 * end times that have been inserted after a specific timestamp.
+	 * The SQL for a <code>PreparedStatement</code> that analyze the concepts table after an import.
 	 */
-	private final PreparedStatement restoreExpressionsEndTime;
+	private static final String importAnalyzeConceptsSql = "ANALYZE concepts;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that analyze the transitiveclosure table after an import.
+	 */
+	private static final String importAnalyzeTransitiveclosureSql = "ANALYZE transitiveclosure;";
 
 	/**
-	 * A <code>PreparedStatement</code> that restore the transitiveclosure table in the dbms to a previous state by
+	 * The SQL for a <code>PreparedStatement</code> that restore the concepts table in the dbms to a previous state by
 	 * removing rows that have been inserted after a specific timestamp.
 	 */
-	private final PreparedStatement restoreTransitiveclosureDelete;
+	private static final String restoreConceptsDeleteSql = "DELETE FROM concepts WHERE starttime > ?;";
 	/**
-	 * A <code>PreparedStatement</code> that restore the transitiveclosure table in the dbms to a previous state by
+	 * The SQL for a <code>PreparedStatement</code> that restore the concepts table in the dbms to a previous state by
 	 * removing end times that have been inserted after a specific timestamp.
 	 */
-	private final PreparedStatement restoreTransitiveclosureEndTime;
+	private static final String restoreConceptsEndTimeSql =
+			"UPDATE concepts SET endtime = 'infinity' WHERE ? < endtime AND endtime < 'infinity';";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that restore the equivalents table in the dbms to a previous state
+	 * by removing rows that have been inserted after a specific timestamp.
+	 */
+	private static final String restoreEquivalentsDeleteSql = "DELETE FROM equivalents WHERE starttime > ?;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that restore the expressions table in the dbms to a previous state
+	 * by removing end times that have been inserted after a specific timestamp.
+	 */
+	private static final String restoreEquivalentsEndTimeSql =
+			"UPDATE equivalents SET endtime = 'infinity' WHERE ? < endtime AND endtime < 'infinity';";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that restore the expressions table in the dbms to a previous state
+	 * by removing rows that have been inserted after a specific timestamp.
+	 */
+	private static final String restoreExpressionsDeleteSql = "DELETE FROM expressions WHERE starttime > ?;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that restore the equivalents table in the dbms to a previous state
+	 * by removing end times that have been inserted after a specific timestamp.
+	 */
+	private static final String restoreExpressionsEndTimeSql =
+			"UPDATE expressions SET endtime = 'infinity' WHERE ? < endtime AND endtime < 'infinity';";
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that restore the transitiveclosure table in the dbms to a previous
+	 * state by removing rows that have been inserted after a specific timestamp.
+	 */
+	private static final String restoreTransitiveclosureDeleteSql =
+			"DELETE FROM transitiveclosure WHERE starttime > ?;";
+	/**
+	 * The SQL for a <code>PreparedStatement</code> that restore the transitiveclosure table in the dbms to a previous
+	 * state by removing end times that have been inserted after a specific timestamp.
+	 */
+	private static final String restoreTransitiveclosureEndTimeSql =
+			"UPDATE transitiveclosure SET endtime = 'infinity' WHERE ? < endtime AND endtime < 'infinity';";
 
 	/**
-	 * Creates a data store API and set up a connection to the PostgreSQL database management system containing the
-	 * expression database.
+	 * Creates a data store API and set up a pool of connections to the PostgreSQL database management system containing
+	 * the expression database. The pool contains at most {@link #DEFAULT_POOL_SIZE} connections.
 	 * 
 	 * @param url
 	 *            The URL for the database connection.
@@ -67,23 +115,202 @@ public class DataStoreService extends DataStore {
 	 */
 	public DataStoreService(String url, String userName, String password) throws DataStoreException {
 		super(url, userName, password);
+	}
+
+	/**
+	 * Creates a data store API and set up a pool of connections to the PostgreSQL database management system containing
+	 * the expression database.
+	 * 
+	 * @param url
+	 *            The URL for the database connection.
+	 * @param userName
+	 *            The user name for the database connection.
+	 * @param password
+	 *            The user password for the database connection.
+	 * @param poolSize
+	 *            The maximum number of connections in the connection pool.
+	 * @throws DataStoreException
+	 *             Thrown if there is a problem with the dbms or the connection to the dbms.
+	 */
+	public DataStoreService(String url, String userName, String password, int poolSize) throws DataStoreException {
+		super(url, userName, password, poolSize);
+	}
+
+	/**
+	 * Create the tables, views, indexes and functions of the expression database that do not already exist in the
+	 * dbms, so an empty database can be used as a data store and an existing one gets the indexes it lacks. The
+	 * function <code>store_relatives</code> is always replaced. Existing objects are never changed.
+	 * 
+	 * @return The names of the tables, views and indexes that were created.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	public List<String> createSchema() throws DataStoreException {
+		final List<String> created = new ArrayList<String>();
+		final PooledConnection c = pool.take();
+		try {
+			c.getConnection().setAutoCommit(false);
+			created.addAll(SchemaBootstrap.create(c, SchemaBootstrap.TABLES));
+			created.addAll(SchemaBootstrap.create(c, SchemaBootstrap.VIEWS));
+			created.addAll(SchemaBootstrap.create(c, SchemaBootstrap.INDEXES));
+			c.prepareStatement(createStoreRelativesFunctionSql).executeUpdate();
+			c.getConnection().commit();
+			c.getConnection().setAutoCommit(true);
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+		return created;
+	}
+
+	/**
+	 * Create the unique index on the MD5 digest of the expressions which the data store uses to look up and store
+	 * expressions, if it does not already exist. The index only has to be created once for each database.
+	 * 
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	public void createExpressionDigestIndex() throws DataStoreException {
+		final PooledConnection c = pool.take();
+		try {
+			SchemaBootstrap.create(c, new String[][] { SchemaBootstrap.EXPRESSION_DIGEST });
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+	}
+
+	/**
+	 * Create or replace the function which the data store uses to store the parent(s) and child(ren) of an expression
+	 * in the transitive closure table. The function has to be created once for each database and be replaced when the
+	 * data store changes how the transitive closure table is updated.
+	 * 
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store.
+	 */
+	public void createStoreRelativesFunction() throws DataStoreException {
+		final PooledConnection c = pool.take();
+		try {
+			c.prepareStatement(createStoreRelativesFunctionSql).executeUpdate();
+		} catch (SQLException e) {
+			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+	}
+
+	/**
+	 * Import the active concepts and the transitive closure of their IS-A relationships from a SNOMED CT release in
+	 * RF2 format. The files are read and the closure is computed in memory, and then the concepts and the closure are
+	 * copied into the data store in one transaction. The concepts must not already exist in the data store.
+	 * 
+	 * @param conceptFile
+	 *            The RF2 Concept snapshot file.
+	 * @param relationshipFile
+	 *            The RF2 Relationship snapshot file, with stated or inferred relationships.
+	 * @param time
+	 *            The time the concepts and relationships are stored. A <code>null</code> value is handled as the
+	 *            current time.
+	 * @throws DataStoreException
+	 *             Thrown if there are any problem with the data store, if a row in any of the files is malformed or if
+	 *             the IS-A relationships contain a cycle.
+	 * @throws IOException
+	 *             Thrown if any of the files could not be read.
+	 */
+	public void importRF2Snapshot(final File conceptFile, final File relationshipFile, final Date time)
+			throws DataStoreException, IOException {
+		final Timestamp sqlTimestamp = convertOrSetCurrentTimestampToSQLTimestamp(time);
+		final String timestamp = sqlTimestamp.toString();
+		final RF2Hierarchy hierarchy = RF2Hierarchy.read(conceptFile, relationshipFile);
+
+		final PooledConnection c = pool.take();
 		try {
-			restoreEquivalentsDelete = super.con.prepareStatement("DELETE FROM equivalents WHERE starttime > ?;");
-			restoreEquivalentsEndTime = super.con.prepareStatement(
-					"UPDATE equivalents SET endtime = 'infinity' WHERE ? < endtime AND endtime < 'infinity';");
+			c.getConnection().setAutoCommit(false);
+			final CopyManager copyManager = ((PGConnection) c.getConnection()).getCopyAPI();
 
-			restoreExpressionsDelete = super.con.prepareStatement("DELETE FROM expressions WHERE starttime > ?;");
-			restoreExpressionsEndTime = super.con.prepareStatement(
-					"UPDATE expressions SET endtime = 'infinity' WHERE ? < endtime AND endtime < 'infinity';");
+			// Copy the concepts.
+			final CopyIn conceptsCopy = copyManager.copyIn(importConceptsCopySql);
+			try {
+				final StringBuilder rows = new StringBuilder(COPY_BUFFER_SIZE + 256);
+				for (int i = 0; i < hierarchy.getConceptCount(); i++) {
+					rows.append(hierarchy.getConceptId(i)).append('\t').append(timestamp).append("\tinfinity\n");
+					if (rows.length() >= COPY_BUFFER_SIZE) {
+						writeToCopy(conceptsCopy, rows);
+					}
+				}
+				writeToCopy(conceptsCopy, rows);
+				conceptsCopy.endCopy();
+			} finally {
+				if (conceptsCopy.isActive()) {
+					conceptsCopy.cancelCopy();
+				}
+			}
 
-			restoreTransitiveclosureDelete = super.con
-					.prepareStatement("DELETE FROM transitiveclosure WHERE starttime > ?;");
-			restoreTransitiveclosureEndTime = super.con.prepareStatement(
-					"UPDATE transitiveclosure SET endtime = 'infinity' WHERE ? < endtime AND endtime < 'infinity';");
+			// Copy the transitive closure, with the parents as direct relations.
+			final CopyIn transitiveclosureCopy = copyManager.copyIn(importTransitiveclosureCopySql);
+			try {
+				final StringBuilder rows = new StringBuilder(COPY_BUFFER_SIZE + 256);
+				for (int i = 0; i < hierarchy.getConceptCount(); i++) {
+					final long sourceId = hierarchy.getConceptId(i);
+					for (int parent : hierarchy.getParents(i)) {
+						rows.append(sourceId).append('\t').append(hierarchy.getConceptId(parent)).append('\t')
+								.append(timestamp).append("\tinfinity\tt\n");
+					}
+					for (int ancestor : hierarchy.getIndirectAncestors(i)) {
+						rows.append(sourceId).append('\t').append(hierarchy.getConceptId(ancestor)).append('\t')
+								.append(timestamp).append("\tinfinity\tf\n");
+					}
+					if (rows.length() >= COPY_BUFFER_SIZE) {
+						writeToCopy(transitiveclosureCopy, rows);
+					}
+				}
+				writeToCopy(transitiveclosureCopy, rows);
+				transitiveclosureCopy.endCopy();
+			} finally {
+				if (transitiveclosureCopy.isActive()) {
+					transitiveclosureCopy.cancelCopy();
+				}
+			}
 
+			c.prepareStatement(importAnalyzeConceptsSql).executeUpdate();
+			c.prepareStatement(importAnalyzeTransitiveclosureSql).executeUpdate();
+			c.getConnection().commit();
+			final long[] conceptIds = new long[hierarchy.getConceptCount()];
+			for (int i = 0; i < conceptIds.length; i++) {
+				conceptIds[i] = hierarchy.getConceptId(i);
+			}
+			addConceptsToFilter(conceptIds, sqlTimestamp);
+			existenceCache.clear();
+			hierarchySnapshots.changed(sqlTimestamp.getTime(), null);
+			c.getConnection().setAutoCommit(true);
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+		}
+	}
+
+	/**
+	 * Send collected rows to the dbms during a copy and empty the collected rows.
+	 * 
+	 * @param copy
+	 *            The copy.
+	 * @param rows
+	 *            The rows in the text format of the copy.
+	 * @throws SQLException
+	 *             Thrown if there are any problem with the dbms.
+	 */
+	private static void writeToCopy(final CopyIn copy, final StringBuilder rows) throws SQLException {
+		final byte[] bytes;
+		try {
+			bytes = rows.toString().getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
 		}
+		copy.writeToCopy(bytes, 0, bytes.length);
+		rows.setLength(0);
 	}
 
 	/**
@@ -102,24 +329,46 @@ public class DataStoreService extends DataStore {
 		}
 		final Timestamp sqlTimestamp = new Timestamp(time.getTime());
 
+		final PooledConnection c = pool.take();
 		try {
-			super.con.setAutoCommit(false);
+			c.getConnection().setAutoCommit(false);
+			final PreparedStatement restoreConceptsDelete = c.prepareStatement(restoreConceptsDeleteSql);
+			restoreConceptsDelete.setTimestamp(1, sqlTimestamp);
+			restoreConceptsDelete.executeUpdate();
+			final PreparedStatement restoreConceptsEndTime = c.prepareStatement(restoreConceptsEndTimeSql);
+			restoreConceptsEndTime.setTimestamp(1, sqlTimestamp);
+			restoreConceptsEndTime.executeUpdate();
+			final PreparedStatement restoreEquivalentsDelete = c.prepareStatement(restoreEquivalentsDeleteSql);
 			restoreEquivalentsDelete.setTimestamp(1, sqlTimestamp);
 			restoreEquivalentsDelete.executeUpdate();
+			final PreparedStatement restoreEquivalentsEndTime = c.prepareStatement(restoreEquivalentsEndTimeSql);
 			restoreEquivalentsEndTime.setTimestamp(1, sqlTimestamp);
 			restoreEquivalentsEndTime.executeUpdate();
+			final PreparedStatement restoreExpressionsDelete = c.prepareStatement(restoreExpressionsDeleteSql);
 			restoreExpressionsDelete.setTimestamp(1, sqlTimestamp);
 			restoreExpressionsDelete.executeUpdate();
+			final PreparedStatement restoreExpressionsEndTime = c.prepareStatement(restoreExpressionsEndTimeSql);
 			restoreExpressionsEndTime.setTimestamp(1, sqlTimestamp);
 			restoreExpressionsEndTime.executeUpdate();
+			final PreparedStatement restoreTransitiveclosureDelete = c
+					.prepareStatement(restoreTransitiveclosureDeleteSql);
 			restoreTransitiveclosureDelete.setTimestamp(1, sqlTimestamp);
 			restoreTransitiveclosureDelete.executeUpdate();
+			final PreparedStatement restoreTransitiveclosureEndTime = c
+					.prepareStatement(restoreTransitiveclosureEndTimeSql);
 			restoreTransitiveclosureEndTime.setTimestamp(1, sqlTimestamp);
 			restoreTransitiveclosureEndTime.executeUpdate();
-			super.con.commit();
-			super.con.setAutoCommit(true);
+			c.getConnection().commit();
+			restoreConceptFilter(sqlTimestamp);
+			c.getConnection().setAutoCommit(true);
 		} catch (SQLException e) {
 			throw new DataStoreException(e);
+		} finally {
+			pool.release(c);
+			// The expressions that remain are looked up again the next time they are used.
+			expressionIdCache.clear();
+			existenceCache.clear();
+			hierarchySnapshots.changed(sqlTimestamp.getTime(), null);
 		}
 	}
 
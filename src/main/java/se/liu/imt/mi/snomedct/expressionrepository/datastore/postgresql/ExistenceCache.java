@@ -0,0 +1,164 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * A bounded cache of the periods in which concept and expression ids exist. Since all periods of an id are cached, the
+ * cache tells if the id exists at any point in time, and an id without periods is known not to exist at all. When the
+ * cache is full the least recently used id is evicted, and an entry that is older than the time to live is not used.
+ * <p>
+ * Changes made through the data store remove the changed ids from the cache. A cache entry that was read from the dbms
+ * while an id was changed is not stored, so the cache never holds periods from before a change.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class ExistenceCache {
+
+	/**
+	 * The periods of an id together with the time they were cached.
+	 */
+	private static class CachedPeriods {
+		final Timestamp[] starts;
+		final Timestamp[] ends;
+		final long cachedAt;
+
+		CachedPeriods(final Timestamp[] starts, final Timestamp[] ends, final long cachedAt) {
+			this.starts = starts;
+			this.ends = ends;
+			this.cachedAt = cachedAt;
+		}
+	}
+
+	/**
+	 * The maximum number of ids in the cache.
+	 */
+	private final int maxSize;
+
+	/**
+	 * The time in milliseconds an entry is used after it was cached.
+	 */
+	private final long timeToLive;
+
+	/**
+	 * The number of times ids have been removed from the cache.
+	 */
+	private long generation = 0;
+
+	/**
+	 * The entries by id, in the order they were used with the least recently used first.
+	 */
+	private final LinkedHashMap<ExpressionId, CachedPeriods> entries;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param maxSize
+	 *            The maximum number of ids in the cache. A size of 0 disables the cache.
+	 * @param timeToLive
+	 *            The time in milliseconds an entry is used after it was cached.
+	 */
+	ExistenceCache(final int maxSize, final long timeToLive) {
+		super();
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<ExpressionId, CachedPeriods>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<ExpressionId, CachedPeriods> eldest) {
+				return size() > ExistenceCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Looks up if an id exists at a specific time.
+	 *
+	 * @param id
+	 *            The id.
+	 * @param time
+	 *            The specific time.
+	 * @return If the id exists at the time or <code>null</code> if the id is not cached.
+	 */
+	synchronized Boolean isExisting(final ExpressionId id, final Timestamp time) {
+		final CachedPeriods entry = entries.get(id);
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.cachedAt >= timeToLive) {
+			entries.remove(id);
+			return null;
+		}
+		return isExisting(entry.starts, entry.ends, time);
+	}
+
+	/**
+	 * Check if an id exists at a specific time.
+	 *
+	 * @param starts
+	 *            The start time of each period in which the id exists.
+	 * @param ends
+	 *            The end time of each period, where <code>null</code> is a period without end.
+	 * @param time
+	 *            The specific time.
+	 * @return If the id exists at the time or not.
+	 */
+	static boolean isExisting(final Timestamp[] starts, final Timestamp[] ends, final Timestamp time) {
+		for (int i = 0; i < starts.length; i++) {
+			if (!starts[i].after(time) && (ends[i] == null || time.before(ends[i]))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Caches the periods of an id, unless any id has been removed from the cache since the periods were read.
+	 *
+	 * @param id
+	 *            The id.
+	 * @param starts
+	 *            The start time of each period.
+	 * @param ends
+	 *            The end time of each period, where <code>null</code> is a period without end.
+	 * @param generation
+	 *            The value of {@link #getGeneration()} before the periods were read.
+	 */
+	synchronized void put(final ExpressionId id, final Timestamp[] starts, final Timestamp[] ends,
+			final long generation) {
+		if (maxSize > 0 && generation == this.generation) {
+			entries.put(id, new CachedPeriods(starts, ends, System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * @return The number of times ids have been removed from the cache.
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Removes an id from the cache.
+	 *
+	 * @param id
+	 *            The id to remove.
+	 */
+	synchronized void remove(final ExpressionId id) {
+		generation++;
+		entries.remove(id);
+	}
+
+	/**
+	 * Removes all ids from the cache.
+	 */
+	synchronized void clear() {
+		generation++;
+		entries.clear();
+	}
+}
@@ -0,0 +1,123 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * A bounded cache from expressions to their ids at the current time. When the cache is full the least recently used
+ * expression is evicted, and an entry that is older than the time to live is not used.
+ * <p>
+ * The cache only holds expressions that exist, since an expression that does not exist may be stored at any time.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class ExpressionIdCache {
+
+	/**
+	 * A cached id together with the time it was cached.
+	 */
+	private static class CachedId {
+		final ExpressionId id;
+		final long cachedAt;
+
+		CachedId(final ExpressionId id, final long cachedAt) {
+			this.id = id;
+			this.cachedAt = cachedAt;
+		}
+	}
+
+	/**
+	 * The maximum number of expressions in the cache.
+	 */
+	private final int maxSize;
+
+	/**
+	 * The time in milliseconds an entry is used after it was cached.
+	 */
+	private final long timeToLive;
+
+	/**
+	 * The number of times the cache has been cleared.
+	 */
+	private long generation = 0;
+
+	/**
+	 * The entries by expression, in the order they were used with the least recently used first.
+	 */
+	private final LinkedHashMap<String, CachedId> entries;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param maxSize
+	 *            The maximum number of expressions in the cache. A size of 0 disables the cache.
+	 * @param timeToLive
+	 *            The time in milliseconds an entry is used after it was cached.
+	 */
+	ExpressionIdCache(final int maxSize, final long timeToLive) {
+		super();
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<String, CachedId>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CachedId> eldest) {
+				return size() > ExpressionIdCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Looks up an expression's id.
+	 *
+	 * @param expression
+	 *            The expression.
+	 * @return The expression's id or <code>null</code> if the expression is not cached.
+	 */
+	synchronized ExpressionId get(final String expression) {
+		final CachedId entry = entries.get(expression);
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.cachedAt >= timeToLive) {
+			entries.remove(expression);
+			return null;
+		}
+		return entry.id;
+	}
+
+	/**
+	 * Caches an expression's id.
+	 *
+	 * @param expression
+	 *            The expression.
+	 * @param id
+	 *            The expression's id.
+	 * @param generation
+	 *            The value of {@link #getGeneration()} before the id was read.
+	 */
+	synchronized void put(final String expression, final ExpressionId id, final long generation) {
+		if (maxSize > 0 && generation == this.generation) {
+			entries.put(expression, new CachedId(id, System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * @return The number of times the cache has been cleared.
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Removes all expressions from the cache.
+	 */
+	synchronized void clear() {
+		generation++;
+		entries.clear();
+	}
+}
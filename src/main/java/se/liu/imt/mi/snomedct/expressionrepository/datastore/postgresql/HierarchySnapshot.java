@@ -0,0 +1,450 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * The rows of the <code>coneqv</code> view and the <code>transitiveclosure</code> table that are active at one point
+ * in time, kept in memory so the relatives of concepts and expressions at that time can be found without asking the
+ * dbms. The ids are numbered by their position in a sorted array and each relation is kept as arrays of such numbers,
+ * where the relatives of number <code>i</code> are found from <code>start[i]</code> up to <code>start[i + 1]</code>.
+ * <p>
+ * A snapshot is never changed after it has been created, so it can be used by several threads at the same time. A
+ * change in the data store is instead applied to a new snapshot made from the old one.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class HierarchySnapshot {
+
+	/**
+	 * The ids in ascending order.
+	 */
+	private final long[] ids;
+	/**
+	 * Where the equivalents of each id start in <code>equivalents</code>.
+	 */
+	private final int[] equivalentStart;
+	/**
+	 * The equivalents of each id, from <code>coneqv.id1</code> to <code>coneqv.id2</code>.
+	 */
+	private final int[] equivalents;
+	/**
+	 * Where the ancestors of each id start in <code>ancestors</code>.
+	 */
+	private final int[] ancestorStart;
+	/**
+	 * The ancestors of each id, direct or not.
+	 */
+	private final int[] ancestors;
+	/**
+	 * Where the descendants of each id start in <code>descendants</code>.
+	 */
+	private final int[] descendantStart;
+	/**
+	 * The descendants of each id, direct or not.
+	 */
+	private final int[] descendants;
+	/**
+	 * Where the parents of each id start in <code>parents</code>.
+	 */
+	private final int[] parentStart;
+	/**
+	 * The parents of each id.
+	 */
+	private final int[] parents;
+	/**
+	 * Where the children of each id start in <code>children</code>.
+	 */
+	private final int[] childStart;
+	/**
+	 * The children of each id.
+	 */
+	private final int[] children;
+
+	/**
+	 * The number of changes in the data store, when the snapshot was created.
+	 */
+	private final long generation;
+	/**
+	 * The point in time the rows are active at.
+	 */
+	private final long time;
+	/**
+	 * The time the snapshot was created.
+	 */
+	private final long created;
+	/**
+	 * The first time after the time of the snapshot when a row starts or ends, or <code>Long.MAX_VALUE</code> if no row
+	 * does.
+	 */
+	private final long nextChange;
+
+	/**
+	 * Creates a snapshot from the rows that are active at the time of the snapshot.
+	 *
+	 * @param equivalentId1s
+	 *            The <code>id1</code> column of the <code>coneqv</code> rows.
+	 * @param equivalentId2s
+	 *            The <code>id2</code> column of the <code>coneqv</code> rows.
+	 * @param equivalentCount
+	 *            The number of <code>coneqv</code> rows.
+	 * @param sourceIds
+	 *            The <code>sourceid</code> column of the <code>transitiveclosure</code> rows.
+	 * @param destinationIds
+	 *            The <code>destinationid</code> column of the <code>transitiveclosure</code> rows.
+	 * @param directRelations
+	 *            The <code>directrelation</code> column of the <code>transitiveclosure</code> rows.
+	 * @param relationCount
+	 *            The number of <code>transitiveclosure</code> rows.
+	 * @param generation
+	 *            The number of changes in the data store, when the rows were read.
+	 * @param time
+	 *            The point in time the rows are active at.
+	 * @param created
+	 *            The time the rows were read.
+	 * @param nextChange
+	 *            The first time after the time of the snapshot when a row starts or ends.
+	 */
+	HierarchySnapshot(final long[] equivalentId1s, final long[] equivalentId2s, final int equivalentCount,
+			final long[] sourceIds, final long[] destinationIds, final boolean[] directRelations,
+			final int relationCount, final long generation, final long time, final long created,
+			final long nextChange) {
+		super();
+		this.generation = generation;
+		this.time = time;
+		this.created = created;
+		this.nextChange = nextChange;
+
+		// Number all ids.
+		long[] allIds = new long[2 * (equivalentCount + relationCount)];
+		System.arraycopy(equivalentId1s, 0, allIds, 0, equivalentCount);
+		System.arraycopy(equivalentId2s, 0, allIds, equivalentCount, equivalentCount);
+		System.arraycopy(sourceIds, 0, allIds, 2 * equivalentCount, relationCount);
+		System.arraycopy(destinationIds, 0, allIds, 2 * equivalentCount + relationCount, relationCount);
+		Arrays.sort(allIds);
+		int n = 0;
+		for (int i = 0; i < allIds.length; i++) {
+			if (n == 0 || allIds[i] != allIds[n - 1]) {
+				allIds[n++] = allIds[i];
+			}
+		}
+		ids = Arrays.copyOf(allIds, n);
+
+		final int[] id1s = toNumbers(equivalentId1s, equivalentCount);
+		final int[] id2s = toNumbers(equivalentId2s, equivalentCount);
+		final int[] sources = toNumbers(sourceIds, relationCount);
+		final int[] destinations = toNumbers(destinationIds, relationCount);
+		int directCount = 0;
+		for (int i = 0; i < relationCount; i++) {
+			if (directRelations[i]) {
+				directCount++;
+			}
+		}
+		final int[] directSources = new int[directCount];
+		final int[] directDestinations = new int[directCount];
+		for (int i = 0, j = 0; i < relationCount; i++) {
+			if (directRelations[i]) {
+				directSources[j] = sources[i];
+				directDestinations[j++] = destinations[i];
+			}
+		}
+
+		equivalentStart = new int[n + 1];
+		equivalents = group(id1s, id2s, equivalentStart);
+		ancestorStart = new int[n + 1];
+		ancestors = group(sources, destinations, ancestorStart);
+		descendantStart = new int[n + 1];
+		descendants = group(destinations, sources, descendantStart);
+		parentStart = new int[n + 1];
+		parents = group(directSources, directDestinations, parentStart);
+		childStart = new int[n + 1];
+		children = group(directDestinations, directSources, childStart);
+	}
+
+	/**
+	 * Look up the numbers of ids.
+	 *
+	 * @param values
+	 *            The ids, which all must be numbered.
+	 * @param count
+	 *            The number of ids to look up.
+	 * @return The numbers.
+	 */
+	private int[] toNumbers(final long[] values, final int count) {
+		final int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = Arrays.binarySearch(ids, values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Group pairs of numbers by their first number.
+	 *
+	 * @param from
+	 *            The first number of each pair.
+	 * @param to
+	 *            The second number of each pair.
+	 * @param start
+	 *            Filled with where the second numbers for each first number start in the result.
+	 * @return The second numbers grouped by the first numbers.
+	 */
+	private static int[] group(final int[] from, final int[] to, final int[] start) {
+		for (int i = 0; i < from.length; i++) {
+			start[from[i] + 1]++;
+		}
+		for (int i = 1; i < start.length; i++) {
+			start[i] += start[i - 1];
+		}
+		final int[] fill = Arrays.copyOf(start, start.length - 1);
+		final int[] result = new int[to.length];
+		for (int i = 0; i < from.length; i++) {
+			result[fill[from[i]]++] = to[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @return The number of changes in the data store, when the snapshot was created.
+	 */
+	long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return The point in time the rows are active at.
+	 */
+	long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return The time the snapshot was created.
+	 */
+	long getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return The first time after the time of the snapshot when a row starts or ends, or <code>Long.MAX_VALUE</code>
+	 *         if no row does.
+	 */
+	long getNextChange() {
+		return nextChange;
+	}
+
+	/**
+	 * Create a snapshot for a later point in time, from the rows of this snapshot and the rows that start and end at
+	 * the later point in time. No other rows may start or end in between. The new snapshot keeps the time this
+	 * snapshot was created, so it is not used for longer than the time to live of the rows that were read.
+	 *
+	 * @param changes
+	 *            The rows that start and end.
+	 * @param generation
+	 *            The number of changes in the data store, with the change.
+	 * @param time
+	 *            The later point in time.
+	 * @return The new snapshot.
+	 */
+	HierarchySnapshot apply(final HierarchySnapshotChanges changes, final long generation, final long time) {
+		final List<long[]> removedEquivalents = new ArrayList<long[]>(changes.removedEquivalents);
+		final long[] removedId1s = HierarchySnapshotChanges.getFirstIds(removedEquivalents);
+		final int equivalentCapacity = equivalents.length + changes.addedEquivalents.size();
+		final long[] id1s = new long[equivalentCapacity];
+		final long[] id2s = new long[equivalentCapacity];
+		int equivalentCount = 0;
+		for (int i = 0; i < ids.length; i++) {
+			final boolean removed = Arrays.binarySearch(removedId1s, ids[i]) >= 0;
+			for (int e = equivalentStart[i]; e < equivalentStart[i + 1]; e++) {
+				final long id2 = ids[equivalents[e]];
+				if (!removed || !HierarchySnapshotChanges.removeRow(removedEquivalents, ids[i], id2)) {
+					id1s[equivalentCount] = ids[i];
+					id2s[equivalentCount++] = id2;
+				}
+			}
+		}
+		for (long[] row : changes.addedEquivalents) {
+			id1s[equivalentCount] = row[0];
+			id2s[equivalentCount++] = row[1];
+		}
+
+		// The ancestors of an id are all its rows, and the parents the direct ones among them.
+		final List<long[]> removedRelations = new ArrayList<long[]>(changes.removedRelations);
+		final long[] removedSourceIds = HierarchySnapshotChanges.getFirstIds(removedRelations);
+		final int relationCapacity = ancestors.length + changes.addedRelations.size();
+		final long[] sourceIds = new long[relationCapacity];
+		final long[] destinationIds = new long[relationCapacity];
+		final boolean[] directRelations = new boolean[relationCapacity];
+		int relationCount = 0;
+		for (int i = 0; i < ids.length; i++) {
+			final boolean removed = Arrays.binarySearch(removedSourceIds, ids[i]) >= 0;
+			final int[] direct = Arrays.copyOfRange(parents, parentStart[i], parentStart[i + 1]);
+			int directLeft = direct.length;
+			for (int r = ancestorStart[i]; r < ancestorStart[i + 1]; r++) {
+				boolean isDirect = false;
+				for (int d = 0; d < directLeft && !isDirect; d++) {
+					if (direct[d] == ancestors[r]) {
+						direct[d] = direct[--directLeft];
+						isDirect = true;
+					}
+				}
+				final long destinationId = ids[ancestors[r]];
+				if (!removed || !HierarchySnapshotChanges.removeRow(removedRelations, ids[i], destinationId,
+						isDirect ? 1 : 0)) {
+					sourceIds[relationCount] = ids[i];
+					destinationIds[relationCount] = destinationId;
+					directRelations[relationCount++] = isDirect;
+				}
+			}
+		}
+		for (long[] row : changes.addedRelations) {
+			sourceIds[relationCount] = row[0];
+			destinationIds[relationCount] = row[1];
+			directRelations[relationCount++] = row[2] == 1;
+		}
+
+		return new HierarchySnapshot(id1s, id2s, equivalentCount, sourceIds, destinationIds, directRelations,
+				relationCount, generation, time, created, Math.min(nextChange, changes.nextChange));
+	}
+
+	/**
+	 * Check if the snapshot can answer for an id, i.e. if the id has an active row in the <code>coneqv</code> view.
+	 * Other ids are left to the dbms, which also tells if they exist.
+	 *
+	 * @param id
+	 *            The id.
+	 * @return If the snapshot can answer for the id or not.
+	 */
+	boolean contains(final ExpressionId id) {
+		final int i = Arrays.binarySearch(ids, id.getId());
+		return i >= 0 && equivalentStart[i] < equivalentStart[i + 1];
+	}
+
+	/**
+	 * Check if the snapshot can answer for several ids.
+	 *
+	 * @param ids
+	 *            The ids.
+	 * @return If the snapshot can answer for all the ids or not.
+	 */
+	boolean containsAll(final Collection<ExpressionId> ids) {
+		for (ExpressionId id : ids) {
+			if (!contains(id)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the relatives of an id in the same way as the queries on the <code>coneqv</code> view and the
+	 * <code>transitiveclosure</code> table, i.e. the equivalents of the relatives of the equivalents of the id.
+	 *
+	 * @param id
+	 *            The id, which the snapshot must contain.
+	 * @param up
+	 *            <code>true</code> for ancestors or parents, <code>false</code> for descendants or children.
+	 * @param direct
+	 *            <code>true</code> for only parents or children.
+	 * @return The relatives.
+	 */
+	Set<ExpressionId> getRelatives(final ExpressionId id, final boolean up, final boolean direct) {
+		final int[] start = up ? (direct ? parentStart : ancestorStart) : (direct ? childStart : descendantStart);
+		final int[] relatives = up ? (direct ? parents : ancestors) : (direct ? children : descendants);
+		final HashSet<ExpressionId> result = new HashSet<ExpressionId>();
+		final int i = Arrays.binarySearch(ids, id.getId());
+		for (int e = equivalentStart[i]; e < equivalentStart[i + 1]; e++) {
+			final int equivalent = equivalents[e];
+			for (int r = start[equivalent]; r < start[equivalent + 1]; r++) {
+				final int relative = relatives[r];
+				for (int q = equivalentStart[relative]; q < equivalentStart[relative + 1]; q++) {
+					result.add(new ExpressionId(ids[equivalents[q]]));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Count the relatives of an id in the same way as {@link #getRelatives(ExpressionId, boolean, boolean)}, without
+	 * creating their ids.
+	 *
+	 * @param id
+	 *            The id, which the snapshot must contain.
+	 * @param up
+	 *            <code>true</code> for ancestors or parents, <code>false</code> for descendants or children.
+	 * @param direct
+	 *            <code>true</code> for only parents or children.
+	 * @return The number of relatives.
+	 */
+	int countRelatives(final ExpressionId id, final boolean up, final boolean direct) {
+		return getRelativeNumbers(id, up, direct).cardinality();
+	}
+
+	/**
+	 * Get a page of the relatives of an id, ordered by their ids. The relatives are marked by their numbers in a bit
+	 * set, which is ordered in the same way as the ids, so only the ids in the page are created.
+	 *
+	 * @param id
+	 *            The id, which the snapshot must contain.
+	 * @param up
+	 *            <code>true</code> for ancestors or parents, <code>false</code> for descendants or children.
+	 * @param direct
+	 *            <code>true</code> for only parents or children.
+	 * @param after
+	 *            The id that the page starts after, or <code>null</code> for the first page.
+	 * @param limit
+	 *            The maximum number of ids in the page.
+	 * @return The relatives that are greater than <code>after</code>, in ascending order.
+	 */
+	List<ExpressionId> getRelatives(final ExpressionId id, final boolean up, final boolean direct,
+			final ExpressionId after, final int limit) {
+		final BitSet numbers = getRelativeNumbers(id, up, direct);
+		int first = 0;
+		if (after != null) {
+			first = Arrays.binarySearch(ids, after.getId());
+			first = first < 0 ? -first - 1 : first + 1;
+		}
+		final List<ExpressionId> result = new ArrayList<ExpressionId>();
+		for (int n = numbers.nextSetBit(first); n >= 0 && result.size() < limit; n = numbers.nextSetBit(n + 1)) {
+			result.add(new ExpressionId(ids[n]));
+		}
+		return result;
+	}
+
+	/**
+	 * Mark the relatives of an id by their numbers.
+	 *
+	 * @param id
+	 *            The id, which the snapshot must contain.
+	 * @param up
+	 *            <code>true</code> for ancestors or parents, <code>false</code> for descendants or children.
+	 * @param direct
+	 *            <code>true</code> for only parents or children.
+	 * @return The numbers of the relatives.
+	 */
+	private BitSet getRelativeNumbers(final ExpressionId id, final boolean up, final boolean direct) {
+		final int[] start = up ? (direct ? parentStart : ancestorStart) : (direct ? childStart : descendantStart);
+		final int[] relatives = up ? (direct ? parents : ancestors) : (direct ? children : descendants);
+		final BitSet numbers = new BitSet(ids.length);
+		final int i = Arrays.binarySearch(ids, id.getId());
+		for (int e = equivalentStart[i]; e < equivalentStart[i + 1]; e++) {
+			final int equivalent = equivalents[e];
+			for (int r = start[equivalent]; r < start[equivalent + 1]; r++) {
+				final int relative = relatives[r];
+				for (int q = equivalentStart[relative]; q < equivalentStart[relative + 1]; q++) {
+					numbers.set(equivalents[q]);
+				}
+			}
+		}
+		return numbers;
+	}
+}
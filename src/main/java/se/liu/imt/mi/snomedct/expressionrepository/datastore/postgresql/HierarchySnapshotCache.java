@@ -0,0 +1,183 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The hierarchy snapshots for the points in time that are queried often. A snapshot is used until it has been cached
+ * for longer than the time to live or until the data store is changed at or before its point in time, and a snapshot
+ * for the current time also until a row starts or ends after the time the snapshot was created.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class HierarchySnapshotCache {
+
+	/**
+	 * The key of the snapshot for the current time.
+	 */
+	static final long CURRENT_TIME = Long.MIN_VALUE;
+
+	/**
+	 * The time in milliseconds a snapshot is used.
+	 */
+	private final long timeToLive;
+	/**
+	 * The number of changes made through the data store, which numbers each change.
+	 */
+	private final AtomicLong changes = new AtomicLong();
+	/**
+	 * The number of the last change that affected the snapshot for each key, by the keys of the points in time to
+	 * keep snapshots for.
+	 */
+	private volatile Map<Long, AtomicLong> generations = Collections.emptyMap();
+	/**
+	 * If a snapshot is kept for the current time or not.
+	 */
+	private volatile boolean currentTime = false;
+	/**
+	 * The snapshots by their keys.
+	 */
+	private final ConcurrentHashMap<Long, HierarchySnapshot> snapshots =
+			new ConcurrentHashMap<Long, HierarchySnapshot>();
+	/**
+	 * The keys of the snapshots that are being created.
+	 */
+	private final Set<Long> loading = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+	/**
+	 * Creates a cache which keeps no snapshots until the points in time are set.
+	 *
+	 * @param timeToLive
+	 *            The time in milliseconds a snapshot is used.
+	 */
+	HierarchySnapshotCache(final long timeToLive) {
+		super();
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Set the points in time to keep snapshots for and drop all snapshots.
+	 *
+	 * @param times
+	 *            The points in time.
+	 * @param currentTime
+	 *            If a snapshot is kept for the current time or not.
+	 */
+	void setTimes(final Collection<Date> times, final boolean currentTime) {
+		// A snapshot that is being created with the old generations is never used.
+		final long change = changes.incrementAndGet();
+		final HashMap<Long, AtomicLong> newGenerations = new HashMap<Long, AtomicLong>();
+		for (Date time : times) {
+			newGenerations.put(time.getTime(), new AtomicLong(change));
+		}
+		newGenerations.put(CURRENT_TIME, new AtomicLong(change));
+		this.generations = newGenerations;
+		this.currentTime = currentTime;
+		snapshots.clear();
+	}
+
+	/**
+	 * Get the key of the snapshot for a point in time.
+	 *
+	 * @param time
+	 *            The point in time. A <code>null</code> value is handled as the current time.
+	 * @return The key or <code>null</code> if no snapshot is kept for the point in time.
+	 */
+	Long getKey(final Date time) {
+		if (time == null) {
+			return currentTime ? CURRENT_TIME : null;
+		}
+		return generations.containsKey(time.getTime()) ? time.getTime() : null;
+	}
+
+	/**
+	 * Get a snapshot if it can still be used.
+	 *
+	 * @param key
+	 *            The key of the snapshot.
+	 * @param now
+	 *            The current time.
+	 * @return The snapshot or <code>null</code> if there is no snapshot that can be used.
+	 */
+	HierarchySnapshot get(final Long key, final long now) {
+		final HierarchySnapshot snapshot = snapshots.get(key);
+		if (snapshot == null || snapshot.getGeneration() != getGeneration(key)
+				|| now - snapshot.getCreated() >= timeToLive
+				|| (key == CURRENT_TIME && now >= snapshot.getNextChange())) {
+			return null;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Mark that a snapshot is being created, unless it already is.
+	 *
+	 * @param key
+	 *            The key of the snapshot.
+	 * @return <code>true</code> if the snapshot should be created by the caller.
+	 */
+	boolean startLoading(final Long key) {
+		return loading.add(key);
+	}
+
+	/**
+	 * Store a created snapshot.
+	 *
+	 * @param key
+	 *            The key of the snapshot.
+	 * @param snapshot
+	 *            The snapshot or <code>null</code> if it could not be created.
+	 */
+	void finishLoading(final Long key, final HierarchySnapshot snapshot) {
+		if (snapshot != null) {
+			snapshots.put(key, snapshot);
+		}
+		loading.remove(key);
+	}
+
+	/**
+	 * @param key
+	 *            The key of a snapshot.
+	 * @return The number of the last change that affected the snapshot, or -1 if no snapshot is kept for the key.
+	 */
+	long getGeneration(final Long key) {
+		final AtomicLong generation = generations.get(key);
+		return generation != null ? generation.get() : -1;
+	}
+
+	/**
+	 * Record that the data store has been changed at a point in time. The rows that start or end at that point in
+	 * time are active at it and later, so the snapshots for the point in time, the later ones and the one for the
+	 * current time are no longer used.
+	 *
+	 * @param time
+	 *            The point in time of the change.
+	 * @param snapshot
+	 *            The snapshot for the current time that was used before the change, or <code>null</code>.
+	 * @return The number of the change, if the change can be applied to the snapshot for the current time, or -1 if
+	 *         the snapshot has to be created again since it is missing or another change has been made after it.
+	 */
+	long changed(final long time, final HierarchySnapshot snapshot) {
+		final long change = changes.incrementAndGet();
+		long result = -1;
+		for (Map.Entry<Long, AtomicLong> entry : generations.entrySet()) {
+			final long key = entry.getKey();
+			if (key == CURRENT_TIME) {
+				final long previous = entry.getValue().getAndSet(change);
+				if (snapshot != null && snapshot.getGeneration() == previous) {
+					result = change;
+				}
+			} else if (key >= time) {
+				entry.getValue().set(change);
+			}
+		}
+		return result;
+	}
+}
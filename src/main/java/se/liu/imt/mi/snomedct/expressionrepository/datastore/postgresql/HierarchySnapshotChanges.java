@@ -0,0 +1,159 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rows of the <code>coneqv</code> view and the <code>transitiveclosure</code> table that start or end at the time
+ * of a change in the data store, which are applied to a hierarchy snapshot instead of reading all rows again.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class HierarchySnapshotChanges {
+
+	/**
+	 * The <code>coneqv</code> rows that start, as pairs of <code>id1</code> and <code>id2</code>.
+	 */
+	final List<long[]> addedEquivalents = new ArrayList<long[]>();
+	/**
+	 * The <code>coneqv</code> rows that end, as pairs of <code>id1</code> and <code>id2</code>.
+	 */
+	final List<long[]> removedEquivalents = new ArrayList<long[]>();
+	/**
+	 * The <code>transitiveclosure</code> rows that start, as <code>sourceid</code>, <code>destinationid</code> and 1
+	 * for a direct relation or 0 for an indirect one.
+	 */
+	final List<long[]> addedRelations = new ArrayList<long[]>();
+	/**
+	 * The <code>transitiveclosure</code> rows that end, in the same form as <code>addedRelations</code>.
+	 */
+	final List<long[]> removedRelations = new ArrayList<long[]>();
+	/**
+	 * The first time after the change when a row that starts ends, or <code>Long.MAX_VALUE</code> if no such row
+	 * ends.
+	 */
+	long nextChange = Long.MAX_VALUE;
+
+	/**
+	 * @param id1
+	 *            The <code>id1</code> column of a <code>coneqv</code> row that starts.
+	 * @param id2
+	 *            The <code>id2</code> column of the row.
+	 */
+	void addEquivalent(final long id1, final long id2) {
+		// A row is found once for each of the equivalents that start.
+		if (!containsRow(addedEquivalents, id1, id2)) {
+			addedEquivalents.add(new long[] { id1, id2 });
+		}
+	}
+
+	/**
+	 * @param id1
+	 *            The <code>id1</code> column of a <code>coneqv</code> row that ends.
+	 * @param id2
+	 *            The <code>id2</code> column of the row.
+	 */
+	void removeEquivalent(final long id1, final long id2) {
+		// A row is found once for each of the equivalents that end.
+		if (!containsRow(removedEquivalents, id1, id2)) {
+			removedEquivalents.add(new long[] { id1, id2 });
+		}
+	}
+
+	/**
+	 * @param sourceId
+	 *            The <code>sourceid</code> column of a <code>transitiveclosure</code> row that starts.
+	 * @param destinationId
+	 *            The <code>destinationid</code> column of the row.
+	 * @param directRelation
+	 *            The <code>directrelation</code> column of the row.
+	 */
+	void addRelation(final long sourceId, final long destinationId, final boolean directRelation) {
+		addedRelations.add(new long[] { sourceId, destinationId, directRelation ? 1 : 0 });
+	}
+
+	/**
+	 * @param sourceId
+	 *            The <code>sourceid</code> column of a <code>transitiveclosure</code> row that ends.
+	 * @param destinationId
+	 *            The <code>destinationid</code> column of the row.
+	 * @param directRelation
+	 *            The <code>directrelation</code> column of the row.
+	 */
+	void removeRelation(final long sourceId, final long destinationId, final boolean directRelation) {
+		removedRelations.add(new long[] { sourceId, destinationId, directRelation ? 1 : 0 });
+	}
+
+	/**
+	 * @param endTime
+	 *            The end time of a row that starts, or <code>null</code> if it does not end.
+	 */
+	void addEndTime(final Timestamp endTime) {
+		if (endTime != null) {
+			nextChange = Math.min(nextChange, endTime.getTime());
+		}
+	}
+
+	/**
+	 * @param rows
+	 *            Rows that end.
+	 * @return The first column of the rows in ascending order, so a row in a snapshot can be checked against the rows
+	 *         by a binary search on its first column.
+	 */
+	static long[] getFirstIds(final List<long[]> rows) {
+		final long[] result = new long[rows.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = rows.get(i)[0];
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Find and remove a row that ends.
+	 *
+	 * @param rows
+	 *            The rows that end and have not been found yet.
+	 * @param row
+	 *            The row to look for.
+	 * @return If the row was found or not.
+	 */
+	static boolean removeRow(final List<long[]> rows, final long... row) {
+		final int index = indexOfRow(rows, row);
+		if (index < 0) {
+			return false;
+		}
+		rows.remove(index);
+		return true;
+	}
+
+	/**
+	 * @param rows
+	 *            Some rows.
+	 * @param row
+	 *            The row to look for.
+	 * @return If the row is among the rows or not.
+	 */
+	private static boolean containsRow(final List<long[]> rows, final long... row) {
+		return indexOfRow(rows, row) >= 0;
+	}
+
+	/**
+	 * @param rows
+	 *            Some rows.
+	 * @param row
+	 *            The row to look for.
+	 * @return The index of the row among the rows, or -1 if it is not among them.
+	 */
+	private static int indexOfRow(final List<long[]> rows, final long... row) {
+		for (int i = 0; i < rows.size(); i++) {
+			if (Arrays.equals(rows.get(i), row)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
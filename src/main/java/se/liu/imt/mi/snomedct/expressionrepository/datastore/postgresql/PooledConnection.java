@@ -0,0 +1,76 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+/**
+ * A connection in a {@link ConnectionPool} together with the prepared statements that have been created for it.
+ * <p>
+ * A <code>PooledConnection</code> is only used by one thread at a time, so the statement cache is not synchronized.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class PooledConnection {
+
+	/**
+	 * The connection to the dbms.
+	 */
+	private final Connection con;
+
+	/**
+	 * The prepared statements created for the connection, by SQL.
+	 */
+	private final HashMap<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+	/**
+	 * Creates a pooled connection.
+	 *
+	 * @param con
+	 *            The connection to the dbms.
+	 */
+	PooledConnection(final Connection con) {
+		super();
+		this.con = con;
+	}
+
+	/**
+	 * @return The connection to the dbms.
+	 */
+	Connection getConnection() {
+		return con;
+	}
+
+	/**
+	 * Returns a prepared statement for some SQL. The statement is created the first time the SQL is used on this
+	 * connection and then reused.
+	 *
+	 * @param sql
+	 *            The SQL of the statement.
+	 * @return The prepared statement.
+	 * @throws SQLException
+	 *             Thrown if the statement could not be prepared.
+	 */
+	PreparedStatement prepareStatement(final String sql) throws SQLException {
+		PreparedStatement ps = statements.get(sql);
+		if (ps == null) {
+			ps = con.prepareStatement(sql);
+			statements.put(sql, ps);
+		}
+		return ps;
+	}
+
+	/**
+	 * Closes the connection and its prepared statements.
+	 */
+	void close() {
+		statements.clear();
+		try {
+			con.close();
+		} catch (SQLException e) {
+			// The connection is discarded anyway.
+		}
+	}
+}
@@ -0,0 +1,355 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+
+/**
+ * The IS-A hierarchy of the active concepts in a SNOMED CT release, read from RF2 Concept and Relationship snapshot
+ * files. The concepts are numbered by their position in the sorted array of concept ids, and the parents and
+ * ancestors of a concept are kept as such numbers in shared <code>int</code> arrays, so the transitive closure of a
+ * full release can be computed in memory without boxing any values.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class RF2Hierarchy {
+
+	/**
+	 * The id of the IS-A relationship type.
+	 */
+	static final long IS_A = 116680003L;
+
+	/**
+	 * The ids of the active concepts in ascending order.
+	 */
+	private final long[] conceptIds;
+	/**
+	 * Where the parents of each concept start in <code>parents</code>. The parents of concept <code>i</code> are
+	 * found from <code>parentStart[i]</code> up to <code>parentStart[i + 1]</code>.
+	 */
+	private final int[] parentStart;
+	/**
+	 * The parents of all concepts.
+	 */
+	private final int[] parents;
+	/**
+	 * Where the indirect ancestors of each concept start in <code>ancestors</code>.
+	 */
+	private final int[] ancestorStart;
+	/**
+	 * The number of indirect ancestors of each concept.
+	 */
+	private final int[] ancestorCount;
+	/**
+	 * The indirect ancestors of all concepts, i.e. the ancestors of the parents of each concept.
+	 */
+	private final int[] ancestors;
+
+	/**
+	 * Creates a hierarchy.
+	 *
+	 * @param conceptIds
+	 *            The ids of the active concepts in ascending order.
+	 * @param parentStart
+	 *            Where the parents of each concept start in <code>parents</code>.
+	 * @param parents
+	 *            The parents of all concepts.
+	 * @param ancestorStart
+	 *            Where the indirect ancestors of each concept start in <code>ancestors</code>.
+	 * @param ancestorCount
+	 *            The number of indirect ancestors of each concept.
+	 * @param ancestors
+	 *            The indirect ancestors of all concepts.
+	 */
+	private RF2Hierarchy(final long[] conceptIds, final int[] parentStart, final int[] parents,
+			final int[] ancestorStart, final int[] ancestorCount, final int[] ancestors) {
+		super();
+		this.conceptIds = conceptIds;
+		this.parentStart = parentStart;
+		this.parents = parents;
+		this.ancestorStart = ancestorStart;
+		this.ancestorCount = ancestorCount;
+		this.ancestors = ancestors;
+	}
+
+	/**
+	 * Read the active concepts and the active IS-A relationships between them from RF2 snapshot files and compute the
+	 * transitive closure of the hierarchy.
+	 *
+	 * @param conceptFile
+	 *            The RF2 Concept snapshot file.
+	 * @param relationshipFile
+	 *            The RF2 Relationship snapshot file, with stated or inferred relationships.
+	 * @return The hierarchy.
+	 * @throws IOException
+	 *             Thrown if any of the files could not be read.
+	 * @throws DataStoreException
+	 *             Thrown if a row in any of the files is malformed or if the IS-A relationships contain a cycle.
+	 */
+	static RF2Hierarchy read(final File conceptFile, final File relationshipFile)
+			throws IOException, DataStoreException {
+		final long[] conceptIds = readConceptIds(conceptFile);
+		final long[] edges = readIsARelationships(relationshipFile, conceptIds);
+		final int n = conceptIds.length;
+
+		// The edges are sorted by child and then by parent, so the parents of each concept follow each other.
+		final int[] parentStart = new int[n + 1];
+		final int[] parents = new int[edges.length];
+		final int[] childStart = new int[n + 1];
+		for (int i = 0; i < edges.length; i++) {
+			parentStart[(int) (edges[i] >>> 32) + 1]++;
+			childStart[(int) edges[i] + 1]++;
+			parents[i] = (int) edges[i];
+		}
+		for (int i = 0; i < n; i++) {
+			parentStart[i + 1] += parentStart[i];
+			childStart[i + 1] += childStart[i];
+		}
+		final int[] children = new int[edges.length];
+		final int[] childFill = Arrays.copyOf(childStart, n);
+		for (int i = 0; i < edges.length; i++) {
+			children[childFill[(int) edges[i]]++] = (int) (edges[i] >>> 32);
+		}
+
+		// Go through the concepts from the top of the hierarchy and down, so the ancestors of all parents are known
+		// when the ancestors of a concept are computed.
+		final int[] order = new int[n];
+		final int[] remainingParents = new int[n];
+		int orderEnd = 0;
+		for (int i = 0; i < n; i++) {
+			remainingParents[i] = parentStart[i + 1] - parentStart[i];
+			if (remainingParents[i] == 0) {
+				order[orderEnd++] = i;
+			}
+		}
+		final int[] ancestorStart = new int[n];
+		final int[] ancestorCount = new int[n];
+		int[] ancestors = new int[Math.max(16, n * 8)];
+		int ancestorsEnd = 0;
+		final int[] seen = new int[n];
+		for (int next = 0; next < orderEnd; next++) {
+			final int concept = order[next];
+			final int stamp = next + 1;
+			ancestorStart[concept] = ancestorsEnd;
+			for (int p = parentStart[concept]; p < parentStart[concept + 1]; p++) {
+				final int parent = parents[p];
+				// The indirect ancestors are the parents and the indirect ancestors of each parent.
+				for (int q = parentStart[parent]; q < parentStart[parent + 1]; q++) {
+					if (seen[parents[q]] != stamp) {
+						seen[parents[q]] = stamp;
+						if (ancestorsEnd == ancestors.length) {
+							ancestors = Arrays.copyOf(ancestors, ancestors.length * 2);
+						}
+						ancestors[ancestorsEnd++] = parents[q];
+					}
+				}
+				final int end = ancestorStart[parent] + ancestorCount[parent];
+				for (int a = ancestorStart[parent]; a < end; a++) {
+					if (seen[ancestors[a]] != stamp) {
+						seen[ancestors[a]] = stamp;
+						if (ancestorsEnd == ancestors.length) {
+							ancestors = Arrays.copyOf(ancestors, ancestors.length * 2);
+						}
+						ancestors[ancestorsEnd++] = ancestors[a];
+					}
+				}
+			}
+			ancestorCount[concept] = ancestorsEnd - ancestorStart[concept];
+			for (int c = childStart[concept]; c < childStart[concept + 1]; c++) {
+				if (--remainingParents[children[c]] == 0) {
+					order[orderEnd++] = children[c];
+				}
+			}
+		}
+		if (orderEnd < n) {
+			throw new DataStoreException("The IS-A relationships in " + relationshipFile + " contain a cycle.");
+		}
+		return new RF2Hierarchy(conceptIds, parentStart, parents, ancestorStart, ancestorCount, ancestors);
+	}
+
+	/**
+	 * Read the ids of the active concepts from an RF2 Concept snapshot file.
+	 *
+	 * @param conceptFile
+	 *            The RF2 Concept snapshot file.
+	 * @return The ids in ascending order.
+	 * @throws IOException
+	 *             Thrown if the file could not be read.
+	 * @throws DataStoreException
+	 *             Thrown if a row in the file is malformed.
+	 */
+	private static long[] readConceptIds(final File conceptFile) throws IOException, DataStoreException {
+		long[] ids = new long[1024];
+		int size = 0;
+		final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(conceptFile), "UTF-8"));
+		try {
+			// Skip the header.
+			String line = in.readLine();
+			int lineNumber = 1;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				// id, effectiveTime, active, moduleId, definitionStatusId
+				final String[] fields = split(line, 5, conceptFile, lineNumber);
+				if (fields != null && "1".equals(fields[2])) {
+					if (size == ids.length) {
+						ids = Arrays.copyOf(ids, size * 2);
+					}
+					ids[size++] = parseId(fields[0], conceptFile, lineNumber);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		ids = Arrays.copyOf(ids, size);
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Read the active IS-A relationships between active concepts from an RF2 Relationship snapshot file.
+	 *
+	 * @param relationshipFile
+	 *            The RF2 Relationship snapshot file.
+	 * @param conceptIds
+	 *            The ids of the active concepts in ascending order.
+	 * @return The relationships without duplicates, each with the child's number in the upper 32 bits and the
+	 *         parent's number in the lower 32 bits, in ascending order.
+	 * @throws IOException
+	 *             Thrown if the file could not be read.
+	 * @throws DataStoreException
+	 *             Thrown if a row in the file is malformed.
+	 */
+	private static long[] readIsARelationships(final File relationshipFile, final long[] conceptIds)
+			throws IOException, DataStoreException {
+		long[] edges = new long[1024];
+		int size = 0;
+		final BufferedReader in =
+				new BufferedReader(new InputStreamReader(new FileInputStream(relationshipFile), "UTF-8"));
+		try {
+			// Skip the header.
+			String line = in.readLine();
+			int lineNumber = 1;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				// id, effectiveTime, active, moduleId, sourceId, destinationId, relationshipGroup, typeId,
+				// characteristicTypeId, modifierId
+				final String[] fields = split(line, 10, relationshipFile, lineNumber);
+				if (fields == null || !"1".equals(fields[2])
+						|| parseId(fields[7], relationshipFile, lineNumber) != IS_A) {
+					continue;
+				}
+				final int child = Arrays.binarySearch(conceptIds, parseId(fields[4], relationshipFile, lineNumber));
+				final int parent = Arrays.binarySearch(conceptIds, parseId(fields[5], relationshipFile, lineNumber));
+				if (child < 0 || parent < 0 || child == parent) {
+					continue;
+				}
+				if (size == edges.length) {
+					edges = Arrays.copyOf(edges, size * 2);
+				}
+				edges[size++] = ((long) child << 32) | parent;
+			}
+		} finally {
+			in.close();
+		}
+		Arrays.sort(edges, 0, size);
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (unique == 0 || edges[i] != edges[unique - 1]) {
+				edges[unique++] = edges[i];
+			}
+		}
+		return Arrays.copyOf(edges, unique);
+	}
+
+	/**
+	 * Split a row of an RF2 file into its fields.
+	 *
+	 * @param line
+	 *            The row.
+	 * @param fieldCount
+	 *            The number of fields in a row of the file.
+	 * @param file
+	 *            The file.
+	 * @param lineNumber
+	 *            The row's line number in the file.
+	 * @return The fields, or <code>null</code> if the row is empty.
+	 * @throws DataStoreException
+	 *             Thrown if the row has too few fields.
+	 */
+	private static String[] split(final String line, final int fieldCount, final File file, final int lineNumber)
+			throws DataStoreException {
+		if (line.trim().isEmpty()) {
+			return null;
+		}
+		final String[] fields = line.split("\t");
+		if (fields.length < fieldCount) {
+			throw new DataStoreException("Line " + lineNumber + " in " + file + " has " + fields.length
+					+ " fields instead of " + fieldCount + ".");
+		}
+		return fields;
+	}
+
+	/**
+	 * Parse an id in a row of an RF2 file.
+	 *
+	 * @param field
+	 *            The field with the id.
+	 * @param file
+	 *            The file.
+	 * @param lineNumber
+	 *            The row's line number in the file.
+	 * @return The id.
+	 * @throws DataStoreException
+	 *             Thrown if the field is not an id.
+	 */
+	private static long parseId(final String field, final File file, final int lineNumber)
+			throws DataStoreException {
+		try {
+			return Long.parseLong(field);
+		} catch (NumberFormatException e) {
+			throw new DataStoreException("Line " + lineNumber + " in " + file + " has the malformed id " + field + ".",
+					e);
+		}
+	}
+
+	/**
+	 * @return The number of active concepts.
+	 */
+	int getConceptCount() {
+		return conceptIds.length;
+	}
+
+	/**
+	 * @param concept
+	 *            The concept's number.
+	 * @return The concept's id.
+	 */
+	long getConceptId(final int concept) {
+		return conceptIds[concept];
+	}
+
+	/**
+	 * @param concept
+	 *            The concept's number.
+	 * @return The numbers of the concept's parents.
+	 */
+	int[] getParents(final int concept) {
+		return Arrays.copyOfRange(parents, parentStart[concept], parentStart[concept + 1]);
+	}
+
+	/**
+	 * @param concept
+	 *            The concept's number.
+	 * @return The numbers of the concept's indirect ancestors, i.e. the ancestors of the concept's parents. A parent
+	 *         is also an indirect ancestor if it is an ancestor of another parent.
+	 */
+	int[] getIndirectAncestors(final int concept) {
+		return Arrays.copyOfRange(ancestors, ancestorStart[concept], ancestorStart[concept] + ancestorCount[concept]);
+	}
+}
@@ -0,0 +1,201 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datastore.postgresql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tables, views and indexes of the expression database. Each object is given by its name and the SQL that creates
+ * it, and an object is only created if no relation with its name exists, so an existing database is never changed by a
+ * bootstrap other than by adding the objects it lacks.
+ * <p>
+ * The temporal tables hold the full history while most queries ask for the rows active at one point in time, mostly
+ * the current time. The indexes start with the id the queries join or filter on followed by the end time and the start
+ * time, so the active rows of an id are found in the index without reading the ended rows, and include the other
+ * columns the queries read, so they are answered from the index alone. Ended rows are rare compared to active rows and
+ * are indexed by partial indexes for the queries that look for rows ending before <code>'infinity'</code>.
+ *
+ * @author Mikael Nystrm, mikael.nystrom@liu.se
+ *
+ */
+class SchemaBootstrap {
+
+	/**
+	 * The name of the unique index on the MD5 digest of the expressions.
+	 */
+	static final String EXPRESSION_DIGEST_INDEX = "expressions_expression_md5_idx";
+	/**
+	 * The unique index on the MD5 digest of the expressions.
+	 */
+	static final String[] EXPRESSION_DIGEST = { EXPRESSION_DIGEST_INDEX,
+			"CREATE UNIQUE INDEX " + EXPRESSION_DIGEST_INDEX + " ON expressions (md5(expression));" };
+
+	/**
+	 * The sequences and tables, in the order they are created.
+	 */
+	static final String[][] TABLES = {
+			{ "expressions_id_seq",
+					"CREATE SEQUENCE expressions_id_seq INCREMENT BY -1 MINVALUE -9223372036854775808 MAXVALUE -1 "
+							+ "START WITH -1;" },
+			{ "expressions",
+					"CREATE TABLE expressions (id bigint PRIMARY KEY DEFAULT nextval('expressions_id_seq'), "
+							+ "expression text NOT NULL, starttime timestamp NOT NULL, "
+							+ "endtime timestamp NOT NULL DEFAULT 'infinity');" },
+			{ "concepts",
+					"CREATE TABLE concepts (id bigint NOT NULL, starttime timestamp NOT NULL, "
+							+ "endtime timestamp NOT NULL DEFAULT 'infinity');" },
+			{ "equivalents_equivalentid_seq", "CREATE SEQUENCE equivalents_equivalentid_seq;" },
+			{ "equivalents",
+					"CREATE TABLE equivalents (id bigint NOT NULL, starttime timestamp NOT NULL, "
+							+ "endtime timestamp NOT NULL DEFAULT 'infinity', "
+							+ "equivalentid bigint NOT NULL DEFAULT nextval('equivalents_equivalentid_seq'));" },
+			{ "transitiveclosure",
+					"CREATE TABLE transitiveclosure (sourceid bigint NOT NULL, destinationid bigint NOT NULL, "
+							+ "starttime timestamp NOT NULL, endtime timestamp NOT NULL DEFAULT 'infinity', "
+							+ "directrelation boolean NOT NULL);" } };
+
+	/**
+	 * The views, in the order they are created. The view <code>eqv</code> pairs every concept or expression in an
+	 * equivalence group with every member of the group, itself included, for the time both are members. The view
+	 * <code>coneqv</code> adds every concept and expression as equivalent to itself, so the relatives of any id can be
+	 * found through the equivalents of the id.
+	 */
+	static final String[][] VIEWS = {
+			{ "eqv",
+					"CREATE VIEW eqv AS SELECT e1.id AS id1, e2.id AS id2, "
+							+ "greatest(e1.starttime, e2.starttime) AS starttime, "
+							+ "least(e1.endtime, e2.endtime) AS endtime "
+							+ "FROM equivalents AS e1 JOIN equivalents AS e2 ON e1.equivalentid = e2.equivalentid "
+							+ "WHERE greatest(e1.starttime, e2.starttime) < least(e1.endtime, e2.endtime);" },
+			{ "coneqv",
+					"CREATE VIEW coneqv AS "
+							+ "SELECT id AS id1, id AS id2, starttime, endtime FROM concepts UNION ALL "
+							+ "SELECT id, id, starttime, endtime FROM expressions UNION ALL "
+							+ "SELECT id1, id2, starttime, endtime FROM eqv WHERE id1 <> id2;" } };
+
+	/**
+	 * The indexes the data store relies on.
+	 */
+	static final String[][] INDEXES = {
+			// Looking up and storing expressions by their text.
+			EXPRESSION_DIGEST,
+			// The concepts and expressions arms of coneqv and the existence checks of ids.
+			{ "concepts_id_time_idx", "CREATE INDEX concepts_id_time_idx ON concepts (id, endtime, starttime);" },
+			{ "expressions_id_time_idx",
+					"CREATE INDEX expressions_id_time_idx ON expressions (id, endtime, starttime);" },
+			// The eqv arm of coneqv, first by the id and then by the equivalence group.
+			{ "equivalents_id_time_idx",
+					"CREATE INDEX equivalents_id_time_idx ON equivalents (id, endtime, starttime, equivalentid);" },
+			{ "equivalents_equivalentid_time_idx",
+					"CREATE INDEX equivalents_equivalentid_time_idx "
+							+ "ON equivalents (equivalentid, endtime, starttime, id);" },
+			// The ancestors and parents, from the source of a relation.
+			{ "transitiveclosure_source_time_idx",
+					"CREATE INDEX transitiveclosure_source_time_idx "
+							+ "ON transitiveclosure (sourceid, endtime, starttime, destinationid, directrelation);" },
+			// The descendants and children, from the destination of a relation.
+			{ "transitiveclosure_destination_time_idx",
+					"CREATE INDEX transitiveclosure_destination_time_idx "
+							+ "ON transitiveclosure (destinationid, endtime, starttime, sourceid, directrelation);" },
+			// The ended rows, which are found when the data store is restored and when a hierarchy snapshot for the
+			// current time looks for its next change.
+			{ "concepts_ended_idx", "CREATE INDEX concepts_ended_idx ON concepts (endtime) "
+					+ "WHERE endtime < 'infinity';" },
+			{ "expressions_ended_idx", "CREATE INDEX expressions_ended_idx ON expressions (endtime) "
+					+ "WHERE endtime < 'infinity';" },
+			{ "equivalents_ended_idx", "CREATE INDEX equivalents_ended_idx ON equivalents (endtime) "
+					+ "WHERE endtime < 'infinity';" },
+			{ "transitiveclosure_ended_idx", "CREATE INDEX transitiveclosure_ended_idx ON transitiveclosure (endtime) "
+					+ "WHERE endtime < 'infinity';" },
+			// The rows that start after a specific time, which are found by the same queries.
+			{ "concepts_starttime_idx", "CREATE INDEX concepts_starttime_idx ON concepts (starttime);" },
+			{ "expressions_starttime_idx", "CREATE INDEX expressions_starttime_idx ON expressions (starttime);" },
+			{ "equivalents_starttime_idx", "CREATE INDEX equivalents_starttime_idx ON equivalents (starttime);" },
+			{ "transitiveclosure_starttime_idx",
+					"CREATE INDEX transitiveclosure_starttime_idx ON transitiveclosure (starttime);" } };
+
+	/**
+	 * The SQL for a <code>PreparedStatement</code> which checks if no relation with a specific name exists in the
+	 * schemas of the search path in the dbms.
+	 */
+	private static final String isMissingRelationSql = "SELECT NOT EXISTS (SELECT 1 FROM pg_class AS c "
+			+ "JOIN pg_namespace AS n ON n.oid = c.relnamespace "
+			+ "WHERE c.relname = ? AND n.nspname = ANY (current_schemas(false))) AS missing;";
+
+	/**
+	 * Hidden constructor, since the class only has static members.
+	 */
+	private SchemaBootstrap() {
+		super();
+	}
+
+	/**
+	 * Create the objects that do not already exist in the dbms.
+	 *
+	 * @param c
+	 *            The connection to the dbms.
+	 * @param objects
+	 *            The names of the objects and the SQL that creates them, in the order they are created.
+	 * @return The names of the objects that were created.
+	 * @throws SQLException
+	 *             Thrown if there are any problem with the dbms.
+	 */
+	static List<String> create(final PooledConnection c, final String[][] objects) throws SQLException {
+		final List<String> created = new ArrayList<String>();
+		for (String[] object : objects) {
+			if (isMissing(c, object[0])) {
+				final Statement statement = c.getConnection().createStatement();
+				try {
+					statement.executeUpdate(object[1]);
+				} finally {
+					statement.close();
+				}
+				created.add(object[0]);
+			}
+		}
+		return created;
+	}
+
+	/**
+	 * Find the objects that do not exist in the dbms.
+	 *
+	 * @param c
+	 *            The connection to the dbms.
+	 * @param objects
+	 *            The names of the objects and the SQL that creates them.
+	 * @return The names of the missing objects.
+	 * @throws SQLException
+	 *             Thrown if there are any problem with the dbms.
+	 */
+	static List<String> getMissing(final PooledConnection c, final String[][] objects) throws SQLException {
+		final List<String> missing = new ArrayList<String>();
+		for (String[] object : objects) {
+			if (isMissing(c, object[0])) {
+				missing.add(object[0]);
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * Check if no relation with a specific name exists in the dbms.
+	 *
+	 * @param c
+	 *            The connection to the dbms.
+	 * @param name
+	 *            The name of the relation.
+	 * @return <code>true</code> if the relation is missing.
+	 * @throws SQLException
+	 *             Thrown if there are any problem with the dbms.
+	 */
+	private static boolean isMissing(final PooledConnection c, final String name) throws SQLException {
+		final PreparedStatement isMissingRelationPs = c.prepareStatement(isMissingRelationSql);
+		isMissingRelationPs.setString(1, name);
+		final ResultSet isMissingRelationRs = isMissingRelationPs.executeQuery();
+		isMissingRelationRs.next();
+		return isMissingRelationRs.getBoolean("missing");
+	}
+}
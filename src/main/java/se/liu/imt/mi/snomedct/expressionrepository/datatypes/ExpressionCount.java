@@ -0,0 +1,61 @@
+package se.liu.imt.mi.snomedct.expressionrepository.datatypes;
+
+/**
+ * The number of expressions in the data store at a specific time, and the lowest expression id among them. Expression
+ * ids are assigned in descending order from -1, so the lowest id is the one that was assigned last.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+
+public class ExpressionCount {
+
+	/**
+	 * The number of expressions.
+	 */
+	private final long count;
+
+	/**
+	 * The lowest expression id, which is the most recently assigned one, or 0 if there are no expressions.
+	 */
+	private final long lowestExpressionId;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param count
+	 *            The number of expressions.
+	 * @param lowestExpressionId
+	 *            The lowest expression id, or 0 if there are no expressions.
+	 */
+	public ExpressionCount(long count, long lowestExpressionId) {
+		super();
+		this.count = count;
+		this.lowestExpressionId = lowestExpressionId;
+	}
+
+	/**
+	 * @return the number of expressions
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the lowest expression id, which is the most recently assigned one, or 0 if there are no expressions
+	 */
+	public long getLowestExpressionId() {
+		return lowestExpressionId;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return count + ", " + lowestExpressionId;
+	}
+
+}
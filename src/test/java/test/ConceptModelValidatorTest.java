@@ -0,0 +1,81 @@
+package test;
+
+import static org.junit.Assert.fail;
+import static test.TestConceptHierarchy.createDataStore;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.liu.imt.mi.snomedct.expressionrepository.ConceptModelValidator;
+import se.liu.imt.mi.snomedct.expressionrepository.MRCMImpl;
+import se.liu.imt.mi.snomedct.expressionrepository.api.ConceptModelException;
+
+/**
+ * JUnit test for class {@link se.liu.imt.mi.snomedct.expressionrepository.ConceptModelValidator}. The MRCM reference
+ * set in the test resources is loaded against the concept hierarchy in {@link TestConceptHierarchy}, so no database
+ * is needed.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+public class ConceptModelValidatorTest {
+
+	/**
+	 * The MRCM reference set file.
+	 */
+	private static final String mrcmFile = "src/test/resources/refset_MRCM_preview-20130327.txt";
+
+	/**
+	 * The validator to test.
+	 */
+	private ConceptModelValidator validator;
+
+	/**
+	 * Creates a data store with the concept hierarchy and loads the MRCM reference set.
+	 *
+	 * @throws java.lang.Exception
+	 *             If the concepts could not be stored or the reference set could not be loaded.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		final MRCMImpl mrcm = new MRCMImpl(createDataStore());
+		mrcm.loadMRCM(mrcmFile);
+		validator = new ConceptModelValidator(mrcm);
+	}
+
+	/**
+	 * Test method for {@link se.liu.imt.mi.snomedct.expressionrepository.ConceptModelValidator#validate(String)} with
+	 * expressions that follow the concept model.
+	 */
+	@Test
+	public final void testValidate() throws Exception {
+		validator.validate("125605004");
+		validator.validate("===125605004:{116676008=72704001,363698007=71341001}");
+		validator.validate("125605004 | fracture of bone | : 363698007 | finding site | = "
+				+ "71341001 | bone structure of femur |");
+		validator.validate("===65801008+125605004:363698007=71341001");
+		validator.validate("===65801008:{405813007=71341001}{405813007=71341001}");
+		validator.validate("===125605004:363698007=(===71341001:272741003=7771000)");
+	}
+
+	/**
+	 * Test method for {@link se.liu.imt.mi.snomedct.expressionrepository.ConceptModelValidator#validate(String)} with
+	 * expressions that break the concept model.
+	 */
+	@Test
+	public final void testValidateRejected() throws Exception {
+		for (String expression : Arrays.asList("===125605004:363698007=72704001", "===65801008:363698007=71341001",
+				"===125605004:{116676008=72704001,363698007=7771000}",
+				"===125605004:363698007=(===71341001:272741003=71341001)",
+				"===125605004:363698007=(===65801008:405813007=71341001)")) {
+			try {
+				validator.validate(expression);
+				fail("The expression " + expression + " was not rejected.");
+			} catch (ConceptModelException e) {
+				// Expected.
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.TestConceptHierarchy.createDataStore;
+import static test.TestConceptHierarchy.ids;
+import static test.TestConceptHierarchy.procedure;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerConfiguration;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+
+import se.liu.imt.mi.snomedct.expressionrepository.ExpressionRepositoryImpl;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.Expression;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * JUnit test for class {@link se.liu.imt.mi.snomedct.expressionrepository.ExpressionRepositoryImpl} with the concept
+ * hierarchy in {@link TestConceptHierarchy} and an empty ontology, so no database is needed. The ELK reasoner is
+ * wrapped so that it can be made to fail.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+public class ExpressionRepositoryImplTest {
+
+	/**
+	 * A new expression, which is classified as a child of procedure.
+	 */
+	private static final String expression =
+			"71388002 | procedure | : 363704007 | procedure site | = 71341001 | femur |";
+
+	/**
+	 * The data store with the concepts and expressions.
+	 */
+	private DataStore ds;
+
+	/**
+	 * The configuration of the expression repository.
+	 */
+	private Configuration config;
+
+	/**
+	 * The expression repository to test.
+	 */
+	private ExpressionRepositoryImpl repo;
+
+	/**
+	 * If the reasoner fails when it classifies.
+	 */
+	private volatile boolean failing = false;
+
+	/**
+	 * Creates a data store with the concept hierarchy and an expression repository with an empty ontology.
+	 *
+	 * @throws java.lang.Exception
+	 *             If the data store or the expression repository could not be created.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		ds = createDataStore();
+		final File ontologyFile = File.createTempFile("ontology", ".owl");
+		ontologyFile.deleteOnExit();
+		final PrintWriter ontology = new PrintWriter(ontologyFile, "UTF-8");
+		ontology.print("Ontology(<http://snomed.info/test>)\n");
+		ontology.close();
+		config = new BaseConfiguration();
+		config.setProperty("owlapi.url", ontologyFile.toURI().toString());
+		repo = new ExpressionRepositoryImpl(config, ds, new FailingReasonerFactory());
+	}
+
+	/**
+	 * Test that an expression that could not be classified since the reasoner failed gets no id, and that it is
+	 * classified with the id it was stored with when it is asked for again.
+	 */
+	@Test
+	public final void testReasonerFailure() {
+		try {
+			failing = true;
+			try {
+				repo.getExpressionIDs(Arrays.asList(expression));
+				fail("An id was returned for an expression that the reasoner failed to classify.");
+			} catch (DataStoreException e) {
+				// Expected.
+			}
+			final Set<Expression> stored = ds.getAllExpressions(null);
+			assertEquals("The expression was not stored before it was classified.", 1, stored.size());
+			final ExpressionId storedId = stored.iterator().next().getExpressionId();
+			assertTrue("The expression got parents although it was not classified.", ds.getParents(storedId, null)
+					.isEmpty());
+			try {
+				repo.getExpressionIDs(Arrays.asList(expression));
+				fail("The stored but unclassified expression was returned as an existing expression.");
+			} catch (DataStoreException e) {
+				// Expected.
+			}
+
+			failing = false;
+			final List<ExpressionId> result = repo.getExpressionIDs(Arrays.asList(expression));
+			assertEquals("The expression was not classified with the id it was stored with.", storedId, result.get(0));
+			assertEquals("The parents of the expression were not the expected.", ids(procedure),
+					ds.getParents(storedId, null));
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Test that the classification of an expression that was stored but never classified is stored when the
+	 * repository is started and the classification snapshot does not match, and that the snapshot is then written.
+	 */
+	@Test
+	public final void testStoreMissingClassifications() {
+		try {
+			failing = true;
+			try {
+				repo.getExpressionIDs(Arrays.asList(expression));
+				fail("An id was returned for an expression that the reasoner failed to classify.");
+			} catch (DataStoreException e) {
+				// Expected.
+			}
+			final Set<Expression> stored = ds.getUnclassifiedExpressions(null);
+			assertEquals("The expression was not stored unclassified.", 1, stored.size());
+			final ExpressionId storedId = stored.iterator().next().getExpressionId();
+
+			failing = false;
+			final File snapshotFile = File.createTempFile("classification", ".snapshot");
+			snapshotFile.delete();
+			snapshotFile.deleteOnExit();
+			config.setProperty("reasoner.snapshot", snapshotFile.getPath());
+			new ExpressionRepositoryImpl(config, ds, new FailingReasonerFactory());
+			assertEquals("The parents of the expression were not stored at startup.", ids(procedure),
+					ds.getParents(storedId, null));
+			assertTrue("Expressions were still unclassified after startup.", ds.getUnclassifiedExpressions(null)
+					.isEmpty());
+			assertTrue("The snapshot was not written after the missing classification was stored.",
+					snapshotFile.exists());
+		} catch (Exception e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * A factory for ELK reasoners that fail to classify when {@link ExpressionRepositoryImplTest#failing} is set.
+	 */
+	private class FailingReasonerFactory implements OWLReasonerFactory {
+
+		/**
+		 * The factory creating the ELK reasoners.
+		 */
+		private final ElkReasonerFactory elk = new ElkReasonerFactory();
+
+		/**
+		 * Wraps a reasoner so that it fails to classify when {@link ExpressionRepositoryImplTest#failing} is set.
+		 *
+		 * @param reasoner
+		 *            The reasoner.
+		 * @return The wrapped reasoner.
+		 */
+		private OWLReasoner failing(final OWLReasoner reasoner) {
+			return (OWLReasoner) Proxy.newProxyInstance(OWLReasoner.class.getClassLoader(),
+					new Class<?>[] { OWLReasoner.class }, new InvocationHandler() {
+						@Override
+						public Object invoke(final Object proxy, final Method method, final Object[] args)
+								throws Throwable {
+							if (failing && method.getName().equals("precomputeInferences")) {
+								throw new IllegalStateException("The reasoner failed.");
+							}
+							try {
+								return method.invoke(reasoner, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						}
+					});
+		}
+
+		@Override
+		public String getReasonerName() {
+			return elk.getReasonerName();
+		}
+
+		@Override
+		public OWLReasoner createNonBufferingReasoner(final OWLOntology ontology) {
+			return failing(elk.createNonBufferingReasoner(ontology));
+		}
+
+		@Override
+		public OWLReasoner createReasoner(final OWLOntology ontology) {
+			return failing(elk.createReasoner(ontology));
+		}
+
+		@Override
+		public OWLReasoner createNonBufferingReasoner(final OWLOntology ontology,
+				final OWLReasonerConfiguration config) {
+			return failing(elk.createNonBufferingReasoner(ontology, config));
+		}
+
+		@Override
+		public OWLReasoner createReasoner(final OWLOntology ontology, final OWLReasonerConfiguration config) {
+			return failing(elk.createReasoner(ontology, config));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.TestConceptHierarchy.ambiguousConcept;
+import static test.TestConceptHierarchy.bloodBankProcedure;
+import static test.TestConceptHierarchy.createDataStore;
+import static test.TestConceptHierarchy.event;
+import static test.TestConceptHierarchy.finding;
+import static test.TestConceptHierarchy.fracture;
+import static test.TestConceptHierarchy.ids;
+import static test.TestConceptHierarchy.openApproach;
+import static test.TestConceptHierarchy.procedure;
+import static test.TestConceptHierarchy.surgicalAccessValues;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.liu.imt.mi.snomedct.expressionrepository.MRCMImpl;
+import se.liu.imt.mi.snomedct.expressionrepository.api.ConceptModelException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * JUnit test for class {@link se.liu.imt.mi.snomedct.expressionrepository.MRCMImpl}. The MRCM reference set in the
+ * test resources is loaded against the concept hierarchy in {@link TestConceptHierarchy}, so no database is needed.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+public class MRCMTest {
+
+	/**
+	 * The MRCM reference set file.
+	 */
+	private static final String mrcmFile = "src/test/resources/refset_MRCM_preview-20130327.txt";
+
+	private static final ExpressionId access = new ExpressionId(260507000L);
+	private static final ExpressionId after = new ExpressionId(255234002L);
+	private static final ExpressionId reasonForInactivation = new ExpressionId(149016008L);
+	private static final ExpressionId isA = new ExpressionId(116680003L);
+
+	/**
+	 * The data store the constraints are evaluated against.
+	 */
+	private DataStore ds;
+
+	/**
+	 * The MRCM to test.
+	 */
+	private MRCMImpl mrcm;
+
+	/**
+	 * Creates a data store with the concept hierarchy and loads the MRCM reference set.
+	 *
+	 * @throws java.lang.Exception
+	 *             If the concepts could not be stored or the reference set could not be loaded.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		ds = createDataStore();
+		mrcm = new MRCMImpl(ds);
+		mrcm.loadMRCM(mrcmFile);
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.MRCMImpl#validate(ExpressionId, ExpressionId, ExpressionId)}
+	 * with concepts.
+	 */
+	@Test
+	public final void testValidate() throws Exception {
+		assertTrue("The access of a procedure was not allowed.",
+				mrcm.validate(bloodBankProcedure, access, openApproach));
+		assertTrue("The access was not allowed for the top of its domain and range.",
+				mrcm.validate(procedure, access, surgicalAccessValues));
+		assertFalse("The access of a finding was allowed.", mrcm.validate(fracture, access, openApproach));
+		assertFalse("An access outside the range was allowed.", mrcm.validate(procedure, access, fracture));
+		assertTrue("After in a union domain and range was not allowed.", mrcm.validate(event, after, procedure));
+		assertTrue("After in a union domain and range was not allowed.", mrcm.validate(fracture, after, finding));
+		assertFalse("After outside the union domain was allowed.", mrcm.validate(procedure, after, finding));
+		assertTrue("A range without restriction did not allow any object.",
+				mrcm.validate(ambiguousConcept, reasonForInactivation, bloodBankProcedure));
+		assertFalse("An attribute that is not in the MRCM was allowed.", mrcm.validate(fracture, isA, finding));
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.MRCMImpl#validate(ExpressionId, ExpressionId, ExpressionId)}
+	 * with a post-coordinated expression stored after the MRCM was loaded.
+	 */
+	@Test
+	public final void testValidatePostCoordinated() throws Exception {
+		final ExpressionId expression = ds.storeExpression("59524001:260507000=129820002", new Date());
+		ds.storeExpressionParentsAndChildren(expression, ids(bloodBankProcedure), ids(), new Date());
+		assertTrue("The access of a post-coordinated procedure was not allowed.",
+				mrcm.validate(expression, access, openApproach));
+		assertFalse("The post-coordinated procedure was allowed in the domain of after.",
+				mrcm.validate(expression, after, finding));
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.MRCMImpl#validate(ExpressionId, ExpressionId, ExpressionId)}
+	 * before any MRCM file is loaded.
+	 */
+	@Test
+	public final void testValidateNotLoaded() throws Exception {
+		try {
+			new MRCMImpl(ds).validate(bloodBankProcedure, access, openApproach);
+			fail("A triple was validated without an MRCM.");
+		} catch (ConceptModelException e) {
+			// Expected.
+		}
+	}
+}
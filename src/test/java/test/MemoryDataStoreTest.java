@@ -0,0 +1,388 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static test.TestConceptHierarchy.ids;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionAlreadyDefined;
+import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.ExpressionCursor;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.Expression;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * JUnit test for class {@link se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore}. The tests in
+ * {@link AbstractDataStoreTest} are run against the part of the SNOMED CT hierarchy that they use, so no database is
+ * needed, and what is stored is looked up through the other methods of the data store.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+public class MemoryDataStoreTest extends AbstractDataStoreTest {
+
+	/**
+	 * The time the concepts are stored, which is the first release of SNOMED CT.
+	 */
+	private static final Date conceptTime = new GregorianCalendar(2002, 0, 31).getTime();
+
+	/**
+	 * The concepts the tests use, each followed by its parents, from the top of the hierarchy and down. Electric field
+	 * must not have the same parents as mechanical force, so a concept with an invented id stands in for electricity
+	 * between it and physical force.
+	 */
+	private static final long[][] concepts = { { 138875005L }, // SNOMED CT Concept
+			{ 78621006L, 138875005L }, // Physical force
+			{ 76661004L, 78621006L }, // Altitude
+			{ 87588000L, 76661004L }, // High altitude
+			{ 10035008L, 76661004L }, // Low altitude
+			{ 72110006L, 10035008L }, // Below sea level
+			{ 285653008L, 78621006L }, // Mechanical force
+			{ 900000000000002L, 78621006L }, // Electricity
+			{ 32646006L, 900000000000002L }, // Electric field
+			{ 71388002L, 138875005L }, // Procedure
+			{ 128927009L, 71388002L }, // Procedure by method
+			{ 14734007L, 71388002L }, // Administrative procedure
+			{ 59524001L, 71388002L }, // Blood bank procedure
+			{ 250404007L, 59524001L }, // Blood compatibility test
+			{ 123037004L, 138875005L }, // Body structure
+			{ 410607006L, 138875005L }, // Organism
+			{ 387961004L, 410607006L }, // Kingdom Animalia
+			{ 362981000L, 138875005L }, // Qualifier value
+			{ 129264002L, 362981000L }, // Action
+			{ 272379006L, 138875005L }, // Event
+			{ 420008001L, 272379006L }, // Travel
+			{ 445000002L, 420008001L }, // Recent air travel
+			{ 405615003L, 272379006L }, // Notable event
+			{ 405618001L, 405615003L }, // Respiratory event
+			{ 49061008L, 272379006L }, // Landslide
+			{ 102406006L, 49061008L }, // Mud slide
+			{ 419891008L, 138875005L }, // Record artifact
+			{ 424975005L, 419891008L }, // Record entry
+			{ 14679004L, 138875005L }, // Occupation
+			{ 265950004L, 14679004L }, // Professional, scientist, engineer and technologist
+			{ 308027003L, 265950004L }, // Scientist
+			{ 309036005L, 14679004L }, // Assembler
+			{ 266048002L, 309036005L }, // Product assembler
+			{ 308350004L, 266048002L }, // Repetitive assembler
+			{ 160117002L, 308350004L }, // Repetitive assembler, electrical
+			{ 50833004L, 138875005L }, // Paper device
+			{ 25864001L, 50833004L }, // Carbon paper device
+			{ 21735008L, 50833004L }, // Correcting paper device
+			{ 85935002L, 50833004L }, // Photocopy paper device
+			{ 55263001L, 50833004L }, // Photography paper device
+			{ 55287004L, 50833004L } // Writing paper device
+	};
+
+	private static final ExpressionId root = new ExpressionId(138875005L);
+	private static final ExpressionId procedure = new ExpressionId(71388002L);
+	private static final ExpressionId event = new ExpressionId(272379006L);
+	private static final ExpressionId administrativeProcedure = new ExpressionId(14734007L);
+	private static final ExpressionId procedureByMethod = new ExpressionId(128927009L);
+	private static final ExpressionId bloodBankProcedure = new ExpressionId(59524001L);
+	private static final ExpressionId bloodCompatibilityTest = new ExpressionId(250404007L);
+
+	/**
+	 * The data store to test, with its own type.
+	 */
+	private DataStore memoryDs;
+
+	/**
+	 * Creates a data store with the concepts the tests use.
+	 *
+	 * @throws java.lang.Exception
+	 *             If the concepts could not be stored.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		memoryDs = new DataStore();
+		for (long[] concept : concepts) {
+			final Set<ExpressionId> parents = new HashSet<ExpressionId>();
+			for (int i = 1; i < concept.length; i++) {
+				parents.add(new ExpressionId(concept[i]));
+			}
+			memoryDs.storeConcept(new ExpressionId(concept[0]), parents, conceptTime);
+		}
+		ds = memoryDs;
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore#storeConcept(ExpressionId, Set, Date)}
+	 * .
+	 */
+	@Test
+	public final void testStoreConcept() throws Exception {
+		assertEquals(ids(bloodBankProcedure, procedure, root), ds.getAncestors(bloodCompatibilityTest, null));
+		assertEquals(ids(administrativeProcedure, procedureByMethod, bloodBankProcedure, bloodCompatibilityTest),
+				ds.getDescendants(procedure, null));
+		assertTrue(ds.isExistingId(root, conceptTime));
+		assertFalse(ds.isExistingId(root, new GregorianCalendar(2001, 0, 1).getTime()));
+
+		final ExpressionId eventAndProcedure = new ExpressionId(900000000000001L);
+		memoryDs.storeConcept(eventAndProcedure, ids(procedure, event), null);
+		assertEquals(ids(procedure, event), ds.getParents(eventAndProcedure, null));
+		assertEquals(ids(procedure, event, root), ds.getAncestors(eventAndProcedure, null));
+
+		try {
+			memoryDs.storeConcept(root, null, null);
+			fail("A DataStoreException should be thrown when storing a concept twice.");
+		} catch (DataStoreException e) {
+			// Everything is correct.
+		}
+		try {
+			memoryDs.storeConcept(new ExpressionId(22298006L), ids(new ExpressionId(1L)), null);
+			fail("A NonExistingIdException should be thrown when storing a concept with a non existing parent.");
+		} catch (NonExistingIdException e) {
+			// Everything is correct.
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore#storeExpressionEquivalence(ExpressionId, ExpressionId, Date)}
+	 * with the relatives of the equivalent expressions.
+	 */
+	@Test
+	public final void testStoreExpressionEquivalenceRelatives() throws Exception {
+		final ExpressionId expressionId = ds.storeExpression("31", null);
+		ds.storeExpressionEquivalence(expressionId, bloodBankProcedure, null);
+		assertTrue(ds.isSubsuming(expressionId, bloodBankProcedure, null));
+		assertFalse(ds.isSubsumingNotEquivalent(expressionId, bloodBankProcedure, null));
+		assertEquals(ids(procedure, root), ds.getAncestors(expressionId, null));
+		assertEquals(ids(procedure), ds.getParents(expressionId, null));
+		assertEquals(ids(bloodCompatibilityTest), ds.getChildren(expressionId, null));
+		assertEquals(ids(expressionId, bloodBankProcedure), ds.getParents(bloodCompatibilityTest, null));
+		assertTrue(ds.getDescendants(procedure, null).contains(expressionId));
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore#inactivateExpressionDefinition(ExpressionId, Date)}
+	 * with the relatives of the inactivated expression.
+	 */
+	@Test
+	public final void testInactivateExpressionDefinitionRelatives() throws Exception {
+		final Date insertTime1 = new GregorianCalendar(2108, 1, 2, 3, 4, 5).getTime();
+		final Date insertTime2 = new GregorianCalendar(2109, 6, 7, 8, 9, 10).getTime();
+		final ExpressionId upperId = ds.storeExpression("50", null);
+		final ExpressionId lowerId = ds.storeExpression("51", null);
+		ds.storeExpressionParentsAndChildren(upperId, ids(procedure), null, null);
+		ds.storeExpressionParentsAndChildren(lowerId, ids(upperId), null, null);
+		assertEquals(ids(upperId, procedure, root), ds.getAncestors(lowerId, null));
+
+		// The child of an inactivated expression is linked to the expression's parents.
+		ds.inactivateExpressionDefinition(upperId, insertTime1);
+		assertEquals(ids(procedure), ds.getParents(lowerId, insertTime1));
+		assertEquals(ids(procedure, root), ds.getAncestors(lowerId, insertTime1));
+		assertEquals(ids(), ds.getParents(upperId, insertTime1));
+		assertEquals(ids(upperId), ds.getParents(lowerId, null));
+		assertTrue(ds.isExistingId(upperId, insertTime1));
+
+		// The relatives of an inactivated expression are kept by an equivalent expression.
+		final ExpressionId equivalentId = ds.storeExpression("52", null);
+		ds.storeExpressionEquivalence(equivalentId, lowerId, insertTime1);
+		assertEquals(ids(procedure), ds.getParents(equivalentId, insertTime1));
+		ds.inactivateExpressionDefinition(lowerId, insertTime2);
+		assertEquals(ids(procedure), ds.getParents(equivalentId, insertTime2));
+		assertEquals(ids(), ds.getParents(lowerId, insertTime2));
+		assertFalse(ds.isEquivalent(equivalentId, lowerId, insertTime2));
+		assertTrue(ds.isEquivalent(equivalentId, lowerId, insertTime1));
+		assertTrue(ds.getChildren(procedure, insertTime2).contains(equivalentId));
+		assertFalse(ds.getChildren(procedure, insertTime2).contains(lowerId));
+
+		try {
+			ds.inactivateExpressionDefinition(lowerId, null);
+			fail("A ExpressionAlreadyDefined should be thrown when inactivating before an already stored definition.");
+		} catch (ExpressionAlreadyDefined e) {
+			// Everything is correct
+		}
+		try {
+			ds.inactivateExpressionDefinition(procedure, null);
+			fail("A NonExistingIdException should be thrown when inactivating a concept.");
+		} catch (NonExistingIdException e) {
+			// Everything is correct
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore#getAllExpressionsCursor(java.util.Date)}
+	 * .
+	 */
+	@Test
+	public final void testGetAllExpressionsCursor() throws Exception {
+		final Date insertTime = new GregorianCalendar(2109, 3, 4).getTime();
+		ds.storeExpression("70", null);
+		ds.storeExpression("71", null);
+		ds.storeExpression("72", insertTime);
+
+		final Set<Expression> expressions = new HashSet<Expression>();
+		try (ExpressionCursor cursor = ds.getAllExpressionsCursor(null)) {
+			while (cursor.next()) {
+				expressions.add(cursor.getExpression());
+			}
+			assertNull(cursor.getExpression());
+		}
+		assertEquals(ds.getAllExpressions(null), expressions);
+		assertEquals(2, expressions.size());
+
+		expressions.clear();
+		try (ExpressionCursor cursor = ds.getAllExpressionsCursor(insertTime)) {
+			while (cursor.next()) {
+				expressions.add(cursor.getExpression());
+			}
+		}
+		assertEquals(ds.getAllExpressions(insertTime), expressions);
+		assertEquals(3, expressions.size());
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore#getDescendants(ExpressionId, Date, ExpressionId, int)}
+	 * with the order of the descendants.
+	 */
+	@Test
+	public final void testGetDescendantsPageOrder() throws Exception {
+		final ExpressionId expressionId = ds.storeExpression("80", null);
+		ds.storeExpressionEquivalence(expressionId, bloodBankProcedure, null);
+
+		assertEquals(Arrays.asList(expressionId, administrativeProcedure), ds.getDescendants(procedure, null, null, 2));
+		assertEquals(Arrays.asList(bloodBankProcedure, procedureByMethod),
+				ds.getDescendants(procedure, null, administrativeProcedure, 2));
+		assertEquals(Arrays.asList(bloodCompatibilityTest), ds.getDescendants(procedure, null, procedureByMethod, 2));
+		assertEquals(Collections.emptyList(), ds.getDescendants(procedure, null, bloodCompatibilityTest, 2));
+		// A page may start after an id that is not a descendant.
+		assertEquals(Arrays.asList(procedureByMethod),
+				ds.getDescendants(procedure, null, new ExpressionId(100000000L), 1));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see test.AbstractDataStoreTest#getStoredExpressionId(java.lang.String, java.util.Date)
+	 */
+	@Override
+	protected ExpressionId getStoredExpressionId(final String expression, final Date startTime)
+			throws AssertionError {
+		try {
+			if (startTime != null && ds.getExpressionId(expression, new Date(startTime.getTime() - 1)) != null) {
+				// The expression was stored before the start time.
+				return null;
+			}
+			return ds.getExpressionId(expression, startTime);
+		} catch (DataStoreException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see test.AbstractDataStoreTest#getStoredEquivalents(se.liu.imt.mi.snomedct.expressionrepository.datatypes.
+	 * ExpressionId, java.util.Date)
+	 */
+	@Override
+	protected Set<ExpressionId> getStoredEquivalents(final ExpressionId id, final Date time) throws AssertionError {
+		final Set<ExpressionId> equivalents = new HashSet<ExpressionId>();
+		try {
+			final Set<ExpressionId> candidates = new HashSet<ExpressionId>();
+			for (Expression expression : ds.getAllExpressions(time)) {
+				candidates.add(expression.getExpressionId());
+			}
+			for (long[] concept : concepts) {
+				candidates.add(new ExpressionId(concept[0]));
+			}
+			candidates.remove(id);
+			for (ExpressionId candidate : candidates) {
+				if (ds.isEquivalent(id, candidate, time)) {
+					equivalents.add(candidate);
+				}
+			}
+		} catch (DataStoreException | NonExistingIdException e) {
+			throw new AssertionError(e);
+		}
+		if (!equivalents.isEmpty()) {
+			equivalents.add(id);
+		}
+		return equivalents;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see test.AbstractDataStoreTest#isStoredEquivalence(se.liu.imt.mi.snomedct.expressionrepository.datatypes.
+	 * ExpressionId, se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId, java.util.Date, java.util.Date)
+	 */
+	@Override
+	protected boolean isStoredEquivalence(final ExpressionId id, final ExpressionId equivalentId,
+			final Date startTime, final Date endTime) throws AssertionError {
+		final Date beforeStartTime = new Date(startTime.getTime() - 1);
+		final Date beforeEndTime = new Date(endTime.getTime() - 1);
+		try {
+			final boolean equivalentBefore = ds.isExistingId(id, beforeStartTime)
+					&& ds.isExistingId(equivalentId, beforeStartTime)
+					&& ds.isEquivalent(id, equivalentId, beforeStartTime);
+			return !equivalentBefore && ds.isEquivalent(id, equivalentId, startTime)
+					&& ds.isEquivalent(id, equivalentId, beforeEndTime) && !ds.isEquivalent(id, equivalentId, endTime);
+		} catch (DataStoreException | NonExistingIdException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see test.AbstractDataStoreTest#getStoredRelatives(se.liu.imt.mi.snomedct.expressionrepository.datatypes.
+	 * ExpressionId, boolean, boolean, java.util.Date)
+	 */
+	@Override
+	protected Set<ExpressionId> getStoredRelatives(final ExpressionId id, final boolean ancestors,
+			final boolean direct, final Date time) throws AssertionError {
+		try {
+			if (ancestors) {
+				return direct ? ds.getParents(id, time) : ds.getAncestors(id, time);
+			}
+			return direct ? ds.getChildren(id, time) : ds.getDescendants(id, time);
+		} catch (DataStoreException | NonExistingIdException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see test.AbstractDataStoreTest#countStoredEquivalences(se.liu.imt.mi.snomedct.expressionrepository.datatypes.
+	 * ExpressionId, java.util.Date)
+	 */
+	@Override
+	protected long countStoredEquivalences(final ExpressionId id, final Date time) throws AssertionError {
+		// The expression itself is in its group.
+		return Math.max(0, getStoredEquivalents(id, time).size() - 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see test.AbstractDataStoreTest#countStoredRelationships(se.liu.imt.mi.snomedct.expressionrepository.datatypes.
+	 * ExpressionId, java.util.Date)
+	 */
+	@Override
+	protected long countStoredRelationships(final ExpressionId id, final Date time) throws AssertionError {
+		return getStoredRelatives(id, true, false, time).size() + getStoredRelatives(id, false, false, time).size();
+	}
+}
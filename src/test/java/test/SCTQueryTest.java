@@ -0,0 +1,159 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static test.TestConceptHierarchy.ambiguousConcept;
+import static test.TestConceptHierarchy.bloodBankProcedure;
+import static test.TestConceptHierarchy.bloodCompatibilityTest;
+import static test.TestConceptHierarchy.bodyStructure;
+import static test.TestConceptHierarchy.createDataStore;
+import static test.TestConceptHierarchy.event;
+import static test.TestConceptHierarchy.excision;
+import static test.TestConceptHierarchy.finding;
+import static test.TestConceptHierarchy.findingAndProcedure;
+import static test.TestConceptHierarchy.fracture;
+import static test.TestConceptHierarchy.ids;
+import static test.TestConceptHierarchy.procedure;
+import static test.TestConceptHierarchy.root;
+import static test.TestConceptHierarchy.side;
+import static test.TestConceptHierarchy.surgicalAccessValues;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.liu.imt.mi.snomedct.expression.tools.ExpressionSyntaxError;
+import se.liu.imt.mi.snomedct.expressionrepository.SCTQuery;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * JUnit test for class {@link se.liu.imt.mi.snomedct.expressionrepository.SCTQuery}. The queries are evaluated against
+ * the concept hierarchy in {@link TestConceptHierarchy}, so no database is needed.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+public class SCTQueryTest {
+
+	/**
+	 * The data store to query.
+	 */
+	private DataStore ds;
+
+	/**
+	 * Creates a data store with the concept hierarchy.
+	 *
+	 * @throws java.lang.Exception
+	 *             If the concepts could not be stored.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		ds = createDataStore();
+	}
+
+	/**
+	 * Test method for {@link se.liu.imt.mi.snomedct.expressionrepository.SCTQuery#getExpressions()} .
+	 */
+	@Test
+	public final void testGetExpressions() throws Exception {
+		final SCTQuery query = new SCTQuery("Union(Descendants(71388002 |Procedure (procedure)|), "
+				+ "Intersection(404684003, 71388002 |Procedure (procedure)|), 125605004 : 363698007 = 71341001)");
+		assertEquals("The expressions in the query were not the expected.",
+				Arrays.asList("71388002 |Procedure (procedure)|", "404684003", "125605004 : 363698007 = 71341001"),
+				query.getExpressions());
+	}
+
+	/**
+	 * Test method for {@link se.liu.imt.mi.snomedct.expressionrepository.SCTQuery#getExpressions()} with expressions
+	 * whose refinements have several attributes, separated by commas like the operands.
+	 */
+	@Test
+	public final void testGetExpressionsRefinement() throws Exception {
+		assertEquals("The expression with several attributes was not the expected.",
+				Arrays.asList("71388002:405815000=122456005,260686004=129304002"),
+				new SCTQuery("Descendants(71388002:405815000=122456005,260686004=129304002)").getExpressions());
+		final SCTQuery query = new SCTQuery("Minus(71388002 |Procedure| : 405815000 |Procedure device| = 122456005, "
+				+ "260686004 |Method| = 129304002, 125605004:{116676008=72704001,363698007=71341001},"
+				+ "{363698007=71341001})");
+		assertEquals("The expressions with several attributes were not the expected.",
+				Arrays.asList("71388002 |Procedure| : 405815000 |Procedure device| = 122456005, "
+						+ "260686004 |Method| = 129304002",
+						"125605004:{116676008=72704001,363698007=71341001},{363698007=71341001}"),
+				query.getExpressions());
+	}
+
+	/**
+	 * Test method for
+	 * {@link se.liu.imt.mi.snomedct.expressionrepository.SCTQuery#evaluate(Map, se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStore, Date)}
+	 * .
+	 */
+	@Test
+	public final void testEvaluate() throws Exception {
+		assertEquals("The descendants were not the expected.",
+				ids(bloodBankProcedure, excision, findingAndProcedure, bloodCompatibilityTest),
+				evaluate("Descendants(71388002)"));
+		assertEquals("The descendants and self were not the expected.",
+				ids(bloodBankProcedure, bloodCompatibilityTest), evaluate("DescendantsAndSelf(59524001)"));
+		assertEquals("The ancestors were not the expected.", ids(root, procedure, finding),
+				evaluate("Ancestors(900000000000001)"));
+		assertEquals("The ancestors and self were not the expected.",
+				ids(root, procedure, finding, findingAndProcedure),
+				evaluate("AncestorsAndSelf(Intersection(Descendants(404684003), Descendants(71388002)))"));
+		assertEquals("The children were not the expected.",
+				ids(procedure, finding, event, surgicalAccessValues, ambiguousConcept, bodyStructure, side),
+				evaluate("Children(138875005)"));
+		assertEquals("The parents were not the expected.", ids(procedure, finding),
+				evaluate("Parents(900000000000001)"));
+		assertEquals("The union was not the expected.",
+				ids(procedure, finding, bloodBankProcedure, excision, findingAndProcedure, fracture,
+						bloodCompatibilityTest),
+				evaluate("Union(Descendants(404684003), DescendantsAndSelf(71388002), 404684003)"));
+		assertEquals("The intersection was not the expected.", ids(findingAndProcedure),
+				evaluate("Intersection(Descendants(404684003), Descendants(71388002))"));
+		assertEquals("The difference was not the expected.", ids(bloodBankProcedure, excision, bloodCompatibilityTest),
+				evaluate("Minus(Descendants(71388002), Descendants(404684003))"));
+		assertEquals("The nested query was not the expected.", ids(bloodBankProcedure, excision),
+				evaluate("Minus(Children(DescendantsAndSelf(71388002)), Union(Children(404684003), 250404007))"));
+	}
+
+	/**
+	 * Test method for {@link se.liu.imt.mi.snomedct.expressionrepository.SCTQuery#SCTQuery(String)} with queries that
+	 * are not well formed.
+	 */
+	@Test
+	public final void testSyntaxError() {
+		for (String query : Arrays.asList("Descendants(71388002", "Descendants(71388002, 404684003)",
+				"Minus(71388002)", "Union(71388002,)", "Descendants(71388002 |Procedure)", "71388002) 404684003")) {
+			try {
+				new SCTQuery(query);
+				fail("The query " + query + " was parsed.");
+			} catch (ExpressionSyntaxError e) {
+				// Expected.
+			}
+		}
+	}
+
+	/**
+	 * Evaluate a query whose expressions all are concept ids.
+	 *
+	 * @param queryText
+	 *            The query.
+	 * @return The result.
+	 * @throws Exception
+	 *             If the query could not be evaluated.
+	 */
+	private Set<ExpressionId> evaluate(final String queryText) throws Exception {
+		final SCTQuery query = new SCTQuery(queryText);
+		final Map<String, ExpressionId> expressionIds = new HashMap<String, ExpressionId>();
+		for (String expression : query.getExpressions()) {
+			expressionIds.put(expression, new ExpressionId(Long.valueOf(expression)));
+		}
+		return query.evaluate(expressionIds, ds, null);
+	}
+}
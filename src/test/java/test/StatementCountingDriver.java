@@ -0,0 +1,167 @@
+package test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver for the tests that counts the statements executed through its connections. It accepts the URL of
+ * another driver prefixed with {@link #URL_PREFIX} and lets that driver do the work.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+public final class StatementCountingDriver implements Driver {
+
+	/**
+	 * The prefix that is put in front of the URL of the other driver.
+	 */
+	public static final String URL_PREFIX = "jdbc:counting:";
+
+	/**
+	 * The registered driver, or <code>null</code> if it has not been registered yet.
+	 */
+	private static StatementCountingDriver driver = null;
+
+	/**
+	 * The number of statements executed through all connections from the driver.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * Hidden constructor, since the driver is only created by {@link #register()}.
+	 */
+	private StatementCountingDriver() {
+	}
+
+	/**
+	 * Registers the driver with the <code>DriverManager</code> the first time it is called.
+	 *
+	 * @return The registered driver.
+	 * @throws SQLException
+	 *             If the driver could not be registered.
+	 */
+	public static synchronized StatementCountingDriver register() throws SQLException {
+		if (driver == null) {
+			driver = new StatementCountingDriver();
+			DriverManager.registerDriver(driver);
+		}
+		return driver;
+	}
+
+	/**
+	 * @return The number of statements executed through all connections from the driver.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	@Override
+	public Connection connect(final String url, final Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		final String otherUrl = url.substring(URL_PREFIX.length());
+		final Connection con = DriverManager.getDriver(otherUrl).connect(otherUrl, info);
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args)
+							throws Throwable {
+						final Object result = delegate(con, method, args);
+						if (result instanceof PreparedStatement) {
+							return countExecutions((PreparedStatement) result, PreparedStatement.class);
+						} else if (result instanceof Statement) {
+							return countExecutions((Statement) result, Statement.class);
+						}
+						return result;
+					}
+				});
+	}
+
+	/**
+	 * Wraps a statement so that each execution of it is counted.
+	 *
+	 * @param statement
+	 *            The statement.
+	 * @param type
+	 *            The interface of the statement that the wrapper implements.
+	 * @return The wrapped statement.
+	 */
+	private <T extends Statement> T countExecutions(final T statement, final Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(final Object proxy, final Method method, final Object[] args)
+							throws Throwable {
+						if (method.getName().startsWith("execute")) {
+							count.incrementAndGet();
+						}
+						return delegate(statement, method, args);
+					}
+				}));
+	}
+
+	/**
+	 * Calls a method on the wrapped object and passes on the exception the method throws.
+	 *
+	 * @param target
+	 *            The wrapped object.
+	 * @param method
+	 *            The method.
+	 * @param args
+	 *            The arguments to the method.
+	 * @return The result of the method.
+	 * @throws Throwable
+	 *             The exception the method throws.
+	 */
+	private static Object delegate(final Object target, final Method method, final Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	public boolean acceptsURL(final String url) throws SQLException {
+		return url.startsWith(URL_PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(final String url, final Properties info) throws SQLException {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+}
@@ -0,0 +1,102 @@
+package test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Set;
+
+import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
+import se.liu.imt.mi.snomedct.expressionrepository.datastore.memory.DataStore;
+import se.liu.imt.mi.snomedct.expressionrepository.datatypes.ExpressionId;
+
+/**
+ * A small concept hierarchy in a memory data store, shared by the tests that need concepts but no database. The
+ * hierarchy is
+ * <ul>
+ * <li>root &lt;- procedure, finding, event, surgical access values, ambiguous concept, body structure, side,</li>
+ * <li>procedure &lt;- blood bank procedure, excision, finding and procedure,</li>
+ * <li>finding &lt;- finding and procedure, fracture,</li>
+ * <li>blood bank procedure &lt;- blood compatibility test,</li>
+ * <li>surgical access values &lt;- open approach,</li>
+ * <li>body structure &lt;- anatomical structure, morphology,</li>
+ * <li>anatomical structure &lt;- femur,</li>
+ * <li>morphology &lt;- fracture morphology and</li>
+ * <li>side &lt;- left.</li>
+ * </ul>
+ * Finding and procedure is an invented concept with two parents.
+ *
+ * @author Mikael Nyström, mikael.nystrom@liu.se
+ *
+ */
+public final class TestConceptHierarchy {
+
+	/**
+	 * The time the concepts are stored.
+	 */
+	public static final Date conceptTime = new GregorianCalendar(2002, 0, 31).getTime();
+
+	public static final ExpressionId root = new ExpressionId(138875005L);
+	public static final ExpressionId procedure = new ExpressionId(71388002L);
+	public static final ExpressionId finding = new ExpressionId(404684003L);
+	public static final ExpressionId event = new ExpressionId(272379006L);
+	public static final ExpressionId surgicalAccessValues = new ExpressionId(309795001L);
+	public static final ExpressionId ambiguousConcept = new ExpressionId(363660007L);
+	public static final ExpressionId bodyStructure = new ExpressionId(123037004L);
+	public static final ExpressionId side = new ExpressionId(182353008L);
+	public static final ExpressionId bloodBankProcedure = new ExpressionId(59524001L);
+	public static final ExpressionId excision = new ExpressionId(65801008L);
+	public static final ExpressionId findingAndProcedure = new ExpressionId(900000000000001L);
+	public static final ExpressionId fracture = new ExpressionId(125605004L);
+	public static final ExpressionId bloodCompatibilityTest = new ExpressionId(250404007L);
+	public static final ExpressionId openApproach = new ExpressionId(129820002L);
+	public static final ExpressionId anatomicalStructure = new ExpressionId(442083009L);
+	public static final ExpressionId morphology = new ExpressionId(49755003L);
+	public static final ExpressionId femur = new ExpressionId(71341001L);
+	public static final ExpressionId fractureMorphology = new ExpressionId(72704001L);
+	public static final ExpressionId left = new ExpressionId(7771000L);
+
+	/**
+	 * The concepts that are not attributes, each followed by its parents.
+	 */
+	private static final ExpressionId[][] concepts = { { root },
+			{ procedure, root }, { finding, root }, { event, root }, { surgicalAccessValues, root },
+			{ ambiguousConcept, root }, { bodyStructure, root }, { side, root },
+			{ bloodBankProcedure, procedure }, { excision, procedure }, { findingAndProcedure, procedure, finding },
+			{ fracture, finding }, { bloodCompatibilityTest, bloodBankProcedure },
+			{ openApproach, surgicalAccessValues }, { anatomicalStructure, bodyStructure },
+			{ morphology, bodyStructure }, { femur, anatomicalStructure },
+			{ fractureMorphology, morphology }, { left, side } };
+
+	/**
+	 * Hidden constructor, since the class only has static members.
+	 */
+	private TestConceptHierarchy() {
+	}
+
+	/**
+	 * @return A new memory data store with the concept hierarchy.
+	 * @throws DataStoreException
+	 *             If the concepts could not be stored.
+	 * @throws NonExistingIdException
+	 *             If a parent is stored after its child.
+	 */
+	public static DataStore createDataStore() throws DataStoreException, NonExistingIdException {
+		final DataStore ds = new DataStore();
+		for (ExpressionId[] concept : concepts) {
+			ds.storeConcept(concept[0], concept.length == 1 ? null : ids(Arrays.copyOfRange(concept, 1,
+					concept.length)), conceptTime);
+		}
+		return ds;
+	}
+
+	/**
+	 * @param ids
+	 *            Some ids.
+	 * @return A set with the ids.
+	 */
+	public static Set<ExpressionId> ids(final ExpressionId... ids) {
+		return new HashSet<ExpressionId>(Arrays.asList(ids));
+	}
+}
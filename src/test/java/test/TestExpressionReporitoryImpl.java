@@ -16,6 +16,7 @@ import org.junit.Test;
 
 import se.liu.imt.mi.snomedct.expression.tools.ExpressionSyntaxError;
 import se.liu.imt.mi.snomedct.expressionrepository.ExpressionRepositoryImpl;
+import se.liu.imt.mi.snomedct.expressionrepository.api.ConceptModelException;
 import se.liu.imt.mi.snomedct.expressionrepository.api.ExpressionRepository;
 import se.liu.imt.mi.snomedct.expressionrepository.api.NonExistingIdException;
 import se.liu.imt.mi.snomedct.expressionrepository.datastore.DataStoreException;
@@ -74,7 +75,8 @@ public class TestExpressionReporitoryImpl {
 	}
 
 	@Test
-	public final void testGetExpressionID() throws ExpressionSyntaxError, NonExistingIdException {
+	public final void testGetExpressionID() throws ExpressionSyntaxError, NonExistingIdException,
+			ConceptModelException {
 		log.debug("testGetExpressionID()");
 		ExpressionId id = repo
 				.getExpressionID("125605004 | fracture of bone | : 363698007 | finding site | = 71341001 | bone structure of femur |");
@@ -83,7 +85,8 @@ public class TestExpressionReporitoryImpl {
 	}
 
 	@Test
-	public final void testGetExpression() throws ExpressionSyntaxError, NonExistingIdException, DataStoreException {
+	public final void testGetExpression() throws ExpressionSyntaxError, NonExistingIdException, DataStoreException,
+			ConceptModelException {
 		 log.debug("testGetExpression()");
 		 ExpressionId id = repo
 		 .getExpressionID("125605004 | fracture of bone | : 363698007 | finding site | = 71341001 | bone structure of femur |");
@@ -103,7 +106,8 @@ public class TestExpressionReporitoryImpl {
 	}
 
 	@Test
-	public final void testGetChildren() throws ExpressionSyntaxError, NonExistingIdException, DataStoreException {
+	public final void testGetChildren() throws ExpressionSyntaxError, NonExistingIdException, DataStoreException,
+			ConceptModelException {
 		log.debug("testGetChildren()");
 		ExpressionId id = repo
 				.getExpressionID("125605004 | fracture of bone | : 363698007 | finding site | = 71341001 | bone structure of femur |");